@@ -3,9 +3,13 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import controller.JukeboxController;
+import model.AdmissionPolicyException;
 import model.JukeboxModel;
 import model.RealDateService;
 import model.dataservice.DataServiceException;
+import model.dataservice.probe.AudioProber;
+import model.dataservice.probe.ProbedDataService;
+import model.dataservice.reload.ReloadingDataService;
 import model.dataservice.xml.XmlDataService;
 import view.JukeboxView;
 
@@ -20,6 +24,10 @@ public class JukeboxMain {
 	private static final File STATE = new File("JukeboxState.dat");
 	private static final File SONG_DB = new File("resources/SongDb.xml");
 	private static final File USER_DB = new File("resources/UserDb.xml");
+	private static final File CATALOG = new File("resources/Catalog.snapshot");
+	private static final File SONG_DIR = new File("songfiles");
+	private static final File PROBES = new File("resources/Probes.cache");
+	private static final File ADMISSION = new File("resources/Admission.properties");
 
 	private static final Logger LOGGER = Logger.getLogger(JukeboxMain.class.getName());
 
@@ -33,17 +41,31 @@ public class JukeboxMain {
 	public static void main(String[] args) {
 		JukeboxController controller = new JukeboxController(STATE);
 		JukeboxModel model = new JukeboxModel(new RealDateService());
+		AudioProber prober = new AudioProber(PROBES);
+		ReloadingDataService dataService = new ReloadingDataService(() -> new ProbedDataService(
+				new XmlDataService(SONG_DB, USER_DB).toSnapshot(CATALOG), SONG_DIR, prober), SONG_DB, USER_DB);
 		try {
-			model.bind(new XmlDataService(SONG_DB, USER_DB));
+			model.bind(dataService);
+			dataService.addCatalogListener(model::catalogChanged);
+			dataService.start();
 		} catch (DataServiceException e) {
 			if (LOGGER.isLoggable(Level.SEVERE)) {
 				LOGGER.severe("fatal data service error: " + e.getMessage());
 			}
 			System.exit(1);
 		}
+		if (ADMISSION.exists()) {
+			try {
+				model.readAdmissionPolicy(ADMISSION);
+			} catch (AdmissionPolicyException e) {
+				if (LOGGER.isLoggable(Level.WARNING)) {
+					LOGGER.warning("using default admission rules: " + e.getMessage());
+				}
+			}
+		}
 		controller.bind(model);
 
-		JukeboxView view = new JukeboxView(model.getSongDb());
+		JukeboxView view = new JukeboxView(model.getSongDb(), model.getSearchIndex());
 		view.bind(controller);
 		view.setVisible(true);
 	}
@@ -42,14 +42,17 @@ public class JukeboxController implements ActionListener {
 			JukeboxView.showMessage("There was a problem adding the song.");
 			break;
 		case SONG_EXCEEDED_PLAY_LIMIT:
-			JukeboxView.showMessage("That song has already been played 3 times today.");
+			JukeboxView.showMessage("That song has been played as often as it may be for now.");
 			break;
 		case USER_EXCEEDED_PLAY_LIMIT:
-			JukeboxView.showMessage("You have already played 3 songs today.");
+			JukeboxView.showMessage("You have played as many songs as you may for now.");
 			break;
 		case USER_EXCEEDED_TIME_LIMIT:
 			JukeboxView.showMessage("You have used all your allotted time for playing songs.");
 			break;
+		case OUTSIDE_PLAYING_HOURS:
+			JukeboxView.showMessage("Songs can't be played at this time of day.");
+			break;
 		default:
 			break;
 		}
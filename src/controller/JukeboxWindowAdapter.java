@@ -12,7 +12,7 @@ import view.JukeboxView;
 
 /**
  * A window adapter for the Jukebox. Handles window open and close to prompt for
- * data saves and restores.
+ * data saves and restores, and shuts the model down on close.
  * 
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
@@ -48,6 +48,7 @@ public class JukeboxWindowAdapter extends WindowAdapter {
 				}
 			}
 		}
+		this.model.shutdown();
 	}
 
 	@Override
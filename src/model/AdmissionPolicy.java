@@ -0,0 +1,433 @@
+package model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import model.dataservice.Song;
+import model.dataservice.User;
+import model.dataservice.UserDb;
+
+/**
+ * The rules for who may queue which songs, and when. Without any rules, each
+ * song may be played 3 times a day, each user may queue 3 songs a day, and
+ * each user gets 1500 minutes in all. Rules are read from properties:
+ *
+ * <pre>
+ * song.plays = 3                  plays of any song a day
+ * song.&lt;id&gt;.plays = 1            plays of one song a day
+ * user.plays = 3                  songs each user may queue a day
+ * user.time = PT1500M             time each user gets in all
+ * user.hours = 08:00-22:00        when users may queue songs
+ * group.&lt;name&gt;.users = Chris, Devon
+ * group.&lt;name&gt;.plays = 5         the same for a group of users, who
+ * group.&lt;name&gt;.time = PT3000M    get the settings for everyone where
+ * group.&lt;name&gt;.hours = 00:00-24:00  the group doesn't have its own
+ * </pre>
+ *
+ * Hours may run past midnight, like 20:00-02:00. Users are named by their
+ * account names, and each user may be in at most one group.
+ *
+ * When the rules are read they are compiled into a chain of checks, and
+ * checks that aren't needed, like time of day when no hours are set, are left
+ * out. The cheapest checks come first and the first one to turn a song away
+ * decides why. How long each request takes to check is measured.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class AdmissionPolicy {
+	private static final int DEFAULT_PLAYS = 3;
+	private static final Duration DEFAULT_TIME = Duration.ofMinutes(1500);
+	private static final Pattern HOURS = Pattern.compile("(\\d{1,2}):(\\d{2})\\s*-\\s*(\\d{1,2}):(\\d{2})");
+	private static final Pattern GROUP = Pattern.compile("group\\.([^.]+)\\.(users|plays|time|hours)");
+	private static final Pattern SONG = Pattern.compile("song\\.([^.]+)\\.plays");
+	private static final Set<String> SETTINGS = new HashSet<>();
+
+	static {
+		Collections.addAll(SETTINGS, "song.plays", "user.plays", "user.time", "user.hours");
+	}
+
+	private final Group everyone;
+	private final Map<UUID, Group> groups;
+	private final Check[] chain;
+	private final int maxPlays;
+	private final DateService dateService;
+
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Create the rules used when none are given.
+	 *
+	 * @param dateService
+	 *            a DateService for the time of day
+	 */
+	public AdmissionPolicy(DateService dateService) {
+		this(new Group(DEFAULT_PLAYS, DEFAULT_TIME.toNanos(), null), new HashMap<>(), DEFAULT_PLAYS, new HashMap<>(),
+				dateService);
+	}
+
+	private AdmissionPolicy(Group everyone, Map<UUID, Group> groups, int songPlays, Map<UUID, Integer> songCaps,
+			DateService dateService) {
+		this.everyone = everyone;
+		this.groups = groups;
+		this.dateService = dateService;
+
+		int max = Math.max(songPlays, everyone.plays);
+		for (Group group : groups.values()) {
+			max = Math.max(max, group.plays);
+		}
+		for (Integer cap : songCaps.values()) {
+			max = Math.max(max, cap.intValue());
+		}
+		this.maxPlays = max;
+		this.chain = compile(songPlays, songCaps);
+	}
+
+	/**
+	 * Read rules from a properties file.
+	 *
+	 * @param rules
+	 *            the file to read
+	 * @param userDb
+	 *            the users the rules name
+	 * @param dateService
+	 *            a DateService for the time of day
+	 * @return the compiled rules
+	 * @throws AdmissionPolicyException
+	 *             thrown when the file can't be read or has a bad rule
+	 */
+	public static AdmissionPolicy read(File rules, UserDb userDb, DateService dateService)
+			throws AdmissionPolicyException {
+		Properties properties = new Properties();
+		try (Reader reader = new InputStreamReader(new FileInputStream(rules), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (IOException e) {
+			throw new AdmissionPolicyException("couldn't read admission rules");
+		}
+		return compile(properties, userDb, dateService);
+	}
+
+	/**
+	 * Compile rules given as properties.
+	 *
+	 * @param rules
+	 *            the rules
+	 * @param userDb
+	 *            the users the rules name
+	 * @param dateService
+	 *            a DateService for the time of day
+	 * @return the compiled rules
+	 * @throws AdmissionPolicyException
+	 *             thrown when there is a bad rule
+	 */
+	public static AdmissionPolicy compile(Properties rules, UserDb userDb, DateService dateService)
+			throws AdmissionPolicyException {
+		Group everyone = new Group(readPlays(rules, "user.plays", DEFAULT_PLAYS),
+				readTime(rules, "user.time", DEFAULT_TIME.toNanos()), readHours(rules, "user.hours", null));
+		int songPlays = readPlays(rules, "song.plays", DEFAULT_PLAYS);
+
+		Map<UUID, Integer> songCaps = new HashMap<>();
+		Set<String> groupNames = new HashSet<>();
+		for (String key : rules.stringPropertyNames()) {
+			Matcher song = SONG.matcher(key);
+			Matcher group = GROUP.matcher(key);
+			if (song.matches()) {
+				try {
+					songCaps.put(UUID.fromString(song.group(1)), Integer.valueOf(readPlays(rules, key, 0)));
+				} catch (IllegalArgumentException e) {
+					throw new AdmissionPolicyException("bad song id in " + key);
+				}
+			} else if (group.matches()) {
+				groupNames.add(group.group(1));
+			} else if (!SETTINGS.contains(key)) {
+				throw new AdmissionPolicyException("unknown admission rule " + key);
+			}
+		}
+
+		Map<UUID, Group> groups = new HashMap<>();
+		for (String name : groupNames) {
+			String prefix = "group." + name + ".";
+			String users = rules.getProperty(prefix + "users");
+			if (users == null) {
+				throw new AdmissionPolicyException("no users for group " + name);
+			}
+			Group group = new Group(readPlays(rules, prefix + "plays", everyone.plays),
+					readTime(rules, prefix + "time", everyone.timeNanos),
+					readHours(rules, prefix + "hours", everyone.hours));
+			for (String userName : users.split(",")) {
+				if (userName.trim().isEmpty()) {
+					continue;
+				}
+				User user = userDb.getUserByName(userName.trim());
+				if (user == null) {
+					throw new AdmissionPolicyException("unknown user " + userName.trim() + " in group " + name);
+				}
+				if (groups.put(user.getId(), group) != null) {
+					throw new AdmissionPolicyException("user " + userName.trim() + " is in more than one group");
+				}
+			}
+		}
+		return new AdmissionPolicy(everyone, groups, songPlays, songCaps, dateService);
+	}
+
+	/**
+	 * Check whether a user may queue a song. Plays are read from the caches
+	 * but not counted; the caller has to hold whatever locks keep the counts
+	 * from changing until it counts the play.
+	 *
+	 * @param userId
+	 *            the id of the user asking
+	 * @param songId
+	 *            the id of the song
+	 * @param song
+	 *            the song
+	 * @param songs
+	 *            the plays of each song
+	 * @param users
+	 *            the plays and time left of each user
+	 * @return why the song can't be queued, or null if it can
+	 */
+	public QueueEvent check(UUID userId, UUID songId, Song song, SongCache songs, UserCache users) {
+		long start = System.nanoTime();
+		QueueEvent refused = null;
+		for (Check check : this.chain) {
+			refused = check.check(userId, songId, song, songs, users);
+			if (refused != null) {
+				break;
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		this.evaluations.increment();
+		this.totalNanos.add(nanos);
+		long max = this.maxNanos.get();
+		while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+			max = this.maxNanos.get();
+		}
+		return refused;
+	}
+
+	/**
+	 * Get the most plays anything is allowed.
+	 *
+	 * @return the highest play limit of any song, user or group
+	 */
+	public int getMaxPlays() {
+		return this.maxPlays;
+	}
+
+	/**
+	 * Get how much time a user gets in all.
+	 *
+	 * @param userId
+	 *            the id of a user
+	 * @return the time in nanoseconds
+	 */
+	public long getAllowanceNanos(UUID userId) {
+		return group(userId).timeNanos;
+	}
+
+	/**
+	 * Get the number of requests checked.
+	 *
+	 * @return the number of requests
+	 */
+	public long getEvaluations() {
+		return this.evaluations.sum();
+	}
+
+	/**
+	 * Get the average time it took to check a request.
+	 *
+	 * @return the time in nanoseconds, or 0 before any requests
+	 */
+	public long getMeanNanos() {
+		long count = this.evaluations.sum();
+		return count == 0 ? 0 : this.totalNanos.sum() / count;
+	}
+
+	/**
+	 * Get the longest time it took to check a request.
+	 *
+	 * @return the time in nanoseconds, or 0 before any requests
+	 */
+	public long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d checks in a chain of %d, %.3f us average, %.3f us longest",
+				Long.valueOf(getEvaluations()), Integer.valueOf(this.chain.length),
+				Double.valueOf(getMeanNanos() / 1e3), Double.valueOf(getMaxNanos() / 1e3));
+	}
+
+	/**
+	 * Build the chain of checks, specialized to the rules that were given.
+	 */
+	private Check[] compile(int songPlays, Map<UUID, Integer> songCaps) {
+		List<Rule> rules = new ArrayList<>();
+		if (songCaps.isEmpty()) {
+			rules.add(new Rule(1, (userId, songId, song, songs, users) -> songs.getPlays(songId) >= songPlays
+					? QueueEvent.SONG_EXCEEDED_PLAY_LIMIT : null));
+		} else {
+			rules.add(new Rule(2, (userId, songId, song, songs, users) -> {
+				Integer cap = songCaps.get(songId);
+				int limit = cap == null ? songPlays : cap.intValue();
+				return songs.getPlays(songId) >= limit ? QueueEvent.SONG_EXCEEDED_PLAY_LIMIT : null;
+			}));
+		}
+		if (this.groups.isEmpty()) {
+			int limit = this.everyone.plays;
+			rules.add(new Rule(1, (userId, songId, song, songs, users) -> users.getPlays(userId) >= limit
+					? QueueEvent.USER_EXCEEDED_PLAY_LIMIT : null));
+		} else {
+			rules.add(new Rule(2, (userId, songId, song, songs, users) -> users.getPlays(userId) >= group(userId).plays
+					? QueueEvent.USER_EXCEEDED_PLAY_LIMIT : null));
+		}
+		rules.add(new Rule(2, (userId, songId, song, songs, users) -> users.getAllottedNanos(userId) < song.getLength()
+				.toNanos() ? QueueEvent.USER_EXCEEDED_TIME_LIMIT : null));
+		boolean hours = this.everyone.hours != null;
+		for (Group group : this.groups.values()) {
+			hours |= group.hours != null;
+		}
+		if (hours) {
+			// asks the DateService for the time, the most of any check
+			rules.add(new Rule(3, (userId, songId, song, songs, users) -> {
+				int[] allowed = group(userId).hours;
+				return allowed == null || allows(allowed, minuteOfDay()) ? null : QueueEvent.OUTSIDE_PLAYING_HOURS;
+			}));
+		}
+		// a stable sort, so checks that cost the same keep their order
+		rules.sort(Comparator.comparingInt(rule -> rule.cost));
+		Check[] chain = new Check[rules.size()];
+		for (int i = 0; i < chain.length; i++) {
+			chain[i] = rules.get(i).check;
+		}
+		return chain;
+	}
+
+	private Group group(UUID userId) {
+		return this.groups.getOrDefault(userId, this.everyone);
+	}
+
+	private int minuteOfDay() {
+		LocalTime now = this.dateService.getNow().toLocalTime();
+		return now.getHour() * 60 + now.getMinute();
+	}
+
+	private static boolean allows(int[] hours, int minute) {
+		if (hours[0] <= hours[1]) {
+			return minute >= hours[0] && minute < hours[1];
+		}
+		return minute >= hours[0] || minute < hours[1];
+	}
+
+	private static int readPlays(Properties rules, String key, int otherwise) throws AdmissionPolicyException {
+		String value = rules.getProperty(key);
+		if (value == null) {
+			return otherwise;
+		}
+		try {
+			int plays = Integer.parseInt(value.trim());
+			if (plays >= 0) {
+				return plays;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new AdmissionPolicyException("bad number of plays for " + key);
+	}
+
+	private static long readTime(Properties rules, String key, long otherwise) throws AdmissionPolicyException {
+		String value = rules.getProperty(key);
+		if (value == null) {
+			return otherwise;
+		}
+		try {
+			Duration time = Duration.parse(value.trim());
+			if (!time.isNegative()) {
+				return time.toNanos();
+			}
+		} catch (DateTimeParseException e) {
+			// reported below
+		}
+		throw new AdmissionPolicyException("bad time for " + key);
+	}
+
+	private static int[] readHours(Properties rules, String key, int[] otherwise) throws AdmissionPolicyException {
+		String value = rules.getProperty(key);
+		if (value == null) {
+			return otherwise;
+		}
+		Matcher hours = HOURS.matcher(value.trim());
+		if (!hours.matches()) {
+			throw new AdmissionPolicyException("bad hours for " + key);
+		}
+		int from = minutes(hours.group(1), hours.group(2), key);
+		int to = minutes(hours.group(3), hours.group(4), key);
+		if (from == 24 * 60) {
+			throw new AdmissionPolicyException("bad hours for " + key);
+		}
+		return new int[] { from, to };
+	}
+
+	private static int minutes(String hour, String minute, String key) throws AdmissionPolicyException {
+		int minutes = Integer.parseInt(hour) * 60 + Integer.parseInt(minute);
+		if (Integer.parseInt(minute) >= 60 || minutes > 24 * 60) {
+			throw new AdmissionPolicyException("bad hours for " + key);
+		}
+		return minutes;
+	}
+
+	@FunctionalInterface
+	private interface Check {
+		QueueEvent check(UUID userId, UUID songId, Song song, SongCache songs, UserCache users);
+	}
+
+	private static class Rule {
+		private final int cost;
+		private final Check check;
+
+		public Rule(int cost, Check check) {
+			this.cost = cost;
+			this.check = check;
+		}
+	}
+
+	private static class Group {
+		private final int plays;
+		private final long timeNanos;
+		// the minutes of the day songs may be queued from and until, or null
+		// for any time
+		private final int[] hours;
+
+		public Group(int plays, long timeNanos, int[] hours) {
+			this.plays = plays;
+			this.timeNanos = timeNanos;
+			this.hours = hours;
+		}
+	}
+}
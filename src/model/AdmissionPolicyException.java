@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * An exception for reporting problems reading admission rules.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class AdmissionPolicyException extends Exception {
+
+	private static final long serialVersionUID = -3307914766297151264L;
+
+	/**
+	 * Create a new admission rules exception.
+	 * 
+	 * @param message
+	 *            the message to pass to the caller
+	 */
+	public AdmissionPolicyException(String message) {
+		super(message);
+	}
+}
@@ -1,20 +1,71 @@
 package model;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This file implements a simple cache for counting plays (by song or user).
- * Mainly a small wrapper for the Map.
+ * Each id is given a small number, its ordinal, the first time it is counted,
+ * and counts are kept in arrays by ordinal. Once an id has been seen, reading
+ * and counting its plays allocates nothing, and resetting only clears the
+ * counts.
+ *
+ * Counts are stamped with the day they were made on, an epoch counter kept by
+ * the cache. Resetting just moves to the next epoch, and counts stamped with
+ * an older one are read as zero and started over the next time they are
+ * counted. A reset is one atomic step and never has to wait for, or clear,
+ * anything.
+ *
+ * A cache can instead count plays over a rolling window, like the last 24
+ * hours. Each id then also keeps the times of its last few plays in a ring,
+ * and its count is how many of those fall inside the window, so plays run out
+ * one at a time instead of all at midnight. Resetting does nothing to these
+ * counts. The rings are built whole before they are put in place, so a count
+ * never mixes the rings of one window with the size of another.
+ *
+ * The arrays come in fixed size chunks that are added as more ids are seen and
+ * never move, so ids can be given ordinals from any thread while others count.
+ * Counting is not atomic by itself: callers changing the counts of the same id
+ * from more than one thread must hold a lock for that id, and no plays may be
+ * counted while the window changes.
  *
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
  */
 public abstract class Cache implements Serializable {
-	private static final long serialVersionUID = -814096284360934367L;
-	protected Map<UUID, Integer> plays;
+	private static final long serialVersionUID = 3128745069913350529L;
+	/**
+	 * The number of ordinals in each chunk.
+	 */
+	protected static final int CHUNK_SIZE = 1024;
+	/**
+	 * The most chunks a cache can have.
+	 */
+	protected static final int MAX_CHUNKS = 4096;
+
+	private Map<UUID, Integer> ordinals;
+	private int[][] plays;
+	// the epoch each count was made in
+	private int[][] stamps;
+	private final AtomicInteger epoch;
+	private int count;
+	// null when counting by day
+	private volatile Window window;
+
+	/**
+	 * Create a new empty cache.
+	 */
+	protected Cache() {
+		this.ordinals = new ConcurrentHashMap<>();
+		this.plays = new int[MAX_CHUNKS][];
+		this.stamps = new int[MAX_CHUNKS][];
+		this.epoch = new AtomicInteger();
+	}
 
 	/**
 	 * Gets the number of plays associated with the cache object.
@@ -24,8 +75,18 @@ public abstract class Cache implements Serializable {
 	 * @return the number of plays associated with that id
 	 */
 	public int getPlays(UUID id) {
-		cache(id);
-		return this.plays.get(id).intValue();
+		int ordinal = find(id);
+		if (ordinal < 0) {
+			return 0;
+		}
+		Window current = this.window;
+		if (current != null) {
+			return current.getPlays(ordinal);
+		}
+		if (this.stamps[ordinal / CHUNK_SIZE][ordinal % CHUNK_SIZE] != this.epoch.get()) {
+			return 0;
+		}
+		return this.plays[ordinal / CHUNK_SIZE][ordinal % CHUNK_SIZE];
 	}
 
 	/**
@@ -35,16 +96,192 @@ public abstract class Cache implements Serializable {
 	 *            the id to increment plays
 	 */
 	public void incPlays(UUID id) {
-		int oldValue = getPlays(id);
-		this.plays.put(id, Integer.valueOf(++oldValue));
+		int ordinal = ordinal(id);
+		int chunk = ordinal / CHUNK_SIZE;
+		int offset = ordinal % CHUNK_SIZE;
+		// counted by day even over a window, so the counts are right if the
+		// window is taken away
+		int current = this.epoch.get();
+		if (this.stamps[chunk][offset] != current) {
+			this.stamps[chunk][offset] = current;
+			this.plays[chunk][offset] = 0;
+		}
+		this.plays[chunk][offset]++;
+		Window rolling = this.window;
+		if (rolling != null) {
+			rolling.add(ordinal);
+		}
 	}
 
 	/**
 	 * Resets the number of plays associated with all IDs.
 	 */
 	public void resetCache() {
-		this.plays = new HashMap<>();
+		this.epoch.incrementAndGet();
+	}
+
+	/**
+	 * Count plays over a rolling window instead of by day. Only the last few
+	 * plays of each id are remembered, so counts never go above that. The
+	 * plays remembered so far are kept, as many of the latest as still fit,
+	 * and so are the counts for today when the window is taken away. Plays
+	 * counted by day before there was a window aren't in it. A cache that
+	 * was read back from a file needs to be given its clock again.
+	 * 
+	 * No plays may be counted while this runs.
+	 * 
+	 * @param window
+	 *            how far back to count plays, or null to count by day
+	 * @param slots
+	 *            how many plays of each id to remember, at least the most
+	 *            plays anything is allowed
+	 * @param clock
+	 *            the clock to tell the time by
+	 */
+	public synchronized void setWindow(Duration window, int slots, Clock clock) {
+		if (window == null) {
+			this.window = null;
+			return;
+		}
+		Window next = new Window(window.toMillis(), Math.max(slots, 1), clock);
+		for (int chunk = 0; chunk * CHUNK_SIZE < this.count; chunk++) {
+			next.addChunk(chunk);
+		}
+		Window previous = this.window;
+		if (previous != null) {
+			for (int ordinal = 0; ordinal < this.count; ordinal++) {
+				next.copy(previous, ordinal);
+			}
+		}
+		this.window = next;
+	}
+
+	/**
+	 * Look up the ordinal of an id without giving it one.
+	 * 
+	 * @param id
+	 *            the id to look up
+	 * @return the ordinal, or -1 if the id hasn't been counted yet
+	 */
+	protected int find(UUID id) {
+		Integer ordinal = this.ordinals.get(id);
+		return ordinal == null ? -1 : ordinal.intValue();
 	}
 
-	protected abstract void cache(UUID id);
+	/**
+	 * Get the ordinal of an id, giving it the next one if it hasn't been
+	 * counted yet.
+	 * 
+	 * @param id
+	 *            the id to look up
+	 * @return the ordinal
+	 */
+	protected int ordinal(UUID id) {
+		int ordinal = find(id);
+		return ordinal >= 0 ? ordinal : assign(id);
+	}
+
+	/**
+	 * Make room for another chunk of ordinals. Subclasses keeping arrays of
+	 * their own by ordinal add a chunk to them here too.
+	 * 
+	 * @param chunk
+	 *            the index of the new chunk
+	 */
+	protected void addChunk(int chunk) {
+		this.plays[chunk] = new int[CHUNK_SIZE];
+		this.stamps[chunk] = new int[CHUNK_SIZE];
+		Window current = this.window;
+		if (current != null) {
+			current.addChunk(chunk);
+		}
+	}
+
+	private synchronized int assign(UUID id) {
+		int ordinal = find(id);
+		if (ordinal >= 0) {
+			return ordinal;
+		}
+		ordinal = this.count;
+		if (ordinal == CHUNK_SIZE * MAX_CHUNKS) {
+			throw new IllegalStateException("too many ids to count");
+		}
+		if (ordinal % CHUNK_SIZE == 0) {
+			addChunk(ordinal / CHUNK_SIZE);
+		}
+		this.count++;
+		// published last, so whoever finds the ordinal also sees its chunk
+		this.ordinals.put(id, Integer.valueOf(ordinal));
+		return ordinal;
+	}
+
+	/**
+	 * The times of the last plays of each ordinal, in a ring with the next
+	 * one to replace kept in heads. Its size and length never change.
+	 */
+	private static class Window implements Serializable {
+		private static final long serialVersionUID = -2906481617260357612L;
+
+		private final long millis;
+		private final int slots;
+		private final long[][] times;
+		private final int[][] heads;
+		private final transient Clock clock;
+
+		public Window(long millis, int slots, Clock clock) {
+			this.millis = millis;
+			this.slots = slots;
+			this.times = new long[MAX_CHUNKS][];
+			this.heads = new int[MAX_CHUNKS][];
+			this.clock = clock;
+		}
+
+		public void addChunk(int chunk) {
+			this.times[chunk] = new long[CHUNK_SIZE * this.slots];
+			this.heads[chunk] = new int[CHUNK_SIZE];
+		}
+
+		public int getPlays(int ordinal) {
+			long[] chunk = this.times[ordinal / CHUNK_SIZE];
+			int first = (ordinal % CHUNK_SIZE) * this.slots;
+			long since = now() - this.millis;
+			int plays = 0;
+			for (int i = first; i < first + this.slots; i++) {
+				if (chunk[i] > since) {
+					plays++;
+				}
+			}
+			return plays;
+		}
+
+		public void add(int ordinal) {
+			int chunk = ordinal / CHUNK_SIZE;
+			int offset = ordinal % CHUNK_SIZE;
+			int next = this.heads[chunk][offset];
+			this.times[chunk][offset * this.slots + next] = now();
+			this.heads[chunk][offset] = (next + 1) % this.slots;
+		}
+
+		/**
+		 * Copy the latest plays of an ordinal from another window, oldest
+		 * first, as many as fit.
+		 */
+		public void copy(Window from, int ordinal) {
+			int chunk = ordinal / CHUNK_SIZE;
+			int offset = ordinal % CHUNK_SIZE;
+			long[] source = from.times[chunk];
+			int first = offset * from.slots;
+			int kept = Math.min(from.slots, this.slots);
+			// the head is the oldest play, so the latest ones end just before it
+			int start = from.heads[chunk][offset] + from.slots - kept;
+			for (int i = 0; i < kept; i++) {
+				this.times[chunk][offset * this.slots + i] = source[first + (start + i) % from.slots];
+			}
+			this.heads[chunk][offset] = kept % this.slots;
+		}
+
+		private long now() {
+			return this.clock == null ? System.currentTimeMillis() : this.clock.millis();
+		}
+	}
 }
@@ -15,4 +15,11 @@ public interface DateService {
 	 * @return a LocalDateTime object representing midnight
 	 */
 	public LocalDateTime getMidnight();
+
+	/**
+	 * Get the time right now according to this DateService.
+	 * 
+	 * @return a LocalDateTime object representing now
+	 */
+	public LocalDateTime getNow();
 }
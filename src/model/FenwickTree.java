@@ -0,0 +1,73 @@
+package model;
+
+/**
+ * A Fenwick tree, or binary indexed tree, of longs. Changing one value and
+ * summing any prefix both take O(log n).
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+final class FenwickTree {
+	private final long[] tree;
+
+	/**
+	 * Create a new tree of zeros.
+	 * 
+	 * @param size
+	 *            how many values it holds
+	 */
+	public FenwickTree(int size) {
+		this.tree = new long[size + 1];
+	}
+
+	/**
+	 * Get how many values the tree holds.
+	 * 
+	 * @return the size
+	 */
+	public int size() {
+		return this.tree.length - 1;
+	}
+
+	/**
+	 * Add to one value.
+	 * 
+	 * @param index
+	 *            which value
+	 * @param delta
+	 *            how much to add
+	 */
+	public void add(int index, long delta) {
+		for (int i = index + 1; i < this.tree.length; i += i & -i) {
+			this.tree[i] += delta;
+		}
+	}
+
+	/**
+	 * Sum the values before an index.
+	 * 
+	 * @param end
+	 *            the index after the last value to add up
+	 * @return the sum of the values from 0 up to but not including end
+	 */
+	public long sum(int end) {
+		long sum = 0;
+		for (int i = end; i > 0; i -= i & -i) {
+			sum += this.tree[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * Sum the values in a range.
+	 * 
+	 * @param from
+	 *            the first index to add up
+	 * @param to
+	 *            the index after the last value to add up
+	 * @return the sum of the values from from up to but not including to
+	 */
+	public long sum(int from, int to) {
+		return sum(to) - sum(from);
+	}
+}
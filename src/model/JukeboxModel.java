@@ -1,13 +1,27 @@
 package model;
 
 import java.io.File;
-import java.time.LocalDate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Observable;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.swing.SwingUtilities;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 
@@ -17,8 +31,12 @@ import model.dataservice.Song;
 import model.dataservice.SongDb;
 import model.dataservice.User;
 import model.dataservice.UserDb;
+import model.dataservice.reload.CatalogChange;
 import songplayer.EndOfSongEvent;
 import songplayer.EndOfSongListener;
+import songplayer.PlaybackEngine;
+import songplayer.PlaybackEvent;
+import songplayer.PlaybackListener;
 import songplayer.SongPlayer;
 
 /**
@@ -29,30 +47,84 @@ import songplayer.SongPlayer;
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
  */
 public class JukeboxModel extends Observable {
+	private static final String SCHEDULING_PROPERTY = "jukebox.queue.scheduling";
+	private static final String WINDOW_PROPERTY = "jukebox.quota.window";
+	private static final Logger LOGGER = Logger.getLogger(JukeboxModel.class.getName());
+	// locks guarding the play counts, a power of two
+	private static final int STRIPES = 64;
+	// runs the midnight resets of every model
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "jukebox-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	private SongDb songDb;
 	private UserDb userDb;
-	private SongCache songCache;
-	private UserCache userCache;
+	// replaced when state is read, while requests may be counting
+	private volatile SongCache songCache;
+	private volatile UserCache userCache;
 	private SongQueue songQueue;
+	private SongSearchIndex searchIndex;
 	private UUID currentUser;
 	private QueuePlayer queuePlayer;
+	private DateService dateService;
+	private volatile AdmissionPolicy policy;
+	private ResetTimer resetTimer;
+	// set when plays are counted over a rolling window instead of by day
+	private Duration window;
+	private final Clock clock;
+	private TimingWheel<UUID> expiries;
+	private ScheduledFuture<?> expiryTicks;
+	private final Object[] locks;
 
 	/**
 	 * Construct a new model with empty play counts for all users and songs and
 	 * initialize an empty song queue.
 	 * 
 	 * @param dateService
-	 *            a DateService for getting midnight
+	 *            a DateService for getting the time and midnight
 	 */
 	public JukeboxModel(DateService dateService) {
+		this(dateService, Clock.systemUTC());
+	}
+
+	/**
+	 * Construct a new model with empty play counts for all users and songs and
+	 * initialize an empty song queue, counting plays over a rolling window by
+	 * the given clock.
+	 * 
+	 * @param dateService
+	 *            a DateService for getting the time and midnight
+	 * @param clock
+	 *            the clock plays run out of a rolling window by
+	 */
+	public JukeboxModel(DateService dateService, Clock clock) {
 		this.songCache = new SongCache();
 		this.userCache = new UserCache();
-		new ResetTimer(dateService).start();
+		this.locks = new Object[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			this.locks[i] = new Object();
+		}
+		this.dateService = dateService;
+		this.clock = clock;
+		this.policy = new AdmissionPolicy(dateService);
+		configureCaches();
+		this.resetTimer = new ResetTimer(dateService);
+		this.resetTimer.start();
 	}
 
 	/**
 	 * Bind this model to a specific DataService for getting user and song
-	 * information. Also starts the thread that plays songs.
+	 * information. Also starts the player for the song queue. The queue
+	 * shares turns between users as set by the jukebox.queue.scheduling system
+	 * property: fifo (the default), round_robin, or weighted, which gives
+	 * users with more time left more turns.
+	 * 
+	 * Plays are counted by calendar day unless the jukebox.quota.window
+	 * system property sets a rolling window as an ISO-8601 duration, like
+	 * PT24H. Each play then counts against the limits for that long after it
+	 * was queued.
 	 * 
 	 * @param dataService
 	 *            a DataService for reading user and song information
@@ -62,12 +134,20 @@ public class JukeboxModel extends Observable {
 	public void bind(DataService dataService) throws DataServiceException {
 		this.songDb = dataService.readSongDb();
 		this.userDb = dataService.readUserDb();
-		this.songQueue = new SongQueue(this.songDb);
+		this.searchIndex = new SongSearchIndex(this.songDb);
+		this.songQueue = new SongQueue(this.songDb, readScheduling(), this::getWeight, this.clock);
 		this.queuePlayer = new QueuePlayer(this.songQueue);
 		this.songQueue.addListDataListener(this.queuePlayer);
-		this.queuePlayer.start();
+		PlaybackEngine.getInstance().getEvents().addPlaybackListener(this.queuePlayer);
 
 		this.userCache.bind(this.userDb);
+
+		this.window = readWindow();
+		configureCaches();
+		if (this.window != null && this.expiries == null) {
+			this.expiries = new TimingWheel<>(1000, this.clock.millis());
+			this.expiryTicks = TIMER.scheduleAtFixedRate(this::expirePlays, 1, 1, TimeUnit.SECONDS);
+		}
 	}
 
 	/**
@@ -79,31 +159,51 @@ public class JukeboxModel extends Observable {
 	 * @return an event representing the result of adding the song
 	 */
 	public QueueEvent queueSong(UUID songId) {
-		Song song = this.songDb.getSongById(songId);
-		CachedUser user;
-		if (this.currentUser != null) {
-			user = this.userCache.getUserData(this.currentUser);
-		} else {
-			return QueueEvent.NO_USER_LOGGED_IN;
-		}
-		if (song == null) {
-			return QueueEvent.SONG_NOT_FOUND;
-		}
-		if (this.songCache.getPlays(songId) >= 3) {
-			return QueueEvent.SONG_EXCEEDED_PLAY_LIMIT;
-		}
-		if (user.getPlays() >= 3) {
-			return QueueEvent.USER_EXCEEDED_PLAY_LIMIT;
-		}
-		if (user.getAllottedTime().compareTo(song.getLength()) < 0) {
-			return QueueEvent.USER_EXCEEDED_TIME_LIMIT;
+		return requestSong(songId).getEvent();
+	}
+
+	/**
+	 * Queue a song for any user, not just the one logged in. This can be
+	 * called from any number of threads at once.
+	 * 
+	 * @param songId
+	 *            the id of a song to queue
+	 * @param userId
+	 *            the id of the user asking for it
+	 * @return an event representing the result of adding the song
+	 */
+	public QueueEvent queueSong(UUID songId, UUID userId) {
+		return requestSong(songId, userId).getEvent();
+	}
+
+	/**
+	 * Queue a song like queueSong, and also tell when it should start.
+	 * 
+	 * @param songId
+	 *            the id of a song to queue
+	 * @return the result of adding the song, with its estimated start when it
+	 *         was added
+	 */
+	public QueueResult requestSong(UUID songId) {
+		return admit(songId, this.currentUser);
+	}
+
+	/**
+	 * Queue a song for any user like queueSong, and also tell when it should
+	 * start.
+	 * 
+	 * @param songId
+	 *            the id of a song to queue
+	 * @param userId
+	 *            the id of the user asking for it
+	 * @return the result of adding the song, with its estimated start when it
+	 *         was added
+	 */
+	public QueueResult requestSong(UUID songId, UUID userId) {
+		if (userId != null && this.userDb.getUserById(userId) == null) {
+			return QueueResult.refused(QueueEvent.NO_USER_LOGGED_IN);
 		}
-		this.songCache.incPlays(songId);
-		this.userCache.playSong(this.currentUser, song);
-		setChanged();
-		notifyObservers(this.userCache.getUserData(this.currentUser));
-		this.songQueue.add(songId);
-		return QueueEvent.SONG_ADDED;
+		return admit(songId, userId);
 	}
 
 	/**
@@ -137,6 +237,46 @@ public class JukeboxModel extends Observable {
 		updateUser();
 	}
 
+	/**
+	 * Bring the model up to date after the catalog was reloaded. Updates the
+	 * search index and passes the change on to observers. The databases
+	 * themselves are swapped by the DataService, so this can be called from
+	 * any thread.
+	 * 
+	 * @param change
+	 *            what changed in the catalog
+	 */
+	public void catalogChanged(CatalogChange change) {
+		for (UUID id : change.getRemovedIds()) {
+			this.searchIndex.remove(id);
+		}
+		for (Song song : change.getAddedOrChangedSongs()) {
+			this.searchIndex.add(song);
+		}
+		this.songQueue.refresh(change.getAddedOrChangedSongs());
+		setChanged();
+		notifyObservers(change);
+	}
+
+	/**
+	 * Stop the background work of the model: no more songs will be started
+	 * and play counts won't be reset at midnight anymore. A song that is
+	 * already playing is left to finish.
+	 */
+	public void shutdown() {
+		if (this.queuePlayer != null) {
+			this.queuePlayer.shutdown();
+			PlaybackEngine.getInstance().getEvents().removePlaybackListener(this.queuePlayer);
+		}
+		this.resetTimer.cancel();
+		if (this.expiryTicks != null) {
+			this.expiryTicks.cancel(false);
+		}
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine("admission: " + this.policy);
+		}
+	}
+
 	/**
 	 * Get the SongQueue.
 	 * 
@@ -155,6 +295,15 @@ public class JukeboxModel extends Observable {
 		return this.songDb;
 	}
 
+	/**
+	 * Get the search index over the song database.
+	 * 
+	 * @return the search index for this model
+	 */
+	public SongSearchIndex getSearchIndex() {
+		return this.searchIndex;
+	}
+
 	/**
 	 * Read the state in from a file.
 	 * 
@@ -164,13 +313,15 @@ public class JukeboxModel extends Observable {
 	 *             thrown when the state cannot be read
 	 */
 	public void readState(File state) throws PersistenceServiceException {
-		PersistenceService p = new PersistenceService(state);
+		PersistenceService p = new PersistenceService(state, this.dateService);
 		this.userCache = p.readUsers(this.userDb);
-		if (LocalDate.now().equals(p.readDate())) {
+		// counts over a rolling window stay good across days
+		if (this.window != null || this.dateService.getNow().toLocalDate().equals(p.readDate())) {
 			this.songCache = p.readSongs();
 		} else {
 			this.userCache.resetCache();
 		}
+		configureCaches();
 		List<UUID> songList = p.readSongList();
 		for (UUID song : songList) {
 			this.songQueue.add(song);
@@ -186,10 +337,53 @@ public class JukeboxModel extends Observable {
 	 *             throw when the state cannot be written
 	 */
 	public void writeState(File state) throws PersistenceServiceException {
-		PersistenceService p = new PersistenceService(state);
+		PersistenceService p = new PersistenceService(state, this.dateService);
 		p.saveState(this.songCache, this.songQueue, this.userCache);
 	}
 
+	/**
+	 * Read the rules for who may queue songs from a file. The rules may name
+	 * users, so the model must be bound first.
+	 * 
+	 * @param rules
+	 *            where to read the rules
+	 * @throws AdmissionPolicyException
+	 *             thrown when the rules cannot be read, in which case the
+	 *             rules in use are kept
+	 */
+	public void readAdmissionPolicy(File rules) throws AdmissionPolicyException {
+		setAdmissionPolicy(AdmissionPolicy.read(rules, this.userDb, this.dateService));
+	}
+
+	/**
+	 * Change the rules for who may queue songs. Plays counted so far count
+	 * against the new rules.
+	 * 
+	 * @param policy
+	 *            the new rules
+	 */
+	public void setAdmissionPolicy(AdmissionPolicy policy) {
+		// no request is checked between the new rules and the caches sized
+		// for them
+		lockAll(0, () -> {
+			this.policy = policy;
+			configureCaches();
+		});
+		if (this.currentUser != null) {
+			updateUser();
+		}
+	}
+
+	/**
+	 * Get the rules for who may queue songs, which also measure how long
+	 * requests take to check.
+	 * 
+	 * @return the rules in use
+	 */
+	public AdmissionPolicy getAdmissionPolicy() {
+		return this.policy;
+	}
+
 	protected SongCache getSongCache() {
 		return this.songCache;
 	}
@@ -207,76 +401,281 @@ public class JukeboxModel extends Observable {
 		}
 	}
 
-	private class QueuePlayer extends Thread implements EndOfSongListener, ListDataListener {
+	/**
+	 * Check the limits and count the play as one step, so two requests at
+	 * once can't both take the last play of a song or a user. The locks for
+	 * the song and the user are taken in a fixed order, and requests for
+	 * other songs by other users mostly take other locks.
+	 */
+	private QueueResult admit(UUID songId, UUID userId) {
+		if (userId == null) {
+			return QueueResult.refused(QueueEvent.NO_USER_LOGGED_IN);
+		}
+		Song song = this.songDb.getSongById(songId);
+		if (song == null) {
+			return QueueResult.refused(QueueEvent.SONG_NOT_FOUND);
+		}
+		int songStripe = stripe(songId);
+		int userStripe = stripe(userId);
+		QueueEvent refused;
+		synchronized (this.locks[Math.min(songStripe, userStripe)]) {
+			synchronized (this.locks[Math.max(songStripe, userStripe)]) {
+				refused = this.policy.check(userId, songId, song, this.songCache, this.userCache);
+				if (refused == null) {
+					this.songCache.incPlays(songId);
+					this.userCache.playSong(userId, song);
+				}
+			}
+		}
+		if (refused != null) {
+			return QueueResult.refused(refused);
+		}
+		if (this.expiries != null) {
+			this.expiries.schedule(userId, this.clock.millis() + this.window.toMillis());
+		}
+		if (userId.equals(this.currentUser)) {
+			setChanged();
+			notifyObservers(this.userCache.getUserData(userId));
+		}
+		Instant start;
+		synchronized (this.songQueue) {
+			// nothing can move the song between adding it and reading its start
+			start = this.songQueue.getEstimatedStart(this.songQueue.add(songId, userId));
+		}
+		return new QueueResult(QueueEvent.SONG_ADDED, start);
+	}
+
+	private static int stripe(UUID id) {
+		int hash = id.hashCode();
+		return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+	}
+
+	private void configureCaches() {
+		lockAll(0, () -> {
+			AdmissionPolicy current = this.policy;
+			this.songCache.setWindow(this.window, current.getMaxPlays(), this.clock);
+			this.userCache.setWindow(this.window, current.getMaxPlays(), this.clock);
+			this.userCache.setAllowance(current::getAllowanceNanos);
+		});
+	}
+
+	/**
+	 * Run a task holding every stripe from the given one up, taken in the
+	 * same order as requests take them, so no play is counted meanwhile.
+	 */
+	private void lockAll(int stripe, Runnable task) {
+		if (stripe == STRIPES) {
+			task.run();
+			return;
+		}
+		synchronized (this.locks[stripe]) {
+			lockAll(stripe + 1, task);
+		}
+	}
+
+	/**
+	 * Let the logged in user know when one of their plays runs out of the
+	 * window, since that is the only time their counts change on their own.
+	 * Runs on the timer thread, so observers are told on the event dispatch
+	 * thread instead.
+	 */
+	private void expirePlays() {
+		this.expiries.advance(this.clock.millis(), user -> {
+			if (user.equals(this.currentUser)) {
+				SwingUtilities.invokeLater(this::updateUser);
+			}
+		});
+	}
+
+	private static Duration readWindow() {
+		String window = System.getProperty(WINDOW_PROPERTY);
+		if (window == null || window.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			Duration parsed = Duration.parse(window.trim());
+			if (!parsed.isNegative() && !parsed.isZero()) {
+				return parsed;
+			}
+		} catch (DateTimeParseException e) {
+			// warned about below
+		}
+		if (LOGGER.isLoggable(Level.WARNING)) {
+			LOGGER.warning("bad quota window " + window + ", counting plays by day");
+		}
+		return null;
+	}
+
+	private static SongQueue.Scheduling readScheduling() {
+		String scheduling = System.getProperty(SCHEDULING_PROPERTY, "fifo");
+		try {
+			return SongQueue.Scheduling.valueOf(scheduling.trim().toUpperCase().replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			if (LOGGER.isLoggable(Level.WARNING)) {
+				LOGGER.warning("unknown queue scheduling " + scheduling + ", using fifo");
+			}
+			return SongQueue.Scheduling.FIFO;
+		}
+	}
+
+	/**
+	 * Weigh a user by the time they have left, for weighted scheduling.
+	 */
+	private double getWeight(UUID user) {
+		if (user == null || this.userDb.getUserById(user) == null) {
+			return 1;
+		}
+		return Math.max(1, this.userCache.getAllottedNanos(user) / 1000000000L);
+	}
+
+	/**
+	 * Plays the queue one song after another. Deciding what to play next
+	 * happens on a single worker thread that sleeps until the queue changes or
+	 * a song ends, so nothing runs while the jukebox is idle. The queue itself
+	 * is still changed on the thread that reports the change.
+	 *
+	 * The player keeps the song after the current one handed to the player
+	 * engine too, so it can be decoded ahead of time and start without a gap.
+	 * It tells the queue when each song really started from the engine's
+	 * STARTED events, so the estimated waits count from the first sound and
+	 * not from when the song was handed over.
+	 */
+	private class QueuePlayer implements EndOfSongListener, ListDataListener, PlaybackListener {
+		private static final int LOOKAHEAD = 2;
+
 		private SongQueue queue;
-		private boolean playing;
+		private ExecutorService scheduler;
+		// how many songs from the top of the queue were handed to the engine,
+		// guarded by the player so a finished song leaves the queue and the
+		// count together
+		private int submitted;
+		// the files handed to the engine that haven't started yet, oldest
+		// first, guarded by the player too
+		private Queue<String> starting;
 
 		public QueuePlayer(SongQueue queue) {
 			this.queue = queue;
+			this.starting = new ArrayDeque<>();
+			this.scheduler = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "queue-player");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		public void shutdown() {
+			this.scheduler.shutdownNow();
 		}
 
 		@Override
-		public void run() {
-			while (true) {
-				// we just listen for events so loop infinitely
+		public void songFinishedPlaying(EndOfSongEvent e) {
+			synchronized (this) {
+				this.queue.remove();
+				this.submitted--;
+				// a song that failed never started
+				while (this.starting.size() > this.submitted) {
+					this.starting.poll();
+				}
 			}
+			schedule(this::submitSongs);
 		}
 
 		@Override
-		public void songFinishedPlaying(EndOfSongEvent e) {
-			this.queue.remove();
-			this.playing = playNextSong();
+		public synchronized void playbackChanged(List<PlaybackEvent> events) {
+			for (PlaybackEvent event : events) {
+				if (event.getType() != PlaybackEvent.Type.STARTED
+						|| !event.getFileName().equals(this.starting.peek())) {
+					continue;
+				}
+				this.starting.poll();
+				// the event is handed over a little after it happened
+				long late = System.nanoTime() - event.getPublishedNanos();
+				this.queue.started(JukeboxModel.this.clock.instant().minusNanos(late));
+			}
 		}
 
 		@Override
 		public void contentsChanged(ListDataEvent e) {
-			if (!this.playing) {
-				this.playing = playNextSong();
-			}
+			// only new versions of queued songs, which play the same
 		}
 
 		@Override
 		public void intervalAdded(ListDataEvent e) {
-			// unused method stub
+			// new songs may fall within the look-ahead
+			schedule(this::submitSongs);
 		}
 
 		@Override
 		public void intervalRemoved(ListDataEvent e) {
-			// unused method stub
+			// only songs that finished are removed, which songFinishedPlaying
+			// already accounts for
 		}
 
-		private boolean playNextSong() {
-			if (!this.queue.isEmpty()) {
-				UUID song = this.queue.peek();
-				String file = "songfiles/" + JukeboxModel.this.getSongDb().getSongById(song).getFilename();
-				SongPlayer.playFile(this, file);
-				return true;
+		private void schedule(Runnable task) {
+			try {
+				this.scheduler.execute(task);
+			} catch (RejectedExecutionException e) {
+				// shut down, nothing more gets played
+			}
+		}
+
+		private synchronized void submitSongs() {
+			// pinned songs stay where they are even when the queue is fair, so
+			// the songs handed to the engine are always the next ones to play
+			List<Song> next = this.queue.pin(LOOKAHEAD);
+			while (this.submitted < next.size()) {
+				Song song = next.get(this.submitted++);
+				String fileName = "songfiles/" + song.getFilename();
+				this.starting.add(fileName);
+				SongPlayer.playFile(this, fileName);
 			}
-			return false;
 		}
 	}
 
-	private class ResetTimer extends Thread {
+	/**
+	 * Starts a new day of play counts at midnight, as told by the
+	 * DateService. Runs on the timer thread shared by all models, and only
+	 * moves the caches to their next epoch, so it never holds up a request.
+	 * Observers are told on the event dispatch thread.
+	 */
+	private class ResetTimer implements Runnable {
 		private DateService dateService;
+		private LocalDateTime midnight;
+		private ScheduledFuture<?> next;
 
 		public ResetTimer(DateService dateService) {
 			this.dateService = dateService;
 		}
 
+		public synchronized void start() {
+			this.midnight = this.dateService.getMidnight();
+			schedule();
+		}
+
+		public synchronized void cancel() {
+			this.next.cancel(false);
+		}
+
 		@Override
-		public void run() {
-			while (true) {
-				LocalDateTime midnight = this.dateService.getMidnight();
-				long delta = LocalDateTime.now().until(midnight, ChronoUnit.MILLIS);
-				try {
-					sleep(delta);
-					JukeboxModel.this.getSongCache().resetCache();
-					JukeboxModel.this.getUserCache().resetCache();
-					JukeboxModel.this.updateUser();
-				} catch (InterruptedException e) {
-					// don't worry about being interrupted
-				}
+		public synchronized void run() {
+			if (this.next.isCancelled()) {
+				return;
+			}
+			// the timer doesn't follow the wall clock, so it may wake early
+			if (this.dateService.getNow().isBefore(this.midnight)) {
+				schedule();
+				return;
 			}
+			JukeboxModel.this.getSongCache().resetCache();
+			JukeboxModel.this.getUserCache().resetCache();
+			SwingUtilities.invokeLater(JukeboxModel.this::updateUser);
+			this.midnight = this.dateService.getMidnight();
+			schedule();
+		}
+
+		private void schedule() {
+			long delay = Math.max(0, this.dateService.getNow().until(this.midnight, ChronoUnit.MILLIS));
+			this.next = TIMER.schedule(this, delay, TimeUnit.MILLISECONDS);
 		}
 	}
 }
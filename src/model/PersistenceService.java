@@ -22,20 +22,37 @@ import model.dataservice.UserDb;
  */
 public class PersistenceService {
 	private File stateFile;
+	private DateService dateService;
 	private List<Object> state;
 
 	/**
-	 * Create a new persistence service tied to the given file.
+	 * Create a new persistence service tied to the given file that dates the
+	 * state it saves by the system clock.
 	 * 
 	 * @param stateFile
 	 *            where to find persistence information
 	 */
 	public PersistenceService(File stateFile) {
+		this(stateFile, new RealDateService());
+	}
+
+	/**
+	 * Create a new persistence service tied to the given file that dates the
+	 * state it saves by the given DateService, so it agrees with whoever
+	 * compares the date when the state is read.
+	 * 
+	 * @param stateFile
+	 *            where to find persistence information
+	 * @param dateService
+	 *            a DateService for the date the state is saved on
+	 */
+	public PersistenceService(File stateFile, DateService dateService) {
 		this.stateFile = stateFile;
+		this.dateService = dateService;
 	}
 
 	/**
-	 * Save the current state to a file.
+	 * Save the current state to a file, dated today by the DateService.
 	 * 
 	 * @param songCache
 	 *            the cache of songs
@@ -50,14 +67,10 @@ public class PersistenceService {
 			throws PersistenceServiceException {
 		try (ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(this.stateFile))) {
 			List<Object> fileState = new ArrayList<>();
-			fileState.add(LocalDate.now());
+			fileState.add(this.dateService.getNow().toLocalDate());
 			fileState.add(songCache);
 			fileState.add(userCache);
-			List<UUID> queue = new ArrayList<>();
-			for (int i = 0; i < songQueue.getSize(); i++) {
-				queue.add(songQueue.getElementAt(i).getId());
-			}
-			fileState.add(queue);
+			fileState.add(new ArrayList<>(songQueue.snapshot()));
 			output.writeObject(fileState);
 		} catch (IOException e) {
 			throw new PersistenceServiceException("couldn't save persistence data");
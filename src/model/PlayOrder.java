@@ -0,0 +1,232 @@
+package model;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * A sorted collection of distinct elements that each carry a weight, which
+ * can find an element by its position and add up the weights of the elements
+ * before a position. It is a treap, a binary search tree kept balanced by
+ * random priorities, with the size and the total weight of every subtree kept
+ * in its root, so every operation takes O(log n) on average.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ *
+ * @param <E>
+ *            the type of the elements, ordered by their natural order
+ */
+final class PlayOrder<E extends Comparable<? super E>> {
+	private final Random random = new Random();
+	private Node<E> root;
+
+	/**
+	 * Get the number of elements.
+	 * 
+	 * @return the size
+	 */
+	public int size() {
+		return size(this.root);
+	}
+
+	/**
+	 * Add an element that isn't in the collection yet.
+	 * 
+	 * @param element
+	 *            the element to add
+	 * @param weight
+	 *            its weight
+	 * @return the position it was added at
+	 */
+	public int add(E element, long weight) {
+		Node<E>[] parts = split(this.root, element);
+		int position = size(parts[0]);
+		this.root = merge(merge(parts[0], new Node<>(element, weight, this.random.nextInt())), parts[1]);
+		return position;
+	}
+
+	/**
+	 * Remove and return the first element.
+	 * 
+	 * @return the smallest element
+	 * @throws NoSuchElementException
+	 *             thrown if the collection is empty
+	 */
+	public E pollFirst() {
+		if (this.root == null) {
+			throw new NoSuchElementException();
+		}
+		Node<E>[] parts = splitAt(this.root, 1);
+		this.root = parts[1];
+		return parts[0].element;
+	}
+
+	/**
+	 * Change the weight of an element.
+	 * 
+	 * @param element
+	 *            the element
+	 * @param weight
+	 *            its new weight
+	 * @return true if the element was found
+	 */
+	public boolean setWeight(E element, long weight) {
+		Node<E>[] parts = split(this.root, element);
+		Node<E>[] found = splitAt(parts[1], 1);
+		boolean present = found[0] != null && found[0].element.compareTo(element) == 0;
+		if (present) {
+			found[0].weight = weight;
+			update(found[0]);
+		}
+		this.root = merge(parts[0], merge(found[0], found[1]));
+		return present;
+	}
+
+	/**
+	 * Get the element at a position.
+	 * 
+	 * @param position
+	 *            the position, from 0
+	 * @return the element
+	 * @throws IndexOutOfBoundsException
+	 *             thrown if there is no such position
+	 */
+	public E get(int position) {
+		if (position < 0 || position >= size()) {
+			throw new IndexOutOfBoundsException("index " + position + ", size " + size());
+		}
+		Node<E> node = this.root;
+		int skip = position;
+		while (true) {
+			int left = size(node.left);
+			if (skip < left) {
+				node = node.left;
+			} else if (skip == left) {
+				return node.element;
+			} else {
+				skip -= left + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Add up the weights of the elements before a position.
+	 * 
+	 * @param position
+	 *            the position, from 0 to size
+	 * @return the total weight of the elements before it
+	 */
+	public long weightBefore(int position) {
+		long sum = 0;
+		Node<E> node = this.root;
+		int skip = Math.min(Math.max(position, 0), size());
+		while (node != null && skip > 0) {
+			int left = size(node.left);
+			if (skip <= left) {
+				node = node.left;
+			} else {
+				sum += sum(node.left) + node.weight;
+				skip -= left + 1;
+				node = node.right;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Split a tree into the elements less than a key and the rest.
+	 */
+	private Node<E>[] split(Node<E> node, E key) {
+		if (node == null) {
+			return pair(null, null);
+		}
+		if (node.element.compareTo(key) < 0) {
+			Node<E>[] parts = split(node.right, key);
+			node.right = parts[0];
+			update(node);
+			return pair(node, parts[1]);
+		}
+		Node<E>[] parts = split(node.left, key);
+		node.left = parts[1];
+		update(node);
+		return pair(parts[0], node);
+	}
+
+	/**
+	 * Split a tree into its first count elements and the rest.
+	 */
+	private Node<E>[] splitAt(Node<E> node, int count) {
+		if (node == null) {
+			return pair(null, null);
+		}
+		int left = size(node.left);
+		if (count <= left) {
+			Node<E>[] parts = splitAt(node.left, count);
+			node.left = parts[1];
+			update(node);
+			return pair(parts[0], node);
+		}
+		Node<E>[] parts = splitAt(node.right, count - left - 1);
+		node.right = parts[0];
+		update(node);
+		return pair(node, parts[1]);
+	}
+
+	/**
+	 * Join two trees where every element of the first is less than every
+	 * element of the second.
+	 */
+	private Node<E> merge(Node<E> a, Node<E> b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		if (a.priority > b.priority) {
+			a.right = merge(a.right, b);
+			update(a);
+			return a;
+		}
+		b.left = merge(a, b.left);
+		update(b);
+		return b;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static <E> Node<E>[] pair(Node<E> a, Node<E> b) {
+		return new Node[] { a, b };
+	}
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static long sum(Node<?> node) {
+		return node == null ? 0 : node.sum;
+	}
+
+	private static void update(Node<?> node) {
+		node.size = size(node.left) + size(node.right) + 1;
+		node.sum = sum(node.left) + sum(node.right) + node.weight;
+	}
+
+	private static class Node<E> {
+		private final E element;
+		private final int priority;
+		private long weight;
+		private Node<E> left;
+		private Node<E> right;
+		private int size;
+		private long sum;
+
+		public Node(E element, long weight, int priority) {
+			this.element = element;
+			this.weight = weight;
+			this.priority = priority;
+			this.size = 1;
+			this.sum = weight;
+		}
+	}
+}
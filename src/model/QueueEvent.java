@@ -31,5 +31,9 @@ public enum QueueEvent {
 	/**
 	 * Nobody is logged in.
 	 */
-	NO_USER_LOGGED_IN;
+	NO_USER_LOGGED_IN,
+	/**
+	 * Songs can't be queued at this time of day.
+	 */
+	OUTSIDE_PLAYING_HOURS;
 }
@@ -0,0 +1,66 @@
+package model;
+
+import java.time.Instant;
+
+/**
+ * The result of asking for a song: what happened, and when the song is
+ * expected to start if it was added to the queue.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class QueueResult {
+	private static final QueueResult[] REFUSED = new QueueResult[QueueEvent.values().length];
+
+	static {
+		for (QueueEvent event : QueueEvent.values()) {
+			REFUSED[event.ordinal()] = new QueueResult(event, null);
+		}
+	}
+
+	private final QueueEvent event;
+	private final Instant estimatedStart;
+
+	/**
+	 * Create a new result.
+	 *
+	 * @param event
+	 *            what happened to the song
+	 * @param estimatedStart
+	 *            when the song should start, or null if it wasn't added
+	 */
+	public QueueResult(QueueEvent event, Instant estimatedStart) {
+		this.event = event;
+		this.estimatedStart = estimatedStart;
+	}
+
+	/**
+	 * Get the result for a song that wasn't added. These are shared, so
+	 * turning a song away allocates nothing.
+	 *
+	 * @param event
+	 *            why the song wasn't added
+	 * @return the result, with no estimated start
+	 */
+	public static QueueResult refused(QueueEvent event) {
+		return REFUSED[event.ordinal()];
+	}
+
+	/**
+	 * Get what happened to the song.
+	 *
+	 * @return an event representing the result of adding the song
+	 */
+	public QueueEvent getEvent() {
+		return this.event;
+	}
+
+	/**
+	 * Get when the song is expected to start playing.
+	 *
+	 * @return the estimated start, or null if the song wasn't added
+	 */
+	public Instant getEstimatedStart() {
+		return this.estimatedStart;
+	}
+}
@@ -16,4 +16,9 @@ public class RealDateService implements DateService {
 	public LocalDateTime getMidnight() {
 		return LocalDateTime.of(LocalDate.now().plusDays(1), LocalTime.MIDNIGHT);
 	}
+
+	@Override
+	public LocalDateTime getNow() {
+		return LocalDateTime.now();
+	}
 }
@@ -1,8 +1,21 @@
 package model;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.function.ToDoubleFunction;
 
 import javax.swing.ListModel;
 import javax.swing.event.ListDataEvent;
@@ -17,87 +30,691 @@ import model.dataservice.SongDb;
  * more flexible data structure was necessary. The name stays because this is,
  * at an abstract level, still a queue.
  *
+ * By default songs play in the order they were added. The queue can also
+ * share the turns fairly between the users who added the songs, so one user
+ * queueing several songs in a row doesn't make everyone else wait for all of
+ * them. Each song gets a finishing tag when it is added, the way weighted fair
+ * queueing does it: the later of now and the tag of the user's previous song,
+ * plus a cost. Songs play in order of their tags. With ROUND_ROBIN every song
+ * costs the same, so users take turns. With WEIGHTED a song costs its length
+ * divided by the weight of its user, so users with more weight get more turns.
+ * Each user's songs wait in their own sub-queue, and a heap of users ordered
+ * by the tag of their next song picks who plays next, so adding and taking
+ * songs is O(log users).
+ *
+ * Songs at the top can be pinned, after which nothing added later is put
+ * ahead of them. The player pins the songs it has handed to the audio engine.
+ * Pinned songs, and every song in FIFO mode, are kept in a ring buffer, so
+ * adding to the end and taking off the top don't move anything else. The
+ * ListModel shows pinned songs first and then the rest in the order they will
+ * play. Listeners are only told about the one row that was added or removed.
+ *
+ * Songs are looked up in the catalog once, when they are added, and the
+ * queue hands out the same Song objects from then on, so drawing the queue
+ * or saving it never goes back to the catalog. When the catalog is reloaded
+ * the queued songs can be swapped for their new versions with refresh.
+ *
+ * The queue also estimates when every song will start. The length of every
+ * queued song is kept in running sums: a Fenwick tree over the slots of the
+ * ring buffer for pinned songs, and a tree of the waiting songs in play order
+ * that keeps the total length of each subtree. Together with how long the
+ * song at the top has been playing, the wait for any row is found in
+ * O(log n), and stays right as songs are added, removed or reordered. The
+ * player says when each song really started playing, as heard from the audio
+ * engine, so a song that took a while to decode or open the line isn't
+ * counted as playing yet. Until it is told, the top song hasn't played at
+ * all.
+ *
+ * The queue is safe to use from any number of threads. It has a single lock
+ * that every method holds, but only for a few array operations; songs come in
+ * one at a time at human speed, so there is nothing to gain from splitting
+ * it. Each change is written down as an event while the lock is held, and the
+ * listeners are told after it is let go, so a slow listener, or one that
+ * changes the queue itself, never holds up anybody else. Only one thread
+ * tells the listeners at a time and it takes the events in the order they
+ * happened, which may mean a thread tells them about another thread's change.
+ * Each event goes to the listeners there were when the change was made, and
+ * carries the songs it is about, since the queue may have moved on by the
+ * time it arrives. A Swing list should show a copy kept on the event
+ * dispatch thread instead of the queue itself. Code that reads more than one
+ * row should take a snapshot, since the queue can change between two calls.
+ * getElementAt returns null for a row that went away since getSize was
+ * called.
+ *
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
  */
 public class SongQueue implements ListModel<Song> {
+	/**
+	 * How the queue orders songs that haven't been pinned yet.
+	 */
+	public enum Scheduling {
+		/**
+		 * In the order they were added.
+		 */
+		FIFO,
+		/**
+		 * Taking turns between users.
+		 */
+		ROUND_ROBIN,
+		/**
+		 * Taking turns between users, weighted by the length of their songs
+		 * and the weight of the user.
+		 */
+		WEIGHTED
+	}
+
+	private static final int INITIAL_CAPACITY = 16;
+	private static final ListDataListener[] NO_LISTENERS = new ListDataListener[0];
+
 	private SongDb songDb;
-	private List<ListDataListener> listeners;
-	private List<UUID> queue;
+	private Scheduling scheduling;
+	private ToDoubleFunction<UUID> weights;
+	// replaced, never changed, so an event can keep the ones it goes to
+	private ListDataListener[] listeners;
+	// changes the listeners haven't been told about yet, in order
+	private Queue<Pending> pending;
+	private boolean delivering;
+
+	// pinned songs, and every song in FIFO mode, with their lengths by slot
+	private Entry[] queue;
+	private FenwickTree lengths;
+	private int head;
+	private int size;
+
+	// songs waiting for their turn in the fair modes
+	private Map<UUID, UserQueue> users;
+	private PriorityQueue<UserQueue> ready;
+	private int waiting;
+	// the waiting songs in play order, weighted by their lengths
+	private PlayOrder<Entry> order;
+	private double virtualTime;
+	private long sequence;
+
+	private Clock clock;
+	// when the songs from the top started playing, for those that have
+	private Queue<Instant> started;
 
 	/**
-	 * Create a new empty queue for songs.
-	 * 
+	 * Create a new empty queue for songs that plays them in the order they
+	 * are added.
+	 *
 	 * @param songDb
 	 *            the database of all songs
 	 */
 	public SongQueue(SongDb songDb) {
-		this.listeners = new ArrayList<>();
-		this.queue = new ArrayList<>();
+		this(songDb, Scheduling.FIFO, user -> 1);
+	}
+
+	/**
+	 * Create a new empty queue for songs.
+	 *
+	 * @param songDb
+	 *            the database of all songs
+	 * @param scheduling
+	 *            how to order songs
+	 * @param weights
+	 *            the weight of each user for WEIGHTED scheduling, which must be
+	 *            positive and is read when one of their songs is added
+	 */
+	public SongQueue(SongDb songDb, Scheduling scheduling, ToDoubleFunction<UUID> weights) {
+		this(songDb, scheduling, weights, Clock.systemUTC());
+	}
+
+	/**
+	 * Create a new empty queue for songs.
+	 *
+	 * @param songDb
+	 *            the database of all songs
+	 * @param scheduling
+	 *            how to order songs
+	 * @param weights
+	 *            the weight of each user for WEIGHTED scheduling, which must be
+	 *            positive and is read when one of their songs is added
+	 * @param clock
+	 *            the clock for estimating when songs start
+	 */
+	public SongQueue(SongDb songDb, Scheduling scheduling, ToDoubleFunction<UUID> weights, Clock clock) {
+		this.listeners = NO_LISTENERS;
+		this.pending = new ArrayDeque<>();
+		this.started = new ArrayDeque<>();
+		this.queue = new Entry[INITIAL_CAPACITY];
+		this.lengths = new FenwickTree(INITIAL_CAPACITY);
+		this.users = new HashMap<>();
+		this.ready = new PriorityQueue<>();
+		this.order = new PlayOrder<>();
 		this.songDb = songDb;
+		this.scheduling = scheduling;
+		this.weights = weights;
+		this.clock = clock;
 	}
-	
+
 	/**
-	 * Add a song to the queue.
-	 * 
+	 * Add a song to the queue that nobody in particular asked for. In the
+	 * fair modes these songs take turns with the users as if they were one
+	 * more user.
+	 *
 	 * @param id
 	 *            the is of the song to add
 	 */
 	public void add(UUID id) {
-		this.queue.add(id);
-		notifyListeners();
+		add(id, null);
+	}
+
+	/**
+	 * Add a song to the queue for a user.
+	 *
+	 * @param id
+	 *            the id of the song to add
+	 * @param user
+	 *            the id of the user who asked for it, may be null
+	 * @return the row the song was added at
+	 */
+	public int add(UUID id, UUID user) {
+		int row = enqueue(id, user);
+		deliver();
+		return row;
+	}
+
+	private synchronized int enqueue(UUID id, UUID user) {
+		if (this.scheduling == Scheduling.FIFO) {
+			Entry entry = new Entry(id, this.songDb.getSongById(id), 0, this.sequence++);
+			push(entry);
+			changed(ListDataEvent.INTERVAL_ADDED, this.size - 1, Collections.singletonList(entry.song));
+			return this.size - 1;
+		}
+
+		UserQueue userQueue = this.users.get(user);
+		if (userQueue == null) {
+			userQueue = new UserQueue(user);
+			this.users.put(user, userQueue);
+		}
+		Song song = this.songDb.getSongById(id);
+		double tag = Math.max(this.virtualTime, userQueue.lastTag) + cost(song, user);
+		Entry entry = new Entry(id, song, tag, this.sequence++);
+		userQueue.lastTag = tag;
+		// appending never changes a sub-queue's head, so it only has to be
+		// put in the heap when it was empty
+		if (userQueue.isEmpty()) {
+			userQueue.add(entry);
+			this.ready.add(userQueue);
+		} else {
+			userQueue.add(entry);
+		}
+		this.waiting++;
+
+		int row = this.size + this.order.add(entry, entry.millis());
+		changed(ListDataEvent.INTERVAL_ADDED, row, Collections.singletonList(song));
+		return row;
 	}
 
 	/**
 	 * Is the queue empty?
-	 * 
+	 *
 	 * @return true if empty, false otherwise
 	 */
-	public boolean isEmpty() {
-		return this.queue.isEmpty();
+	public synchronized boolean isEmpty() {
+		return this.size + this.waiting == 0;
 	}
 
 	/**
 	 * Pop the top item off the queue.
+	 *
+	 * @return the id of the item taken off
+	 * @throws NoSuchElementException
+	 *             thrown if the queue is empty
 	 */
-	public void remove() {
-		this.queue.remove(0);
-		notifyListeners();
+	public UUID remove() {
+		UUID id = dequeue();
+		deliver();
+		return id;
+	}
+
+	private synchronized UUID dequeue() {
+		if (this.size == 0) {
+			if (this.waiting == 0) {
+				throw new NoSuchElementException();
+			}
+			pinNext();
+		}
+		Entry entry = this.queue[this.head];
+		this.queue[this.head] = null;
+		this.lengths.add(this.head, -entry.millis());
+		this.head = index(1);
+		this.size--;
+		this.started.poll();
+		changed(ListDataEvent.INTERVAL_REMOVED, 0, Collections.<Song> emptyList());
+		return entry.id;
 	}
 
 	/**
 	 * Peek at the top queue item.
-	 * 
+	 *
 	 * @return the id of the top item
+	 * @throws IndexOutOfBoundsException
+	 *             thrown if the queue is empty
+	 */
+	public synchronized UUID peek() {
+		if (this.size > 0) {
+			return this.queue[this.head].id;
+		}
+		if (this.waiting == 0) {
+			throw new IndexOutOfBoundsException("queue is empty");
+		}
+		return this.ready.peek().peek().id;
+	}
+
+	/**
+	 * Pin songs at the top of the queue so nothing added later is put ahead of
+	 * them.
+	 *
+	 * @param count
+	 *            how many songs from the top to pin
+	 * @return the pinned songs from the top, at most count of them and fewer
+	 *         if the queue is shorter
+	 */
+	public synchronized List<Song> pin(int count) {
+		while (this.size < count && this.waiting > 0) {
+			pinNext();
+		}
+		int pinned = Math.min(count, this.size);
+		List<Song> songs = new ArrayList<>(pinned);
+		for (int i = 0; i < pinned; i++) {
+			songs.add(this.queue[index(i)].song);
+		}
+		return songs;
+	}
+
+	/**
+	 * Get the ids of every song in the queue at one moment, in the order
+	 * they will play.
+	 *
+	 * @return an unmodifiable copy of the queue
+	 */
+	public synchronized List<UUID> snapshot() {
+		int total = this.size + this.waiting;
+		List<UUID> snapshot = new ArrayList<>(total);
+		for (int i = 0; i < total; i++) {
+			snapshot.add(entry(i).id);
+		}
+		return Collections.unmodifiableList(snapshot);
+	}
+
+	/**
+	 * Note that the first song from the top that hadn't started yet started
+	 * playing. It is pinned, if it wasn't already. Does nothing if every song
+	 * in the queue has started.
+	 *
+	 * @param when
+	 *            when its first sound was played
 	 */
-	public UUID peek() {
-		return this.queue.get(0);
+	public synchronized void started(Instant when) {
+		if (this.started.size() >= this.size + this.waiting) {
+			return;
+		}
+		while (this.size <= this.started.size()) {
+			pinNext();
+		}
+		this.started.add(when);
+	}
+
+	/**
+	 * Estimate how long until the song at a row starts, from the lengths of
+	 * the songs before it and how long the top song has been playing since it
+	 * started.
+	 *
+	 * @param row
+	 *            the row of the song
+	 * @return the wait, zero for the song at the top, or null if there is no
+	 *         such row
+	 */
+	public synchronized Duration getEstimatedWait(int row) {
+		if (row < 0 || row >= this.size + this.waiting) {
+			return null;
+		}
+		if (row == 0) {
+			return Duration.ZERO;
+		}
+		long before = this.size >= row ? pinnedMillis(row)
+				: pinnedMillis(this.size) + this.order.weightBefore(row - this.size);
+		Instant started = this.started.peek();
+		long played = started == null ? 0 : Duration.between(started, this.clock.instant()).toMillis();
+		long playing = entry(0).millis();
+		return Duration.ofMillis(before - Math.max(0, Math.min(played, playing)));
+	}
+
+	/**
+	 * Estimate when the song at a row starts.
+	 *
+	 * @param row
+	 *            the row of the song
+	 * @return the time, or null if there is no such row
+	 */
+	public synchronized Instant getEstimatedStart(int row) {
+		Duration wait = getEstimatedWait(row);
+		return wait == null ? null : this.clock.instant().plus(wait);
+	}
+
+	/**
+	 * Swap queued songs for new versions of them, like after the catalog was
+	 * reloaded. Songs are matched by id; queued songs that aren't given keep
+	 * the version they were added with. Listeners are told the whole queue
+	 * changed if any song was swapped.
+	 *
+	 * @param songs
+	 *            the new versions of songs
+	 */
+	public void refresh(Collection<? extends Song> songs) {
+		swap(songs);
+		deliver();
+	}
+
+	private synchronized void swap(Collection<? extends Song> songs) {
+		Map<UUID, Song> byId = new HashMap<>();
+		for (Song song : songs) {
+			byId.put(song.getId(), song);
+		}
+		boolean changed = false;
+		int total = this.size + this.waiting;
+		List<Song> queued = new ArrayList<>(total);
+		for (int i = 0; i < total; i++) {
+			Entry entry = entry(i);
+			queued.add(entry.song);
+			Song song = byId.get(entry.id);
+			if (song != null && song != entry.song) {
+				long millis = entry.millis();
+				entry.song = song;
+				queued.set(i, song);
+				if (i < this.size) {
+					this.lengths.add(index(i), entry.millis() - millis);
+				} else {
+					this.order.setWeight(entry, entry.millis());
+				}
+				changed = true;
+			}
+		}
+		if (changed) {
+			changed(ListDataEvent.CONTENTS_CHANGED, total - 1, queued);
+		}
 	}
 
 	@Override
-	public int getSize() {
-		return this.queue.size();
+	public synchronized int getSize() {
+		return this.size + this.waiting;
 	}
 
 	@Override
-	public Song getElementAt(int i) {
-		return this.songDb.getSongById(this.queue.get(i));
+	public synchronized Song getElementAt(int i) {
+		if (i < 0 || i >= this.size + this.waiting) {
+			return null;
+		}
+		return entry(i).song;
 	}
 
+	/**
+	 * Add a listener. It is told about every change made after it was added,
+	 * so reading the queue and adding a listener while holding the queue's
+	 * lock sees every change exactly once.
+	 */
 	@Override
-	public void addListDataListener(ListDataListener listDataListener) {
-		this.listeners.add(listDataListener);
+	public synchronized void addListDataListener(ListDataListener listDataListener) {
+		ListDataListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+		listeners[this.listeners.length] = listDataListener;
+		this.listeners = listeners;
 	}
 
 	@Override
-	public void removeListDataListener(ListDataListener listDataListener) {
-		this.listeners.remove(listDataListener);
+	public synchronized void removeListDataListener(ListDataListener listDataListener) {
+		List<ListDataListener> listeners = new ArrayList<>(Arrays.asList(this.listeners));
+		listeners.remove(listDataListener);
+		this.listeners = listeners.toArray(NO_LISTENERS);
+	}
+
+	private double cost(Song song, UUID user) {
+		if (this.scheduling == Scheduling.ROUND_ROBIN) {
+			return 1;
+		}
+		double seconds = song == null ? 1 : Math.max(1, song.getLength().getSeconds());
+		return seconds / Math.max(Double.MIN_NORMAL, this.weights.applyAsDouble(user));
+	}
+
+	/**
+	 * Move the next waiting song to the end of the pinned songs.
+	 */
+	private void pinNext() {
+		UserQueue userQueue = this.ready.poll();
+		Entry entry = userQueue.poll();
+		if (userQueue.isEmpty()) {
+			// every song of theirs is pinned, so their last tag is behind the
+			// virtual time and there is nothing left to remember
+			this.users.remove(userQueue.user);
+		} else {
+			this.ready.add(userQueue);
+		}
+		this.waiting--;
+		this.order.pollFirst();
+		this.virtualTime = Math.max(this.virtualTime, entry.tag);
+		push(entry);
+	}
+
+	private Entry entry(int i) {
+		if (i < this.size) {
+			return this.queue[index(i)];
+		}
+		return this.order.get(i - this.size);
+	}
+
+	/**
+	 * Add up the lengths of the first pinned songs.
+	 */
+	private long pinnedMillis(int count) {
+		int end = this.head + count;
+		if (end <= this.queue.length) {
+			return this.lengths.sum(this.head, end);
+		}
+		return this.lengths.sum(this.head, this.queue.length) + this.lengths.sum(end - this.queue.length);
+	}
+
+	private void push(Entry entry) {
+		if (this.size == this.queue.length) {
+			grow();
+		}
+		this.queue[index(this.size)] = entry;
+		this.lengths.add(index(this.size), entry.millis());
+		this.size++;
+	}
+
+	private int index(int i) {
+		// the capacity is always a power of two
+		return (this.head + i) & (this.queue.length - 1);
+	}
+
+	private void grow() {
+		Entry[] grown = new Entry[this.queue.length * 2];
+		int first = Math.min(this.size, this.queue.length - this.head);
+		System.arraycopy(this.queue, this.head, grown, 0, first);
+		System.arraycopy(this.queue, 0, grown, first, this.size - first);
+		this.queue = grown;
+		this.head = 0;
+		this.lengths = new FenwickTree(grown.length);
+		for (int i = 0; i < this.size; i++) {
+			this.lengths.add(i, grown[i].millis());
+		}
+	}
+
+	/**
+	 * Write down a change for the listeners there are now. Called while the
+	 * queue's lock is held.
+	 */
+	private void changed(int type, int row, List<Song> songs) {
+		if (this.listeners.length > 0) {
+			int first = type == ListDataEvent.CONTENTS_CHANGED ? 0 : row;
+			this.pending.add(new Pending(new Change(this, type, first, row, songs), this.listeners));
+		}
+	}
+
+	/**
+	 * Tell the listeners about the changes written down so far, unless another
+	 * thread is already telling them, in which case it tells them about these
+	 * too. Called without the queue's lock.
+	 */
+	private void deliver() {
+		synchronized (this) {
+			if (this.delivering || this.pending.isEmpty()) {
+				return;
+			}
+			this.delivering = true;
+		}
+		try {
+			for (Pending next = take(); next != null; next = take()) {
+				next.deliver();
+			}
+		} catch (RuntimeException | Error e) {
+			synchronized (this) {
+				// leave the rest for whoever changes the queue next
+				this.delivering = false;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Take the next change to tell the listeners about, or stop delivering if
+	 * there are none left.
+	 */
+	private synchronized Pending take() {
+		Pending next = this.pending.poll();
+		if (next == null) {
+			this.delivering = false;
+		}
+		return next;
+	}
+
+	/**
+	 * A change to the queue. Besides the rows, it carries the songs in them
+	 * right after the change: the song that was added, none for a removed
+	 * song, or every song when the contents changed.
+	 */
+	public static class Change extends ListDataEvent {
+		private static final long serialVersionUID = 6212741983270417205L;
+
+		private final transient List<Song> songs;
+
+		/**
+		 * Create a change.
+		 *
+		 * @param source
+		 *            the queue that changed
+		 * @param type
+		 *            the type of change, as for ListDataEvent
+		 * @param index0
+		 *            the first row that changed
+		 * @param index1
+		 *            the last row that changed
+		 * @param songs
+		 *            the songs in the rows after the change
+		 */
+		public Change(SongQueue source, int type, int index0, int index1, List<Song> songs) {
+			super(source, type, index0, index1);
+			this.songs = Collections.unmodifiableList(songs);
+		}
+
+		/**
+		 * Get the songs in the changed rows right after the change.
+		 *
+		 * @return the added song, no songs for a removal, or every song in
+		 *         the queue when the contents changed
+		 */
+		public List<Song> getSongs() {
+			return this.songs;
+		}
+	}
+
+	private static class Pending {
+		private final Change change;
+		private final ListDataListener[] listeners;
+
+		public Pending(Change change, ListDataListener[] listeners) {
+			this.change = change;
+			this.listeners = listeners;
+		}
+
+		public void deliver() {
+			for (ListDataListener l : this.listeners) {
+				if (this.change.getType() == ListDataEvent.INTERVAL_ADDED) {
+					l.intervalAdded(this.change);
+				} else if (this.change.getType() == ListDataEvent.INTERVAL_REMOVED) {
+					l.intervalRemoved(this.change);
+				} else {
+					l.contentsChanged(this.change);
+				}
+			}
+		}
+	}
+
+	private static class Entry implements Comparable<Entry> {
+		private final UUID id;
+		private final double tag;
+		private final long sequence;
+		// only changed by refresh, under the queue's lock
+		private Song song;
+
+		public Entry(UUID id, Song song, double tag, long sequence) {
+			this.id = id;
+			this.song = song;
+			this.tag = tag;
+			this.sequence = sequence;
+		}
+
+		public long millis() {
+			return this.song == null ? 0 : this.song.getLength().toMillis();
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byTag = Double.compare(this.tag, other.tag);
+			return byTag != 0 ? byTag : Long.compare(this.sequence, other.sequence);
+		}
 	}
 
-	private void notifyListeners() {
-		ListDataEvent e = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, 0, getSize());
-		for (ListDataListener l : this.listeners) {
-			l.contentsChanged(e);
+	/**
+	 * One user's waiting songs. Tags only grow, so the songs are always
+	 * sorted.
+	 */
+	private static class UserQueue implements Comparable<UserQueue> {
+		private final UUID user;
+		private final List<Entry> entries = new ArrayList<>();
+		private int first;
+		private double lastTag;
+
+		public UserQueue(UUID user) {
+			this.user = user;
+		}
+
+		public boolean isEmpty() {
+			return this.first == this.entries.size();
+		}
+
+		public void add(Entry entry) {
+			this.entries.add(entry);
+		}
+
+		public Entry peek() {
+			return this.entries.get(this.first);
+		}
+
+		public Entry poll() {
+			Entry entry = this.entries.set(this.first++, null);
+			if (this.first > 16 && this.first * 2 > this.entries.size()) {
+				this.entries.subList(0, this.first).clear();
+				this.first = 0;
+			}
+			return entry;
+		}
+
+		@Override
+		public int compareTo(UserQueue other) {
+			return peek().compareTo(other.peek());
 		}
 	}
 }
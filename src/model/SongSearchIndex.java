@@ -0,0 +1,637 @@
+package model;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+
+/**
+ * An in-memory inverted index over song artists and titles. Both fields are
+ * split into lower case words with accents removed, and each word points at
+ * the songs it appears in, in the order they were added, with artist and
+ * title kept apart. Words are kept sorted for prefix matches, and every word
+ * is also indexed by its three letter substrings (trigrams) so a query can
+ * match the middle of a word. Each song also keeps the list of its own words.
+ *
+ * A query is split into words the same way and a song matches when every
+ * query word matches one of its words. Each query word scores the best match
+ * the song has for it (whole word, prefix, then substring), and title matches
+ * count for more than artist matches. Songs with the same score come in the
+ * order they were added.
+ *
+ * Since scores are capped and songs with the same score keep their order, a
+ * one word query reads its postings from the best kind of match down and
+ * stops as soon as the page is full of songs nothing later can beat, so even
+ * a word in every song only reads about a page of postings. With more words
+ * only the word with the fewest postings is looked up; the songs it finds are
+ * checked against the other words through their own word lists, so a word
+ * shared by half the catalog never has its postings read.
+ *
+ * The index can be updated one song at a time when the catalog changes.
+ * Removed songs are only marked as removed and their postings skipped, until
+ * there are more removed songs than live ones and the index is rebuilt from
+ * the live songs' word lists, so reloading the catalog over and over doesn't
+ * make it grow. All methods are synchronized so updates can come from any
+ * thread.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SongSearchIndex {
+	private static final int EXACT = 4;
+	private static final int PREFIX = 2;
+	private static final int INFIX = 1;
+	private static final int TITLE_WEIGHT = 2;
+	private static final int ARTIST = 0;
+	private static final int TITLE = 1;
+	private static final int GRAM = 3;
+	// don't bother rebuilding for fewer removed songs than this
+	private static final int COMPACT_MIN = 1024;
+
+	private NavigableMap<String, Term> terms;
+	private List<Term> termsById;
+	private Map<String, IntList> trigrams;
+
+	private Map<UUID, Integer> ordinals;
+	private long[] mostSigBits;
+	private long[] leastSigBits;
+	private int size;
+	private BitSet removed;
+	private int dead;
+	// every song's words as term id << 1 | field, from starts[ordinal] up
+	// to starts[ordinal + 1]
+	private IntList songTerms;
+	private int[] starts;
+
+	// scratch space for queries, stamped with a generation so it never needs
+	// to be cleared
+	private int generation;
+	private int[] seen;
+	private int[] scores;
+	private IntList candidates;
+	private int[] termSeen;
+	private int[] termValues;
+
+	/**
+	 * Create an empty index.
+	 */
+	public SongSearchIndex() {
+		clear(16);
+	}
+
+	/**
+	 * Create an index over every song in the database.
+	 *
+	 * @param songDb
+	 *            the songs to index
+	 */
+	public SongSearchIndex(SongDb songDb) {
+		this();
+		for (Song song : songDb.getSongs()) {
+			add(song);
+		}
+	}
+
+	/**
+	 * Add a song to the index, replacing it if it's already there.
+	 *
+	 * @param song
+	 *            the song to add
+	 */
+	public synchronized void add(Song song) {
+		remove(song.getId());
+		int ordinal = begin(song.getId().getMostSignificantBits(), song.getId().getLeastSignificantBits());
+		for (String word : words(song.getArtist())) {
+			post(ordinal, word, ARTIST);
+		}
+		for (String word : words(song.getTitle())) {
+			post(ordinal, word, TITLE);
+		}
+		this.starts[ordinal + 1] = this.songTerms.size;
+	}
+
+	/**
+	 * Remove a song from the index. Does nothing if it isn't there.
+	 *
+	 * @param id
+	 *            the id of the song to remove
+	 */
+	public synchronized void remove(UUID id) {
+		Integer ordinal = this.ordinals.remove(id);
+		if (ordinal != null) {
+			this.removed.set(ordinal.intValue());
+			this.dead++;
+			if (this.dead >= COMPACT_MIN && this.dead > this.ordinals.size()) {
+				compact();
+			}
+		}
+	}
+
+	/**
+	 * Get the number of songs in the index.
+	 *
+	 * @return the number of songs
+	 */
+	public synchronized int size() {
+		return this.ordinals.size();
+	}
+
+	/**
+	 * Find the best matches for a query, best first. Songs with the same
+	 * score come back in the order they were added.
+	 *
+	 * @param query
+	 *            what the user typed
+	 * @param limit
+	 *            the most results to return
+	 * @return the ids of the matching songs
+	 */
+	public synchronized List<UUID> search(String query, int limit) {
+		List<String> words = words(query);
+		Page page = new Page(Math.max(0, limit));
+		if (words.isEmpty() || limit <= 0) {
+			return page.ids();
+		}
+		if (words.size() == 1) {
+			best(words.get(0), page);
+		} else {
+			match(words);
+			for (int i = 0; i < this.candidates.size; i++) {
+				page.offer(this.candidates.data[i]);
+			}
+		}
+		return page.ids();
+	}
+
+	/**
+	 * Fill the page with the best matches for a single word. The postings are
+	 * read from the highest score down, so each song's first posting is its
+	 * score. Within a score the postings are in the order songs were added,
+	 * so a list can be left as soon as a song in it would lose to the worst
+	 * one on a full page, and the rest of the lists once their score is lower
+	 * than that song's.
+	 */
+	private void best(String word, Page page) {
+		List<Term> found = new ArrayList<>();
+		IntList values = new IntList();
+		lookup(word, found, values, Integer.MAX_VALUE);
+		int generation = ++this.generation;
+		BitSet removed = this.dead == 0 ? null : this.removed;
+		for (int value = EXACT * TITLE_WEIGHT; value > 0; value /= 2) {
+			if (page.isFull() && this.scores[page.worst()] > value) {
+				return;
+			}
+			for (int t = 0; t < found.size(); t++) {
+				for (int field = ARTIST; field <= TITLE; field++) {
+					if (weigh(values.data[t], field) != value) {
+						continue;
+					}
+					IntList postings = found.get(t).postings[field];
+					for (int i = 0; i < postings.size; i++) {
+						int ordinal = postings.data[i];
+						if (this.seen[ordinal] == generation || removed != null && removed.get(ordinal)) {
+							continue;
+						}
+						if (page.isFull()) {
+							int worst = page.worst();
+							if (this.scores[worst] > value || this.scores[worst] == value && ordinal > worst) {
+								break;
+							}
+						}
+						this.seen[ordinal] = generation;
+						this.scores[ordinal] = value;
+						page.offer(ordinal);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find every song matching all words of the query and fill in scores for
+	 * them. Leaves the matches in candidates.
+	 */
+	private void match(List<String> words) {
+		this.candidates.size = 0;
+		// look up only the word with the fewest postings, giving up on each
+		// of the others as soon as it has more
+		int rarest = -1;
+		List<Term> rarestTerms = null;
+		IntList rarestValues = null;
+		int bound = Integer.MAX_VALUE;
+		for (int i = 0; i < words.size(); i++) {
+			List<Term> found = new ArrayList<>();
+			IntList values = new IntList();
+			int postings = lookup(words.get(i), found, values, bound);
+			if (postings == 0) {
+				return;
+			}
+			if (postings < bound) {
+				bound = postings;
+				rarest = i;
+				rarestTerms = found;
+				rarestValues = values;
+			}
+		}
+
+		// the arrays are read into locals so the loop over what may be a lot
+		// of postings doesn't go back to the fields
+		int generation = ++this.generation;
+		int[] seen = this.seen;
+		int[] scores = this.scores;
+		int[] candidates = this.candidates.reserve(bound);
+		BitSet removed = this.dead == 0 ? null : this.removed;
+		int count = 0;
+		for (int t = 0; t < rarestTerms.size(); t++) {
+			for (int field = ARTIST; field <= TITLE; field++) {
+				IntList postings = rarestTerms.get(t).postings[field];
+				int[] data = postings.data;
+				int value = weigh(rarestValues.data[t], field);
+				for (int i = 0; i < postings.size; i++) {
+					int ordinal = data[i];
+					if (removed != null && removed.get(ordinal)) {
+						continue;
+					}
+					if (seen[ordinal] != generation) {
+						seen[ordinal] = generation;
+						scores[ordinal] = 0;
+						candidates[count++] = ordinal;
+					}
+					scores[ordinal] = Math.max(scores[ordinal], value);
+				}
+			}
+		}
+		this.candidates.size = count;
+
+		// check the other words against each song's own words, keeping the
+		// songs that match all of them
+		for (int i = 0; i < words.size() && this.candidates.size > 0; i++) {
+			if (i != rarest) {
+				keepMatches(words.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Keep only the candidates that have a word matching the query word, and
+	 * add its best match to their scores. The terms the word matches are
+	 * marked first, so each song's words are checked without reading them.
+	 */
+	private void keepMatches(String word) {
+		List<Term> found = new ArrayList<>();
+		IntList values = new IntList();
+		lookup(word, found, values, Integer.MAX_VALUE);
+		int generation = ++this.generation;
+		for (int t = 0; t < found.size(); t++) {
+			int id = found.get(t).id;
+			if (this.termSeen[id] != generation) {
+				this.termSeen[id] = generation;
+				this.termValues[id] = 0;
+			}
+			this.termValues[id] = Math.max(this.termValues[id], values.data[t]);
+		}
+
+		int kept = 0;
+		for (int c = 0; c < this.candidates.size; c++) {
+			int ordinal = this.candidates.data[c];
+			int score = 0;
+			for (int i = this.starts[ordinal]; i < this.starts[ordinal + 1]; i++) {
+				int entry = this.songTerms.data[i];
+				int id = entry >>> 1;
+				if (this.termSeen[id] == generation) {
+					score = Math.max(score, weigh(this.termValues[id], entry & 1));
+				}
+			}
+			if (score > 0) {
+				this.scores[ordinal] += score;
+				this.candidates.data[kept++] = ordinal;
+			}
+		}
+		this.candidates.size = kept;
+	}
+
+	/**
+	 * Find the terms a query word matches and how much each match is worth.
+	 * A term can be found twice, as a prefix and as a substring. Stops early
+	 * once there are more postings than the bound.
+	 *
+	 * @return the number of postings of the terms found
+	 */
+	private int lookup(String word, List<Term> found, IntList values, int bound) {
+		int postings = 0;
+		Term exact = this.terms.get(word);
+		if (exact != null) {
+			found.add(exact);
+			values.add(EXACT);
+			postings += exact.count();
+		}
+		for (Term prefix : this.terms.subMap(word, false, word + Character.MAX_VALUE, false).values()) {
+			if (postings >= bound) {
+				return postings;
+			}
+			found.add(prefix);
+			values.add(PREFIX);
+			postings += prefix.count();
+		}
+		if (word.length() >= GRAM) {
+			for (Term infix : infixTerms(word)) {
+				if (postings >= bound) {
+					return postings;
+				}
+				found.add(infix);
+				values.add(INFIX);
+				postings += infix.count();
+			}
+		}
+		return postings;
+	}
+
+	private static int weigh(int value, int field) {
+		return field == TITLE ? value * TITLE_WEIGHT : value;
+	}
+
+	private boolean better(int a, int b) {
+		return this.scores[a] != this.scores[b] ? this.scores[a] > this.scores[b] : a < b;
+	}
+
+	/**
+	 * Find the words that contain the query word somewhere after their first
+	 * letter. Starts from the rarest trigram of the query word.
+	 */
+	private List<Term> infixTerms(String word) {
+		IntList rarest = null;
+		for (int i = 0; i + GRAM <= word.length(); i++) {
+			IntList candidates = this.trigrams.get(word.substring(i, i + GRAM));
+			if (candidates == null) {
+				return new ArrayList<>(0);
+			}
+			if (rarest == null || candidates.size < rarest.size) {
+				rarest = candidates;
+			}
+		}
+		List<Term> result = new ArrayList<>();
+		for (int i = 0; i < rarest.size; i++) {
+			Term term = this.termsById.get(rarest.data[i]);
+			if (term.text.indexOf(word, 1) > 0) {
+				result.add(term);
+			}
+		}
+		return result;
+	}
+
+	private Term term(String word) {
+		Term term = this.terms.get(word);
+		if (term == null) {
+			term = new Term(word, this.termsById.size());
+			this.terms.put(word, term);
+			this.termsById.add(term);
+			if (term.id == this.termSeen.length) {
+				this.termSeen = Arrays.copyOf(this.termSeen, term.id * 2);
+				this.termValues = Arrays.copyOf(this.termValues, term.id * 2);
+			}
+			for (int i = 1; i + GRAM <= word.length(); i++) {
+				IntList termIds = this.trigrams.computeIfAbsent(word.substring(i, i + GRAM), k -> new IntList());
+				if (termIds.size == 0 || termIds.data[termIds.size - 1] != term.id) {
+					termIds.add(term.id);
+				}
+			}
+		}
+		return term;
+	}
+
+	/**
+	 * Start indexing a song under the next ordinal.
+	 */
+	private int begin(long mostSigBits, long leastSigBits) {
+		int ordinal = this.size++;
+		ensureCapacity(this.size);
+		this.mostSigBits[ordinal] = mostSigBits;
+		this.leastSigBits[ordinal] = leastSigBits;
+		this.ordinals.put(new UUID(mostSigBits, leastSigBits), Integer.valueOf(ordinal));
+		this.starts[ordinal] = this.songTerms.size;
+		return ordinal;
+	}
+
+	/**
+	 * Index one word of the song being indexed.
+	 */
+	private void post(int ordinal, String word, int field) {
+		Term term = term(word);
+		term.postings[field].add(ordinal);
+		this.songTerms.add(term.id << 1 | field);
+	}
+
+	/**
+	 * Rebuild the index from the live songs, in the order they were added,
+	 * dropping removed songs and words nothing uses anymore.
+	 */
+	private void compact() {
+		List<Term> termsById = this.termsById;
+		IntList songTerms = this.songTerms;
+		int[] starts = this.starts;
+		long[] mostSigBits = this.mostSigBits;
+		long[] leastSigBits = this.leastSigBits;
+		BitSet removed = this.removed;
+		int size = this.size;
+
+		clear(Math.max(16, this.ordinals.size()));
+		for (int old = 0; old < size; old++) {
+			if (!removed.get(old)) {
+				int ordinal = begin(mostSigBits[old], leastSigBits[old]);
+				for (int i = starts[old]; i < starts[old + 1]; i++) {
+					post(ordinal, termsById.get(songTerms.data[i] >>> 1).text, songTerms.data[i] & 1);
+				}
+				this.starts[ordinal + 1] = this.songTerms.size;
+			}
+		}
+	}
+
+	private void clear(int capacity) {
+		this.terms = new TreeMap<>();
+		this.termsById = new ArrayList<>();
+		this.trigrams = new HashMap<>();
+		this.ordinals = new HashMap<>();
+		this.mostSigBits = new long[capacity];
+		this.leastSigBits = new long[capacity];
+		this.size = 0;
+		this.removed = new BitSet();
+		this.dead = 0;
+		this.songTerms = new IntList();
+		this.starts = new int[capacity + 1];
+		this.seen = new int[capacity];
+		this.scores = new int[capacity];
+		this.candidates = new IntList();
+		this.termSeen = new int[16];
+		this.termValues = new int[16];
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.seen.length) {
+			int grown = Math.max(capacity, this.seen.length * 2);
+			this.mostSigBits = Arrays.copyOf(this.mostSigBits, grown);
+			this.leastSigBits = Arrays.copyOf(this.leastSigBits, grown);
+			this.starts = Arrays.copyOf(this.starts, grown + 1);
+			this.seen = Arrays.copyOf(this.seen, grown);
+			this.scores = Arrays.copyOf(this.scores, grown);
+		}
+	}
+
+	/**
+	 * Split text into lower case words without accents.
+	 */
+	private static List<String> words(String text) {
+		List<String> words = new ArrayList<>();
+		if (text == null) {
+			return words;
+		}
+		String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+		StringBuilder word = new StringBuilder();
+		for (int i = 0; i <= normalized.length(); i++) {
+			char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+			if (Character.getType(c) == Character.NON_SPACING_MARK) {
+				continue;
+			}
+			if (Character.isLetterOrDigit(c)) {
+				word.append(Character.toLowerCase(c));
+			} else if (word.length() > 0) {
+				words.add(word.toString());
+				word.setLength(0);
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * The best matches so far, in a min heap so the worst one is on top.
+	 */
+	private class Page {
+		private final int[] heap;
+		private int size;
+
+		public Page(int limit) {
+			this.heap = new int[limit];
+		}
+
+		public boolean isFull() {
+			return this.size == this.heap.length;
+		}
+
+		public int worst() {
+			return this.heap[0];
+		}
+
+		public void offer(int ordinal) {
+			if (!isFull()) {
+				this.heap[this.size] = ordinal;
+				siftUp(this.size++);
+			} else if (this.size > 0 && better(ordinal, this.heap[0])) {
+				this.heap[0] = ordinal;
+				siftDown();
+			}
+		}
+
+		public List<UUID> ids() {
+			UUID[] results = new UUID[this.size];
+			while (this.size > 0) {
+				int ordinal = this.heap[0];
+				this.heap[0] = this.heap[--this.size];
+				siftDown();
+				results[this.size] = new UUID(SongSearchIndex.this.mostSigBits[ordinal],
+						SongSearchIndex.this.leastSigBits[ordinal]);
+			}
+			return Arrays.asList(results);
+		}
+
+		private void siftUp(int i) {
+			int ordinal = this.heap[i];
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!better(this.heap[parent], ordinal)) {
+					break;
+				}
+				this.heap[i] = this.heap[parent];
+				i = parent;
+			}
+			this.heap[i] = ordinal;
+		}
+
+		private void siftDown() {
+			if (this.size == 0) {
+				return;
+			}
+			int ordinal = this.heap[0];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= this.size) {
+					break;
+				}
+				if (child + 1 < this.size && better(this.heap[child], this.heap[child + 1])) {
+					child++;
+				}
+				if (!better(ordinal, this.heap[child])) {
+					break;
+				}
+				this.heap[i] = this.heap[child];
+				i = child;
+			}
+			this.heap[i] = ordinal;
+		}
+	}
+
+	private static class Term {
+		private final String text;
+		private final int id;
+		// the songs with this word in their artist and in their title
+		private final IntList[] postings = { new IntList(), new IntList() };
+
+		public Term(String text, int id) {
+			this.text = text;
+			this.id = id;
+		}
+
+		public int count() {
+			return this.postings[ARTIST].size + this.postings[TITLE].size;
+		}
+	}
+
+	private static class IntList {
+		private static final int[] EMPTY = new int[0];
+
+		// most words are in only a song or two, so nothing is allocated
+		// until the first value
+		private int[] data = EMPTY;
+		private int size;
+
+		public void add(int value) {
+			if (this.size == this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(4, this.size * 2));
+			}
+			this.data[this.size++] = value;
+		}
+
+		/**
+		 * Make room for at least the given number of values and get the
+		 * array they go in.
+		 */
+		public int[] reserve(int capacity) {
+			if (capacity > this.data.length) {
+				this.data = Arrays.copyOf(this.data, Math.max(capacity, this.data.length * 2));
+			}
+			return this.data;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(this.data, this.size);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel. Time moves in ticks, and each level of the
+ * wheel is a ring of 64 slots, each slot covering 64 times as many ticks as a
+ * slot a level below. Items due soon sit in the bottom level; items due later
+ * sit higher up and move down as their time comes closer. Scheduling an item
+ * and firing it both take constant time no matter how many are waiting, and
+ * four levels of one second ticks reach over half a year.
+ *
+ * All methods are synchronized.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ *
+ * @param <T>
+ *            the type of item scheduled
+ */
+public final class TimingWheel<T> {
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int LEVELS = 4;
+
+	private final long tickMillis;
+	private final List<List<Timeout<T>>> wheel;
+	// the last tick that was fired
+	private long now;
+	private int size;
+
+	/**
+	 * Create a new empty wheel.
+	 *
+	 * @param tickMillis
+	 *            how many milliseconds a tick lasts
+	 * @param startMillis
+	 *            the time to start at, in milliseconds
+	 */
+	public TimingWheel(long tickMillis, long startMillis) {
+		this.tickMillis = tickMillis;
+		this.now = startMillis / tickMillis;
+		this.wheel = new ArrayList<>(LEVELS * SLOTS);
+		for (int i = 0; i < LEVELS * SLOTS; i++) {
+			this.wheel.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Get the number of items waiting.
+	 *
+	 * @return the number of items
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * Schedule an item. Items are fired in the first tick that starts at or
+	 * after their deadline, and no earlier than the next tick.
+	 *
+	 * @param item
+	 *            the item to fire
+	 * @param deadlineMillis
+	 *            when to fire it, in milliseconds
+	 */
+	public synchronized void schedule(T item, long deadlineMillis) {
+		long tick = (deadlineMillis + this.tickMillis - 1) / this.tickMillis;
+		place(new Timeout<>(item, Math.max(tick, this.now + 1)));
+		this.size++;
+	}
+
+	/**
+	 * Move the wheel up to a time, firing everything that came due on the way.
+	 *
+	 * @param nowMillis
+	 *            the time to move to, in milliseconds
+	 * @param expired
+	 *            told about each item that came due, in order
+	 */
+	public synchronized void advance(long nowMillis, Consumer<? super T> expired) {
+		long target = nowMillis / this.tickMillis;
+		while (this.now < target) {
+			this.now++;
+			// bring down what is due in the slots of the higher levels that
+			// just came around, from the top down
+			for (int level = LEVELS - 1; level > 0; level--) {
+				if ((this.now & ((1L << (BITS * level)) - 1)) == 0) {
+					cascade(level);
+				}
+			}
+			List<Timeout<T>> due = slot(0, this.now);
+			if (!due.isEmpty()) {
+				List<Timeout<T>> fired = new ArrayList<>(due);
+				due.clear();
+				for (Timeout<T> timeout : fired) {
+					this.size--;
+					expired.accept(timeout.item);
+				}
+			}
+		}
+	}
+
+	private void cascade(int level) {
+		List<Timeout<T>> slot = slot(level, this.now);
+		if (slot.isEmpty()) {
+			return;
+		}
+		List<Timeout<T>> moving = new ArrayList<>(slot);
+		slot.clear();
+		for (Timeout<T> timeout : moving) {
+			place(timeout);
+		}
+	}
+
+	private void place(Timeout<T> timeout) {
+		long delta = timeout.tick - this.now;
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+			level++;
+		}
+		// past the top level it waits in the top level and is put back each
+		// time its slot comes around, until it is close enough
+		slot(level, timeout.tick).add(timeout);
+	}
+
+	private List<Timeout<T>> slot(int level, long tick) {
+		return this.wheel.get(level * SLOTS + (int) ((tick >>> (BITS * level)) & (SLOTS - 1)));
+	}
+
+	private static class Timeout<T> {
+		private final T item;
+		private final long tick;
+
+		public Timeout(T item, long tick) {
+			this.item = item;
+			this.tick = tick;
+		}
+	}
+}
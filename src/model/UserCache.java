@@ -1,9 +1,8 @@
 package model;
 
 import java.time.Duration;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
+import java.util.function.ToLongFunction;
 
 import model.dataservice.Song;
 import model.dataservice.UserDb;
@@ -13,21 +12,26 @@ import model.dataservice.UserDb;
  * has for the day as well as their total time allotted. Only resets plays when
  * asked. Allotted time is tracked as long as the program is running.
  *
+ * The cache keeps the time each user has used, and their time left is what
+ * is left of their allowance. Everyone gets 1500 minutes unless given other
+ * allowances with setAllowance.
+ *
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
  */
 public class UserCache extends Cache {
-	private static final long serialVersionUID = -8085520546494929915L;
-	private static final Duration MAX_TIME = Duration.ofMinutes(1500);
+	private static final long serialVersionUID = 8147420994337567321L;
+	private static final long MAX_TIME = Duration.ofMinutes(1500).toNanos();
 	private transient UserDb userDb;
-	private Map<UUID, Duration> allottedTime;
+	private transient ToLongFunction<UUID> allowance;
+	// nanoseconds used by each user by ordinal
+	private long[][] usedTime;
 
 	/**
 	 * Create a new cache for user plays and time allotted.
 	 */
 	public UserCache() {
-		this.plays = new HashMap<>();
-		this.allottedTime = new HashMap<>();
+		this.usedTime = new long[MAX_CHUNKS][];
 	}
 
 	/**
@@ -41,6 +45,18 @@ public class UserCache extends Cache {
 		this.userDb = userDb;
 	}
 
+	/**
+	 * Set how much time each user gets in all. A cache that was read back
+	 * from a file needs to be given its allowances again.
+	 * 
+	 * @param allowance
+	 *            the time each user gets in nanoseconds, which shouldn't
+	 *            allocate, or null to give everyone the default
+	 */
+	public void setAllowance(ToLongFunction<UUID> allowance) {
+		this.allowance = allowance;
+	}
+
 	/**
 	 * Return a new object with information about the specified user. These
 	 * objects are transient and will be invalid after a single transaction. The
@@ -52,8 +68,22 @@ public class UserCache extends Cache {
 	 * @return a CachedUser that represents that id
 	 */
 	public CachedUser getUserData(UUID id) {
-		cache(id);
-		return new CachedUser(this.userDb.getUserById(id).getName(), this.getPlays(id), this.allottedTime.get(id));
+		return new CachedUser(this.userDb.getUserById(id).getName(), getPlays(id),
+				Duration.ofNanos(getAllottedNanos(id)));
+	}
+
+	/**
+	 * Get the time a user has left without allocating anything.
+	 * 
+	 * @param id
+	 *            the id of a user
+	 * @return the allotted time left to the user in nanoseconds
+	 */
+	public long getAllottedNanos(UUID id) {
+		ToLongFunction<UUID> allowance = this.allowance;
+		long allotted = allowance == null ? MAX_TIME : allowance.applyAsLong(id);
+		int ordinal = find(id);
+		return ordinal < 0 ? allotted : allotted - this.usedTime[ordinal / CHUNK_SIZE][ordinal % CHUNK_SIZE];
 	}
 
 	/**
@@ -66,20 +96,14 @@ public class UserCache extends Cache {
 	 *            the id of the played song
 	 */
 	public void playSong(UUID id, Song song) {
-		cache(id);
-		long oldTime = this.allottedTime.get(id).toNanos();
-		Duration newTime = Duration.ofNanos(oldTime - song.getLength().toNanos());
-		this.allottedTime.put(id, newTime);
+		int ordinal = ordinal(id);
+		this.usedTime[ordinal / CHUNK_SIZE][ordinal % CHUNK_SIZE] += song.getLength().toNanos();
 		incPlays(id);
 	}
 
 	@Override
-	protected void cache(UUID id) {
-		if (!this.allottedTime.containsKey(id)) {
-			this.allottedTime.put(id, MAX_TIME);
-		}
-		if (!this.plays.containsKey(id)) {
-			this.plays.put(id, Integer.valueOf(0));
-		}
+	protected void addChunk(int chunk) {
+		super.addChunk(chunk);
+		this.usedTime[chunk] = new long[CHUNK_SIZE];
 	}
 }
@@ -0,0 +1,40 @@
+package model.dataservice;
+
+import java.time.Duration;
+
+/**
+ * Shared Duration objects for song lengths. Durations are immutable, so song
+ * implementations that store their length as a number can hand out these
+ * instead of allocating a new one on every getLength call.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public final class Lengths {
+	private static final Duration[] CACHE = new Duration[3600];
+
+	static {
+		for (int i = 0; i < CACHE.length; i++) {
+			CACHE[i] = Duration.ofSeconds(i);
+		}
+	}
+
+	private Lengths() {
+		// static methods only
+	}
+
+	/**
+	 * Get a Duration of the given number of seconds. Anything under an hour is
+	 * served from a shared cache.
+	 * 
+	 * @param seconds
+	 *            the length in seconds
+	 * @return a Duration of that length
+	 */
+	public static Duration ofSeconds(long seconds) {
+		if (seconds >= 0 && seconds < CACHE.length) {
+			return CACHE[(int) seconds];
+		}
+		return Duration.ofSeconds(seconds);
+	}
+}
@@ -0,0 +1,23 @@
+package model.dataservice;
+
+/**
+ * A listener for progress reports from a DataService that loads its data
+ * incrementally. Reports are sent from the loading thread so listeners that
+ * touch the UI must hop to the event dispatch thread themselves.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public interface LoadProgressListener {
+	/**
+	 * Called periodically while loading and once more when loading is done.
+	 * 
+	 * @param records
+	 *            the number of records read so far
+	 * @param bytesRead
+	 *            the number of bytes consumed from the source so far
+	 * @param totalBytes
+	 *            the total size of the source, or -1 if it isn't known
+	 */
+	public void progress(long records, long bytesRead, long totalBytes);
+}
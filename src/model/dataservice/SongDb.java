@@ -1,13 +1,15 @@
 package model.dataservice;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 /**
- * An interface for the SongDb. This interface is unfortunately limited. Callers
- * should expect a data structure containing all songs in the entire database so
- * if there are many this is probably going to push up against JVM memory
- * limits. C'est la vie. :(
+ * An interface for the SongDb. getSongs hands back every song in the database,
+ * which some implementations can only do by holding the whole catalog in
+ * memory. Callers that only need part of the catalog at a time, like the
+ * library table, should use getSongCount and the ranged getSongs instead so
+ * large catalogs never have to be materialized.
  * 
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
@@ -28,4 +30,58 @@ public interface SongDb {
 	 * @return a Song object represented by that ID
 	 */
 	public Song getSongById(UUID id);
+
+	/**
+	 * Get the number of songs in the database.
+	 * 
+	 * @return the number of songs
+	 */
+	public default int getSongCount() {
+		return getSongs().size();
+	}
+
+	/**
+	 * Get a range of songs in the same order as getSongs. The range is cut
+	 * short at the end of the database.
+	 * 
+	 * @param offset
+	 *            the position of the first song to return
+	 * @param limit
+	 *            the most songs to return
+	 * @return the songs in the range
+	 */
+	public default List<Song> getSongs(int offset, int limit) {
+		List<Song> songs = getSongs();
+		int from = Math.min(Math.max(offset, 0), songs.size());
+		int to = (int) Math.min((long) from + Math.max(limit, 0), songs.size());
+		return new ArrayList<>(songs.subList(from, to));
+	}
+
+	/**
+	 * Get the same songs sorted by a column, for showing them in that order
+	 * a page at a time with the ranged getSongs. By default the catalog is
+	 * read and sorted in memory; databases that can sort for themselves, like
+	 * with an ORDER BY, should do that instead.
+	 * 
+	 * @param order
+	 *            the column to sort by
+	 * @param descending
+	 *            whether to put the largest first
+	 * @return a database with the songs in that order
+	 */
+	public default SongDb sorted(SongOrder order, boolean descending) {
+		return new SortedSongDb(this, order, descending);
+	}
+
+	/**
+	 * Get the catalog as it is right now. Most databases never change and
+	 * return themselves, but ones that are swapped out when the catalog is
+	 * reloaded return the current version so callers reading it row by row
+	 * see one consistent catalog.
+	 * 
+	 * @return a database that won't change
+	 */
+	public default SongDb current() {
+		return this;
+	}
 }
@@ -0,0 +1,44 @@
+package model.dataservice;
+
+import java.util.UUID;
+
+/**
+ * Something that collects songs one at a time and turns them into a SongDb.
+ * Loaders that stream their input use this so they don't care how the songs
+ * end up being stored.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public interface SongDbBuilder {
+	/**
+	 * Add a song. If the same id is added twice the first song wins.
+	 * 
+	 * @param id
+	 *            the id of the song
+	 * @param artist
+	 *            the artist of the song
+	 * @param title
+	 *            the title of the song
+	 * @param filename
+	 *            the file name of the song
+	 * @param seconds
+	 *            the length of the song in seconds
+	 * @return this builder
+	 */
+	public SongDbBuilder add(UUID id, String artist, String title, String filename, long seconds);
+
+	/**
+	 * Get the number of songs added so far.
+	 * 
+	 * @return the number of songs
+	 */
+	public int size();
+
+	/**
+	 * Build the database.
+	 * 
+	 * @return a new SongDb with all added songs
+	 */
+	public SongDb build();
+}
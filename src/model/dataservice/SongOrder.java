@@ -0,0 +1,42 @@
+package model.dataservice;
+
+import java.util.Comparator;
+
+/**
+ * The columns a catalog can be sorted by. Songs that compare equal keep the
+ * order of the catalog, in both directions.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public enum SongOrder {
+	/**
+	 * By artist name.
+	 */
+	ARTIST(Comparator.comparing(Song::getArtist, Comparator.nullsFirst(Comparator.<String> naturalOrder()))),
+	/**
+	 * By title.
+	 */
+	TITLE(Comparator.comparing(Song::getTitle, Comparator.nullsFirst(Comparator.<String> naturalOrder()))),
+	/**
+	 * By length.
+	 */
+	LENGTH(Comparator.comparing(Song::getLength));
+
+	private final Comparator<Song> comparator;
+
+	private SongOrder(Comparator<Song> comparator) {
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Get a comparator that puts songs in this order.
+	 *
+	 * @param descending
+	 *            whether to put the largest first
+	 * @return the comparator
+	 */
+	public Comparator<Song> comparator(boolean descending) {
+		return descending ? this.comparator.reversed() : this.comparator;
+	}
+}
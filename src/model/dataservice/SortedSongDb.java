@@ -0,0 +1,53 @@
+package model.dataservice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A catalog held in memory, sorted by a column. The songs are read and
+ * sorted once, when it is made, so it is only meant for catalogs that are in
+ * memory anyway; databases that can sort for themselves override
+ * SongDb.sorted instead.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+final class SortedSongDb implements SongDb {
+	private final SongDb songDb;
+	private final List<Song> songs;
+
+	/**
+	 * Sort a catalog.
+	 *
+	 * @param songDb
+	 *            the catalog to sort, which must not change
+	 * @param order
+	 *            the column to sort by
+	 * @param descending
+	 *            whether to put the largest first
+	 */
+	public SortedSongDb(SongDb songDb, SongOrder order, boolean descending) {
+		this.songDb = songDb;
+		List<Song> songs = new ArrayList<>(songDb.getSongs());
+		// the sort is stable, so equal songs keep the catalog's order
+		songs.sort(order.comparator(descending));
+		this.songs = Collections.unmodifiableList(songs);
+	}
+
+	@Override
+	public List<Song> getSongs() {
+		return this.songs;
+	}
+
+	@Override
+	public Song getSongById(UUID id) {
+		return this.songDb.getSongById(id);
+	}
+
+	@Override
+	public int getSongCount() {
+		return this.songs.size();
+	}
+}
@@ -0,0 +1,223 @@
+package model.dataservice.compact;
+
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import model.dataservice.Lengths;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.SongDbBuilder;
+
+/**
+ * A SongDb that keeps every field in flat arrays instead of one object per
+ * song. IDs are stored as two longs, artists are deduplicated into a shared
+ * pool and lengths are plain ints. Songs are handed out as small flyweights
+ * that read straight from the arrays, so they are cheap to create and can be
+ * thrown away right after use.
+ * 
+ * Instances are built once with a Builder and never change afterwards.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public final class CompactSongDb implements SongDb {
+	private final int size;
+	private final long[] mostSigBits;
+	private final long[] leastSigBits;
+	private final int[] artists;
+	private final String[] artistPool;
+	private final String[] titles;
+	private final String[] filenames;
+	private final int[] lengths;
+
+	// open addressing table of row + 1, zero marks an empty slot
+	private final int[] index;
+	private final int mask;
+
+	private final List<Song> songs;
+
+	private CompactSongDb(Builder builder) {
+		this.size = builder.size;
+		this.mostSigBits = Arrays.copyOf(builder.mostSigBits, this.size);
+		this.leastSigBits = Arrays.copyOf(builder.leastSigBits, this.size);
+		this.artists = Arrays.copyOf(builder.artists, this.size);
+		this.artistPool = new String[builder.artistPool.size()];
+		for (Map.Entry<String, Integer> artist : builder.artistPool.entrySet()) {
+			this.artistPool[artist.getValue().intValue()] = artist.getKey();
+		}
+		this.titles = Arrays.copyOf(builder.titles, this.size);
+		this.filenames = Arrays.copyOf(builder.filenames, this.size);
+		this.lengths = Arrays.copyOf(builder.lengths, this.size);
+
+		int capacity = Integer.highestOneBit(Math.max(this.size, 1) * 2 - 1) << 1;
+		this.index = new int[capacity];
+		this.mask = capacity - 1;
+		for (int row = 0; row < this.size; row++) {
+			int slot = slotFor(this.mostSigBits[row], this.leastSigBits[row]);
+			if (slot < 0) {
+				this.index[~slot] = row + 1;
+			}
+		}
+
+		this.songs = new SongList();
+	}
+
+	@Override
+	public List<Song> getSongs() {
+		return this.songs;
+	}
+
+	@Override
+	public Song getSongById(UUID id) {
+		int slot = slotFor(id.getMostSignificantBits(), id.getLeastSignificantBits());
+		return slot < 0 ? null : new CompactSong(this.index[slot] - 1);
+	}
+
+	/**
+	 * Find the table slot holding the given id. Returns the slot if the id is
+	 * present, otherwise the bitwise complement of the empty slot where it
+	 * would go.
+	 */
+	private int slotFor(long msb, long lsb) {
+		int slot = hash(msb, lsb) & this.mask;
+		while (true) {
+			int row = this.index[slot] - 1;
+			if (row < 0) {
+				return ~slot;
+			}
+			if (this.mostSigBits[row] == msb && this.leastSigBits[row] == lsb) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	private static int hash(long msb, long lsb) {
+		long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+		h ^= h >>> 32;
+		return (int) (h ^ h >>> 16);
+	}
+
+	/**
+	 * Collects songs one at a time for a new CompactSongDb. Not thread safe.
+	 */
+	public static final class Builder implements SongDbBuilder {
+		private int size;
+		private long[] mostSigBits = new long[16];
+		private long[] leastSigBits = new long[16];
+		private int[] artists = new int[16];
+		private String[] titles = new String[16];
+		private String[] filenames = new String[16];
+		private int[] lengths = new int[16];
+		private final Map<String, Integer> artistPool = new HashMap<>();
+
+		@Override
+		public Builder add(UUID id, String artist, String title, String filename, long seconds) {
+			if (this.size == this.lengths.length) {
+				grow();
+			}
+			Integer artistIndex = this.artistPool.get(artist);
+			if (artistIndex == null) {
+				artistIndex = Integer.valueOf(this.artistPool.size());
+				this.artistPool.put(artist, artistIndex);
+			}
+			this.mostSigBits[this.size] = id.getMostSignificantBits();
+			this.leastSigBits[this.size] = id.getLeastSignificantBits();
+			this.artists[this.size] = artistIndex.intValue();
+			this.titles[this.size] = title;
+			this.filenames[this.size] = filename;
+			this.lengths[this.size] = (int) Math.min(seconds, Integer.MAX_VALUE);
+			this.size++;
+			return this;
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * Build the database. The builder can still be used afterwards but
+		 * changes won't show up in databases that were already built.
+		 */
+		@Override
+		public CompactSongDb build() {
+			return new CompactSongDb(this);
+		}
+
+		private void grow() {
+			int capacity = this.lengths.length * 2;
+			this.mostSigBits = Arrays.copyOf(this.mostSigBits, capacity);
+			this.leastSigBits = Arrays.copyOf(this.leastSigBits, capacity);
+			this.artists = Arrays.copyOf(this.artists, capacity);
+			this.titles = Arrays.copyOf(this.titles, capacity);
+			this.filenames = Arrays.copyOf(this.filenames, capacity);
+			this.lengths = Arrays.copyOf(this.lengths, capacity);
+		}
+	}
+
+	private class SongList extends AbstractList<Song> {
+		@Override
+		public Song get(int row) {
+			if (row < 0 || row >= CompactSongDb.this.size) {
+				throw new IndexOutOfBoundsException("row " + row);
+			}
+			return new CompactSong(row);
+		}
+
+		@Override
+		public int size() {
+			return CompactSongDb.this.size;
+		}
+	}
+
+	private class CompactSong implements Song {
+		private final int row;
+
+		public CompactSong(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public UUID getId() {
+			return new UUID(CompactSongDb.this.mostSigBits[this.row], CompactSongDb.this.leastSigBits[this.row]);
+		}
+
+		@Override
+		public String getArtist() {
+			return CompactSongDb.this.artistPool[CompactSongDb.this.artists[this.row]];
+		}
+
+		@Override
+		public String getTitle() {
+			return CompactSongDb.this.titles[this.row];
+		}
+
+		@Override
+		public String getFilename() {
+			return CompactSongDb.this.filenames[this.row];
+		}
+
+		@Override
+		public Duration getLength() {
+			return Lengths.ofSeconds(CompactSongDb.this.lengths[this.row]);
+		}
+
+		@Override
+		public String toString() {
+			return formatLength() + " " + getTitle() + " by " + getArtist();
+		}
+
+		private String formatLength() {
+			int length = CompactSongDb.this.lengths[this.row];
+			Integer min = Integer.valueOf(length % 3600 / 60);
+			Integer sec = Integer.valueOf(length % 60);
+			return String.format("%02d:%02d", min, sec);
+		}
+	}
+}
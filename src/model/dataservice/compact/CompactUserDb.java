@@ -0,0 +1,98 @@
+package model.dataservice.compact;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import model.dataservice.User;
+import model.dataservice.UserDb;
+
+/**
+ * A simple in-memory UserDb indexed by both ID and name. User databases are
+ * small so this doesn't try to be clever about memory like CompactSongDb.
+ * Instances are built once with a Builder and never change afterwards.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public final class CompactUserDb implements UserDb {
+	private final Map<UUID, User> usersById;
+	private final Map<String, User> usersByName;
+
+	private CompactUserDb(Builder builder) {
+		this.usersById = new HashMap<>(builder.usersById);
+		this.usersByName = new HashMap<>(builder.usersByName);
+	}
+
+	@Override
+	public User getUserById(UUID id) {
+		return this.usersById.get(id);
+	}
+
+	@Override
+	public User getUserByName(String name) {
+		return this.usersByName.get(name);
+	}
+
+	/**
+	 * Collects users one at a time for a new CompactUserDb. Not thread safe.
+	 */
+	public static final class Builder {
+		private final Map<UUID, User> usersById = new HashMap<>();
+		private final Map<String, User> usersByName = new HashMap<>();
+
+		/**
+		 * Add a user. Duplicate ids or names resolve to the first user added.
+		 * 
+		 * @param id
+		 *            the id of the user
+		 * @param name
+		 *            the name of the user
+		 * @param password
+		 *            the password of the user
+		 * @return this builder
+		 */
+		public Builder add(UUID id, String name, String password) {
+			User user = new CompactUser(id, name, password);
+			this.usersById.putIfAbsent(id, user);
+			this.usersByName.putIfAbsent(name, user);
+			return this;
+		}
+
+		/**
+		 * Build the database.
+		 * 
+		 * @return a new CompactUserDb with all added users
+		 */
+		public CompactUserDb build() {
+			return new CompactUserDb(this);
+		}
+	}
+
+	private static class CompactUser implements User {
+		private final UUID id;
+		private final String name;
+		private final String password;
+
+		public CompactUser(UUID id, String name, String password) {
+			this.id = id;
+			this.name = name;
+			this.password = password;
+		}
+
+		@Override
+		public UUID getId() {
+			return this.id;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public String getPassword() {
+			return this.password;
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package model.dataservice.compact;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import model.dataservice.Lengths;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.SongDbBuilder;
+
+/**
+ * A SongDb that keeps the whole catalog in direct (off-heap) buffers so that
+ * even multi-million song libraries barely show up on the Java heap or in GC
+ * pauses. There are three buffers:
+ *
+ * table   an open addressing hash table keyed by the two longs of the song
+ *         id, each slot holding the key and the row number + 1
+ * records fixed width rows with the id, the artist number, title and file
+ *         name offsets into the string arena and the length in seconds
+ * arena   titles and file names as a length followed by UTF-8 bytes
+ *
+ * Artists repeat a lot, so they are deduplicated into a small on-heap pool
+ * and records only store their number. Songs are flyweights that read from
+ * the buffers on access.
+ *
+ * Instances are built once with a Builder and never change afterwards. The
+ * buffers are released when the database is garbage collected.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public final class OffHeapSongDb implements SongDb {
+	private static final int SLOT_SIZE = 24;
+	private static final int SLOT_ROW = 16;
+
+	private static final int RECORD_SIZE = 32;
+	private static final int RECORD_ARTIST = 16;
+	private static final int RECORD_TITLE = 20;
+	private static final int RECORD_FILENAME = 24;
+	private static final int RECORD_LENGTH = 28;
+
+	private final int size;
+	private final ByteBuffer table;
+	private final int mask;
+	private final ByteBuffer records;
+	private final ByteBuffer arena;
+	private final String[] artistPool;
+	private final List<Song> songs;
+
+	private OffHeapSongDb(Builder builder) {
+		this.size = builder.size;
+		this.records = copy(builder.records, this.size * RECORD_SIZE);
+		this.arena = copy(builder.arena, builder.arena.position());
+		this.artistPool = builder.artists.toArray(new String[0]);
+
+		int capacity = Integer.highestOneBit(Math.max(this.size, 1) * 2 - 1) << 1;
+		this.table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+		this.mask = capacity - 1;
+		for (int row = 0; row < this.size; row++) {
+			long msb = this.records.getLong(row * RECORD_SIZE);
+			long lsb = this.records.getLong(row * RECORD_SIZE + 8);
+			int slot = slotFor(msb, lsb);
+			if (slot < 0) {
+				int offset = ~slot * SLOT_SIZE;
+				this.table.putLong(offset, msb);
+				this.table.putLong(offset + 8, lsb);
+				this.table.putInt(offset + SLOT_ROW, row + 1);
+			}
+		}
+
+		this.songs = new SongList();
+	}
+
+	@Override
+	public List<Song> getSongs() {
+		return this.songs;
+	}
+
+	@Override
+	public Song getSongById(UUID id) {
+		int slot = slotFor(id.getMostSignificantBits(), id.getLeastSignificantBits());
+		return slot < 0 ? null : new OffHeapSong(this.table.getInt(slot * SLOT_SIZE + SLOT_ROW) - 1);
+	}
+
+	/**
+	 * Get the number of bytes this database holds outside of the Java heap.
+	 *
+	 * @return the size of all direct buffers in bytes
+	 */
+	public long getOffHeapBytes() {
+		return (long) this.table.capacity() + this.records.capacity() + this.arena.capacity();
+	}
+
+	/**
+	 * Find the table slot holding the given id. Returns the slot if the id is
+	 * present, otherwise the bitwise complement of the empty slot where it
+	 * would go.
+	 */
+	private int slotFor(long msb, long lsb) {
+		int slot = hash(msb, lsb) & this.mask;
+		while (true) {
+			int offset = slot * SLOT_SIZE;
+			if (this.table.getInt(offset + SLOT_ROW) == 0) {
+				return ~slot;
+			}
+			if (this.table.getLong(offset) == msb && this.table.getLong(offset + 8) == lsb) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+	}
+
+	private String readString(int offset) {
+		byte[] bytes = new byte[this.arena.getInt(offset)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.arena.get(offset + 4 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int hash(long msb, long lsb) {
+		long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+		h ^= h >>> 32;
+		return (int) (h ^ h >>> 16);
+	}
+
+	private static ByteBuffer copy(ByteBuffer source, int length) {
+		ByteBuffer copy = ByteBuffer.allocateDirect(length);
+		ByteBuffer slice = source.duplicate();
+		slice.position(0).limit(length);
+		copy.put(slice);
+		return copy;
+	}
+
+	/**
+	 * Collects songs one at a time for a new OffHeapSongDb. Songs are written
+	 * into direct buffers as they are added, so building doesn't hold a
+	 * second copy of the catalog on the heap. Not thread safe.
+	 */
+	public static final class Builder implements SongDbBuilder {
+		private int size;
+		private ByteBuffer records = ByteBuffer.allocateDirect(1024 * RECORD_SIZE);
+		private ByteBuffer arena = ByteBuffer.allocateDirect(64 * 1024);
+		private final List<String> artists = new ArrayList<>();
+		private final Map<String, Integer> artistNumbers = new HashMap<>();
+
+		@Override
+		public Builder add(UUID id, String artist, String title, String filename, long seconds) {
+			if (this.records.remaining() < RECORD_SIZE) {
+				this.records = grow(this.records, RECORD_SIZE);
+			}
+			Integer artistNumber = this.artistNumbers.get(artist);
+			if (artistNumber == null) {
+				artistNumber = Integer.valueOf(this.artists.size());
+				this.artistNumbers.put(artist, artistNumber);
+				this.artists.add(artist);
+			}
+			this.records.putLong(id.getMostSignificantBits());
+			this.records.putLong(id.getLeastSignificantBits());
+			this.records.putInt(artistNumber.intValue());
+			this.records.putInt(intern(title));
+			this.records.putInt(intern(filename));
+			this.records.putInt((int) Math.min(seconds, Integer.MAX_VALUE));
+			this.size++;
+			return this;
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * Build the database. The builder can still be used afterwards but
+		 * changes won't show up in databases that were already built.
+		 */
+		@Override
+		public OffHeapSongDb build() {
+			return new OffHeapSongDb(this);
+		}
+
+		private int intern(String string) {
+			byte[] bytes = (string == null ? "" : string).getBytes(StandardCharsets.UTF_8);
+			if (this.arena.remaining() < 4 + bytes.length) {
+				this.arena = grow(this.arena, 4 + bytes.length);
+			}
+			int offset = this.arena.position();
+			this.arena.putInt(bytes.length);
+			this.arena.put(bytes);
+			return offset;
+		}
+
+		private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+			long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + needed);
+			if (capacity > Integer.MAX_VALUE) {
+				throw new IllegalStateException("catalog is too large");
+			}
+			ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+			buffer.flip();
+			grown.put(buffer);
+			return grown;
+		}
+	}
+
+	private class SongList extends AbstractList<Song> {
+		@Override
+		public Song get(int row) {
+			if (row < 0 || row >= OffHeapSongDb.this.size) {
+				throw new IndexOutOfBoundsException("row " + row);
+			}
+			return new OffHeapSong(row);
+		}
+
+		@Override
+		public int size() {
+			return OffHeapSongDb.this.size;
+		}
+	}
+
+	private class OffHeapSong implements Song {
+		private final int record;
+
+		public OffHeapSong(int row) {
+			this.record = row * RECORD_SIZE;
+		}
+
+		@Override
+		public UUID getId() {
+			ByteBuffer records = OffHeapSongDb.this.records;
+			return new UUID(records.getLong(this.record), records.getLong(this.record + 8));
+		}
+
+		@Override
+		public String getArtist() {
+			return OffHeapSongDb.this.artistPool[OffHeapSongDb.this.records.getInt(this.record + RECORD_ARTIST)];
+		}
+
+		@Override
+		public String getTitle() {
+			return readString(OffHeapSongDb.this.records.getInt(this.record + RECORD_TITLE));
+		}
+
+		@Override
+		public String getFilename() {
+			return readString(OffHeapSongDb.this.records.getInt(this.record + RECORD_FILENAME));
+		}
+
+		@Override
+		public Duration getLength() {
+			return Lengths.ofSeconds(seconds());
+		}
+
+		@Override
+		public String toString() {
+			return formatLength() + " " + getTitle() + " by " + getArtist();
+		}
+
+		private int seconds() {
+			return OffHeapSongDb.this.records.getInt(this.record + RECORD_LENGTH);
+		}
+
+		private String formatLength() {
+			int length = seconds();
+			Integer min = Integer.valueOf(length % 3600 / 60);
+			Integer sec = Integer.valueOf(length % 60);
+			return String.format("%02d:%02d", min, sec);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package model.dataservice.probe;
+
+import java.time.Duration;
+
+/**
+ * What was learned about one audio file from its header: how long it really
+ * is and what format it is in. A probe is only valid if the file could be
+ * read and its length worked out. Probes remember the size and modification
+ * time of the file they were taken from so they can be reused until the file
+ * changes.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public final class AudioProbe {
+	private final long size;
+	private final long modified;
+	private final boolean valid;
+	private final String format;
+	private final Duration duration;
+
+	/**
+	 * Create a new probe.
+	 * 
+	 * @param size
+	 *            the size of the file in bytes
+	 * @param modified
+	 *            when the file was last modified, in milliseconds
+	 * @param valid
+	 *            true if the file could be read and its length worked out
+	 * @param format
+	 *            a description of the audio format, or of why it is invalid
+	 * @param duration
+	 *            the length of the audio, zero if it isn't valid
+	 */
+	public AudioProbe(long size, long modified, boolean valid, String format, Duration duration) {
+		this.size = size;
+		this.modified = modified;
+		this.valid = valid;
+		this.format = format;
+		this.duration = duration;
+	}
+
+	/**
+	 * Get the size of the file probed.
+	 * 
+	 * @return the size in bytes
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Get when the file probed was last modified.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public long getModified() {
+		return this.modified;
+	}
+
+	/**
+	 * Could the file be read and its length worked out?
+	 * 
+	 * @return true if valid
+	 */
+	public boolean isValid() {
+		return this.valid;
+	}
+
+	/**
+	 * Get the audio format, or why the file couldn't be probed.
+	 * 
+	 * @return the description
+	 */
+	public String getFormat() {
+		return this.format;
+	}
+
+	/**
+	 * Get the exact length of the audio.
+	 * 
+	 * @return the length, zero if the probe isn't valid
+	 */
+	public Duration getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * Was this probe taken from the file as it is now?
+	 * 
+	 * @param size
+	 *            the size of the file now
+	 * @param modified
+	 *            the modification time of the file now
+	 * @return true if the file hasn't changed
+	 */
+	public boolean isCurrent(long size, long modified) {
+		return this.size == size && this.modified == modified;
+	}
+
+	@Override
+	public String toString() {
+		return (this.valid ? "" : "invalid ") + this.format + " " + this.duration;
+	}
+}
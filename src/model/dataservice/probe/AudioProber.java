@@ -0,0 +1,244 @@
+package model.dataservice.probe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Works out how long audio files really are by reading only their headers.
+ * Files are probed in parallel on a fork join pool. Probes are kept in a cache
+ * file keyed by path, size and modification time, so after the first run only
+ * new and changed files are read again.
+ *
+ * Lengths come from the frame count in the header or, for compressed formats
+ * whose decoders know it without decoding, the duration property of the
+ * file. Files that can't be read, or whose length can't be told from the
+ * header, get an invalid probe.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class AudioProber {
+	private static final int MAGIC = 0x4A425052;
+	private static final int VERSION = 1;
+	// files per task before a batch is probed instead of split further
+	private static final int BATCH_SIZE = 4;
+	private static final Logger LOGGER = Logger.getLogger(AudioProber.class.getName());
+
+	private final File cacheFile;
+	private final ForkJoinPool pool;
+	private final Map<String, AudioProbe> probes = new HashMap<>();
+	private boolean loaded;
+
+	/**
+	 * Create a new prober using the common fork join pool.
+	 * 
+	 * @param cacheFile
+	 *            where probes are kept between runs, may be null to keep them
+	 *            only in memory
+	 */
+	public AudioProber(File cacheFile) {
+		this(cacheFile, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a new prober.
+	 * 
+	 * @param cacheFile
+	 *            where probes are kept between runs, may be null to keep them
+	 *            only in memory
+	 * @param pool
+	 *            the pool to probe files on
+	 */
+	public AudioProber(File cacheFile, ForkJoinPool pool) {
+		this.cacheFile = cacheFile;
+		this.pool = pool;
+	}
+
+	/**
+	 * Probe audio files, reusing probes of files that haven't changed, and
+	 * save the cache if anything new was probed.
+	 * 
+	 * @param files
+	 *            the files to probe
+	 * @return the probe of every file, by the file's absolute path
+	 */
+	public synchronized Map<String, AudioProbe> probe(Collection<File> files) {
+		if (!this.loaded) {
+			loadCache();
+			this.loaded = true;
+		}
+		Map<String, AudioProbe> result = new HashMap<>();
+		List<File> stale = new ArrayList<>();
+		for (File file : new LinkedHashSet<>(files)) {
+			String path = file.getAbsolutePath();
+			AudioProbe cached = this.probes.get(path);
+			if (cached != null && cached.isCurrent(file.length(), file.lastModified())) {
+				result.put(path, cached);
+			} else {
+				stale.add(file);
+			}
+		}
+
+		if (!stale.isEmpty()) {
+			AudioProbe[] probed = new AudioProbe[stale.size()];
+			this.pool.invoke(new ProbeTask(stale, probed, 0, probed.length));
+			for (int i = 0; i < probed.length; i++) {
+				String path = stale.get(i).getAbsolutePath();
+				this.probes.put(path, probed[i]);
+				result.put(path, probed[i]);
+			}
+			if (LOGGER.isLoggable(Level.FINE)) {
+				LOGGER.fine("probed " + stale.size() + " audio files, " + result.size() + " total");
+			}
+			saveCache();
+		}
+		return result;
+	}
+
+	/**
+	 * Probe a single file by reading its header.
+	 * 
+	 * @param file
+	 *            the file to probe
+	 * @return what was found
+	 */
+	public static AudioProbe probe(File file) {
+		long size = file.length();
+		long modified = file.lastModified();
+		try {
+			AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+			AudioFormat format = fileFormat.getFormat();
+			long frames = fileFormat.getFrameLength();
+			float rate = format.getFrameRate();
+			if (frames != AudioSystem.NOT_SPECIFIED && rate > 0) {
+				return new AudioProbe(size, modified, true, format.toString(),
+						Duration.ofNanos((long) (frames / (double) rate * 1e9)));
+			}
+			Object micros = fileFormat.properties().get("duration");
+			if (micros instanceof Long) {
+				return new AudioProbe(size, modified, true, format.toString(),
+						Duration.ofNanos(((Long) micros).longValue() * 1000));
+			}
+			return new AudioProbe(size, modified, false, format.toString(), Duration.ZERO);
+		} catch (IOException | UnsupportedAudioFileException e) {
+			return new AudioProbe(size, modified, false, String.valueOf(e.getMessage()), Duration.ZERO);
+		}
+	}
+
+	private void loadCache() {
+		if (this.cacheFile == null || !this.cacheFile.isFile()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(this.cacheFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return;
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				AudioProbe probe = new AudioProbe(in.readLong(), in.readLong(), in.readBoolean(), in.readUTF(),
+						Duration.ofNanos(in.readLong()));
+				this.probes.put(path, probe);
+			}
+		} catch (EOFException e) {
+			// a cut off cache only costs probing those files again
+		} catch (IOException e) {
+			if (LOGGER.isLoggable(Level.WARNING)) {
+				LOGGER.warning("couldn't read probe cache: " + e.getMessage());
+			}
+		}
+	}
+
+	private void saveCache() {
+		if (this.cacheFile == null) {
+			return;
+		}
+		try {
+			File dir = this.cacheFile.getAbsoluteFile().getParentFile();
+			File tmp = File.createTempFile(this.cacheFile.getName(), ".tmp", dir);
+			try {
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(tmp)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(this.probes.size());
+					for (Map.Entry<String, AudioProbe> entry : this.probes.entrySet()) {
+						AudioProbe probe = entry.getValue();
+						out.writeUTF(entry.getKey());
+						out.writeLong(probe.getSize());
+						out.writeLong(probe.getModified());
+						out.writeBoolean(probe.isValid());
+						out.writeUTF(probe.getFormat());
+						out.writeLong(probe.getDuration().toNanos());
+					}
+				}
+				Files.move(tmp.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp.toPath());
+			}
+		} catch (IOException e) {
+			if (LOGGER.isLoggable(Level.WARNING)) {
+				LOGGER.warning("couldn't write probe cache: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Probes a range of files, splitting it in half until it is small.
+	 */
+	private static class ProbeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> files;
+		private final AudioProbe[] probes;
+		private final int from;
+		private final int to;
+
+		public ProbeTask(List<File> files, AudioProbe[] probes, int from, int to) {
+			this.files = files;
+			this.probes = probes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= BATCH_SIZE) {
+				for (int i = this.from; i < this.to; i++) {
+					this.probes[i] = probe(this.files.get(i));
+				}
+			} else {
+				int middle = (this.from + this.to) >>> 1;
+				invokeAll(new ProbeTask(this.files, this.probes, this.from, middle),
+						new ProbeTask(this.files, this.probes, middle, this.to));
+			}
+		}
+	}
+}
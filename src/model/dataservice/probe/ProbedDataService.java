@@ -0,0 +1,187 @@
+package model.dataservice.probe;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.UserDb;
+
+/**
+ * A DataService that corrects the lengths of the songs in another one. The
+ * first time the songs are read every song file is probed with an
+ * AudioProber, and songs whose file could be probed get its exact length
+ * instead of the one typed into the catalog. Songs whose file is missing or
+ * can't be probed keep the length from the catalog.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class ProbedDataService implements DataService {
+	private static final Logger LOGGER = Logger.getLogger(ProbedDataService.class.getName());
+
+	private final DataService dataService;
+	private final File songDir;
+	private final AudioProber prober;
+
+	private SongDb songDbInstance;
+	private Map<UUID, AudioProbe> probes;
+
+	/**
+	 * Create a new ProbedDataService.
+	 * 
+	 * @param dataService
+	 *            where the catalog comes from
+	 * @param songDir
+	 *            the directory holding the song files
+	 * @param prober
+	 *            what probes the song files
+	 */
+	public ProbedDataService(DataService dataService, File songDir, AudioProber prober) {
+		this.dataService = dataService;
+		this.songDir = songDir;
+		this.prober = prober;
+	}
+
+	@Override
+	public SongDb readSongDb() throws DataServiceException {
+		if (this.songDbInstance == null) {
+			SongDb songDb = this.dataService.readSongDb();
+			List<Song> songs = songDb.getSongs();
+			List<File> files = new ArrayList<>(songs.size());
+			for (Song song : songs) {
+				files.add(new File(this.songDir, song.getFilename()));
+			}
+			Map<String, AudioProbe> byPath = this.prober.probe(files);
+
+			Map<UUID, AudioProbe> byId = new HashMap<>();
+			Map<UUID, Song> corrected = new HashMap<>();
+			for (int i = 0; i < songs.size(); i++) {
+				Song song = songs.get(i);
+				AudioProbe probe = byPath.get(files.get(i).getAbsolutePath());
+				byId.put(song.getId(), probe);
+				if (!probe.isValid()) {
+					if (LOGGER.isLoggable(Level.WARNING)) {
+						LOGGER.warning("couldn't probe " + song.getFilename() + ": " + probe.getFormat());
+					}
+				} else if (!probe.getDuration().equals(song.getLength())) {
+					corrected.put(song.getId(), new ProbedSong(song, probe.getDuration()));
+				}
+			}
+			if (LOGGER.isLoggable(Level.INFO) && !corrected.isEmpty()) {
+				LOGGER.info("corrected the length of " + corrected.size() + " of " + songs.size() + " songs");
+			}
+			this.probes = byId;
+			this.songDbInstance = new ProbedSongDb(songDb, corrected);
+		}
+		return this.songDbInstance;
+	}
+
+	@Override
+	public UserDb readUserDb() throws DataServiceException {
+		return this.dataService.readUserDb();
+	}
+
+	/**
+	 * Get what was learned about a song's file.
+	 * 
+	 * @param id
+	 *            the id of the song
+	 * @return the probe of its file, or null if the songs haven't been read
+	 *         or there is no such song
+	 */
+	public AudioProbe getProbe(UUID id) {
+		return this.probes == null ? null : this.probes.get(id);
+	}
+
+	private static class ProbedSongDb implements SongDb {
+		private final SongDb songDb;
+		private final Map<UUID, Song> corrected;
+
+		public ProbedSongDb(SongDb songDb, Map<UUID, Song> corrected) {
+			this.songDb = songDb;
+			this.corrected = corrected;
+		}
+
+		@Override
+		public List<Song> getSongs() {
+			return correct(this.songDb.getSongs());
+		}
+
+		@Override
+		public Song getSongById(UUID id) {
+			Song song = this.corrected.get(id);
+			return song != null ? song : this.songDb.getSongById(id);
+		}
+
+		@Override
+		public int getSongCount() {
+			return this.songDb.getSongCount();
+		}
+
+		@Override
+		public List<Song> getSongs(int offset, int limit) {
+			return correct(this.songDb.getSongs(offset, limit));
+		}
+
+		private List<Song> correct(List<Song> songs) {
+			List<Song> result = new ArrayList<>(songs.size());
+			for (Song song : songs) {
+				Song fixed = this.corrected.get(song.getId());
+				result.add(fixed != null ? fixed : song);
+			}
+			return result;
+		}
+	}
+
+	private static class ProbedSong implements Song {
+		private final Song song;
+		private final Duration length;
+
+		public ProbedSong(Song song, Duration length) {
+			this.song = song;
+			this.length = length;
+		}
+
+		@Override
+		public UUID getId() {
+			return this.song.getId();
+		}
+
+		@Override
+		public String getArtist() {
+			return this.song.getArtist();
+		}
+
+		@Override
+		public String getTitle() {
+			return this.song.getTitle();
+		}
+
+		@Override
+		public String getFilename() {
+			return this.song.getFilename();
+		}
+
+		@Override
+		public Duration getLength() {
+			return this.length;
+		}
+
+		@Override
+		public String toString() {
+			long seconds = this.length.getSeconds();
+			return String.format("%02d:%02d %s by %s", Long.valueOf(seconds % 3600 / 60), Long.valueOf(seconds % 60),
+					getTitle(), getArtist());
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package model.dataservice.reload;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+
+/**
+ * The difference between two versions of the song catalog, in terms of
+ * positions in their getSongs lists. Removed rows are positions in the old
+ * list, added and changed rows are positions in the new list. All three are
+ * sorted.
+ * 
+ * If the songs that are in both versions kept their relative order, the new
+ * list is exactly the old list with the removed rows taken out and the added
+ * rows put in, so views can update just those rows. Otherwise the change is
+ * marked as reordered and views should start over.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class CatalogChange {
+	private final SongDb oldSongDb;
+	private final SongDb newSongDb;
+	private final int[] removedRows;
+	private final List<UUID> removedIds;
+	private final int[] addedRows;
+	private final int[] changedRows;
+	private final boolean reordered;
+
+	private CatalogChange(SongDb oldSongDb, SongDb newSongDb, int[] removedRows, List<UUID> removedIds,
+			int[] addedRows, int[] changedRows, boolean reordered) {
+		this.oldSongDb = oldSongDb;
+		this.newSongDb = newSongDb;
+		this.removedRows = removedRows;
+		this.removedIds = removedIds;
+		this.addedRows = addedRows;
+		this.changedRows = changedRows;
+		this.reordered = reordered;
+	}
+
+	/**
+	 * Work out what changed between two song databases. Songs are matched up
+	 * by id and count as changed when any of their fields differ.
+	 * 
+	 * @param oldSongDb
+	 *            the catalog before the reload
+	 * @param newSongDb
+	 *            the catalog after the reload
+	 * @return the difference between them
+	 */
+	public static CatalogChange between(SongDb oldSongDb, SongDb newSongDb) {
+		List<Song> oldSongs = oldSongDb.getSongs();
+		List<Song> newSongs = newSongDb.getSongs();
+		Map<UUID, Integer> newRows = new HashMap<>(newSongs.size() * 4 / 3 + 1);
+		for (int row = 0; row < newSongs.size(); row++) {
+			newRows.putIfAbsent(newSongs.get(row).getId(), Integer.valueOf(row));
+		}
+
+		boolean[] kept = new boolean[newSongs.size()];
+		IntArray removed = new IntArray();
+		// rows dropped for repeating an id that is still there don't count
+		LinkedHashSet<UUID> removedIds = new LinkedHashSet<>();
+		IntArray changed = new IntArray();
+		boolean reordered = false;
+		int lastRow = -1;
+		for (int row = 0; row < oldSongs.size(); row++) {
+			Song oldSong = oldSongs.get(row);
+			Integer newRow = newRows.get(oldSong.getId());
+			if (newRow == null || kept[newRow.intValue()]) {
+				removed.add(row);
+				if (newRow == null) {
+					removedIds.add(oldSong.getId());
+				}
+				continue;
+			}
+			int n = newRow.intValue();
+			kept[n] = true;
+			reordered |= n < lastRow;
+			lastRow = n;
+			if (!same(oldSong, newSongs.get(n))) {
+				changed.add(n);
+			}
+		}
+		IntArray added = new IntArray();
+		for (int row = 0; row < kept.length; row++) {
+			if (!kept[row]) {
+				added.add(row);
+			}
+		}
+		int[] changedRows = changed.toArray();
+		Arrays.sort(changedRows);
+		return new CatalogChange(oldSongDb, newSongDb, removed.toArray(),
+				Collections.unmodifiableList(new ArrayList<>(removedIds)), added.toArray(), changedRows, reordered);
+	}
+
+	/**
+	 * Is there anything in this change at all?
+	 * 
+	 * @return true if no songs were added, removed, changed or moved
+	 */
+	public boolean isEmpty() {
+		return this.removedRows.length == 0 && this.addedRows.length == 0 && this.changedRows.length == 0
+				&& !this.reordered;
+	}
+
+	/**
+	 * Get the catalog before the reload.
+	 * 
+	 * @return the old song database
+	 */
+	public SongDb getOldSongDb() {
+		return this.oldSongDb;
+	}
+
+	/**
+	 * Get the catalog after the reload.
+	 * 
+	 * @return the new song database
+	 */
+	public SongDb getNewSongDb() {
+		return this.newSongDb;
+	}
+
+	/**
+	 * Get the positions of removed songs in the old list.
+	 * 
+	 * @return sorted rows of the old list
+	 */
+	public int[] getRemovedRows() {
+		return this.removedRows.clone();
+	}
+
+	/**
+	 * Get the positions of added songs in the new list.
+	 * 
+	 * @return sorted rows of the new list
+	 */
+	public int[] getAddedRows() {
+		return this.addedRows.clone();
+	}
+
+	/**
+	 * Get the positions of changed songs in the new list.
+	 * 
+	 * @return sorted rows of the new list
+	 */
+	public int[] getChangedRows() {
+		return this.changedRows.clone();
+	}
+
+	/**
+	 * Did songs that are in both versions change their relative order?
+	 * 
+	 * @return true if row positions can't be updated one by one
+	 */
+	public boolean isReordered() {
+		return this.reordered;
+	}
+
+	/**
+	 * Get the ids of all songs that are no longer in the catalog, each once.
+	 * A row dropped only because it repeated the id of another song isn't
+	 * counted, since that song is still there.
+	 * 
+	 * @return the removed ids, in the order of the old list
+	 */
+	public List<UUID> getRemovedIds() {
+		return this.removedIds;
+	}
+
+	/**
+	 * Get every song that was added or changed, as it is in the new catalog.
+	 * 
+	 * @return the added and changed songs
+	 */
+	public List<Song> getAddedOrChangedSongs() {
+		List<Song> songs = new ArrayList<>(this.addedRows.length + this.changedRows.length);
+		for (int row : this.addedRows) {
+			songs.add(this.newSongDb.getSongs().get(row));
+		}
+		for (int row : this.changedRows) {
+			songs.add(this.newSongDb.getSongs().get(row));
+		}
+		return songs;
+	}
+
+	private static boolean same(Song a, Song b) {
+		return Objects.equals(a.getArtist(), b.getArtist()) && Objects.equals(a.getTitle(), b.getTitle())
+				&& Objects.equals(a.getFilename(), b.getFilename()) && Objects.equals(a.getLength(), b.getLength());
+	}
+
+	private static class IntArray {
+		private int[] data = new int[8];
+		private int size;
+
+		public void add(int value) {
+			if (this.size == this.data.length) {
+				this.data = Arrays.copyOf(this.data, this.size * 2);
+			}
+			this.data[this.size++] = value;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(this.data, this.size);
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package model.dataservice.reload;
+
+/**
+ * A listener for changes to a live catalog. Called from the thread that did
+ * the reload, after the new catalog is already in place.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public interface CatalogListener {
+	/**
+	 * Called once for every reload that changed the song catalog.
+	 * 
+	 * @param change
+	 *            what changed
+	 */
+	public void catalogChanged(CatalogChange change);
+}
@@ -0,0 +1,298 @@
+package model.dataservice.reload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.SongOrder;
+import model.dataservice.User;
+import model.dataservice.UserDb;
+
+/**
+ * A DataService that watches its source files and reloads the catalog when
+ * they change, without restarting the jukebox. The databases it hands out
+ * never change identity: they forward every call to whatever catalog is
+ * current, and a reload swaps the catalog in with a single volatile write. A
+ * lookup running during a reload just sees the old catalog or the new one,
+ * never something in between, and never waits.
+ *
+ * Reloading happens on a background thread. Changes to the files are
+ * debounced so an editor saving in several steps causes one reload. If the
+ * new files can't be read the old catalog stays in place. Listeners get a
+ * CatalogChange describing exactly which songs changed.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class ReloadingDataService implements DataService {
+	private static final long QUIET_MILLIS = 250;
+	private static final Logger LOGGER = Logger.getLogger(ReloadingDataService.class.getName());
+
+	private final Loader loader;
+	private final File[] files;
+	private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile SongDb songDb;
+	private volatile UserDb userDb;
+	private final SongDb songDbProxy = new LiveSongDb();
+	private final UserDb userDbProxy = new LiveUserDb();
+
+	private WatchService watchService;
+	private Thread watcher;
+
+	/**
+	 * Opens a fresh DataService for the current contents of the files. It is
+	 * called once up front and once for every reload, so it must not hand back
+	 * a service that caches old data.
+	 */
+	public interface Loader {
+		/**
+		 * Open a DataService over the files as they are right now.
+		 *
+		 * @return a new DataService
+		 * @throws DataServiceException
+		 *             thrown when the files can't be read
+		 */
+		public DataService load() throws DataServiceException;
+	}
+
+	/**
+	 * Create a new ReloadingDataService. Nothing is read until a database is
+	 * asked for, and nothing is watched until start is called.
+	 *
+	 * @param loader
+	 *            opens a DataService over the current files
+	 * @param files
+	 *            the files to watch for changes
+	 */
+	public ReloadingDataService(Loader loader, File... files) {
+		this.loader = loader;
+		this.files = files.clone();
+	}
+
+	@Override
+	public synchronized SongDb readSongDb() throws DataServiceException {
+		if (this.songDb == null) {
+			load();
+		}
+		return this.songDbProxy;
+	}
+
+	@Override
+	public synchronized UserDb readUserDb() throws DataServiceException {
+		if (this.userDb == null) {
+			load();
+		}
+		return this.userDbProxy;
+	}
+
+	/**
+	 * Add a listener for catalog changes.
+	 *
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addCatalogListener(CatalogListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener for catalog changes.
+	 *
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removeCatalogListener(CatalogListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Start watching the files for changes.
+	 *
+	 * @throws DataServiceException
+	 *             thrown when the files can't be watched
+	 */
+	public synchronized void start() throws DataServiceException {
+		if (this.watcher != null) {
+			return;
+		}
+		Set<Path> dirs = new HashSet<>();
+		try {
+			this.watchService = FileSystems.getDefault().newWatchService();
+			for (File file : this.files) {
+				Path dir = file.getAbsoluteFile().getParentFile().toPath();
+				if (dirs.add(dir)) {
+					dir.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_MODIFY);
+				}
+			}
+		} catch (IOException e) {
+			throw new DataServiceException("couldn't watch data files");
+		}
+		this.watcher = new Thread(this::watch, "catalog-reloader");
+		this.watcher.setDaemon(true);
+		this.watcher.start();
+	}
+
+	/**
+	 * Stop watching the files. The current catalog stays usable.
+	 */
+	public synchronized void stop() {
+		if (this.watcher != null) {
+			this.watcher.interrupt();
+			try {
+				this.watchService.close();
+			} catch (IOException e) {
+				// nothing left to clean up
+			}
+			this.watcher = null;
+		}
+	}
+
+	/**
+	 * Reload the catalog right away and tell listeners what changed. The
+	 * watcher calls this after the files change; it is public so a reload
+	 * can also be forced.
+	 *
+	 * @throws DataServiceException
+	 *             thrown when the files can't be read, in which case the old
+	 *             catalog is kept
+	 */
+	public void reload() throws DataServiceException {
+		CatalogChange change;
+		synchronized (this) {
+			SongDb oldSongDb = this.songDb;
+			load();
+			if (oldSongDb == null) {
+				return;
+			}
+			change = CatalogChange.between(oldSongDb, this.songDb);
+		}
+		if (!change.isEmpty()) {
+			for (CatalogListener listener : this.listeners) {
+				try {
+					listener.catalogChanged(change);
+				} catch (RuntimeException e) {
+					// the others still need to hear about it
+					if (LOGGER.isLoggable(Level.WARNING)) {
+						LOGGER.warning("catalog listener failed: " + e);
+					}
+				}
+			}
+		}
+	}
+
+	private synchronized void load() throws DataServiceException {
+		DataService dataService = this.loader.load();
+		SongDb newSongDb = dataService.readSongDb();
+		UserDb newUserDb = dataService.readUserDb();
+		this.userDb = newUserDb;
+		this.songDb = newSongDb;
+	}
+
+	private void watch() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				if (!isRelevant(this.watchService.take())) {
+					continue;
+				}
+				// wait for the files to settle before reading them
+				WatchKey key;
+				while ((key = this.watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					isRelevant(key);
+				}
+				try {
+					reload();
+				} catch (DataServiceException e) {
+					if (LOGGER.isLoggable(Level.WARNING)) {
+						LOGGER.warning("catalog reload failed, keeping the old catalog: " + e.getMessage());
+					}
+				} catch (RuntimeException e) {
+					// keep watching, the next change may well load
+					if (LOGGER.isLoggable(Level.WARNING)) {
+						LOGGER.warning("catalog reload failed: " + e);
+					}
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// stopped
+		}
+	}
+
+	private boolean isRelevant(WatchKey key) {
+		boolean relevant = false;
+		Path dir = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.context() instanceof Path) {
+				File changed = dir.resolve((Path) event.context()).toFile();
+				for (File file : this.files) {
+					relevant |= file.getAbsoluteFile().equals(changed);
+				}
+			}
+		}
+		key.reset();
+		return relevant;
+	}
+
+	private class LiveSongDb implements SongDb {
+		@Override
+		public List<Song> getSongs() {
+			return ReloadingDataService.this.songDb.getSongs();
+		}
+
+		@Override
+		public Song getSongById(UUID id) {
+			return ReloadingDataService.this.songDb.getSongById(id);
+		}
+
+		@Override
+		public int getSongCount() {
+			return ReloadingDataService.this.songDb.getSongCount();
+		}
+
+		@Override
+		public List<Song> getSongs(int offset, int limit) {
+			return ReloadingDataService.this.songDb.getSongs(offset, limit);
+		}
+
+		@Override
+		public SongDb sorted(SongOrder order, boolean descending) {
+			return ReloadingDataService.this.songDb.sorted(order, descending);
+		}
+
+		@Override
+		public SongDb current() {
+			return ReloadingDataService.this.songDb.current();
+		}
+	}
+
+	private class LiveUserDb implements UserDb {
+		@Override
+		public User getUserById(UUID id) {
+			return ReloadingDataService.this.userDb.getUserById(id);
+		}
+
+		@Override
+		public User getUserByName(String name) {
+			return ReloadingDataService.this.userDb.getUserByName(name);
+		}
+	}
+}
@@ -0,0 +1,347 @@
+package model.dataservice.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.UUID;
+
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.Lengths;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.User;
+import model.dataservice.UserDb;
+
+/**
+ * A DataService that maps a precompiled binary snapshot (see SnapshotWriter)
+ * into memory and serves songs and users straight out of the mapped buffer.
+ * Opening a snapshot only reads the header, so startup time doesn't depend on
+ * the size of the catalog, and the catalog itself lives in the OS page cache
+ * instead of on the Java heap. Songs and users are lightweight views that
+ * decode their fields on access.
+ *
+ * The snapshot is mapped once per instance; both databases share it.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SnapshotDataService implements DataService {
+	private File snapshotFile;
+	private ByteBuffer buffer;
+
+	private SongDb songDbInstance;
+	private UserDb userDbInstance;
+
+	/**
+	 * Create a new SnapshotDataService for the given snapshot file.
+	 * 
+	 * @param snapshotFile
+	 *            where to find the snapshot
+	 */
+	public SnapshotDataService(File snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	@Override
+	public SongDb readSongDb() throws DataServiceException {
+		if (this.songDbInstance == null) {
+			this.songDbInstance = new SnapshotSongDb(map());
+		}
+		return this.songDbInstance;
+	}
+
+	@Override
+	public UserDb readUserDb() throws DataServiceException {
+		if (this.userDbInstance == null) {
+			this.userDbInstance = new SnapshotUserDb(map());
+		}
+		return this.userDbInstance;
+	}
+
+	private ByteBuffer map() throws DataServiceException {
+		if (this.buffer == null) {
+			try (FileChannel channel = FileChannel.open(this.snapshotFile.toPath(), StandardOpenOption.READ)) {
+				ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (mapped.limit() < SnapshotFormat.HEADER_SIZE || mapped.getInt(0) != SnapshotFormat.MAGIC) {
+					throw new DataServiceException("not a catalog snapshot");
+				}
+				if (mapped.getInt(4) != SnapshotFormat.VERSION) {
+					throw new DataServiceException("unsupported catalog snapshot version");
+				}
+				if (!isValid(mapped)) {
+					throw new DataServiceException("damaged catalog snapshot");
+				}
+				this.buffer = mapped;
+			} catch (IOException | IllegalArgumentException e) {
+				throw new DataServiceException("couldn't map catalog snapshot");
+			}
+		}
+		return this.buffer;
+	}
+
+	/**
+	 * Check that the sections the header points at are in order and inside
+	 * the file, that the records fit in theirs and that every index table
+	 * fits in its own and has a free slot, so a lookup always ends. Only the
+	 * header and the table sizes are read.
+	 */
+	private static boolean isValid(ByteBuffer buffer) {
+		int songCount = buffer.getInt(SnapshotFormat.SONG_COUNT);
+		int userCount = buffer.getInt(SnapshotFormat.USER_COUNT);
+		long songs = buffer.getLong(SnapshotFormat.SONGS);
+		long songIndex = buffer.getLong(SnapshotFormat.SONG_INDEX);
+		long users = buffer.getLong(SnapshotFormat.USERS);
+		long userIndex = buffer.getLong(SnapshotFormat.USER_INDEX);
+		long nameIndex = buffer.getLong(SnapshotFormat.NAME_INDEX);
+		long strings = buffer.getLong(SnapshotFormat.STRINGS);
+		if (songCount < 0 || userCount < 0 || songs < SnapshotFormat.HEADER_SIZE || songIndex < songs
+				|| users < songIndex || userIndex < users || nameIndex < userIndex || strings < nameIndex
+				|| strings > buffer.limit()) {
+			return false;
+		}
+		return songs + (long) songCount * SnapshotFormat.SONG_RECORD_SIZE <= songIndex
+				&& isValidTable(buffer, songIndex, songCount, users)
+				&& users + (long) userCount * SnapshotFormat.USER_RECORD_SIZE <= userIndex
+				&& isValidTable(buffer, userIndex, userCount, nameIndex)
+				&& isValidTable(buffer, nameIndex, userCount, strings);
+	}
+
+	private static boolean isValidTable(ByteBuffer buffer, long offset, int entries, long end) {
+		if (offset + 4 > end) {
+			return false;
+		}
+		int capacity = buffer.getInt((int) offset);
+		return capacity > entries && Integer.bitCount(capacity) == 1 && offset + 4 + 4L * capacity <= end;
+	}
+
+	/**
+	 * Read a string out of the pool. Absolute reads only, so views can be used
+	 * from any thread.
+	 */
+	private static String readString(ByteBuffer buffer, int strings, int ref) {
+		int offset = strings + ref;
+		byte[] bytes = new byte[buffer.getInt(offset)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 4 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int offset(ByteBuffer buffer, int header) {
+		return (int) buffer.getLong(header);
+	}
+
+	private static class SnapshotSongDb implements SongDb {
+		private final ByteBuffer buffer;
+		private final int count;
+		private final int songs;
+		private final int index;
+		private final int mask;
+		private final int strings;
+		private final List<Song> songList;
+
+		public SnapshotSongDb(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.count = buffer.getInt(SnapshotFormat.SONG_COUNT);
+			this.songs = offset(buffer, SnapshotFormat.SONGS);
+			this.index = offset(buffer, SnapshotFormat.SONG_INDEX) + 4;
+			this.mask = buffer.getInt(this.index - 4) - 1;
+			this.strings = offset(buffer, SnapshotFormat.STRINGS);
+			this.songList = new AbstractList<Song>() {
+				@Override
+				public Song get(int row) {
+					if (row < 0 || row >= SnapshotSongDb.this.count) {
+						throw new IndexOutOfBoundsException("row " + row);
+					}
+					return new SnapshotSong(row);
+				}
+
+				@Override
+				public int size() {
+					return SnapshotSongDb.this.count;
+				}
+			};
+		}
+
+		@Override
+		public List<Song> getSongs() {
+			return this.songList;
+		}
+
+		@Override
+		public Song getSongById(UUID id) {
+			long msb = id.getMostSignificantBits();
+			long lsb = id.getLeastSignificantBits();
+			int slot = SnapshotFormat.hash(msb, lsb) & this.mask;
+			while (true) {
+				int row = this.buffer.getInt(this.index + 4 * slot) - 1;
+				if (row < 0) {
+					return null;
+				}
+				int record = this.songs + row * SnapshotFormat.SONG_RECORD_SIZE;
+				if (this.buffer.getLong(record) == msb && this.buffer.getLong(record + 8) == lsb) {
+					return new SnapshotSong(row);
+				}
+				slot = (slot + 1) & this.mask;
+			}
+		}
+
+		private class SnapshotSong implements Song {
+			private final int record;
+
+			public SnapshotSong(int row) {
+				this.record = SnapshotSongDb.this.songs + row * SnapshotFormat.SONG_RECORD_SIZE;
+			}
+
+			@Override
+			public UUID getId() {
+				return new UUID(SnapshotSongDb.this.buffer.getLong(this.record),
+						SnapshotSongDb.this.buffer.getLong(this.record + 8));
+			}
+
+			@Override
+			public String getArtist() {
+				return field(SnapshotFormat.SONG_ARTIST);
+			}
+
+			@Override
+			public String getTitle() {
+				return field(SnapshotFormat.SONG_TITLE);
+			}
+
+			@Override
+			public String getFilename() {
+				return field(SnapshotFormat.SONG_FILENAME);
+			}
+
+			@Override
+			public Duration getLength() {
+				return Lengths.ofSeconds(seconds());
+			}
+
+			@Override
+			public String toString() {
+				return formatLength() + " " + getTitle() + " by " + getArtist();
+			}
+
+			private int seconds() {
+				return SnapshotSongDb.this.buffer.getInt(this.record + SnapshotFormat.SONG_LENGTH);
+			}
+
+			private String field(int field) {
+				ByteBuffer buffer = SnapshotSongDb.this.buffer;
+				return readString(buffer, SnapshotSongDb.this.strings, buffer.getInt(this.record + field));
+			}
+
+			private String formatLength() {
+				int length = seconds();
+				Integer min = Integer.valueOf(length % 3600 / 60);
+				Integer sec = Integer.valueOf(length % 60);
+				return String.format("%02d:%02d", min, sec);
+			}
+		}
+	}
+
+	private static class SnapshotUserDb implements UserDb {
+		private final ByteBuffer buffer;
+		private final int users;
+		private final int idIndex;
+		private final int idMask;
+		private final int nameIndex;
+		private final int nameMask;
+		private final int strings;
+
+		public SnapshotUserDb(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.users = offset(buffer, SnapshotFormat.USERS);
+			this.idIndex = offset(buffer, SnapshotFormat.USER_INDEX) + 4;
+			this.idMask = buffer.getInt(this.idIndex - 4) - 1;
+			this.nameIndex = offset(buffer, SnapshotFormat.NAME_INDEX) + 4;
+			this.nameMask = buffer.getInt(this.nameIndex - 4) - 1;
+			this.strings = offset(buffer, SnapshotFormat.STRINGS);
+		}
+
+		@Override
+		public User getUserById(UUID id) {
+			long msb = id.getMostSignificantBits();
+			long lsb = id.getLeastSignificantBits();
+			int slot = SnapshotFormat.hash(msb, lsb) & this.idMask;
+			while (true) {
+				int row = this.buffer.getInt(this.idIndex + 4 * slot) - 1;
+				if (row < 0) {
+					return null;
+				}
+				int record = this.users + row * SnapshotFormat.USER_RECORD_SIZE;
+				if (this.buffer.getLong(record) == msb && this.buffer.getLong(record + 8) == lsb) {
+					return new SnapshotUser(record);
+				}
+				slot = (slot + 1) & this.idMask;
+			}
+		}
+
+		@Override
+		public User getUserByName(String name) {
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			int slot = SnapshotFormat.hash(bytes) & this.nameMask;
+			while (true) {
+				int row = this.buffer.getInt(this.nameIndex + 4 * slot) - 1;
+				if (row < 0) {
+					return null;
+				}
+				int record = this.users + row * SnapshotFormat.USER_RECORD_SIZE;
+				if (nameEquals(this.strings + this.buffer.getInt(record + SnapshotFormat.USER_NAME), bytes)) {
+					return new SnapshotUser(record);
+				}
+				slot = (slot + 1) & this.nameMask;
+			}
+		}
+
+		private boolean nameEquals(int offset, byte[] bytes) {
+			if (this.buffer.getInt(offset) != bytes.length) {
+				return false;
+			}
+			for (int i = 0; i < bytes.length; i++) {
+				if (this.buffer.get(offset + 4 + i) != bytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private class SnapshotUser implements User {
+			private final int record;
+
+			public SnapshotUser(int record) {
+				this.record = record;
+			}
+
+			@Override
+			public UUID getId() {
+				return new UUID(SnapshotUserDb.this.buffer.getLong(this.record),
+						SnapshotUserDb.this.buffer.getLong(this.record + 8));
+			}
+
+			@Override
+			public String getName() {
+				return field(SnapshotFormat.USER_NAME);
+			}
+
+			@Override
+			public String getPassword() {
+				return field(SnapshotFormat.USER_PASSWORD);
+			}
+
+			private String field(int field) {
+				ByteBuffer buffer = SnapshotUserDb.this.buffer;
+				return readString(buffer, SnapshotUserDb.this.strings, buffer.getInt(this.record + field));
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package model.dataservice.snapshot;
+
+/**
+ * Layout constants for the binary catalog snapshot. A snapshot is a single
+ * file that looks like this (all numbers big endian):
+ * 
+ * header     MAGIC, VERSION, song count, user count, then the offsets of
+ *            every section below as longs
+ * songs      fixed width song records: id (two longs), artist, title and
+ *            file name as string pool offsets, length in seconds
+ * song index open addressing table of song row + 1 keyed by id
+ * users      fixed width user records: id (two longs), name and password as
+ *            string pool offsets
+ * user index open addressing table of user row + 1 keyed by id
+ * name index open addressing table of user row + 1 keyed by name
+ * strings    deduplicated strings, each an int byte length and UTF-8 bytes
+ * 
+ * Every index table starts with its capacity, which is a power of two.
+ * Change VERSION whenever this layout changes.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+final class SnapshotFormat {
+	static final int MAGIC = 0x4A425853;
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 64;
+	static final int SONG_COUNT = 8;
+	static final int USER_COUNT = 12;
+	static final int SONGS = 16;
+	static final int SONG_INDEX = 24;
+	static final int USERS = 32;
+	static final int USER_INDEX = 40;
+	static final int NAME_INDEX = 48;
+	static final int STRINGS = 56;
+
+	static final int SONG_RECORD_SIZE = 32;
+	static final int SONG_ARTIST = 16;
+	static final int SONG_TITLE = 20;
+	static final int SONG_FILENAME = 24;
+	static final int SONG_LENGTH = 28;
+
+	static final int USER_RECORD_SIZE = 24;
+	static final int USER_NAME = 16;
+	static final int USER_PASSWORD = 20;
+
+	private SnapshotFormat() {
+		// constants only
+	}
+
+	/**
+	 * Get the capacity of an index table for the given number of entries.
+	 * Tables are kept at most half full.
+	 */
+	static int tableCapacity(int entries) {
+		return Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1;
+	}
+
+	/**
+	 * Hash an id for the song and user index tables.
+	 */
+	static int hash(long msb, long lsb) {
+		long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+		h ^= h >>> 32;
+		return (int) (h ^ h >>> 16);
+	}
+
+	/**
+	 * Hash the UTF-8 bytes of a name for the name index table.
+	 */
+	static int hash(byte[] bytes) {
+		int h = 1;
+		for (byte b : bytes) {
+			h = 31 * h + b;
+		}
+		return h ^ h >>> 16;
+	}
+}
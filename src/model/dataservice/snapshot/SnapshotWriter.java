@@ -0,0 +1,190 @@
+package model.dataservice.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compiles songs and users into a binary snapshot that SnapshotDataService can
+ * map straight into memory. See SnapshotFormat for the layout. Records are
+ * kept in the order they are added, same as the XML databases: records with
+ * a duplicate id are dropped so the first one wins, and users with a
+ * duplicate name are kept but looking the name up finds the first of them.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SnapshotWriter {
+	private final List<long[]> songs = new ArrayList<>();
+	private final List<long[]> users = new ArrayList<>();
+	// null for users whose name an earlier user already has
+	private final List<byte[]> userNameBytes = new ArrayList<>();
+	private final Set<UUID> songIds = new HashSet<>();
+	private final Set<UUID> userIds = new HashSet<>();
+	private final Set<String> userNames = new HashSet<>();
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final List<byte[]> pool = new ArrayList<>();
+	private long poolSize;
+
+	/**
+	 * Add a song to the snapshot.
+	 * 
+	 * @param id
+	 *            the id of the song
+	 * @param artist
+	 *            the artist of the song
+	 * @param title
+	 *            the title of the song
+	 * @param filename
+	 *            the file name of the song
+	 * @param seconds
+	 *            the length of the song in seconds
+	 */
+	public void addSong(UUID id, String artist, String title, String filename, long seconds) {
+		if (this.songIds.add(id)) {
+			this.songs.add(new long[] { id.getMostSignificantBits(), id.getLeastSignificantBits(), intern(artist),
+					intern(title), intern(filename), Math.min(seconds, Integer.MAX_VALUE) });
+		}
+	}
+
+	/**
+	 * Add a user to the snapshot.
+	 * 
+	 * @param id
+	 *            the id of the user
+	 * @param name
+	 *            the name of the user
+	 * @param password
+	 *            the password of the user
+	 */
+	public void addUser(UUID id, String name, String password) {
+		if (name == null) {
+			name = "";
+		}
+		if (this.userIds.add(id)) {
+			this.users.add(new long[] { id.getMostSignificantBits(), id.getLeastSignificantBits(), intern(name),
+					intern(password) });
+			this.userNameBytes.add(this.userNames.add(name) ? name.getBytes(StandardCharsets.UTF_8) : null);
+		}
+	}
+
+	/**
+	 * Write the snapshot. The file is replaced if it exists.
+	 * 
+	 * @param file
+	 *            where to write the snapshot
+	 * @throws IOException
+	 *             thrown when the file can't be written
+	 */
+	public void write(File file) throws IOException {
+		int[] songIndex = buildIdIndex(this.songs);
+		int[] userIndex = buildIdIndex(this.users);
+		int[] nameIndex = buildNameIndex();
+
+		long songsOffset = SnapshotFormat.HEADER_SIZE;
+		long songIndexOffset = songsOffset + (long) this.songs.size() * SnapshotFormat.SONG_RECORD_SIZE;
+		long usersOffset = songIndexOffset + 4L * (songIndex.length + 1);
+		long userIndexOffset = usersOffset + (long) this.users.size() * SnapshotFormat.USER_RECORD_SIZE;
+		long nameIndexOffset = userIndexOffset + 4L * (userIndex.length + 1);
+		long stringsOffset = nameIndexOffset + 4L * (nameIndex.length + 1);
+
+		try (DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			output.writeInt(SnapshotFormat.MAGIC);
+			output.writeInt(SnapshotFormat.VERSION);
+			output.writeInt(this.songs.size());
+			output.writeInt(this.users.size());
+			output.writeLong(songsOffset);
+			output.writeLong(songIndexOffset);
+			output.writeLong(usersOffset);
+			output.writeLong(userIndexOffset);
+			output.writeLong(nameIndexOffset);
+			output.writeLong(stringsOffset);
+
+			for (long[] song : this.songs) {
+				output.writeLong(song[0]);
+				output.writeLong(song[1]);
+				output.writeInt((int) song[2]);
+				output.writeInt((int) song[3]);
+				output.writeInt((int) song[4]);
+				output.writeInt((int) song[5]);
+			}
+			writeTable(output, songIndex);
+			for (long[] user : this.users) {
+				output.writeLong(user[0]);
+				output.writeLong(user[1]);
+				output.writeInt((int) user[2]);
+				output.writeInt((int) user[3]);
+			}
+			writeTable(output, userIndex);
+			writeTable(output, nameIndex);
+			for (byte[] bytes : this.pool) {
+				output.writeInt(bytes.length);
+				output.write(bytes);
+			}
+		}
+	}
+
+	private int intern(String string) {
+		String value = string == null ? "" : string;
+		Integer offset = this.strings.get(value);
+		if (offset == null) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (this.poolSize + 4 + bytes.length > Integer.MAX_VALUE) {
+				throw new IllegalStateException("string pool is full");
+			}
+			offset = Integer.valueOf((int) this.poolSize);
+			this.strings.put(value, offset);
+			this.pool.add(bytes);
+			this.poolSize += 4 + bytes.length;
+		}
+		return offset.intValue();
+	}
+
+	private static int[] buildIdIndex(List<long[]> records) {
+		int[] table = new int[SnapshotFormat.tableCapacity(records.size())];
+		int mask = table.length - 1;
+		for (int row = 0; row < records.size(); row++) {
+			long[] record = records.get(row);
+			int slot = SnapshotFormat.hash(record[0], record[1]) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = row + 1;
+		}
+		return table;
+	}
+
+	private int[] buildNameIndex() {
+		int[] table = new int[SnapshotFormat.tableCapacity(this.users.size())];
+		int mask = table.length - 1;
+		for (int row = 0; row < this.users.size(); row++) {
+			if (this.userNameBytes.get(row) == null) {
+				continue;
+			}
+			int slot = SnapshotFormat.hash(this.userNameBytes.get(row)) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = row + 1;
+		}
+		return table;
+	}
+
+	private static void writeTable(DataOutputStream output, int[] table) throws IOException {
+		output.writeInt(table.length);
+		for (int entry : table) {
+			output.writeInt(entry);
+		}
+	}
+}
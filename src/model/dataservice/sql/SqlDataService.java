@@ -0,0 +1,526 @@
+package model.dataservice.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.Lengths;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.SongOrder;
+import model.dataservice.User;
+import model.dataservice.UserDb;
+
+/**
+ * A DataService backed by an embedded SQL database like H2 or SQLite in file
+ * mode. The driver is picked by the JDBC url, so it only needs to be on the
+ * classpath at runtime. Fill a new database with importCatalog (see
+ * SqlImporter for doing that from the XML files).
+ *
+ * Lookups go through a small pool of connections with prepared statements.
+ * Songs and users that were looked up recently are kept in an LRU cache in
+ * front of the database, so the same few songs being redrawn in the queue
+ * over and over never reach it. The ranged getSongs and getSongCount go
+ * straight to the database; only getSongs without a range loads the whole
+ * catalog, once. A sorted catalog is read with an ORDER BY on the column's
+ * index, a page at a time like the unsorted one.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SqlDataService implements DataService, AutoCloseable {
+	private static final int DEFAULT_CONNECTIONS = 2;
+	private static final int DEFAULT_CACHE_SIZE = 4096;
+	private static final int BATCH_SIZE = 1000;
+
+	private static final String[] SCHEMA = {
+			"CREATE TABLE IF NOT EXISTS songs (ord INTEGER NOT NULL, id CHAR(36) NOT NULL PRIMARY KEY, "
+					+ "artist VARCHAR(255), title VARCHAR(255), filename VARCHAR(255), seconds INTEGER NOT NULL)",
+			"CREATE UNIQUE INDEX IF NOT EXISTS songs_ord ON songs (ord)",
+			"CREATE INDEX IF NOT EXISTS songs_artist ON songs (artist, ord)",
+			"CREATE INDEX IF NOT EXISTS songs_title ON songs (title, ord)",
+			"CREATE INDEX IF NOT EXISTS songs_seconds ON songs (seconds, ord)",
+			"CREATE TABLE IF NOT EXISTS users (ord INTEGER NOT NULL, id CHAR(36) NOT NULL PRIMARY KEY, "
+					+ "name VARCHAR(255), password VARCHAR(255))",
+			"CREATE UNIQUE INDEX IF NOT EXISTS users_ord ON users (ord)",
+			"CREATE INDEX IF NOT EXISTS users_name ON users (name, ord)" };
+
+	private static final String SONG_COLUMNS = "SELECT id, artist, title, filename, seconds FROM songs ";
+	private static final String SONG_BY_ID = SONG_COLUMNS + "WHERE id = ?";
+	// ord is dense from 0, so a page starts at its offset on the index
+	// instead of counting its way past every row before it
+	private static final String SONG_RANGE = SONG_COLUMNS + "WHERE ord >= ? ORDER BY ord LIMIT ?";
+	private static final String ALL_SONGS = SONG_COLUMNS + "ORDER BY ord";
+	// a sorted page has no dense key to start from, so it has to skip rows,
+	// but it walks the column's index to do so
+	private static final String SORTED_RANGE = " LIMIT ? OFFSET ?";
+	private static final String SONG_COUNT = "SELECT COUNT(*) FROM songs";
+	private static final String USER_BY_ID = "SELECT id, name, password FROM users WHERE id = ?";
+	// names aren't unique, and like the XML database the first user with
+	// the name wins
+	private static final String USER_BY_NAME = "SELECT id, name, password FROM users WHERE name = ? "
+			+ "ORDER BY ord LIMIT 1";
+	private static final String INSERT_SONG = "INSERT INTO songs (ord, id, artist, title, filename, seconds) "
+			+ "VALUES (?, ?, ?, ?, ?, ?)";
+	private static final String INSERT_USER = "INSERT INTO users (ord, id, name, password) VALUES (?, ?, ?, ?)";
+
+	private String url;
+	private int connections;
+	private int cacheSize;
+	private StatementPool pool;
+
+	private SongDb songDbInstance;
+	private UserDb userDbInstance;
+
+	/**
+	 * Create a new SqlDataService for the database at the given JDBC url,
+	 * like jdbc:h2:file:resources/catalog or jdbc:sqlite:resources/catalog.db.
+	 *
+	 * @param url
+	 *            the JDBC url of the database
+	 */
+	public SqlDataService(String url) {
+		this(url, DEFAULT_CONNECTIONS, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Create a new SqlDataService with the given number of pooled connections
+	 * and cached rows.
+	 *
+	 * @param url
+	 *            the JDBC url of the database
+	 * @param connections
+	 *            how many connections to keep open
+	 * @param cacheSize
+	 *            how many songs, and how many users, to keep in the row
+	 *            caches
+	 */
+	public SqlDataService(String url, int connections, int cacheSize) {
+		this.url = url;
+		this.connections = connections;
+		this.cacheSize = cacheSize;
+	}
+
+	@Override
+	public synchronized SongDb readSongDb() throws DataServiceException {
+		if (this.songDbInstance == null) {
+			this.songDbInstance = new SqlSongDb(open(), this.cacheSize);
+		}
+		return this.songDbInstance;
+	}
+
+	@Override
+	public synchronized UserDb readUserDb() throws DataServiceException {
+		if (this.userDbInstance == null) {
+			this.userDbInstance = new SqlUserDb(open(), this.cacheSize);
+		}
+		return this.userDbInstance;
+	}
+
+	/**
+	 * Replace everything in the database with the given songs and users. It
+	 * all happens in one transaction, so readers see either the old catalog
+	 * or the new one. Duplicate ids resolve to the first song or user. Users
+	 * with the same name are all kept, but looking the name up finds the
+	 * first one.
+	 * Databases that were already read don't see the new catalog.
+	 *
+	 * @param songs
+	 *            the songs to store, in catalog order
+	 * @param users
+	 *            the users to store, in the order their names resolve
+	 * @throws DataServiceException
+	 *             thrown when the database can't be written
+	 */
+	public void importCatalog(Iterable<? extends Song> songs, Iterable<? extends User> users)
+			throws DataServiceException {
+		try {
+			open().run(session -> {
+				Connection connection = session.getConnection();
+				boolean autoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(false);
+				try (Statement statement = connection.createStatement();
+						PreparedStatement insertSong = connection.prepareStatement(INSERT_SONG);
+						PreparedStatement insertUser = connection.prepareStatement(INSERT_USER)) {
+					statement.executeUpdate("DELETE FROM songs");
+					statement.executeUpdate("DELETE FROM users");
+					insertSongs(insertSong, songs);
+					insertUsers(insertUser, users);
+					connection.commit();
+				} catch (SQLException e) {
+					connection.rollback();
+					throw e;
+				} finally {
+					connection.setAutoCommit(autoCommit);
+				}
+				return null;
+			});
+		} catch (SQLException e) {
+			throw new DataServiceException("couldn't import catalog");
+		}
+	}
+
+	/**
+	 * Close all connections to the database. Databases that were already
+	 * read stop working.
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.pool != null) {
+			this.pool.close();
+			this.pool = null;
+		}
+	}
+
+	private synchronized StatementPool open() throws DataServiceException {
+		if (this.pool == null) {
+			try {
+				this.pool = new StatementPool(this.url, this.connections);
+				this.pool.run(session -> {
+					try (Statement statement = session.getConnection().createStatement()) {
+						for (String sql : SCHEMA) {
+							statement.executeUpdate(sql);
+						}
+					}
+					return null;
+				});
+			} catch (SQLException e) {
+				close();
+				throw new DataServiceException("couldn't open sql db");
+			}
+		}
+		return this.pool;
+	}
+
+	private static void insertSongs(PreparedStatement insert, Iterable<? extends Song> songs) throws SQLException {
+		Set<UUID> seen = new HashSet<>();
+		int ord = 0;
+		for (Song song : songs) {
+			if (!seen.add(song.getId())) {
+				continue;
+			}
+			insert.setInt(1, ord++);
+			insert.setString(2, song.getId().toString());
+			insert.setString(3, song.getArtist());
+			insert.setString(4, song.getTitle());
+			insert.setString(5, song.getFilename());
+			insert.setInt(6, (int) Math.min(song.getLength().getSeconds(), Integer.MAX_VALUE));
+			insert.addBatch();
+			if (ord % BATCH_SIZE == 0) {
+				insert.executeBatch();
+			}
+		}
+		insert.executeBatch();
+	}
+
+	private static void insertUsers(PreparedStatement insert, Iterable<? extends User> users) throws SQLException {
+		Set<UUID> seen = new HashSet<>();
+		int ord = 0;
+		for (User user : users) {
+			if (!seen.add(user.getId())) {
+				continue;
+			}
+			insert.setInt(1, ord++);
+			insert.setString(2, user.getId().toString());
+			insert.setString(3, user.getName());
+			insert.setString(4, user.getPassword());
+			insert.addBatch();
+			if (ord % BATCH_SIZE == 0) {
+				insert.executeBatch();
+			}
+		}
+		insert.executeBatch();
+	}
+
+	private static List<Song> readSongs(PreparedStatement query) throws SQLException {
+		List<Song> songs = new ArrayList<>();
+		try (ResultSet result = query.executeQuery()) {
+			while (result.next()) {
+				songs.add(new SqlSong(UUID.fromString(result.getString(1)), result.getString(2), result.getString(3),
+						result.getString(4), result.getInt(5)));
+			}
+		}
+		return songs;
+	}
+
+	private static User readUser(PreparedStatement query) throws SQLException {
+		try (ResultSet result = query.executeQuery()) {
+			if (!result.next()) {
+				return null;
+			}
+			return new SqlUser(UUID.fromString(result.getString(1)), result.getString(2), result.getString(3));
+		}
+	}
+
+	private static class SqlSongDb implements SongDb {
+		private final StatementPool pool;
+		private final Map<UUID, Song> cache;
+		private List<Song> songs;
+
+		public SqlSongDb(StatementPool pool, int cacheSize) {
+			this.pool = pool;
+			this.cache = new LinkedHashMap<UUID, Song>(cacheSize * 4 / 3 + 1, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<UUID, Song> eldest) {
+					return size() > cacheSize;
+				}
+			};
+		}
+
+		@Override
+		public synchronized List<Song> getSongs() {
+			if (this.songs == null) {
+				this.songs = Collections.unmodifiableList(query(session -> readSongs(session.prepare(ALL_SONGS))));
+			}
+			return this.songs;
+		}
+
+		@Override
+		public Song getSongById(UUID id) {
+			synchronized (this.cache) {
+				Song song = this.cache.get(id);
+				if (song != null) {
+					return song;
+				}
+			}
+			List<Song> found = query(session -> {
+				PreparedStatement statement = session.prepare(SONG_BY_ID);
+				statement.setString(1, id.toString());
+				return readSongs(statement);
+			});
+			if (found.isEmpty()) {
+				return null;
+			}
+			synchronized (this.cache) {
+				this.cache.put(id, found.get(0));
+			}
+			return found.get(0);
+		}
+
+		@Override
+		public int getSongCount() {
+			return query(session -> {
+				try (ResultSet result = session.prepare(SONG_COUNT).executeQuery()) {
+					result.next();
+					return Integer.valueOf(result.getInt(1));
+				}
+			}).intValue();
+		}
+
+		@Override
+		public List<Song> getSongs(int offset, int limit) {
+			return query(session -> {
+				PreparedStatement statement = session.prepare(SONG_RANGE);
+				statement.setInt(1, Math.max(offset, 0));
+				statement.setInt(2, Math.max(limit, 0));
+				return readSongs(statement);
+			});
+		}
+
+		@Override
+		public SongDb sorted(SongOrder order, boolean descending) {
+			return new SortedSqlSongDb(order, descending);
+		}
+
+		private <T> T query(StatementPool.Work<T> work) {
+			try {
+				return this.pool.run(work);
+			} catch (SQLException e) {
+				throw new IllegalStateException("song db query failed", e);
+			}
+		}
+
+		/**
+		 * The same songs sorted by a column. Songs with the same value keep
+		 * the catalog's order, like SongOrder asks for.
+		 */
+		private class SortedSqlSongDb implements SongDb {
+			private final String all;
+			private final String range;
+
+			public SortedSqlSongDb(SongOrder order, boolean descending) {
+				String column;
+				switch (order) {
+				case ARTIST:
+					column = "artist";
+					break;
+				case TITLE:
+					column = "title";
+					break;
+				default:
+					column = "seconds";
+					break;
+				}
+				this.all = SONG_COLUMNS + "ORDER BY " + column + (descending ? " DESC" : "") + ", ord";
+				this.range = this.all + SORTED_RANGE;
+			}
+
+			@Override
+			public List<Song> getSongs() {
+				return query(session -> readSongs(session.prepare(this.all)));
+			}
+
+			@Override
+			public Song getSongById(UUID id) {
+				return SqlSongDb.this.getSongById(id);
+			}
+
+			@Override
+			public int getSongCount() {
+				return SqlSongDb.this.getSongCount();
+			}
+
+			@Override
+			public List<Song> getSongs(int offset, int limit) {
+				return query(session -> {
+					PreparedStatement statement = session.prepare(this.range);
+					statement.setInt(1, Math.max(limit, 0));
+					statement.setInt(2, Math.max(offset, 0));
+					return readSongs(statement);
+				});
+			}
+		}
+	}
+
+	private static class SqlUserDb implements UserDb {
+		private final StatementPool pool;
+		private final Map<UUID, User> usersById;
+
+		public SqlUserDb(StatementPool pool, int cacheSize) {
+			this.pool = pool;
+			this.usersById = new LinkedHashMap<UUID, User>(cacheSize * 4 / 3 + 1, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<UUID, User> eldest) {
+					return size() > cacheSize;
+				}
+			};
+		}
+
+		@Override
+		public User getUserById(UUID id) {
+			synchronized (this.usersById) {
+				User user = this.usersById.get(id);
+				if (user != null) {
+					return user;
+				}
+			}
+			User user = query(USER_BY_ID, id.toString());
+			if (user != null) {
+				synchronized (this.usersById) {
+					this.usersById.put(id, user);
+				}
+			}
+			return user;
+		}
+
+		@Override
+		public User getUserByName(String name) {
+			// always asked fresh since this is what logging in checks
+			return query(USER_BY_NAME, name);
+		}
+
+		private User query(String sql, String key) {
+			try {
+				return this.pool.run(session -> {
+					PreparedStatement statement = session.prepare(sql);
+					statement.setString(1, key);
+					return readUser(statement);
+				});
+			} catch (SQLException e) {
+				throw new IllegalStateException("user db query failed", e);
+			}
+		}
+	}
+
+	private static class SqlSong implements Song {
+		private final UUID id;
+		private final String artist;
+		private final String title;
+		private final String filename;
+		private final int seconds;
+
+		public SqlSong(UUID id, String artist, String title, String filename, int seconds) {
+			this.id = id;
+			this.artist = artist;
+			this.title = title;
+			this.filename = filename;
+			this.seconds = seconds;
+		}
+
+		@Override
+		public UUID getId() {
+			return this.id;
+		}
+
+		@Override
+		public String getArtist() {
+			return this.artist;
+		}
+
+		@Override
+		public String getTitle() {
+			return this.title;
+		}
+
+		@Override
+		public String getFilename() {
+			return this.filename;
+		}
+
+		@Override
+		public Duration getLength() {
+			return Lengths.ofSeconds(this.seconds);
+		}
+
+		@Override
+		public String toString() {
+			Integer min = Integer.valueOf(this.seconds % 3600 / 60);
+			Integer sec = Integer.valueOf(this.seconds % 60);
+			return String.format("%02d:%02d", min, sec) + " " + this.title + " by " + this.artist;
+		}
+	}
+
+	private static class SqlUser implements User {
+		private final UUID id;
+		private final String name;
+		private final String password;
+
+		public SqlUser(UUID id, String name, String password) {
+			this.id = id;
+			this.name = name;
+			this.password = password;
+		}
+
+		@Override
+		public UUID getId() {
+			return this.id;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public String getPassword() {
+			return this.password;
+		}
+	}
+}
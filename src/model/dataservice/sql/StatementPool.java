@@ -0,0 +1,147 @@
+package model.dataservice.sql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed set of connections to one database, each with its own prepared
+ * statements. A statement is prepared the first time a connection runs it and
+ * reused from then on, so the database only parses each query once per
+ * connection. Connections aren't safe to share between threads, so callers
+ * borrow one for the length of a query and wait if they're all busy.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+class StatementPool implements AutoCloseable {
+	private final List<Session> sessions;
+	private final BlockingQueue<Session> idle;
+
+	/**
+	 * Something to run against a borrowed connection.
+	 *
+	 * @param <T>
+	 *            what the work returns
+	 */
+	public interface Work<T> {
+		/**
+		 * Do the work.
+		 *
+		 * @param session
+		 *            the borrowed connection
+		 * @return the result
+		 * @throws SQLException
+		 *             thrown when the database fails
+		 */
+		public T run(Session session) throws SQLException;
+	}
+
+	/**
+	 * Open the connections.
+	 *
+	 * @param url
+	 *            the JDBC url of the database
+	 * @param size
+	 *            how many connections to open
+	 * @throws SQLException
+	 *             thrown when a connection can't be opened
+	 */
+	public StatementPool(String url, int size) throws SQLException {
+		this.sessions = new ArrayList<>(size);
+		this.idle = new ArrayBlockingQueue<>(size);
+		try {
+			for (int i = 0; i < size; i++) {
+				Session session = new Session(DriverManager.getConnection(url));
+				this.sessions.add(session);
+				this.idle.add(session);
+			}
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Borrow a connection, run some work on it and give it back.
+	 *
+	 * @param work
+	 *            what to run
+	 * @return what the work returned
+	 * @throws SQLException
+	 *             thrown when the database fails
+	 */
+	public <T> T run(Work<T> work) throws SQLException {
+		Session session;
+		try {
+			session = this.idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted waiting for a connection");
+		}
+		try {
+			return work.run(session);
+		} finally {
+			this.idle.add(session);
+		}
+	}
+
+	@Override
+	public void close() {
+		for (Session session : this.sessions) {
+			try {
+				session.connection.close();
+			} catch (SQLException e) {
+				// closing anyway
+			}
+		}
+	}
+
+	/**
+	 * A connection and the statements prepared on it.
+	 */
+	public static class Session {
+		private final Connection connection;
+		private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+		private Session(Connection connection) {
+			this.connection = connection;
+		}
+
+		/**
+		 * Get the connection, for work that needs transactions.
+		 *
+		 * @return the connection
+		 */
+		public Connection getConnection() {
+			return this.connection;
+		}
+
+		/**
+		 * Get a prepared statement for some SQL, preparing it the first time.
+		 *
+		 * @param sql
+		 *            the statement
+		 * @return the prepared statement, with its parameters cleared
+		 * @throws SQLException
+		 *             thrown when the statement can't be prepared
+		 */
+		public PreparedStatement prepare(String sql) throws SQLException {
+			PreparedStatement statement = this.statements.get(sql);
+			if (statement == null) {
+				statement = this.connection.prepareStatement(sql);
+				this.statements.put(sql, statement);
+			} else {
+				statement.clearParameters();
+			}
+			return statement;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package model.dataservice.xml;
+
+import java.io.File;
+
+import model.dataservice.DataServiceException;
+
+/**
+ * Command line entry point for compiling the XML databases into a binary
+ * catalog snapshot ahead of time. Usage:
+ * 
+ * SnapshotCompiler SongDb.xml UserDb.xml Catalog.snapshot
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SnapshotCompiler {
+	/**
+	 * Compile the snapshot.
+	 * 
+	 * @param args
+	 *            the song db, user db and snapshot files in that order
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("usage: SnapshotCompiler <song db> <user db> <snapshot>");
+			System.exit(2);
+		}
+		try {
+			new XmlDataService(new File(args[0]), new File(args[1])).compileSnapshot(new File(args[2]));
+		} catch (DataServiceException e) {
+			System.err.println("couldn't compile snapshot: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
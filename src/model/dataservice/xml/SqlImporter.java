@@ -0,0 +1,37 @@
+package model.dataservice.xml;
+
+import java.io.File;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.sql.SqlDataService;
+
+/**
+ * Command line entry point for copying the XML databases into a SQL database
+ * for use with SqlDataService. The JDBC driver for the url must be on the
+ * classpath. Usage:
+ * 
+ * SqlImporter SongDb.xml UserDb.xml jdbc:h2:file:resources/catalog
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SqlImporter {
+	/**
+	 * Import the catalog.
+	 * 
+	 * @param args
+	 *            the song db, user db and JDBC url in that order
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("usage: SqlImporter <song db> <user db> <jdbc url>");
+			System.exit(2);
+		}
+		try (SqlDataService sqlDataService = new SqlDataService(args[2])) {
+			new XmlDataService(new File(args[0]), new File(args[1])).exportTo(sqlDataService);
+		} catch (DataServiceException e) {
+			System.err.println("couldn't import catalog: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package model.dataservice.xml;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.LoadProgressListener;
+import model.dataservice.SongDb;
+import model.dataservice.SongDbBuilder;
+import model.dataservice.UserDb;
+import model.dataservice.compact.CompactSongDb;
+import model.dataservice.compact.CompactUserDb;
+
+/**
+ * A DataService that reads the same XML files as XmlDataService but pulls
+ * them through a StAX parser one element at a time. Nothing like a document
+ * tree is ever built: each song goes straight into a CompactSongDb, so memory
+ * use while loading is the compact store plus a single record. Use this for
+ * big catalogs; the JAXB version is fine for small ones. Pass a different
+ * SongDbBuilder, like OffHeapSongDb.Builder, to change where songs are kept.
+ *
+ * Like XmlDataService, each database is only read once per instance.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class StreamingXmlDataService implements DataService {
+	private static final int PROGRESS_INTERVAL = 10000;
+
+	private File songDbFile;
+	private File userDbFile;
+	private LoadProgressListener progressListener;
+	private Supplier<SongDbBuilder> songDbBuilder;
+
+	private SongDb songDbInstance;
+	private UserDb userDbInstance;
+
+	/**
+	 * Create a new StreamingXmlDataService connected to the specified song and
+	 * user database files.
+	 *
+	 * @param songDbFile
+	 *            where to find the song db
+	 * @param userDbFile
+	 *            where to find the user db
+	 */
+	public StreamingXmlDataService(File songDbFile, File userDbFile) {
+		this(songDbFile, userDbFile, null);
+	}
+
+	/**
+	 * Create a new StreamingXmlDataService that reports progress while
+	 * reading the song database.
+	 *
+	 * @param songDbFile
+	 *            where to find the song db
+	 * @param userDbFile
+	 *            where to find the user db
+	 * @param progressListener
+	 *            gets progress reports while loading songs, may be null
+	 */
+	public StreamingXmlDataService(File songDbFile, File userDbFile, LoadProgressListener progressListener) {
+		this(songDbFile, userDbFile, progressListener, CompactSongDb.Builder::new);
+	}
+
+	/**
+	 * Create a new StreamingXmlDataService that stores songs with the given
+	 * kind of SongDbBuilder.
+	 *
+	 * @param songDbFile
+	 *            where to find the song db
+	 * @param userDbFile
+	 *            where to find the user db
+	 * @param progressListener
+	 *            gets progress reports while loading songs, may be null
+	 * @param songDbBuilder
+	 *            creates the builder that songs are loaded into
+	 */
+	public StreamingXmlDataService(File songDbFile, File userDbFile, LoadProgressListener progressListener,
+			Supplier<SongDbBuilder> songDbBuilder) {
+		this.songDbFile = songDbFile;
+		this.userDbFile = userDbFile;
+		this.progressListener = progressListener;
+		this.songDbBuilder = songDbBuilder;
+	}
+
+	@Override
+	public SongDb readSongDb() throws DataServiceException {
+		if (this.songDbInstance == null) {
+			this.songDbInstance = readSongDb(this.songDbFile, this.progressListener, this.songDbBuilder.get());
+		}
+		return this.songDbInstance;
+	}
+
+	@Override
+	public UserDb readUserDb() throws DataServiceException {
+		if (this.userDbInstance == null) {
+			this.userDbInstance = readUserDb(this.userDbFile);
+		}
+		return this.userDbInstance;
+	}
+
+	private static SongDb readSongDb(File dbFile, LoadProgressListener listener, SongDbBuilder builder)
+			throws DataServiceException {
+		long totalBytes = dbFile.length();
+		try (CountingInputStream input = new CountingInputStream(new FileInputStream(dbFile))) {
+			XMLStreamReader reader = createReader(input);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && "song".equals(reader.getLocalName())) {
+						readSong(reader, builder);
+						if (listener != null && builder.size() % PROGRESS_INTERVAL == 0) {
+							listener.progress(builder.size(), input.getCount(), totalBytes);
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			if (listener != null) {
+				listener.progress(builder.size(), input.getCount(), totalBytes);
+			}
+		} catch (IOException | XMLStreamException | IllegalArgumentException e) {
+			throw new DataServiceException("couldn't parse song db");
+		}
+		return builder.build();
+	}
+
+	private static void readSong(XMLStreamReader reader, SongDbBuilder builder) throws XMLStreamException {
+		UUID id = readId(reader);
+		String artist = null;
+		String title = null;
+		String filename = null;
+		long length = 0;
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+			case "artist":
+				artist = reader.getElementText();
+				break;
+			case "title":
+				title = reader.getElementText();
+				break;
+			case "filename":
+				filename = reader.getElementText();
+				break;
+			case "length":
+				length = Long.parseLong(reader.getElementText().trim());
+				break;
+			default:
+				skipElement(reader);
+				break;
+			}
+		}
+		builder.add(id, artist, title, filename, length);
+	}
+
+	private static UserDb readUserDb(File dbFile) throws DataServiceException {
+		CompactUserDb.Builder builder = new CompactUserDb.Builder();
+		try (InputStream input = new FileInputStream(dbFile)) {
+			XMLStreamReader reader = createReader(input);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && "user".equals(reader.getLocalName())) {
+						readUser(reader, builder);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException | IllegalArgumentException e) {
+			throw new DataServiceException("couldn't parse user db");
+		}
+		return builder.build();
+	}
+
+	private static void readUser(XMLStreamReader reader, CompactUserDb.Builder builder) throws XMLStreamException {
+		UUID id = readId(reader);
+		String name = null;
+		String password = null;
+		while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+			case "name":
+				name = reader.getElementText();
+				break;
+			case "password":
+				password = reader.getElementText();
+				break;
+			default:
+				skipElement(reader);
+				break;
+			}
+		}
+		builder.add(id, name, password);
+	}
+
+	private static UUID readId(XMLStreamReader reader) throws XMLStreamException {
+		String id = reader.getAttributeValue(null, "id");
+		if (id == null) {
+			throw new XMLStreamException("missing id", reader.getLocation());
+		}
+		return UUID.fromString(id);
+	}
+
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private static XMLStreamReader createReader(InputStream input) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory.createXMLStreamReader(new BufferedInputStream(input, 1 << 16));
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+		private long count;
+
+		public CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				this.count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				this.count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			this.count += skipped;
+			return skipped;
+		}
+	}
+}
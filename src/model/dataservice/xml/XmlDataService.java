@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -13,8 +15,13 @@ import javax.xml.bind.Unmarshaller;
 
 import model.dataservice.DataService;
 import model.dataservice.DataServiceException;
+import model.dataservice.Song;
 import model.dataservice.SongDb;
+import model.dataservice.User;
 import model.dataservice.UserDb;
+import model.dataservice.snapshot.SnapshotDataService;
+import model.dataservice.snapshot.SnapshotWriter;
+import model.dataservice.sql.SqlDataService;
 
 /**
  * An implementation of a DataService that reads from XML files. No pagination
@@ -22,6 +29,9 @@ import model.dataservice.UserDb;
  * recommend you build and use a SqlDataService. This class enforces the
  * singleton property on generated databases to prevent problems. Callers don't
  * need to worry about it.
+ * 
+ * For quick startup the XML can be compiled into a binary snapshot with
+ * toSnapshot, which only reparses the XML when it is newer than the snapshot.
  *
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
@@ -64,6 +74,72 @@ public class XmlDataService implements DataService {
 		return this.userDbInstance;
 	}
 
+	/**
+	 * Get a SnapshotDataService for the given snapshot file, first compiling
+	 * the XML into it if the snapshot is missing or older than either XML
+	 * file. The XML is not parsed at all when the snapshot is up to date.
+	 * 
+	 * @param snapshotFile
+	 *            where to find or put the snapshot
+	 * @return a DataService reading from the up to date snapshot
+	 * @throws DataServiceException
+	 *             thrown when the XML can't be read or the snapshot written
+	 */
+	public DataService toSnapshot(File snapshotFile) throws DataServiceException {
+		long xmlModified = Math.max(this.songDbFile.lastModified(), this.userDbFile.lastModified());
+		if (!snapshotFile.isFile() || snapshotFile.lastModified() < xmlModified) {
+			compileSnapshot(snapshotFile);
+		}
+		return new SnapshotDataService(snapshotFile);
+	}
+
+	/**
+	 * Compile both XML databases into a binary snapshot, replacing any old
+	 * one. The snapshot is written next to its final location and then moved
+	 * into place so readers never see a half written file.
+	 * 
+	 * @param snapshotFile
+	 *            where to write the snapshot
+	 * @throws DataServiceException
+	 *             thrown when the XML can't be read or the snapshot written
+	 */
+	public void compileSnapshot(File snapshotFile) throws DataServiceException {
+		SnapshotWriter writer = new SnapshotWriter();
+		for (Song song : readSongDb().getSongs()) {
+			writer.addSong(song.getId(), song.getArtist(), song.getTitle(), song.getFilename(),
+					song.getLength().getSeconds());
+		}
+		for (User user : ((XmlUserDb) readUserDb()).getUsers()) {
+			writer.addUser(user.getId(), user.getName(), user.getPassword());
+		}
+		try {
+			File dir = snapshotFile.getAbsoluteFile().getParentFile();
+			File tmp = File.createTempFile(snapshotFile.getName(), ".tmp", dir);
+			try {
+				writer.write(tmp);
+				Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp.toPath());
+			}
+		} catch (IOException e) {
+			throw new DataServiceException("couldn't write catalog snapshot");
+		}
+	}
+
+	/**
+	 * Copy both XML databases into a SQL database, replacing whatever it held
+	 * before.
+	 * 
+	 * @param sqlDataService
+	 *            the database to fill
+	 * @throws DataServiceException
+	 *             thrown when the XML can't be read or the database written
+	 */
+	public void exportTo(SqlDataService sqlDataService) throws DataServiceException {
+		sqlDataService.importCatalog(readSongDb().getSongs(), ((XmlUserDb) readUserDb()).getUsers());
+	}
+
 	private static SongDb readSongDb(File dbFile) throws DataServiceException {
 		XmlSongDb songDb = null;
 		try (Reader reader = new InputStreamReader(new FileInputStream(dbFile), StandardCharsets.UTF_8)) {
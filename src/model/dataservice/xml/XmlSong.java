@@ -7,6 +7,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import model.dataservice.Lengths;
 import model.dataservice.Song;
 
 /**
@@ -58,7 +59,7 @@ public class XmlSong implements Song {
 
 	@Override
 	public Duration getLength() {
-		return Duration.ofSeconds(this.length);
+		return Lengths.ofSeconds(this.length);
 	}
 
 	@Override
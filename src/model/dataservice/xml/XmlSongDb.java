@@ -1,9 +1,12 @@
 package model.dataservice.xml;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -18,6 +21,9 @@ import model.dataservice.SongDb;
  * 	<song ...> ... </song>
  * 	...
  * </songs>
+ * 
+ * An index by song ID is built once after unmarshalling so lookups don't have
+ * to scan the whole list.
  *
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
@@ -27,6 +33,8 @@ public class XmlSongDb implements SongDb {
 	@XmlElement(name = "song", type = XmlSong.class)
 	private List<Song> songs;
 
+	private Map<UUID, Song> songsById;
+
 	private XmlSongDb() {
 		// disallow object creation outside of JAXB
 	}
@@ -38,7 +46,29 @@ public class XmlSongDb implements SongDb {
 
 	@Override
 	public Song getSongById(UUID id) {
-		Optional<Song> song = this.songs.stream().filter(s -> s.getId().equals(id)).findFirst();
-		return song.isPresent() ? song.get() : null;
+		return this.songsById.get(id);
+	}
+
+	/**
+	 * JAXB callback run once the whole document has been read. Freezes the
+	 * song list and builds the ID index. If an ID appears more than once the
+	 * first song wins, the same as the old linear search.
+	 * 
+	 * @param unmarshaller
+	 *            the unmarshaller that built this object
+	 * @param parent
+	 *            the parent object, always null for the root element
+	 */
+	@SuppressWarnings("unused")
+	private void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+		if (this.songs == null) {
+			this.songs = Collections.emptyList();
+		}
+		Map<UUID, Song> index = new HashMap<>(this.songs.size() * 4 / 3 + 1);
+		for (Song song : this.songs) {
+			index.putIfAbsent(song.getId(), song);
+		}
+		this.songs = Collections.unmodifiableList(this.songs);
+		this.songsById = Collections.unmodifiableMap(index);
 	}
 }
@@ -1,9 +1,12 @@
 package model.dataservice.xml;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 
+import javax.xml.bind.Unmarshaller;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -18,6 +21,8 @@ import model.dataservice.UserDb;
  * 	<user ...> ... </user>
  * 	...
  * </users>
+ * 
+ * Indexes by user ID and by name are built once after unmarshalling.
  *
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
@@ -26,20 +31,55 @@ import model.dataservice.UserDb;
 public class XmlUserDb implements UserDb {
 	@XmlElement(name = "user", type = XmlUser.class)
 	private List<User> users;
+
+	private Map<UUID, User> usersById;
+	private Map<String, User> usersByName;
 	
 	private XmlUserDb() {
 		// disallow object creation outside of JAXB
 	}
 
+	/**
+	 * Get every user in file order. Only used for exporting the database.
+	 * 
+	 * @return a read only list of all users
+	 */
+	List<User> getUsers() {
+		return Collections.unmodifiableList(this.users);
+	}
+
 	@Override
 	public User getUserById(UUID id) {
-		Optional<User> user = this.users.stream().filter(u -> u.getId().equals(id)).findFirst();
-		return user.isPresent() ? user.get() : null;
+		return this.usersById.get(id);
 	}
 
 	@Override
 	public User getUserByName(String name) {
-		Optional<User> user = this.users.stream().filter(u -> u.getName().equals(name)).findFirst();
-		return user.isPresent() ? user.get() : null;
+		return this.usersByName.get(name);
+	}
+
+	/**
+	 * JAXB callback run once the whole document has been read. Builds the ID
+	 * and name indexes. Duplicates resolve to the first user in the file.
+	 * 
+	 * @param unmarshaller
+	 *            the unmarshaller that built this object
+	 * @param parent
+	 *            the parent object, always null for the root element
+	 */
+	@SuppressWarnings("unused")
+	private void afterUnmarshal(Unmarshaller unmarshaller, Object parent) {
+		if (this.users == null) {
+			this.users = Collections.emptyList();
+		}
+		int capacity = this.users.size() * 4 / 3 + 1;
+		Map<UUID, User> byId = new HashMap<>(capacity);
+		Map<String, User> byName = new HashMap<>(capacity);
+		for (User user : this.users) {
+			byId.putIfAbsent(user.getId(), user);
+			byName.putIfAbsent(user.getName(), user);
+		}
+		this.usersById = Collections.unmodifiableMap(byId);
+		this.usersByName = Collections.unmodifiableMap(byName);
 	}
 }
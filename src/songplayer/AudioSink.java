@@ -0,0 +1,70 @@
+package songplayer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Somewhere for the PlaybackEngine to send PCM. Works like a SourceDataLine:
+ * it is opened for one format at a time, written to, and reports how many
+ * frames have been played so far. See AudioSinks for the ones that come with
+ * the jukebox and how to pick one.
+ *
+ * A sink is only used by one thread at a time.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public interface AudioSink {
+	/**
+	 * Get ready to take PCM in the given format. The sink must be closed.
+	 *
+	 * @param format
+	 *            the format of the PCM that will be written
+	 * @throws LineUnavailableException
+	 *             thrown when the sink can't be opened
+	 */
+	public void open(AudioFormat format) throws LineUnavailableException;
+
+	/**
+	 * Is the sink open?
+	 *
+	 * @return true if open
+	 */
+	public boolean isOpen();
+
+	/**
+	 * Get the format the sink was opened with.
+	 *
+	 * @return the format, or null if the sink is closed
+	 */
+	public AudioFormat getFormat();
+
+	/**
+	 * Write PCM, blocking for as long as the sink needs to keep up.
+	 *
+	 * @param data
+	 *            the PCM
+	 * @param offset
+	 *            where in data to start
+	 * @param length
+	 *            how many bytes to write, a whole number of frames
+	 */
+	public void write(byte[] data, int offset, int length);
+
+	/**
+	 * Block until everything written has been played.
+	 */
+	public void drain();
+
+	/**
+	 * Get the number of frames played since the sink was opened.
+	 *
+	 * @return the frame position
+	 */
+	public long getFramePosition();
+
+	/**
+	 * Close the sink. Anything not played yet is dropped.
+	 */
+	public void close();
+}
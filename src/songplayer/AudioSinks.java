@@ -0,0 +1,90 @@
+package songplayer;
+
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Line;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Picks the AudioSink the jukebox plays through. The jukebox.audio.sink system
+ * property chooses one:
+ *
+ * line        the sound device, the default
+ * null        nowhere, at the speed the songs would play
+ * fast        nowhere, as fast as songs can be decoded
+ * wav:path    WAV files named after path, as fast as songs can be decoded
+ *
+ * When no sink is chosen and there is no sound device, like on a headless
+ * server, the real time null sink is used so the queue still moves along.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class AudioSinks {
+	private static final String SINK_PROPERTY = "jukebox.audio.sink";
+	private static final String WAV_PREFIX = "wav:";
+	private static final Logger LOGGER = Logger.getLogger(AudioSinks.class.getName());
+
+	private AudioSinks() {
+	}
+
+	/**
+	 * Get a new sink as chosen by the jukebox.audio.sink system property.
+	 *
+	 * @return the sink
+	 */
+	public static AudioSink defaultSink() {
+		String name = System.getProperty(SINK_PROPERTY);
+		if (name == null) {
+			if (hasSoundDevice()) {
+				return new LineSink();
+			}
+			if (LOGGER.isLoggable(Level.INFO)) {
+				LOGGER.info("no sound device, playing to a null sink");
+			}
+			return new NullSink(true);
+		}
+		return forName(name);
+	}
+
+	/**
+	 * Get a new sink by the name used in the jukebox.audio.sink system
+	 * property.
+	 *
+	 * @param name
+	 *            line, null, fast or wav: followed by a file path
+	 * @return the sink
+	 * @throws IllegalArgumentException
+	 *             thrown if there is no such sink
+	 */
+	public static AudioSink forName(String name) {
+		if (name.startsWith(WAV_PREFIX)) {
+			return new WavFileSink(new File(name.substring(WAV_PREFIX.length())));
+		}
+		switch (name) {
+		case "line":
+			return new LineSink();
+		case "null":
+			return new NullSink(true);
+		case "fast":
+			return new NullSink(false);
+		default:
+			throw new IllegalArgumentException("no such audio sink: " + name);
+		}
+	}
+
+	private static boolean hasSoundDevice() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return false;
+		}
+		try {
+			return AudioSystem.getSourceLineInfo(new Line.Info(SourceDataLine.class)).length > 0;
+		} catch (SecurityException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package songplayer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * An AudioSink that plays through the sound device with a SourceDataLine.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class LineSink implements AudioSink {
+	private SourceDataLine line;
+
+	@Override
+	public void open(AudioFormat format) throws LineUnavailableException {
+		try {
+			SourceDataLine newLine = (SourceDataLine) AudioSystem
+					.getLine(new DataLine.Info(SourceDataLine.class, format));
+			newLine.open(format);
+			newLine.start();
+			this.line = newLine;
+		} catch (IllegalArgumentException e) {
+			throw new LineUnavailableException(e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.line != null;
+	}
+
+	@Override
+	public AudioFormat getFormat() {
+		return this.line == null ? null : this.line.getFormat();
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) {
+		this.line.write(data, offset, length);
+	}
+
+	@Override
+	public void drain() {
+		this.line.drain();
+	}
+
+	@Override
+	public long getFramePosition() {
+		return this.line.getLongFramePosition();
+	}
+
+	@Override
+	public void close() {
+		if (this.line != null) {
+			this.line.close();
+			this.line = null;
+		}
+	}
+}
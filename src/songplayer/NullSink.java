@@ -0,0 +1,98 @@
+package songplayer;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * An AudioSink that throws PCM away. It can either take its time like a real
+ * sound device would, so the whole jukebox runs the same as with speakers, or
+ * take everything as fast as it is written, for measuring how fast the rest
+ * of playback is.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class NullSink implements AudioSink {
+	// how far ahead of the clock writes may get, like a line's buffer
+	private static final long BUFFER_MILLIS = 500;
+
+	private final boolean realTime;
+	private AudioFormat format;
+	private long framesWritten;
+	private long startNanos;
+
+	/**
+	 * Create a new null sink.
+	 *
+	 * @param realTime
+	 *            true to play at the speed of the audio, false to play as fast
+	 *            as possible
+	 */
+	public NullSink(boolean realTime) {
+		this.realTime = realTime;
+	}
+
+	@Override
+	public void open(AudioFormat format) {
+		this.format = format;
+		this.framesWritten = 0;
+		this.startNanos = System.nanoTime();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.format != null;
+	}
+
+	@Override
+	public AudioFormat getFormat() {
+		return this.format;
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) {
+		if (this.realTime && elapsedFrames() > this.framesWritten) {
+			// ran dry, so the clock starts over from here like a real line
+			this.startNanos = System.nanoTime() - nanosFor(this.framesWritten);
+		}
+		this.framesWritten += length / this.format.getFrameSize();
+		if (this.realTime) {
+			waitFor(this.framesWritten - (long) (this.format.getFrameRate() * BUFFER_MILLIS / 1000));
+		}
+	}
+
+	@Override
+	public void drain() {
+		if (this.realTime) {
+			waitFor(this.framesWritten);
+		}
+	}
+
+	@Override
+	public long getFramePosition() {
+		return this.realTime ? Math.min(elapsedFrames(), this.framesWritten) : this.framesWritten;
+	}
+
+	@Override
+	public void close() {
+		this.format = null;
+	}
+
+	private long elapsedFrames() {
+		return (long) ((System.nanoTime() - this.startNanos) / 1e9 * this.format.getFrameRate());
+	}
+
+	private long nanosFor(long frames) {
+		return (long) (frames / this.format.getFrameRate() * 1e9);
+	}
+
+	private void waitFor(long frame) {
+		long wait = this.startNanos + nanosFor(frame) - System.nanoTime();
+		if (wait > 0) {
+			try {
+				Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package songplayer;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * A cache of decoded PCM so songs that are played over and over don't have to
+ * be decoded every time. Entries are keyed by something naming the source,
+ * like a file path, and the format it was decoded to. The cache holds at most
+ * a fixed number of bytes and throws out the least recently used songs to
+ * make room. Songs bigger than a quarter of the budget are never cached so
+ * one long song can't push out all the short ones.
+ *
+ * PCM can be kept on the Java heap or in direct buffers outside of it. Cached
+ * buffers are read only and can be read by many threads at once. All methods
+ * are synchronized.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class PcmCache {
+	private final long budgetBytes;
+	private final boolean direct;
+	private final Map<Key, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long sizeBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Create a new empty cache.
+	 *
+	 * @param budgetBytes
+	 *            the most bytes of PCM to hold
+	 * @param direct
+	 *            true to keep PCM outside of the Java heap
+	 */
+	public PcmCache(long budgetBytes, boolean direct) {
+		this.budgetBytes = budgetBytes;
+		this.direct = direct;
+	}
+
+	/**
+	 * Look up decoded PCM. Counts as a hit or a miss.
+	 *
+	 * @param source
+	 *            names what was decoded
+	 * @param format
+	 *            the format it was decoded to
+	 * @return a read only buffer with the PCM, or null if it isn't cached
+	 */
+	public synchronized ByteBuffer get(String source, AudioFormat format) {
+		ByteBuffer pcm = this.entries.get(new Key(source, format));
+		if (pcm == null) {
+			this.misses++;
+			return null;
+		}
+		this.hits++;
+		return pcm.duplicate();
+	}
+
+	/**
+	 * Get the size of the biggest song the cache will take.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getMaxEntryBytes() {
+		return this.budgetBytes / 4;
+	}
+
+	/**
+	 * Add decoded PCM, replacing anything cached for the same source and
+	 * format. Does nothing if it is bigger than getMaxEntryBytes.
+	 *
+	 * @param source
+	 *            names what was decoded
+	 * @param format
+	 *            the format it was decoded to
+	 * @param pcm
+	 *            the PCM from its position to its limit, which is copied
+	 */
+	public synchronized void put(String source, AudioFormat format, ByteBuffer pcm) {
+		int length = pcm.remaining();
+		if (length > getMaxEntryBytes()) {
+			return;
+		}
+		ByteBuffer copy = this.direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+		copy.put(pcm.duplicate());
+		copy.flip();
+		ByteBuffer old = this.entries.put(new Key(source, format), copy.asReadOnlyBuffer());
+		if (old != null) {
+			this.sizeBytes -= old.capacity();
+		}
+		this.sizeBytes += length;
+		Iterator<ByteBuffer> eldest = this.entries.values().iterator();
+		while (this.sizeBytes > this.budgetBytes) {
+			this.sizeBytes -= eldest.next().capacity();
+			eldest.remove();
+			this.evictions++;
+		}
+	}
+
+	/**
+	 * Get the number of bytes of PCM held.
+	 *
+	 * @return the size in bytes
+	 */
+	public synchronized long getSizeBytes() {
+		return this.sizeBytes;
+	}
+
+	/**
+	 * Get the number of lookups that found PCM.
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Get the number of lookups that found nothing.
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Get the number of songs thrown out to make room.
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Get the share of lookups that found PCM.
+	 *
+	 * @return the hit rate between 0 and 1, or 0 before any lookups
+	 */
+	public synchronized double getHitRate() {
+		long lookups = this.hits + this.misses;
+		return lookups == 0 ? 0 : (double) this.hits / lookups;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d songs, %d bytes, %d hits, %d misses, %d evictions, %.1f%% hit rate",
+				Integer.valueOf(this.entries.size()), Long.valueOf(this.sizeBytes), Long.valueOf(this.hits),
+				Long.valueOf(this.misses), Long.valueOf(this.evictions), Double.valueOf(getHitRate() * 100));
+	}
+
+	private static class Key {
+		private final String source;
+		private final AudioFormat format;
+
+		public Key(String source, AudioFormat format) {
+			this.source = source;
+			this.format = format;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return this.source.equals(other.source) && this.format.matches(other.format)
+					&& other.format.matches(this.format);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.source, this.format.getEncoding(), Float.valueOf(this.format.getSampleRate()),
+					Integer.valueOf(this.format.getSampleSizeInBits()), Integer.valueOf(this.format.getChannels()),
+					Boolean.valueOf(this.format.isBigEndian()));
+		}
+	}
+}
@@ -0,0 +1,567 @@
+package songplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Plays audio files one after another without gaps. Two long lived worker
+ * threads do the work:
+ *
+ * decoder  opens the next requested file and decodes it to PCM into a
+ *          bounded buffer, staying at most one song ahead of the player
+ * player   writes PCM to the AudioSink
+ *
+ * When a song runs out and the next one is already decoding in the same
+ * format, the player keeps writing straight into the open sink, so the next
+ * song starts on the very next sample. With a crossfade set, the last part of
+ * a song is mixed with the start of the next one instead. The sink is only
+ * drained when there is nothing to follow, only reopened when the format
+ * changes, and closed after a while with nothing to play.
+ *
+ * Songs small enough can be kept decoded in a PcmCache, so playing them again
+ * skips the decoder entirely.
+ *
+ * The time between the end of one song and the first sound of the next one
+ * is measured and logged, and the last and longest gaps can be read back.
+ * Gaps are only counted while the sink stays open.
+ *
+ * Songs starting, ending and failing are published on a PlaybackEventChannel,
+ * so neither thread ever waits on the event dispatch thread.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class PlaybackEngine {
+	private static final long IDLE_MILLIS = 5000;
+	private static final long OPENING_MILLIS = 10;
+	private static final int BUFFER_SIZE = 16 * 1024;
+	private static final int LOOKAHEAD_CHUNKS = 64;
+	private static final String CROSSFADE_PROPERTY = "jukebox.crossfade.ms";
+	private static final String CACHE_SIZE_PROPERTY = "jukebox.pcmcache.mb";
+	private static final String CACHE_DIRECT_PROPERTY = "jukebox.pcmcache.direct";
+	private static final int DEFAULT_CACHE_MB = 64;
+	private static final Logger LOGGER = Logger.getLogger(PlaybackEngine.class.getName());
+
+	private static PlaybackEngine instance;
+
+	private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+	// holds the one track decoding ahead of the one playing
+	private final BlockingQueue<Track> tracks = new ArrayBlockingQueue<>(1);
+	// requests asked for that the decoder hasn't handed over as tracks yet
+	private final AtomicInteger opening = new AtomicInteger();
+	private final AudioSink sink;
+	private final PcmCache cache;
+	private final PlaybackEventChannel events = new PlaybackEventChannel();
+	private final Thread decoder;
+	private final Thread player;
+	private volatile int crossfadeMillis;
+
+	// only touched on the player thread
+	private long framesWritten;
+	private final Deque<Ending> endings = new ArrayDeque<>();
+	private long lastEnd;
+
+	private volatile long lastGapNanos = -1;
+	private volatile long maxGapNanos = -1;
+
+	/**
+	 * Create a new engine with its own worker threads, no crossfade and no
+	 * PCM cache that plays through AudioSinks.defaultSink.
+	 */
+	public PlaybackEngine() {
+		this(null);
+	}
+
+	/**
+	 * Create a new engine with its own worker threads and no crossfade that
+	 * keeps decoded songs in the given cache and plays through
+	 * AudioSinks.defaultSink.
+	 *
+	 * @param cache
+	 *            where to keep decoded songs, may be null
+	 */
+	public PlaybackEngine(PcmCache cache) {
+		this(AudioSinks.defaultSink(), cache);
+	}
+
+	/**
+	 * Create a new engine with its own worker threads and no crossfade that
+	 * keeps decoded songs in the given cache and plays through the given sink.
+	 *
+	 * @param sink
+	 *            where to play, only used by the engine from now on
+	 * @param cache
+	 *            where to keep decoded songs, may be null
+	 */
+	public PlaybackEngine(AudioSink sink, PcmCache cache) {
+		this.sink = sink;
+		this.cache = cache;
+		this.decoder = new Thread(this::decode, "playback-decoder");
+		this.decoder.setDaemon(true);
+		this.player = new Thread(this::play, "playback-engine");
+		this.player.setDaemon(true);
+		this.decoder.start();
+		this.player.start();
+	}
+
+	/**
+	 * Get the engine shared by the whole application. Its crossfade comes from
+	 * the jukebox.crossfade.ms system property, the size of its PCM cache from
+	 * jukebox.pcmcache.mb (0 turns it off) and whether the cache is kept off
+	 * the heap from jukebox.pcmcache.direct. It plays through the sink named
+	 * by jukebox.audio.sink, see AudioSinks.
+	 *
+	 * @return the shared engine
+	 */
+	public static synchronized PlaybackEngine getInstance() {
+		if (instance == null) {
+			long cacheBytes = Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_MB).longValue() << 20;
+			PcmCache cache = cacheBytes > 0 ? new PcmCache(cacheBytes, Boolean.getBoolean(CACHE_DIRECT_PROPERTY))
+					: null;
+			instance = new PlaybackEngine(cache);
+			instance.setCrossfadeMillis(Integer.getInteger(CROSSFADE_PROPERTY, 0).intValue());
+		}
+		return instance;
+	}
+
+	/**
+	 * Play a file after everything that was asked for before it. The listener
+	 * is told on the event dispatch thread once the song has been heard to
+	 * the end. To play without gaps, ask for the next song while the current
+	 * one is still playing.
+	 *
+	 * @param audioFileName
+	 *            the file to play
+	 * @param listener
+	 *            told when the song ends or turns out not to be playable, may
+	 *            be null
+	 */
+	public void play(String audioFileName, EndOfSongListener listener) {
+		this.opening.incrementAndGet();
+		this.requests.add(new Request(audioFileName, listener));
+	}
+
+	/**
+	 * Set how long songs overlap when one follows another. Zero plays them
+	 * back to back. Applies from the next song on.
+	 *
+	 * @param crossfadeMillis
+	 *            the overlap in milliseconds
+	 */
+	public void setCrossfadeMillis(int crossfadeMillis) {
+		this.crossfadeMillis = Math.max(0, crossfadeMillis);
+	}
+
+	/**
+	 * Get the channel songs starting, ending and failing are published on.
+	 * 
+	 * @return the channel
+	 */
+	public PlaybackEventChannel getEvents() {
+		return this.events;
+	}
+
+	/**
+	 * Get the cache of decoded songs, for its statistics.
+	 *
+	 * @return the cache, or null if there isn't one
+	 */
+	public PcmCache getPcmCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Get the gap before the most recent song that followed another one.
+	 *
+	 * @return the gap in nanoseconds, or -1 if there hasn't been one yet
+	 */
+	public long getLastGapNanos() {
+		return this.lastGapNanos;
+	}
+
+	/**
+	 * Get the longest gap between two songs so far.
+	 *
+	 * @return the gap in nanoseconds, or -1 if there hasn't been one yet
+	 */
+	public long getMaxGapNanos() {
+		return this.maxGapNanos;
+	}
+
+	/**
+	 * Stop the engine. Whatever is playing is cut off, and the sink has been
+	 * closed by the time this returns.
+	 */
+	public void shutdown() {
+		this.decoder.interrupt();
+		this.player.interrupt();
+		// a listener may shut the engine down from the player thread itself
+		if (Thread.currentThread() == this.player || Thread.currentThread() == this.decoder) {
+			return;
+		}
+		try {
+			this.decoder.join();
+			this.player.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void decode() {
+		try {
+			while (true) {
+				Request request = this.requests.take();
+				File file = new File(request.fileName);
+				// the size and time stamp make sure a changed file isn't
+				// played from the cache
+				String source = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+				boolean handed = false;
+				try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+					AudioFormat baseFormat = in.getFormat();
+					AudioFormat decodedFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+							baseFormat.getSampleRate(), 16, baseFormat.getChannels(), baseFormat.getChannels() * 2,
+							baseFormat.getSampleRate(), false);
+					ByteBuffer cached = this.cache == null ? null : this.cache.get(source, decodedFormat);
+					if (this.cache != null && LOGGER.isLoggable(Level.FINE)) {
+						LOGGER.fine("pcm cache: " + this.cache);
+					}
+					Track track = new Track(request, decodedFormat);
+					if (cached != null) {
+						hand(track);
+						handed = true;
+						copy(cached, track);
+					} else {
+						try (AudioInputStream din = AudioSystem.getAudioInputStream(decodedFormat, in)) {
+							hand(track);
+							handed = true;
+							decode(din, track, source);
+						}
+					}
+				} catch (IOException | UnsupportedAudioFileException | RuntimeException e) {
+					if (LOGGER.isLoggable(Level.WARNING)) {
+						LOGGER.warning("couldn't play " + request.fileName + ": " + e);
+					}
+					if (handed) {
+						// whatever was decoded plays and ends as usual
+						this.events.publish(new PlaybackEvent(PlaybackEvent.Type.FAILED, request.fileName), null);
+					} else {
+						// the player reports it in turn, so the songs before it
+						// end first
+						hand(new Track(request, null));
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// shut down
+		}
+	}
+
+	private void hand(Track track) throws InterruptedException {
+		this.tracks.put(track);
+		this.opening.decrementAndGet();
+	}
+
+	/**
+	 * Decode a song into a track, and into the cache if it is small enough.
+	 */
+	private void decode(AudioInputStream din, Track track, String source) throws IOException, InterruptedException {
+		List<byte[]> collected = this.cache == null ? null : new ArrayList<>();
+		long collectedBytes = 0;
+		try {
+			byte[] data = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = din.read(data, 0, data.length)) != -1) {
+				if (read > 0) {
+					byte[] chunk = Arrays.copyOf(data, read);
+					track.chunks.put(chunk);
+					if (collected != null) {
+						collected.add(chunk);
+						collectedBytes += read;
+						if (collectedBytes > this.cache.getMaxEntryBytes()) {
+							collected = null;
+						}
+					}
+				}
+			}
+		} finally {
+			track.chunks.put(Track.END);
+		}
+		if (collected != null) {
+			ByteBuffer pcm = ByteBuffer.allocate((int) collectedBytes);
+			for (byte[] chunk : collected) {
+				pcm.put(chunk);
+			}
+			pcm.flip();
+			this.cache.put(source, track.format, pcm);
+		}
+	}
+
+	private static void copy(ByteBuffer pcm, Track track) throws InterruptedException {
+		try {
+			// whole frames, the same as the decoder hands out
+			int size = BUFFER_SIZE - BUFFER_SIZE % track.format.getFrameSize();
+			while (pcm.hasRemaining()) {
+				byte[] chunk = new byte[Math.min(size, pcm.remaining())];
+				pcm.get(chunk);
+				track.chunks.put(chunk);
+			}
+		} finally {
+			track.chunks.put(Track.END);
+		}
+	}
+
+	private void play() {
+		try {
+			Track track = null;
+			while (true) {
+				if (track == null) {
+					track = this.tracks.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+					if (track == null) {
+						closeLine();
+						track = this.tracks.take();
+					}
+				}
+				try {
+					track = play(track);
+				} catch (RuntimeException e) {
+					// one bad song mustn't stop everything after it
+					if (LOGGER.isLoggable(Level.WARNING)) {
+						LOGGER.warning("couldn't play " + track.request.fileName + ": " + e);
+					}
+					this.events.publish(new PlaybackEvent(PlaybackEvent.Type.FAILED, track.request.fileName),
+							track.request.listener);
+					track.skip();
+					track = null;
+				}
+			}
+		} catch (InterruptedException e) {
+			// shut down
+		} finally {
+			closeLine();
+		}
+	}
+
+	/**
+	 * Play a track up to its last few samples and hand over to the next one.
+	 * Returns the next track if it is already waiting, partly played if the
+	 * two were crossfaded.
+	 */
+	private Track play(Track track) throws InterruptedException {
+		if (track.format == null) {
+			this.events.publish(new PlaybackEvent(PlaybackEvent.Type.FAILED, track.request.fileName),
+					track.request.listener);
+			return null;
+		}
+		try {
+			openLine(track.format);
+		} catch (LineUnavailableException e) {
+			if (LOGGER.isLoggable(Level.WARNING)) {
+				LOGGER.warning("couldn't play " + track.request.fileName + ": " + e);
+			}
+			this.events.publish(new PlaybackEvent(PlaybackEvent.Type.FAILED, track.request.fileName),
+					track.request.listener);
+			track.skip();
+			return null;
+		}
+		this.events.publish(new PlaybackEvent(PlaybackEvent.Type.STARTED, track.request.fileName), null);
+
+		int frameSize = track.format.getFrameSize();
+		int tailBytes = (int) (track.format.getFrameRate() * this.crossfadeMillis / 1000) * frameSize;
+		byte[] hold = new byte[tailBytes + BUFFER_SIZE];
+		int held = 0;
+		int read;
+		while ((read = track.read(hold, held, hold.length - held)) != -1) {
+			held += read;
+			// keep the last tailBytes back for mixing with the next track
+			int ready = held - tailBytes;
+			ready -= ready % frameSize;
+			if (ready > 0) {
+				write(hold, 0, ready);
+				held -= ready;
+				System.arraycopy(hold, ready, hold, 0, held);
+			}
+		}
+
+		Track next = nextTrack();
+		if (next != null && next.format != null && next.format.matches(track.format)) {
+			if (held > 0) {
+				crossfade(hold, held, next, frameSize);
+			}
+			this.endings.add(new Ending(this.framesWritten, track.request));
+			this.lastEnd = System.nanoTime();
+			return next;
+		}
+		write(hold, 0, held);
+		this.sink.drain();
+		this.lastEnd = System.nanoTime();
+		this.endings.add(new Ending(this.framesWritten, track.request));
+		notifyEndings(Long.MAX_VALUE);
+		return next;
+	}
+
+	/**
+	 * Get the track after the one just played, waiting for it if it was
+	 * asked for but the decoder is still opening it, so that a song asked
+	 * for in time is never treated as a gap just because its file is slow to
+	 * open.
+	 */
+	private Track nextTrack() throws InterruptedException {
+		Track next = this.tracks.poll();
+		while (next == null && this.opening.get() > 0) {
+			next = this.tracks.poll(OPENING_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		return next;
+	}
+
+	/**
+	 * Fade the end of one track out while fading the start of the next one
+	 * in, for 16 bit little endian samples.
+	 */
+	private void crossfade(byte[] tail, int length, Track next, int frameSize) throws InterruptedException {
+		byte[] head = new byte[length];
+		int filled = 0;
+		int read;
+		while (filled < length && (read = next.read(head, filled, length - filled)) != -1) {
+			filled += read;
+		}
+		int frames = length / frameSize;
+		for (int i = 0; i + 1 < filled; i += 2) {
+			double fadeIn = (double) (i / frameSize) / frames;
+			int a = (short) ((tail[i] & 0xff) | tail[i + 1] << 8);
+			int b = (short) ((head[i] & 0xff) | head[i + 1] << 8);
+			int mixed = (int) Math.round(a * (1 - fadeIn) + b * fadeIn);
+			mixed = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mixed));
+			tail[i] = (byte) mixed;
+			tail[i + 1] = (byte) (mixed >> 8);
+		}
+		write(tail, 0, length);
+	}
+
+	private void write(byte[] data, int offset, int length) {
+		if (length == 0) {
+			return;
+		}
+		if (this.lastEnd != 0) {
+			long gap = System.nanoTime() - this.lastEnd;
+			this.lastEnd = 0;
+			this.lastGapNanos = gap;
+			this.maxGapNanos = Math.max(this.maxGapNanos, gap);
+			if (LOGGER.isLoggable(Level.FINE)) {
+				LOGGER.fine(String.format("gap between songs: %.3f ms", gap / 1e6));
+			}
+		}
+		this.sink.write(data, offset, length);
+		this.framesWritten += length / this.sink.getFormat().getFrameSize();
+		notifyEndings(this.sink.getFramePosition());
+	}
+
+	private void openLine(AudioFormat format) throws LineUnavailableException {
+		if (this.sink.isOpen() && this.sink.getFormat().matches(format)) {
+			return;
+		}
+		closeLine();
+		this.sink.open(format);
+		this.framesWritten = 0;
+	}
+
+	private void closeLine() {
+		if (this.sink.isOpen()) {
+			this.sink.close();
+		}
+		notifyEndings(Long.MAX_VALUE);
+		// a gap across a closed sink is idle time, not a gap between songs
+		this.lastEnd = 0;
+	}
+
+	/**
+	 * Tell listeners about every song whose last frame has been played.
+	 */
+	private void notifyEndings(long framePosition) {
+		while (!this.endings.isEmpty() && this.endings.peek().frame <= framePosition) {
+			Request request = this.endings.remove().request;
+			this.events.publish(new PlaybackEvent(PlaybackEvent.Type.ENDED, request.fileName), request.listener);
+		}
+	}
+
+	private static class Request {
+		private final String fileName;
+		private final EndOfSongListener listener;
+
+		public Request(String fileName, EndOfSongListener listener) {
+			this.fileName = fileName;
+			this.listener = listener;
+		}
+	}
+
+	private static class Ending {
+		private final long frame;
+		private final Request request;
+
+		public Ending(long frame, Request request) {
+			this.frame = frame;
+			this.request = request;
+		}
+	}
+
+	/**
+	 * A song being decoded, read by the player while the decoder fills it.
+	 */
+	private static class Track {
+		private static final byte[] END = new byte[0];
+
+		private final Request request;
+		// null for a song that couldn't be opened
+		private final AudioFormat format;
+		private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(LOOKAHEAD_CHUNKS);
+		private byte[] chunk;
+		private int position;
+
+		public Track(Request request, AudioFormat format) {
+			this.request = request;
+			this.format = format;
+		}
+
+		public int read(byte[] b, int off, int len) throws InterruptedException {
+			if (this.chunk == null || this.position == this.chunk.length) {
+				if (this.chunk == END) {
+					return -1;
+				}
+				this.chunk = this.chunks.take();
+				this.position = 0;
+				if (this.chunk == END) {
+					return -1;
+				}
+			}
+			int n = Math.min(len, this.chunk.length - this.position);
+			System.arraycopy(this.chunk, this.position, b, off, n);
+			this.position += n;
+			return n;
+		}
+
+		public void skip() throws InterruptedException {
+			byte[] scratch = new byte[BUFFER_SIZE];
+			while (read(scratch, 0, scratch.length) != -1) {
+				// let the decoder run to the end
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package songplayer;
+
+/**
+ * Something that happened to a song in the PlaybackEngine. Events are
+ * published by the engine's threads and delivered on the event dispatch
+ * thread by a PlaybackEventChannel.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public final class PlaybackEvent {
+	/**
+	 * The kinds of playback events.
+	 */
+	public enum Type {
+		/**
+		 * The first sound of the song was written out.
+		 */
+		STARTED,
+		/**
+		 * The last sound of the song was heard.
+		 */
+		ENDED,
+		/**
+		 * The song couldn't be played and was skipped.
+		 */
+		FAILED
+	}
+
+	private final Type type;
+	private final String fileName;
+	private final long publishedNanos;
+
+	/**
+	 * Create a new event, stamped with the current time.
+	 * 
+	 * @param type
+	 *            what happened
+	 * @param fileName
+	 *            the file of the song it happened to
+	 */
+	public PlaybackEvent(Type type, String fileName) {
+		this.type = type;
+		this.fileName = fileName;
+		this.publishedNanos = System.nanoTime();
+	}
+
+	/**
+	 * Get what happened.
+	 * 
+	 * @return the type of event
+	 */
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * Get the file of the song it happened to.
+	 * 
+	 * @return the file name
+	 */
+	public String getFileName() {
+		return this.fileName;
+	}
+
+	/**
+	 * Get when the event was published, for measuring how long it took to be
+	 * delivered.
+	 * 
+	 * @return the time from System.nanoTime
+	 */
+	public long getPublishedNanos() {
+		return this.publishedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return this.type + " " + this.fileName;
+	}
+}
@@ -0,0 +1,168 @@
+package songplayer;
+
+import java.awt.EventQueue;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Carries playback events from the PlaybackEngine's threads to the event
+ * dispatch thread without ever making the engine wait on it. Publishing only
+ * adds to a lock free queue; at most one task at a time is waiting on the
+ * event queue, and it delivers everything published until it runs. Events
+ * are delivered in the order they were published: first to the
+ * EndOfSongListener they were published with, if any, then as one batch to
+ * every PlaybackListener.
+ *
+ * The time from publishing to delivery is measured, and the average and
+ * longest can be read back.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class PlaybackEventChannel {
+	private static final Logger LOGGER = Logger.getLogger(PlaybackEventChannel.class.getName());
+
+	private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final List<PlaybackListener> listeners = new CopyOnWriteArrayList<>();
+
+	// only written on the event dispatch thread
+	private volatile long delivered;
+	private volatile long batches;
+	private volatile long totalLatencyNanos;
+	private volatile long maxLatencyNanos;
+
+	/**
+	 * Add a listener for every event.
+	 * 
+	 * @param listener
+	 *            the listener to add
+	 */
+	public void addPlaybackListener(PlaybackListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 * 
+	 * @param listener
+	 *            the listener to remove
+	 */
+	public void removePlaybackListener(PlaybackListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Publish an event. Never blocks.
+	 * 
+	 * @param event
+	 *            the event
+	 * @param listener
+	 *            told that the song is over if this is an ENDED or FAILED
+	 *            event, may be null
+	 */
+	public void publish(PlaybackEvent event, EndOfSongListener listener) {
+		this.pending.add(new Pending(event, listener));
+		if (this.scheduled.compareAndSet(false, true)) {
+			EventQueue.invokeLater(this::deliver);
+		}
+	}
+
+	/**
+	 * Get the number of events delivered so far.
+	 * 
+	 * @return the number of events
+	 */
+	public long getDelivered() {
+		return this.delivered;
+	}
+
+	/**
+	 * Get the number of times events were delivered, which is less than the
+	 * number of events when they were coalesced.
+	 * 
+	 * @return the number of batches
+	 */
+	public long getBatches() {
+		return this.batches;
+	}
+
+	/**
+	 * Get the average time from publishing an event to delivering it.
+	 * 
+	 * @return the latency in nanoseconds, or 0 before any events
+	 */
+	public long getMeanLatencyNanos() {
+		long count = this.delivered;
+		return count == 0 ? 0 : this.totalLatencyNanos / count;
+	}
+
+	/**
+	 * Get the longest time from publishing an event to delivering it.
+	 * 
+	 * @return the latency in nanoseconds, or 0 before any events
+	 */
+	public long getMaxLatencyNanos() {
+		return this.maxLatencyNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d events in %d batches, %.3f ms average latency, %.3f ms longest",
+				Long.valueOf(this.delivered), Long.valueOf(this.batches), Double.valueOf(getMeanLatencyNanos() / 1e6),
+				Double.valueOf(this.maxLatencyNanos / 1e6));
+	}
+
+	private void deliver() {
+		// clear the flag first so anything published from here on schedules
+		// another delivery instead of being missed
+		this.scheduled.set(false);
+		List<PlaybackEvent> batch = new ArrayList<>();
+		Pending next;
+		while ((next = this.pending.poll()) != null) {
+			PlaybackEvent event = next.event;
+			long latency = System.nanoTime() - event.getPublishedNanos();
+			this.totalLatencyNanos += latency;
+			this.maxLatencyNanos = Math.max(this.maxLatencyNanos, latency);
+			this.delivered++;
+			batch.add(event);
+			// a song that failed is over too, or whoever is waiting for it
+			// never hears of it again
+			if (next.listener != null && (event.getType() == PlaybackEvent.Type.ENDED
+					|| event.getType() == PlaybackEvent.Type.FAILED)) {
+				next.listener.songFinishedPlaying(
+						new EndOfSongEvent(event.getFileName(), LocalDate.now(), LocalTime.now()));
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		this.batches++;
+		List<PlaybackEvent> events = Collections.unmodifiableList(batch);
+		for (PlaybackListener listener : this.listeners) {
+			listener.playbackChanged(events);
+		}
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine("playback events: " + this);
+		}
+	}
+
+	private static class Pending {
+		private final PlaybackEvent event;
+		private final EndOfSongListener listener;
+
+		public Pending(PlaybackEvent event, EndOfSongListener listener) {
+			this.event = event;
+			this.listener = listener;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package songplayer;
+
+import java.util.List;
+
+/**
+ * Listens to everything that happens in a PlaybackEngine.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public interface PlaybackListener {
+	/**
+	 * Called on the event dispatch thread with every event published since
+	 * the last call, oldest first. Events that come in quick succession are
+	 * handed over together, so a listener that only shows the latest state
+	 * only has to look at the last one.
+	 * 
+	 * @param events
+	 *            the new events, never empty
+	 */
+	public void playbackChanged(List<PlaybackEvent> events);
+}
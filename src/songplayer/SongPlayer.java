@@ -13,8 +13,8 @@ package songplayer;
 
 public class SongPlayer {
 	/**
-	 * Play the song stored in filename in a new thread where waiter will be
-	 * sent
+	 * Play the song stored in filename after any songs already playing, where
+	 * waiter will be sent
 	 * 
 	 * @param waiter
 	 *            A reference to the EndOfSongEvent object that becomes
@@ -23,19 +23,9 @@ public class SongPlayer {
 	 *            The name of the file to be written to your output device.
 	 */
 	public static void playFile(EndOfSongListener waiter, String audioFileName) {
-		javax.swing.SwingUtilities.invokeLater(new Runnable() {
-			public void run() {
-
-				Thread player = new AudioFilePlayer(audioFileName);
-
-				((AudioFilePlayer) player).addEndOfSongListener(waiter);
-
-				// AudioFilePlayer extends Thread. When start is called,
-				// the overridden run method in AudioFilePlayer executes.
-				// If the song is not played in a separate thread, your GUI
-				// stops working
-				player.start();
-			}
-		});
+		// the shared PlaybackEngine plays songs in order on its own thread and
+		// keeps the output line open between them, so the GUI keeps working
+		// and the next song starts without reopening the audio device
+		PlaybackEngine.getInstance().play(audioFileName, waiter);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+package songplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * An AudioSink that records everything into WAV files as fast as it is
+ * written. The first time it is opened it writes to the given file; every
+ * later open, like after a change of format, starts a new file with a number
+ * added to the name (out.wav, out-1.wav, out-2.wav and so on).
+ *
+ * Only 16 bit little endian PCM, which is what the PlaybackEngine plays, is
+ * supported.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class WavFileSink implements AudioSink {
+	private static final int HEADER_SIZE = 44;
+	private static final Logger LOGGER = Logger.getLogger(WavFileSink.class.getName());
+
+	private final File file;
+	private int opened;
+	private AudioFormat format;
+	private FileChannel channel;
+	private long framesWritten;
+
+	/**
+	 * Create a new sink writing to the given file.
+	 *
+	 * @param file
+	 *            where to write the first recording
+	 */
+	public WavFileSink(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Get the file the given recording goes to.
+	 *
+	 * @param number
+	 *            which recording, counting from 0
+	 * @return the file for it
+	 */
+	public File getFile(int number) {
+		if (number == 0) {
+			return this.file;
+		}
+		String name = this.file.getName();
+		int dot = name.lastIndexOf('.');
+		String numbered = dot < 0 ? name + "-" + number : name.substring(0, dot) + "-" + number + name.substring(dot);
+		return new File(this.file.getAbsoluteFile().getParentFile(), numbered);
+	}
+
+	@Override
+	public void open(AudioFormat format) throws LineUnavailableException {
+		if (format.getSampleSizeInBits() != 16 || format.isBigEndian()
+				|| !AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())) {
+			throw new LineUnavailableException("only 16 bit little endian pcm can be recorded");
+		}
+		try {
+			this.channel = FileChannel.open(getFile(this.opened).toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.channel.write(header(format, 0), 0);
+			this.channel.position(HEADER_SIZE);
+		} catch (IOException e) {
+			throw new LineUnavailableException("couldn't open " + getFile(this.opened));
+		}
+		this.opened++;
+		this.format = format;
+		this.framesWritten = 0;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.channel != null;
+	}
+
+	@Override
+	public AudioFormat getFormat() {
+		return this.format;
+	}
+
+	@Override
+	public void write(byte[] data, int offset, int length) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+			while (buffer.hasRemaining()) {
+				this.channel.write(buffer);
+			}
+			this.framesWritten += length / this.format.getFrameSize();
+		} catch (IOException e) {
+			if (LOGGER.isLoggable(Level.WARNING)) {
+				LOGGER.warning("couldn't record audio: " + e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public void drain() {
+		// written as soon as it comes in
+	}
+
+	@Override
+	public long getFramePosition() {
+		return this.framesWritten;
+	}
+
+	@Override
+	public void close() {
+		if (this.channel == null) {
+			return;
+		}
+		try {
+			this.channel.write(header(this.format, this.framesWritten * this.format.getFrameSize()), 0);
+			this.channel.close();
+		} catch (IOException e) {
+			if (LOGGER.isLoggable(Level.WARNING)) {
+				LOGGER.warning("couldn't finish recording: " + e.getMessage());
+			}
+		}
+		this.channel = null;
+		this.format = null;
+	}
+
+	private static ByteBuffer header(AudioFormat format, long dataBytes) {
+		int frameSize = format.getFrameSize();
+		int sampleRate = (int) format.getSampleRate();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(new byte[] { 'R', 'I', 'F', 'F' });
+		header.putInt((int) Math.min(dataBytes + HEADER_SIZE - 8, 0xFFFFFFFFL));
+		header.put(new byte[] { 'W', 'A', 'V', 'E', 'f', 'm', 't', ' ' });
+		header.putInt(16);
+		header.putShort((short) 1);
+		header.putShort((short) format.getChannels());
+		header.putInt(sampleRate);
+		header.putInt(sampleRate * frameSize);
+		header.putShort((short) frameSize);
+		header.putShort((short) format.getSampleSizeInBits());
+		header.put(new byte[] { 'd', 'a', 't', 'a' });
+		header.putInt((int) Math.min(dataBytes, 0xFFFFFFFFL));
+		header.flip();
+		return header;
+	}
+}
@@ -0,0 +1,48 @@
+package tests;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A mock clock that only moves when told to, starting at noon on April 1st,
+ * 2016.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class MockClock extends Clock {
+	/**
+	 * The time every mock clock starts at.
+	 */
+	public static final Instant START = Instant.parse("2016-04-01T12:00:00Z");
+
+	private Instant now = START;
+
+	/**
+	 * Move the clock forward.
+	 * 
+	 * @param by
+	 *            how far to move it
+	 */
+	public void advance(Duration by) {
+		this.now = this.now.plus(by);
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return ZoneOffset.UTC;
+	}
+
+	@Override
+	public Clock withZone(ZoneId zone) {
+		return this;
+	}
+
+	@Override
+	public Instant instant() {
+		return this.now;
+	}
+}
@@ -14,4 +14,9 @@ public class MockDateService implements DateService {
 	public LocalDateTime getMidnight() {
 		return LocalDateTime.now().plusSeconds(3);
 	}
+
+	@Override
+	public LocalDateTime getNow() {
+		return LocalDateTime.now();
+	}
 }
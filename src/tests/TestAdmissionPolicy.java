@@ -0,0 +1,206 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.AdmissionPolicy;
+import model.AdmissionPolicyException;
+import model.DateService;
+import model.QueueEvent;
+import model.SongCache;
+import model.UserCache;
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.UserDb;
+import tests.dataservice.mock.MockDataService;
+import tests.dataservice.mock.MockSong;
+
+/**
+ * Tests for compiling and checking admission rules.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestAdmissionPolicy {
+	private static final UUID USER1 = UUID.fromString("00000000-0000-0000-0000-000000000001");
+	private static final UUID USER2 = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+	private UserDb userDb;
+	private SongCache songs;
+	private UserCache users;
+	private Song song;
+	private Song other;
+	private LocalDateTime now;
+	private DateService dateService;
+
+	/**
+	 * Set up empty caches and a clock at noon.
+	 * 
+	 * @throws DataServiceException
+	 *             never thrown
+	 */
+	@Before
+	public void setUp() throws DataServiceException {
+		this.userDb = new MockDataService(true, true).readUserDb();
+		this.songs = new SongCache();
+		this.users = new UserCache();
+		this.song = new MockSong(new UUID(1, 1), "Artist", "Song", "song.mp3", Duration.ofMinutes(2));
+		this.other = new MockSong(new UUID(1, 2), "Artist", "Other", "other.mp3", Duration.ofMinutes(2));
+		this.now = LocalDateTime.of(2016, 4, 1, 12, 0);
+		this.dateService = new DateService() {
+			@Override
+			public LocalDateTime getMidnight() {
+				return TestAdmissionPolicy.this.now.toLocalDate().plusDays(1).atStartOfDay();
+			}
+
+			@Override
+			public LocalDateTime getNow() {
+				return TestAdmissionPolicy.this.now;
+			}
+		};
+	}
+
+	/**
+	 * Test that without rules songs and users get 3 plays a day and users get
+	 * 1500 minutes, and that every check is measured.
+	 */
+	@Test
+	public void testDefaults() {
+		AdmissionPolicy policy = new AdmissionPolicy(this.dateService);
+		this.users.setAllowance(policy::getAllowanceNanos);
+		assertEquals(3, policy.getMaxPlays());
+		assertEquals(Duration.ofMinutes(1500).toNanos(), policy.getAllowanceNanos(USER1));
+
+		for (int i = 0; i < 3; i++) {
+			assertNull(check(policy, USER1, this.song));
+			play(USER1, this.song);
+		}
+		assertEquals(QueueEvent.SONG_EXCEEDED_PLAY_LIMIT, check(policy, USER2, this.song));
+		assertEquals(QueueEvent.USER_EXCEEDED_PLAY_LIMIT, check(policy, USER1, this.other));
+		Song tooLong = new MockSong(new UUID(1, 3), "Artist", "Long", "long.mp3", Duration.ofMinutes(1501));
+		assertEquals(QueueEvent.USER_EXCEEDED_TIME_LIMIT, check(policy, USER2, tooLong));
+
+		assertEquals(6, policy.getEvaluations());
+		assertTrue(policy.getMaxNanos() >= policy.getMeanNanos());
+		assertTrue(policy.toString().contains("chain of 3"));
+	}
+
+	/**
+	 * Test that groups get their own limits and fall back to everyone's, and
+	 * that single songs can be capped.
+	 * 
+	 * @throws AdmissionPolicyException
+	 *             thrown if the rules are bad
+	 */
+	@Test
+	public void testGroupsAndSongs() throws AdmissionPolicyException {
+		Properties rules = new Properties();
+		rules.setProperty("user.plays", "2");
+		rules.setProperty("user.time", "PT10M");
+		rules.setProperty("song.plays", "10");
+		rules.setProperty("song." + this.other.getId() + ".plays", "1");
+		rules.setProperty("group.staff.users", "MockUser1, MockUser3");
+		rules.setProperty("group.staff.plays", "5");
+		AdmissionPolicy policy = AdmissionPolicy.compile(rules, this.userDb, this.dateService);
+		this.users.setAllowance(policy::getAllowanceNanos);
+		assertEquals(10, policy.getMaxPlays());
+		assertEquals(Duration.ofMinutes(10).toNanos(), policy.getAllowanceNanos(USER1));
+
+		play(USER1, this.other);
+		assertEquals(QueueEvent.SONG_EXCEEDED_PLAY_LIMIT, check(policy, USER2, this.other));
+		play(USER2, this.song);
+		play(USER2, this.song);
+		assertEquals(QueueEvent.USER_EXCEEDED_PLAY_LIMIT, check(policy, USER2, this.song));
+		play(USER1, this.song);
+		play(USER1, this.song);
+		play(USER1, this.song);
+		// staff get more plays but everyone's time, of which 2 minutes are left
+		assertNull(check(policy, USER1, this.song));
+		Song longer = new MockSong(new UUID(1, 3), "Artist", "Longer", "longer.mp3", Duration.ofMinutes(3));
+		assertEquals(QueueEvent.USER_EXCEEDED_TIME_LIMIT, check(policy, USER1, longer));
+	}
+
+	/**
+	 * Test that hours can run past midnight, that groups can have their own,
+	 * and that cheaper checks decide first.
+	 * 
+	 * @throws AdmissionPolicyException
+	 *             thrown if the rules are bad
+	 */
+	@Test
+	public void testHours() throws AdmissionPolicyException {
+		Properties rules = new Properties();
+		rules.setProperty("user.hours", "22:00-02:00");
+		rules.setProperty("group.night.users", "MockUser1");
+		rules.setProperty("group.night.hours", "00:00-24:00");
+		AdmissionPolicy policy = AdmissionPolicy.compile(rules, this.userDb, this.dateService);
+
+		assertEquals(QueueEvent.OUTSIDE_PLAYING_HOURS, check(policy, USER2, this.song));
+		assertNull(check(policy, USER1, this.song));
+		this.now = this.now.withHour(23).withMinute(30);
+		assertNull(check(policy, USER2, this.song));
+		this.now = this.now.withHour(1).withMinute(59);
+		assertNull(check(policy, USER2, this.song));
+		this.now = this.now.withHour(2).withMinute(0);
+		assertEquals(QueueEvent.OUTSIDE_PLAYING_HOURS, check(policy, USER2, this.song));
+
+		for (int i = 0; i < 3; i++) {
+			play(USER1, this.song);
+		}
+		assertEquals(QueueEvent.SONG_EXCEEDED_PLAY_LIMIT, check(policy, USER2, this.song));
+	}
+
+	/**
+	 * Test that bad rules are turned away when they are compiled.
+	 */
+	@Test
+	public void testBadRules() {
+		String[][] bad = { { "user.plays", "-1" }, { "user.plays", "three" }, { "user.time", "1500" },
+				{ "user.hours", "8-22" }, { "user.hours", "24:00-02:00" }, { "user.hours", "08:60-09:00" },
+				{ "song.plays.max", "3" }, { "song.not-an-id.plays", "1" }, { "group.staff.plays", "5" },
+				{ "group.staff.users", "Nobody" } };
+		for (String[] rule : bad) {
+			Properties rules = new Properties();
+			rules.setProperty(rule[0], rule[1]);
+			try {
+				AdmissionPolicy.compile(rules, this.userDb, this.dateService);
+				fail(rule[0] + " = " + rule[1] + " was accepted");
+			} catch (AdmissionPolicyException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Test that nobody can be in two groups.
+	 * 
+	 * @throws AdmissionPolicyException
+	 *             always thrown
+	 */
+	@Test(expected = AdmissionPolicyException.class)
+	public void testTwoGroups() throws AdmissionPolicyException {
+		Properties rules = new Properties();
+		rules.setProperty("group.a.users", "MockUser1");
+		rules.setProperty("group.b.users", "MockUser2, MockUser1");
+		AdmissionPolicy.compile(rules, this.userDb, this.dateService);
+	}
+
+	private QueueEvent check(AdmissionPolicy policy, UUID user, Song toCheck) {
+		return policy.check(user, toCheck.getId(), toCheck, this.songs, this.users);
+	}
+
+	private void play(UUID user, Song played) {
+		this.songs.incPlays(played.getId());
+		this.users.playSong(user, played);
+	}
+}
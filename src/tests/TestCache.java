@@ -0,0 +1,123 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import model.SongCache;
+import model.UserCache;
+import tests.dataservice.mock.MockSong;
+
+/**
+ * Tests for the play count caches.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestCache {
+	private static final long MAX_TIME = Duration.ofMinutes(1500).toNanos();
+
+	/**
+	 * Test that counts are kept apart for many ids as the cache grows and
+	 * that a reset clears them all.
+	 */
+	@Test
+	public void testSongCache() {
+		SongCache cache = new SongCache();
+		assertEquals(0, cache.getPlays(new UUID(0, 1)));
+		for (int i = 0; i < 100; i++) {
+			for (int play = 0; play <= i % 3; play++) {
+				cache.incPlays(new UUID(0, i));
+			}
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals(1 + i % 3, cache.getPlays(new UUID(0, i)));
+		}
+		cache.resetCache();
+		assertEquals(0, cache.getPlays(new UUID(0, 99)));
+		cache.incPlays(new UUID(0, 200));
+		assertEquals(1, cache.getPlays(new UUID(0, 200)));
+		// counts from before the reset start over instead of going on
+		cache.incPlays(new UUID(0, 98));
+		assertEquals(1, cache.getPlays(new UUID(0, 98)));
+		cache.resetCache();
+		cache.resetCache();
+		assertEquals(0, cache.getPlays(new UUID(0, 98)));
+	}
+
+	/**
+	 * Test that playing songs takes time away from each user on their own,
+	 * and that a reset only clears plays.
+	 */
+	@Test
+	public void testUserCache() {
+		UserCache cache = new UserCache();
+		MockSong song = new MockSong(new UUID(1, 0), "Artist", "Title", "song.mp3", Duration.ofSeconds(90));
+		assertEquals(MAX_TIME, cache.getAllottedNanos(new UUID(0, 0)));
+		for (int i = 0; i < 40; i++) {
+			cache.playSong(new UUID(0, i), song);
+		}
+		cache.playSong(new UUID(0, 39), song);
+		assertEquals(MAX_TIME - Duration.ofSeconds(90).toNanos(), cache.getAllottedNanos(new UUID(0, 0)));
+		assertEquals(MAX_TIME - Duration.ofSeconds(180).toNanos(), cache.getAllottedNanos(new UUID(0, 39)));
+		assertEquals(2, cache.getPlays(new UUID(0, 39)));
+
+		cache.resetCache();
+		assertEquals(0, cache.getPlays(new UUID(0, 39)));
+		assertEquals(MAX_TIME - Duration.ofSeconds(180).toNanos(), cache.getAllottedNanos(new UUID(0, 39)));
+	}
+
+	/**
+	 * Test that over a rolling window each play runs out on its own, that a
+	 * reset leaves the counts alone, and that changing the window or going
+	 * back to days keeps the plays counted so far.
+	 */
+	@Test
+	public void testRollingWindow() {
+		MockClock clock = new MockClock();
+		UserCache cache = new UserCache();
+		cache.setWindow(Duration.ofHours(24), 3, clock);
+		UUID user = new UUID(0, 1);
+		MockSong song = new MockSong(new UUID(1, 0), "Artist", "Title", "song.mp3", Duration.ofSeconds(90));
+		for (int i = 0; i < 3; i++) {
+			cache.playSong(user, song);
+			clock.advance(Duration.ofHours(1));
+		}
+		assertEquals(3, cache.getPlays(user));
+		cache.resetCache();
+		assertEquals(3, cache.getPlays(user));
+
+		clock.advance(Duration.ofHours(21));
+		assertEquals(2, cache.getPlays(user));
+		cache.playSong(user, song);
+		assertEquals(3, cache.getPlays(user));
+		clock.advance(Duration.ofHours(2));
+		assertEquals(1, cache.getPlays(user));
+		assertEquals(MAX_TIME - Duration.ofSeconds(360).toNanos(), cache.getAllottedNanos(user));
+
+		// ids seen after the window was set get rings too
+		for (int i = 0; i < 2000; i++) {
+			cache.incPlays(new UUID(2, i));
+		}
+		assertEquals(1, cache.getPlays(new UUID(2, 1999)));
+
+		cache.setWindow(Duration.ofHours(24), 5, clock);
+		assertEquals(1, cache.getPlays(user));
+		cache.incPlays(user);
+		clock.advance(Duration.ofHours(1));
+		cache.incPlays(user);
+		assertEquals(3, cache.getPlays(user));
+		// only the latest plays fit in a smaller ring
+		cache.setWindow(Duration.ofHours(24), 2, clock);
+		assertEquals(2, cache.getPlays(user));
+		cache.incPlays(user);
+		assertEquals(2, cache.getPlays(user));
+
+		// the plays since the reset
+		cache.setWindow(null, 3, clock);
+		assertEquals(4, cache.getPlays(user));
+	}
+}
@@ -4,12 +4,28 @@ import static org.junit.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import javax.swing.SwingUtilities;
 import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
 
@@ -17,15 +33,25 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import model.AdmissionPolicy;
+import model.AdmissionPolicyException;
+import model.CachedUser;
+import model.DateService;
 import model.JukeboxModel;
 import model.PersistenceServiceException;
 import model.QueueEvent;
+import model.QueueResult;
 import model.RealDateService;
 import model.SongQueue;
 import model.dataservice.DataService;
 import model.dataservice.DataServiceException;
 import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.User;
+import model.dataservice.UserDb;
 import tests.dataservice.mock.MockDataService;
+import tests.dataservice.mock.MockSong;
+import tests.dataservice.mock.MockUser;
 
 /**
  * Tests for the Jukebox model. Uses a mocked DataService to provide data and a
@@ -90,10 +116,31 @@ public class TestJukeboxModel {
 	}
 
 	/**
-	 * Test that the queue works, and that its ListModel works.
+	 * Test that a song that was added comes back with when it should start
+	 * and one that wasn't comes back without.
+	 */
+	@Test
+	public void testRequestSong() {
+		List<Song> songs = this.model.getSongDb().getSongs();
+		QueueResult refused = this.model.requestSong(songs.get(0).getId());
+		assertEquals(QueueEvent.NO_USER_LOGGED_IN, refused.getEvent());
+		assertNull(refused.getEstimatedStart());
+		this.model.authUser("MockUser1", "MockPassword1");
+		QueueResult first = this.model.requestSong(songs.get(0).getId());
+		QueueResult second = this.model.requestSong(songs.get(1).getId());
+		assertEquals(QueueEvent.SONG_ADDED, second.getEvent());
+		assertNotNull(first.getEstimatedStart());
+		assertFalse(second.getEstimatedStart().isBefore(first.getEstimatedStart()));
+	}
+
+	/**
+	 * Test that the queue works, and that its ListModel works. The model's
+	 * player is stopped first, so it can't take the song off the queue (by
+	 * failing to play it) before the test does.
 	 */
 	@Test
 	public void testSongQueue() {
+		this.model.shutdown();
 		SongQueue queue = this.model.getSongQueue();
 		ListDataListener listDataListener = new ListDataListener() {
 			@Override
@@ -121,6 +168,200 @@ public class TestJukeboxModel {
 		queue.removeListDataListener(listDataListener);
 	}
 
+	/**
+	 * Test that the queue keeps its order while it wraps around and grows,
+	 * and that it only reports the rows that were added or removed.
+	 */
+	@Test
+	public void testSongQueueEvents() {
+		SongQueue queue = new SongQueue(this.model.getSongDb());
+		List<String> events = new ArrayList<>();
+		queue.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				events.add("added " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				events.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				events.add("changed");
+			}
+		});
+
+		List<Song> songs = this.model.getSongDb().getSongs();
+		Deque<UUID> expected = new ArrayDeque<>();
+		for (int i = 0; i < 100; i++) {
+			UUID id = songs.get(i % songs.size()).getId();
+			queue.add(id);
+			expected.add(id);
+			assertEquals("added " + (expected.size() - 1) + "-" + (expected.size() - 1), events.remove(0));
+			if (i % 3 == 0) {
+				queue.remove();
+				expected.remove();
+				assertEquals("removed 0-0", events.remove(0));
+			}
+			assertEquals(expected.size(), queue.getSize());
+			assertEquals(expected.isEmpty(), queue.isEmpty());
+			if (!expected.isEmpty()) {
+				assertEquals(expected.peek(), queue.peek());
+			}
+		}
+		int i = 0;
+		for (UUID id : expected) {
+			assertEquals(id, queue.getElementAt(i++).getId());
+		}
+		while (!queue.isEmpty()) {
+			queue.remove();
+		}
+		assertTrue(events.size() == expected.size() && !events.contains("changed"));
+	}
+
+	/**
+	 * Test that taking from an empty queue fails.
+	 */
+	@Test(expected = NoSuchElementException.class)
+	public void testSongQueueEmpty() {
+		new SongQueue(this.model.getSongDb()).remove();
+	}
+
+	/**
+	 * Test that the queue player sleeps while there is nothing to do and goes
+	 * away on shutdown.
+	 * 
+	 * @throws InterruptedException
+	 *             thrown if halted while sleeping
+	 */
+	@Test
+	public void testShutdown() throws InterruptedException {
+		// other tests leave their players behind, so only look at new threads
+		Set<Thread> before = Thread.getAllStackTraces().keySet();
+		this.model.authUser("MockUser1", "MockPassword1");
+		this.model.queueSong(this.model.getSongDb().getSongs().get(0).getId());
+		Thread.sleep(200);
+
+		Thread player = null;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("queue-player") && !before.contains(thread)) {
+				player = thread;
+			}
+		}
+		assertTrue(player != null);
+		assertTrue(player.getState() != Thread.State.RUNNABLE);
+
+		this.model.shutdown();
+		player.join(1000);
+		assertFalse(player.isAlive());
+		assertEquals(QueueEvent.SONG_ADDED, this.model.queueSong(this.model.getSongDb().getSongs().get(0).getId()));
+	}
+
+	/**
+	 * Test that many threads asking for songs at once for many users never
+	 * get a song or a user past the limit, and that every play that was let
+	 * in was counted once.
+	 * 
+	 * @throws DataServiceException
+	 *             never thrown
+	 * @throws InterruptedException
+	 *             thrown if halted while waiting
+	 */
+	@Test
+	public void testConcurrentQueueSong() throws DataServiceException, InterruptedException {
+		int songCount = 50;
+		int userCount = 40;
+		List<Song> songs = new ArrayList<>();
+		Map<UUID, Song> songsById = new HashMap<>();
+		for (int i = 0; i < songCount; i++) {
+			Song song = new MockSong(new UUID(1, i), "Artist", "Song " + i, "song" + i + ".mp3",
+					Duration.ofSeconds(1));
+			songs.add(song);
+			songsById.put(song.getId(), song);
+		}
+		Map<UUID, User> users = new HashMap<>();
+		for (int i = 0; i < userCount; i++) {
+			users.put(new UUID(2, i), new MockUser(new UUID(2, i), "User" + i, "Password" + i));
+		}
+		JukeboxModel model = new JukeboxModel(new RealDateService());
+		model.bind(new DataService() {
+			@Override
+			public SongDb readSongDb() {
+				return new SongDb() {
+					@Override
+					public List<Song> getSongs() {
+						return songs;
+					}
+
+					@Override
+					public Song getSongById(UUID id) {
+						return songsById.get(id);
+					}
+				};
+			}
+
+			@Override
+			public UserDb readUserDb() {
+				return new UserDb() {
+					@Override
+					public User getUserById(UUID id) {
+						return users.get(id);
+					}
+
+					@Override
+					public User getUserByName(String name) {
+						return null;
+					}
+				};
+			}
+		});
+
+		int threads = 16;
+		AtomicIntegerArray songPlays = new AtomicIntegerArray(songCount);
+		AtomicIntegerArray userPlays = new AtomicIntegerArray(userCount);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			Random random = new Random(t);
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < 5000; i++) {
+					int song = random.nextInt(songCount);
+					int user = random.nextInt(userCount);
+					if (model.queueSong(new UUID(1, song), new UUID(2, user)) == QueueEvent.SONG_ADDED) {
+						songPlays.incrementAndGet(song);
+						userPlays.incrementAndGet(user);
+					}
+				}
+			});
+			worker.start();
+			workers.add(worker);
+		}
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		model.shutdown();
+
+		int added = 0;
+		for (int i = 0; i < songCount; i++) {
+			assertTrue(songPlays.get(i) <= 3);
+			added += songPlays.get(i);
+		}
+		// there are more song plays than user plays to go around
+		for (int i = 0; i < userCount; i++) {
+			assertEquals(3, userPlays.get(i));
+		}
+		assertEquals(userCount * 3, added);
+		assertEquals(QueueEvent.NO_USER_LOGGED_IN, model.queueSong(new UUID(1, 0), new UUID(3, 0)));
+	}
+
 	/**
 	 * Tests saving and reading state.
 	 * 
@@ -161,6 +402,132 @@ public class TestJukeboxModel {
 		assertEquals(QueueEvent.SONG_EXCEEDED_PLAY_LIMIT, this.model.queueSong(song));
 	}
 
+	/**
+	 * Test that saved state is dated by the model's DateService, so the
+	 * counts come back when it says it is still the same day, whatever the
+	 * system clock says.
+	 * 
+	 * @throws IOException
+	 *             thrown on file errors
+	 * @throws DataServiceException
+	 *             never thrown
+	 * @throws PersistenceServiceException
+	 *             thrown if there was a problem with persistence
+	 */
+	@Test
+	public void testStateDate() throws IOException, DataServiceException, PersistenceServiceException {
+		DateService dateService = new DateService() {
+			@Override
+			public LocalDateTime getMidnight() {
+				return LocalDateTime.of(2001, 1, 2, 0, 0);
+			}
+
+			@Override
+			public LocalDateTime getNow() {
+				return LocalDateTime.of(2001, 1, 1, 12, 0);
+			}
+		};
+		TemporaryFolder tmp = new TemporaryFolder();
+		tmp.create();
+		File file = tmp.newFile("TestState.dat");
+
+		JukeboxModel model = new JukeboxModel(dateService);
+		model.bind(this.dataService);
+		UUID song = model.getSongDb().getSongs().get(0).getId();
+		model.authUser("MockUser1", "MockPassword1");
+		for (int i = 0; i < 3; i++) {
+			assertEquals(QueueEvent.SONG_ADDED, model.queueSong(song));
+		}
+		model.writeState(file);
+		model.shutdown();
+
+		model = new JukeboxModel(dateService);
+		model.bind(this.dataService);
+		model.readState(file);
+		model.authUser("MockUser2", "MockPassword2");
+		assertEquals(QueueEvent.SONG_EXCEEDED_PLAY_LIMIT, model.queueSong(song));
+		model.shutdown();
+		tmp.delete();
+	}
+
+	/**
+	 * Test that plays run out one at a time over a rolling window, by the
+	 * model's clock, and that the logged in user is told when theirs do.
+	 * 
+	 * @throws DataServiceException
+	 *             never thrown
+	 * @throws InterruptedException
+	 *             thrown if halted while waiting
+	 */
+	@Test
+	public void testRollingWindow() throws DataServiceException, InterruptedException {
+		MockClock clock = new MockClock();
+		System.setProperty("jukebox.quota.window", "PT1H");
+		JukeboxModel model = new JukeboxModel(new RealDateService(), clock);
+		try {
+			model.bind(this.dataService);
+		} finally {
+			System.clearProperty("jukebox.quota.window");
+		}
+		UUID song = model.getSongDb().getSongs().get(0).getId();
+		model.authUser("MockUser1", "MockPassword1");
+		assertEquals(QueueEvent.SONG_ADDED, model.queueSong(song));
+		assertEquals(QueueEvent.SONG_ADDED, model.queueSong(song));
+		assertEquals(QueueEvent.SONG_ADDED, model.queueSong(song));
+		assertEquals(QueueEvent.SONG_EXCEEDED_PLAY_LIMIT, model.queueSong(song));
+
+		CountDownLatch expired = new CountDownLatch(1);
+		model.addObserver((o, user) -> {
+			// observers may be views, so they are told on the event
+			// dispatch thread
+			if (((CachedUser) user).getPlays() == 0 && SwingUtilities.isEventDispatchThread()) {
+				expired.countDown();
+			}
+		});
+		clock.advance(Duration.ofMinutes(61));
+		assertTrue(expired.await(10, TimeUnit.SECONDS));
+		model.shutdown();
+		assertEquals(QueueEvent.SONG_ADDED, model.queueSong(song));
+	}
+
+	/**
+	 * Test that rules read from a file are used for requests and for the
+	 * time users have left, and that bad rules leave the old ones in place.
+	 * 
+	 * @throws IOException
+	 *             thrown on file errors
+	 * @throws AdmissionPolicyException
+	 *             thrown if the good rules can't be read
+	 */
+	@Test
+	public void testAdmissionPolicy() throws IOException, AdmissionPolicyException {
+		TemporaryFolder tmp = new TemporaryFolder();
+		tmp.create();
+		File rules = tmp.newFile("Admission.properties");
+		Files.write(rules.toPath(), Arrays.asList("user.plays = 1", "user.time = PT10M",
+				"group.big.users = MockUser2", "group.big.plays = 2"), StandardCharsets.UTF_8);
+		this.model.readAdmissionPolicy(rules);
+
+		List<Song> songs = this.model.getSongDb().getSongs();
+		this.model.authUser("MockUser1", "MockPassword1");
+		assertEquals(QueueEvent.SONG_ADDED, this.model.queueSong(songs.get(0).getId()));
+		assertEquals(QueueEvent.USER_EXCEEDED_PLAY_LIMIT, this.model.queueSong(songs.get(1).getId()));
+		this.model.authUser("MockUser2", "MockPassword2");
+		assertEquals(QueueEvent.SONG_ADDED, this.model.queueSong(songs.get(0).getId()));
+		assertEquals(QueueEvent.USER_EXCEEDED_TIME_LIMIT, this.model.queueSong(songs.get(3).getId()));
+		assertEquals(QueueEvent.SONG_ADDED, this.model.queueSong(songs.get(1).getId()));
+		assertEquals(5, this.model.getAdmissionPolicy().getEvaluations());
+
+		AdmissionPolicy policy = this.model.getAdmissionPolicy();
+		Files.write(rules.toPath(), Arrays.asList("user.plays = lots"), StandardCharsets.UTF_8);
+		try {
+			this.model.readAdmissionPolicy(rules);
+			fail("bad rules were read");
+		} catch (AdmissionPolicyException e) {
+			assertSame(policy, this.model.getAdmissionPolicy());
+		}
+	}
+
 	/**
 	 * Make sure the date is properly reported by the DateService.
 	 */
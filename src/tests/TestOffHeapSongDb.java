@@ -0,0 +1,98 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.compact.OffHeapSongDb;
+import model.dataservice.xml.StreamingXmlDataService;
+import tests.bench.SongDbLookupBenchmark;
+
+/**
+ * Tests for the off-heap song database.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestOffHeapSongDb {
+
+	/**
+	 * Test that songs come back as they went in, including across buffer
+	 * growth, and that the first of two duplicate ids wins.
+	 */
+	@Test
+	public void testAddAndLookup() {
+		OffHeapSongDb.Builder builder = new OffHeapSongDb.Builder();
+		UUID first = UUID.fromString("4158af70-2792-4214-b449-2d966b5f85b5");
+		builder.add(first, "Kevin Macleod", "Danse Macabre", "DanseMacabreViolinHook.mp3", 34);
+		for (int i = 0; i < 5000; i++) {
+			builder.add(new UUID(i, -i), "Artist " + (i % 7), "Title \u00e9 " + i, "song" + i + ".mp3", i);
+		}
+		builder.add(first, "Duplicate", "Duplicate", "Duplicate", 1);
+		OffHeapSongDb songDb = builder.build();
+
+		assertEquals(5002, songDb.getSongs().size());
+		Song song = songDb.getSongById(first);
+		assertEquals(first, song.getId());
+		assertEquals("Kevin Macleod", song.getArtist());
+		assertEquals("Danse Macabre", song.getTitle());
+		assertEquals("DanseMacabreViolinHook.mp3", song.getFilename());
+		assertEquals(Duration.ofSeconds(34), song.getLength());
+		assertEquals("00:34 Danse Macabre by Kevin Macleod", song.toString());
+
+		for (int i = 0; i < 5000; i += 13) {
+			Song s = songDb.getSongById(new UUID(i, -i));
+			assertEquals("Title \u00e9 " + i, s.getTitle());
+			assertEquals("song" + i + ".mp3", s.getFilename());
+			assertEquals(Duration.ofSeconds(i), s.getLength());
+		}
+		assertSame(songDb.getSongById(new UUID(1, -1)).getArtist(), songDb.getSongById(new UUID(8, -8)).getArtist());
+		assertEquals(new UUID(4999, -4999), songDb.getSongs().get(5000).getId());
+		assertNull(songDb.getSongById(new UUID(-1, -1)));
+		assertTrue(songDb.getOffHeapBytes() > 0);
+	}
+
+	/**
+	 * Test that an empty database works.
+	 */
+	@Test
+	public void testEmpty() {
+		SongDb songDb = new OffHeapSongDb.Builder().build();
+		assertEquals(0, songDb.getSongs().size());
+		assertNull(songDb.getSongById(new UUID(0, 0)));
+	}
+
+	/**
+	 * Test that the streaming loader can fill an off-heap database.
+	 * 
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown if the catalog can't be read
+	 */
+	@Test
+	public void testStreamingLoad() throws IOException, DataServiceException {
+		TemporaryFolder tmp = new TemporaryFolder();
+		tmp.create();
+		File file = tmp.newFile("SongDb.xml");
+		UUID[] ids = SongDbLookupBenchmark.writeSongDb(file, 3000);
+
+		SongDb songDb = new StreamingXmlDataService(file, new File("resources/UserDb.xml"), null,
+				OffHeapSongDb.Builder::new).readSongDb();
+		assertTrue(songDb instanceof OffHeapSongDb);
+		assertEquals(ids.length, songDb.getSongs().size());
+		assertEquals("Title 1234", songDb.getSongById(ids[1234]).getTitle());
+	}
+}
@@ -0,0 +1,101 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.junit.Test;
+
+import songplayer.PcmCache;
+
+/**
+ * Tests for the decoded PCM cache.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestPcmCache {
+	private static final AudioFormat CD = new AudioFormat(44100, 16, 2, true, false);
+	private static final AudioFormat MONO = new AudioFormat(22050, 16, 1, true, false);
+
+	/**
+	 * Test that PCM comes back as it went in, per source and format, and
+	 * that hits and misses are counted.
+	 */
+	@Test
+	public void testGetAndPut() {
+		PcmCache cache = new PcmCache(1000, false);
+		assertNull(cache.get("tada.wav", CD));
+
+		cache.put("tada.wav", CD, pcm(100, (byte) 7));
+		ByteBuffer cached = cache.get("tada.wav", CD);
+		assertEquals(100, cached.remaining());
+		assertEquals(7, cached.get(99));
+		assertNull(cache.get("tada.wav", MONO));
+		assertNull(cache.get("flute.aif", CD));
+		assertTrue(cache.get("tada.wav", new AudioFormat(44100, 16, 2, true, false)) != null);
+
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(0.4, cache.getHitRate(), 1e-9);
+		assertEquals(100, cache.getSizeBytes());
+	}
+
+	/**
+	 * Test that the least recently used songs make room for new ones and that
+	 * songs too big for the cache are turned away.
+	 */
+	@Test
+	public void testEviction() {
+		PcmCache cache = new PcmCache(1000, false);
+		cache.put("a", CD, pcm(250, (byte) 1));
+		cache.put("b", CD, pcm(250, (byte) 2));
+		cache.put("c", CD, pcm(250, (byte) 3));
+		cache.put("d", CD, pcm(250, (byte) 4));
+		assertEquals(1000, cache.getSizeBytes());
+
+		cache.get("a", CD);
+		cache.put("e", CD, pcm(200, (byte) 5));
+		assertNull(cache.get("b", CD));
+		assertTrue(cache.get("a", CD) != null);
+		assertEquals(1, cache.getEvictions());
+		assertEquals(950, cache.getSizeBytes());
+
+		cache.put("huge", CD, pcm(251, (byte) 6));
+		assertNull(cache.get("huge", CD));
+
+		cache.put("a", CD, pcm(10, (byte) 9));
+		assertEquals(710, cache.getSizeBytes());
+		assertEquals(9, cache.get("a", CD).get(0));
+	}
+
+	/**
+	 * Test that PCM kept off the heap reads back the same and can't be
+	 * changed through the cache.
+	 */
+	@Test
+	public void testDirect() {
+		PcmCache cache = new PcmCache(1 << 20, true);
+		ByteBuffer source = pcm(4096, (byte) 3);
+		cache.put("tada.wav", CD, source);
+		source.put(0, (byte) 8);
+
+		ByteBuffer cached = cache.get("tada.wav", CD);
+		assertTrue(cached.isDirect());
+		assertTrue(cached.isReadOnly());
+		assertEquals(3, cached.get(0));
+		cached.get(new byte[100]);
+		assertEquals(4096, cache.get("tada.wav", CD).remaining());
+	}
+
+	private static ByteBuffer pcm(int length, byte value) {
+		byte[] data = new byte[length];
+		Arrays.fill(data, value);
+		return ByteBuffer.wrap(data);
+	}
+}
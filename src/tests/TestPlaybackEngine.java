@@ -0,0 +1,366 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.EventQueue;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import songplayer.AudioSink;
+import songplayer.AudioSinks;
+import songplayer.EndOfSongListener;
+import songplayer.NullSink;
+import songplayer.PcmCache;
+import songplayer.PlaybackEngine;
+import songplayer.PlaybackEvent;
+import songplayer.PlaybackEventChannel;
+import songplayer.WavFileSink;
+
+/**
+ * Tests for the PlaybackEngine, played to sinks that don't need a sound
+ * device.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestPlaybackEngine {
+	private static final String TADA = "songfiles/tada.wav";
+	private static final String SPACE = "songfiles/spacemusic.au";
+
+	private TemporaryFolder tmp;
+	private PlaybackEngine engine;
+	// held until every song in a test has been asked for
+	private CountDownLatch requested;
+
+	/**
+	 * Make a temporary folder for recordings.
+	 *
+	 * @throws IOException
+	 *             thrown if the temporary folder can't be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.tmp = new TemporaryFolder();
+		this.tmp.create();
+		this.requested = new CountDownLatch(1);
+	}
+
+	/**
+	 * Stop the engine.
+	 */
+	@After
+	public void tearDown() {
+		if (this.engine != null) {
+			this.engine.shutdown();
+		}
+		this.tmp.delete();
+	}
+
+	/**
+	 * Test that songs played back to back are recorded without a single
+	 * frame missing or added, that every song ends in order, and that the
+	 * second time a song is played it comes from the cache.
+	 *
+	 * @throws Exception
+	 *             thrown if playing or reading the recording fails
+	 */
+	@Test
+	public void testGaplessRecording() throws Exception {
+		File out = new File(this.tmp.getRoot(), "out.wav");
+		PcmCache cache = new PcmCache(64 << 20, false);
+		this.engine = new PlaybackEngine(new RecordingSink(out), cache);
+
+		List<String> ended = play(TADA, TADA, TADA);
+		assertEquals(3, ended.size());
+		assertEquals(1, cache.getMisses());
+		assertEquals(2, cache.getHits());
+		assertTrue(this.engine.getLastGapNanos() >= 0);
+		this.engine.shutdown();
+		this.engine = null;
+
+		assertEquals(3 * frames(TADA), recordedFrames(out));
+	}
+
+	/**
+	 * Test that crossfaded songs overlap by the crossfade.
+	 *
+	 * @throws Exception
+	 *             thrown if playing or reading the recording fails
+	 */
+	@Test
+	public void testCrossfadeRecording() throws Exception {
+		File out = new File(this.tmp.getRoot(), "out.wav");
+		this.engine = new PlaybackEngine(new RecordingSink(out), null);
+		this.engine.setCrossfadeMillis(100);
+
+		play(TADA, TADA);
+		this.engine.shutdown();
+		this.engine = null;
+
+		long overlap = (long) (format(TADA).getFrameRate() * 100 / 1000);
+		assertEquals(2 * frames(TADA) - overlap, recordedFrames(out));
+	}
+
+	/**
+	 * Test that a change of format starts a new recording and that songs end
+	 * in the order they were asked for.
+	 *
+	 * @throws Exception
+	 *             thrown if playing fails
+	 */
+	@Test
+	public void testFormatChange() throws Exception {
+		File out = new File(this.tmp.getRoot(), "out.wav");
+		WavFileSink sink = new RecordingSink(out);
+		this.engine = new PlaybackEngine(sink, null);
+
+		List<String> ended = play(TADA, SPACE, TADA);
+		assertEquals(3, ended.size());
+		assertTrue(ended.get(0).endsWith("tada.wav"));
+		assertTrue(ended.get(1).endsWith("spacemusic.au"));
+		assertTrue(ended.get(2).endsWith("tada.wav"));
+		this.engine.shutdown();
+		this.engine = null;
+
+		assertTrue(sink.getFile(1).exists());
+		assertTrue(sink.getFile(2).exists());
+	}
+
+	/**
+	 * Test that the real time null sink takes as long as the audio lasts and
+	 * the fast one doesn't.
+	 *
+	 * @throws Exception
+	 *             thrown if playing fails
+	 */
+	@Test
+	public void testNullSinks() throws Exception {
+		long millis = frames(TADA) * 1000 / (long) format(TADA).getFrameRate();
+
+		this.engine = new PlaybackEngine(new NullSink(true), null);
+		long start = System.nanoTime();
+		play(TADA);
+		assertTrue((System.nanoTime() - start) / 1000000 >= millis - 50);
+		this.engine.shutdown();
+
+		this.engine = new PlaybackEngine(new NullSink(false), null);
+		start = System.nanoTime();
+		play(TADA, TADA, TADA);
+		assertTrue((System.nanoTime() - start) / 1000000 < 3 * millis);
+	}
+
+	/**
+	 * Test that every song is reported starting and then ending, in order.
+	 *
+	 * @throws Exception
+	 *             thrown if playing fails
+	 */
+	@Test
+	public void testPlaybackEvents() throws Exception {
+		this.engine = new PlaybackEngine(new NullSink(false), null);
+		List<PlaybackEvent> events = new CopyOnWriteArrayList<>();
+		this.engine.getEvents().addPlaybackListener(events::addAll);
+		this.engine.play("songfiles/missing.wav", null);
+		play(TADA, SPACE);
+		EventQueue.invokeAndWait(() -> {
+			// let anything published before the last ending be delivered
+		});
+
+		List<String> seen = new ArrayList<>();
+		for (PlaybackEvent event : events) {
+			seen.add(event.getType() + " " + new File(event.getFileName()).getName());
+		}
+		assertEquals(Arrays.asList("FAILED missing.wav", "STARTED tada.wav", "ENDED tada.wav",
+				"STARTED spacemusic.au", "ENDED spacemusic.au"), seen);
+		PlaybackEventChannel channel = this.engine.getEvents();
+		assertEquals(5, channel.getDelivered());
+		assertTrue(channel.getMaxLatencyNanos() >= channel.getMeanLatencyNanos());
+	}
+
+	/**
+	 * Test that a song that can't be played between two that can is reported
+	 * to its listener, after the song before it ended and before the song
+	 * after it, so whoever plays a queue can tell which song is over.
+	 *
+	 * @throws Exception
+	 *             thrown if playing fails
+	 */
+	@Test
+	public void testUnplayableBetweenSongs() throws Exception {
+		this.engine = new PlaybackEngine(new NullSink(false), null);
+		List<String> ended = play(TADA, "songfiles/missing.wav", SPACE);
+
+		List<String> names = new ArrayList<>();
+		for (String file : ended) {
+			names.add(new File(file).getName());
+		}
+		assertEquals(Arrays.asList("tada.wav", "missing.wav", "spacemusic.au"), names);
+	}
+
+	/**
+	 * Test that a song whose frames don't divide the engine's buffers, here
+	 * three channels of six bytes a frame, plays from the cache, and that
+	 * the engine still plays the song after it.
+	 *
+	 * @throws Exception
+	 *             thrown if the song can't be written or played
+	 */
+	@Test
+	public void testOddFrameSizeFromCache() throws Exception {
+		AudioFormat format = new AudioFormat(22050, 16, 3, true, false);
+		int frames = 22050;
+		File song = new File(this.tmp.getRoot(), "three.wav");
+		AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(new byte[frames * format.getFrameSize()]),
+				format, frames), AudioFileFormat.Type.WAVE, song);
+
+		PcmCache cache = new PcmCache(64 << 20, false);
+		this.engine = new PlaybackEngine(new NullSink(false), cache);
+		List<String> ended = play(song.getPath(), song.getPath(), TADA);
+		assertEquals(3, ended.size());
+		assertEquals(1, cache.getHits());
+	}
+
+	/**
+	 * Test that publishing never waits for the event dispatch thread and that
+	 * events published while it is busy are delivered together, in order.
+	 *
+	 * @throws Exception
+	 *             thrown if waiting is interrupted
+	 */
+	@Test
+	public void testCoalescedDelivery() throws Exception {
+		PlaybackEventChannel channel = new PlaybackEventChannel();
+		List<List<PlaybackEvent>> batches = new CopyOnWriteArrayList<>();
+		channel.addPlaybackListener(batches::add);
+		List<String> ended = new CopyOnWriteArrayList<>();
+
+		CountDownLatch busy = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		EventQueue.invokeLater(() -> {
+			busy.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		busy.await();
+		long start = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			channel.publish(new PlaybackEvent(PlaybackEvent.Type.ENDED, "song" + i), e -> ended.add(e.fileName()));
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		release.countDown();
+		EventQueue.invokeAndWait(() -> {
+			// wait for the delivery queued behind the busy task
+		});
+
+		assertEquals(1, batches.size());
+		assertEquals(100, batches.get(0).size());
+		assertEquals(100, ended.size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("song" + i, ended.get(i));
+			assertEquals("song" + i, batches.get(0).get(i).getFileName());
+		}
+		assertEquals(100, channel.getDelivered());
+		assertEquals(1, channel.getBatches());
+	}
+
+	/**
+	 * Test that sinks can be picked by name.
+	 */
+	@Test
+	public void testSinkNames() {
+		assertTrue(AudioSinks.forName("null") instanceof NullSink);
+		assertTrue(AudioSinks.forName("fast") instanceof NullSink);
+		AudioSink wav = AudioSinks.forName("wav:" + new File(this.tmp.getRoot(), "x.wav"));
+		assertTrue(wav instanceof WavFileSink);
+		assertEquals("x-1.wav", ((WavFileSink) wav).getFile(1).getName());
+	}
+
+	/**
+	 * Test that an unknown sink name fails.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownSink() {
+		AudioSinks.forName("speakers");
+	}
+
+	/**
+	 * Play songs back to back and wait for all of them to end.
+	 */
+	private List<String> play(String... files) throws InterruptedException {
+		List<String> ended = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(files.length);
+		EndOfSongListener listener = eose -> {
+			ended.add(eose.fileName());
+			done.countDown();
+		};
+		for (String file : files) {
+			this.engine.play(file, listener);
+		}
+		this.requested.countDown();
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		return ended;
+	}
+
+	private static AudioFileFormat fileFormat(String file) throws IOException, UnsupportedAudioFileException {
+		return AudioSystem.getAudioFileFormat(new File(file));
+	}
+
+	private static AudioFormat format(String file) throws IOException, UnsupportedAudioFileException {
+		return fileFormat(file).getFormat();
+	}
+
+	private static long frames(String file) throws IOException, UnsupportedAudioFileException {
+		return fileFormat(file).getFrameLength();
+	}
+
+	private static long recordedFrames(File file) throws IOException, UnsupportedAudioFileException {
+		try (AudioInputStream in = AudioSystem.getAudioInputStream(file)) {
+			return in.getFrameLength();
+		}
+	}
+
+	/**
+	 * Records to a file, but doesn't start until every song has been asked
+	 * for. A file takes next to no time to write, so otherwise a song could
+	 * be over before the test has asked for the one after it.
+	 */
+	private class RecordingSink extends WavFileSink {
+		public RecordingSink(File file) {
+			super(file);
+		}
+
+		@Override
+		public void open(AudioFormat format) throws LineUnavailableException {
+			try {
+				TestPlaybackEngine.this.requested.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new LineUnavailableException("interrupted");
+			}
+			super.open(format);
+		}
+	}
+}
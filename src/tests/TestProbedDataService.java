@@ -0,0 +1,120 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.probe.AudioProbe;
+import model.dataservice.probe.AudioProber;
+import model.dataservice.probe.ProbedDataService;
+import model.dataservice.xml.StreamingXmlDataService;
+
+/**
+ * Tests for probing song files for their real lengths.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestProbedDataService {
+	private static final File SONG_DB_FILE = new File("resources/SongDb.xml");
+	private static final File USER_DB_FILE = new File("resources/UserDb.xml");
+	private static final File SONG_DIR = new File("songfiles");
+	private static final UUID TADA = UUID.fromString("8974fcc9-42f8-431b-9227-90598c04d26b");
+	private static final UUID FLUTE = UUID.fromString("cb0b8dbe-a609-452e-a5df-8f7261a9896f");
+
+	private TemporaryFolder tmp;
+
+	/**
+	 * Make a temporary folder for the probe cache.
+	 *
+	 * @throws IOException
+	 *             thrown if the temporary folder can't be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.tmp = new TemporaryFolder();
+		this.tmp.create();
+	}
+
+	/**
+	 * Test that songs get the length of their file and that songs whose file
+	 * is missing keep the length from the catalog.
+	 *
+	 * @throws IOException
+	 *             thrown if the temporary folder can't be used
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testCorrectedLengths() throws IOException, DataServiceException {
+		ProbedDataService dataService = new ProbedDataService(
+				new StreamingXmlDataService(SONG_DB_FILE, USER_DB_FILE), SONG_DIR,
+				new AudioProber(this.tmp.newFile("probes")));
+		SongDb songDb = dataService.readSongDb();
+
+		// 42752 frames at 22050 Hz
+		Song tada = songDb.getSongById(TADA);
+		assertEquals(Duration.ofNanos(1938866213), tada.getLength());
+		assertEquals("00:01 Tada by Microsoft", tada.toString());
+		assertSame(tada, songDb.getSongs().get(songDb.getSongs().indexOf(tada)));
+		assertTrue(dataService.getProbe(TADA).isValid());
+		assertTrue(dataService.getProbe(TADA).getFormat().contains("22050"));
+		assertEquals(Duration.ofNanos(5989659863L), songDb.getSongById(FLUTE).getLength());
+
+		SongDb unprobed = new StreamingXmlDataService(SONG_DB_FILE, USER_DB_FILE).readSongDb();
+		assertEquals(unprobed.getSongCount(), songDb.getSongCount());
+		for (Song song : unprobed.getSongs()) {
+			AudioProbe probe = dataService.getProbe(song.getId());
+			if (!probe.isValid()) {
+				assertEquals(song.getLength(), songDb.getSongById(song.getId()).getLength());
+			}
+		}
+	}
+
+	/**
+	 * Test that probes are kept on disk and only taken again once a file
+	 * changes.
+	 *
+	 * @throws IOException
+	 *             thrown if the files can't be written
+	 */
+	@Test
+	public void testCache() throws IOException {
+		File cache = new File(this.tmp.getRoot(), "probes");
+		File song = new File(this.tmp.getRoot(), "tada.wav");
+		Files.copy(new File(SONG_DIR, "tada.wav").toPath(), song.toPath());
+		File missing = new File(this.tmp.getRoot(), "missing.wav");
+
+		Map<String, AudioProbe> probes = new AudioProber(cache).probe(Arrays.asList(song, missing));
+		assertTrue(probes.get(song.getAbsolutePath()).isValid());
+		assertFalse(probes.get(missing.getAbsolutePath()).isValid());
+		assertTrue(cache.isFile());
+
+		// wreck the file without changing its size or time stamp
+		long modified = song.lastModified();
+		Files.write(song.toPath(), new byte[(int) song.length()]);
+		assertTrue(song.setLastModified(modified));
+		probes = new AudioProber(cache).probe(Arrays.asList(song));
+		assertTrue(probes.get(song.getAbsolutePath()).isValid());
+
+		assertTrue(song.setLastModified(modified - 10000));
+		probes = new AudioProber(cache).probe(Arrays.asList(song));
+		assertFalse(probes.get(song.getAbsolutePath()).isValid());
+	}
+}
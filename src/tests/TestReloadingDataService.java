@@ -0,0 +1,313 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.event.TableModelEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.SongDb;
+import model.dataservice.reload.CatalogChange;
+import model.dataservice.reload.ReloadingDataService;
+import model.dataservice.xml.StreamingXmlDataService;
+import view.SongTable;
+
+/**
+ * Test for reloading the catalog when its files change, and for applying the
+ * changes to the library table.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestReloadingDataService {
+	private static final File USER_DB_FILE = new File("resources/UserDb.xml");
+
+	private File songDbFile;
+	private UUID[] ids;
+	private ReloadingDataService dataService;
+
+	/**
+	 * Write a small catalog to a temporary file and set up a
+	 * ReloadingDataService over it.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 */
+	@Before
+	public void setUp() throws IOException {
+		TemporaryFolder tmp = new TemporaryFolder();
+		tmp.create();
+		this.songDbFile = tmp.newFile("SongDb.xml");
+		this.ids = new UUID[6];
+		for (int i = 0; i < this.ids.length; i++) {
+			this.ids[i] = UUID.randomUUID();
+		}
+		writeSongs(this.songDbFile, this.ids, "Title");
+		this.dataService = new ReloadingDataService(
+				() -> new StreamingXmlDataService(this.songDbFile, USER_DB_FILE), this.songDbFile, USER_DB_FILE);
+	}
+
+	/**
+	 * Test that a reload swaps the catalog behind the same SongDb and reports
+	 * the right rows.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testReload() throws IOException, DataServiceException {
+		SongDb songDb = this.dataService.readSongDb();
+		List<CatalogChange> changes = new ArrayList<>();
+		this.dataService.addCatalogListener(changes::add);
+
+		UUID added = UUID.randomUUID();
+		writeSongs(this.songDbFile, new UUID[] { this.ids[0], added, this.ids[2], this.ids[3], this.ids[5] },
+				"Title");
+		this.dataService.reload();
+
+		assertEquals(1, changes.size());
+		CatalogChange change = changes.get(0);
+		assertFalse(change.isReordered());
+		assertArrayEquals(new int[] { 1, 4 }, change.getRemovedRows());
+		assertArrayEquals(new int[] { 1 }, change.getAddedRows());
+		assertArrayEquals(new int[0], change.getChangedRows());
+		assertEquals(5, songDb.getSongs().size());
+		assertTrue(songDb.getSongById(added) != null);
+		assertNull(songDb.getSongById(this.ids[1]));
+		assertTrue(this.dataService.readUserDb().getUserByName("Devon") != null);
+	}
+
+	/**
+	 * Test that a row dropped for repeating an id isn't reported as a removed
+	 * song, and that a song removed along with its repeats is reported once.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testRemovedDuplicates() throws IOException, DataServiceException {
+		writeSongs(this.songDbFile, new UUID[] { this.ids[0], this.ids[1], this.ids[0], this.ids[2], this.ids[2] },
+				"Title");
+		this.dataService.reload();
+		List<CatalogChange> changes = new ArrayList<>();
+		this.dataService.addCatalogListener(changes::add);
+
+		writeSongs(this.songDbFile, new UUID[] { this.ids[0], this.ids[1] }, "Title");
+		this.dataService.reload();
+
+		assertEquals(1, changes.size());
+		assertArrayEquals(new int[] { 2, 3, 4 }, changes.get(0).getRemovedRows());
+		assertEquals(Arrays.asList(this.ids[2]), changes.get(0).getRemovedIds());
+	}
+
+	/**
+	 * Test that changed songs are found and that reloading the same files
+	 * tells nobody.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testChangedRows() throws IOException, DataServiceException {
+		SongDb songDb = this.dataService.readSongDb();
+		List<CatalogChange> changes = new ArrayList<>();
+		this.dataService.addCatalogListener(changes::add);
+
+		this.dataService.reload();
+		assertTrue(changes.isEmpty());
+
+		writeSongs(this.songDbFile, this.ids, "Renamed");
+		this.dataService.reload();
+		assertEquals(1, changes.size());
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, changes.get(0).getChangedRows());
+		assertEquals("Renamed " + this.ids[3], songDb.getSongById(this.ids[3]).getTitle());
+		assertEquals(6, changes.get(0).getAddedOrChangedSongs().size());
+	}
+
+	/**
+	 * Test that moving songs around is reported as a reorder.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testReordered() throws IOException, DataServiceException {
+		this.dataService.readSongDb();
+		List<CatalogChange> changes = new ArrayList<>();
+		this.dataService.addCatalogListener(changes::add);
+
+		UUID[] reversed = new UUID[this.ids.length];
+		for (int i = 0; i < reversed.length; i++) {
+			reversed[i] = this.ids[this.ids.length - 1 - i];
+		}
+		writeSongs(this.songDbFile, reversed, "Title");
+		this.dataService.reload();
+		assertTrue(changes.get(0).isReordered());
+	}
+
+	/**
+	 * Test that a broken file keeps the old catalog.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testBrokenReloadKeepsCatalog() throws IOException, DataServiceException {
+		SongDb songDb = this.dataService.readSongDb();
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(this.songDbFile), StandardCharsets.UTF_8)) {
+			writer.write("<songs><song id=\"not an id\">");
+		}
+		try {
+			this.dataService.reload();
+		} catch (DataServiceException e) {
+			// expected
+		}
+		assertEquals(6, songDb.getSongs().size());
+		assertTrue(songDb.getSongById(this.ids[0]) != null);
+	}
+
+	/**
+	 * Test that writing the file triggers a reload on its own.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 * @throws InterruptedException
+	 *             thrown if interrupted while waiting for the reload
+	 */
+	@Test
+	public void testWatch() throws IOException, DataServiceException, InterruptedException {
+		SongDb songDb = this.dataService.readSongDb();
+		BlockingQueue<CatalogChange> changes = new ArrayBlockingQueue<>(10);
+		this.dataService.addCatalogListener(changes::add);
+		this.dataService.start();
+		try {
+			writeSongs(this.songDbFile, new UUID[] { this.ids[0] }, "Title");
+			CatalogChange change = changes.poll(10, TimeUnit.SECONDS);
+			assertTrue(change != null);
+			assertEquals(5, change.getRemovedRows().length);
+			assertEquals(1, songDb.getSongs().size());
+		} finally {
+			this.dataService.stop();
+		}
+	}
+
+	/**
+	 * Test that a listener that throws neither keeps the others from hearing
+	 * about a change nor stops the watcher.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 * @throws InterruptedException
+	 *             thrown if interrupted while waiting for the reload
+	 */
+	@Test
+	public void testWatchSurvivesListener() throws IOException, DataServiceException, InterruptedException {
+		this.dataService.readSongDb();
+		BlockingQueue<CatalogChange> changes = new ArrayBlockingQueue<>(10);
+		this.dataService.addCatalogListener(change -> {
+			throw new IllegalStateException("broken listener");
+		});
+		this.dataService.addCatalogListener(changes::add);
+		this.dataService.start();
+		try {
+			writeSongs(this.songDbFile, new UUID[] { this.ids[0] }, "Title");
+			assertTrue(changes.poll(10, TimeUnit.SECONDS) != null);
+			writeSongs(this.songDbFile, new UUID[] { this.ids[0], this.ids[1] }, "Title");
+			CatalogChange change = changes.poll(10, TimeUnit.SECONDS);
+			assertTrue(change != null);
+			assertEquals(1, change.getAddedRows().length);
+		} finally {
+			this.dataService.stop();
+		}
+	}
+
+	/**
+	 * Test that applying a change to the table leaves it showing the new
+	 * catalog, and that every event matches the table at the time.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testSongTable() throws IOException, DataServiceException {
+		SongTable table = new SongTable(this.dataService.readSongDb());
+		List<CatalogChange> changes = new ArrayList<>();
+		this.dataService.addCatalogListener(changes::add);
+		List<UUID> old = Arrays.asList(this.ids);
+		List<Integer> types = new ArrayList<>();
+		table.addTableModelListener(e -> {
+			types.add(Integer.valueOf(e.getType()));
+			if (e.getType() == TableModelEvent.INSERT) {
+				for (int row = e.getFirstRow(); row <= e.getLastRow(); row++) {
+					assertFalse(old.contains(table.getIdAt(row)));
+				}
+			}
+		});
+
+		UUID[] next = new UUID[] { UUID.randomUUID(), this.ids[0], UUID.randomUUID(), UUID.randomUUID(),
+				this.ids[3], this.ids[4], UUID.randomUUID() };
+		writeSongs(this.songDbFile, next, "New");
+		this.dataService.reload();
+		table.apply(changes.get(0));
+
+		assertEquals(next.length, table.getRowCount());
+		for (int row = 0; row < next.length; row++) {
+			assertEquals(next[row], table.getIdAt(row));
+		}
+		assertTrue(types.contains(Integer.valueOf(TableModelEvent.DELETE)));
+		assertTrue(types.contains(Integer.valueOf(TableModelEvent.INSERT)));
+		assertTrue(types.contains(Integer.valueOf(TableModelEvent.UPDATE)));
+	}
+
+	private static void writeSongs(File file, UUID[] ids, String title) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<songs>\n");
+			for (UUID id : ids) {
+				writer.write("\t<song id=\"" + id + "\">\n");
+				writer.write("\t\t<artist>Artist</artist>\n");
+				writer.write("\t\t<title>" + title + " " + id + "</title>\n");
+				writer.write("\t\t<filename>" + id + ".mp3</filename>\n");
+				writer.write("\t\t<length>60</length>\n");
+				writer.write("\t</song>\n");
+			}
+			writer.write("</songs>\n");
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Duration;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.User;
+import model.dataservice.UserDb;
+import model.dataservice.snapshot.SnapshotDataService;
+import model.dataservice.snapshot.SnapshotWriter;
+import model.dataservice.xml.XmlDataService;
+
+/**
+ * Tests for compiling and mapping binary catalog snapshots.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestSnapshotDataService {
+	private static final File SONG_DB_FILE = new File("resources/SongDb.xml");
+	private static final File USER_DB_FILE = new File("resources/UserDb.xml");
+
+	private TemporaryFolder tmp;
+
+	/**
+	 * Set up a temporary folder for snapshots.
+	 * 
+	 * @throws IOException
+	 *             thrown if the folder can't be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.tmp = new TemporaryFolder();
+		this.tmp.create();
+	}
+
+	/**
+	 * Test that songs and users written to a snapshot come back unchanged.
+	 * 
+	 * @throws IOException
+	 *             thrown if the snapshot can't be written
+	 * @throws DataServiceException
+	 *             thrown if the snapshot can't be read
+	 */
+	@Test
+	public void testRoundTrip() throws IOException, DataServiceException {
+		UUID songId = UUID.fromString("4158af70-2792-4214-b449-2d966b5f85b5");
+		UUID userId = UUID.fromString("c50d3ee4-6e8b-4b8b-ba8a-21ca7dd5f534");
+		SnapshotWriter writer = new SnapshotWriter();
+		writer.addSong(songId, "Kevin Macleod", "Danse Macabre", "DanseMacabreViolinHook.mp3", 34);
+		for (int i = 0; i < 1000; i++) {
+			writer.addSong(new UUID(0, i), "Kevin Macleod", "Title " + i, "song" + i + ".mp3", i);
+		}
+		writer.addSong(songId, "Duplicate", "Duplicate", "Duplicate", 1);
+		writer.addUser(userId, "Chris", "1");
+		writer.addUser(new UUID(0, 2), "D\u00e9von", "22");
+		writer.addUser(new UUID(0, 3), "Chris", "333");
+		writer.addUser(userId, "Duplicate", "Duplicate");
+		File file = this.tmp.newFile("Catalog.snapshot");
+		writer.write(file);
+
+		DataService dataService = new SnapshotDataService(file);
+		SongDb songDb = dataService.readSongDb();
+		assertEquals(1001, songDb.getSongs().size());
+		Song song = songDb.getSongById(songId);
+		assertEquals(songId, song.getId());
+		assertEquals("Kevin Macleod", song.getArtist());
+		assertEquals("Danse Macabre", song.getTitle());
+		assertEquals("DanseMacabreViolinHook.mp3", song.getFilename());
+		assertEquals(Duration.ofSeconds(34), song.getLength());
+		assertEquals("00:34 Danse Macabre by Kevin Macleod", song.toString());
+		assertEquals("Title 500", songDb.getSongById(new UUID(0, 500)).getTitle());
+		assertEquals(new UUID(0, 999), songDb.getSongs().get(1000).getId());
+		assertNull(songDb.getSongById(new UUID(1, 1)));
+
+		UserDb userDb = dataService.readUserDb();
+		User user = userDb.getUserById(userId);
+		assertEquals("Chris", user.getName());
+		assertEquals("1", user.getPassword());
+		assertEquals(new UUID(0, 2), userDb.getUserByName("D\u00e9von").getId());
+		assertNull(userDb.getUserByName("Devon"));
+		// a user with a name that is taken is kept, but the name finds the
+		// first one
+		assertEquals("333", userDb.getUserById(new UUID(0, 3)).getPassword());
+		assertEquals(userId, userDb.getUserByName("Chris").getId());
+		assertNull(userDb.getUserById(new UUID(0, 4)));
+	}
+
+	/**
+	 * Test that the XmlDataService compiles a snapshot when there is none and
+	 * that the snapshot matches the XML.
+	 * 
+	 * @throws DataServiceException
+	 *             thrown if the databases can't be read
+	 */
+	@Test
+	public void testCompileFromXml() throws DataServiceException {
+		File file = new File(this.tmp.getRoot(), "Catalog.snapshot");
+		XmlDataService xmlDataService = new XmlDataService(SONG_DB_FILE, USER_DB_FILE);
+		DataService dataService = xmlDataService.toSnapshot(file);
+		assertTrue(file.isFile());
+
+		SongDb xmlSongs = xmlDataService.readSongDb();
+		SongDb snapshotSongs = dataService.readSongDb();
+		assertEquals(xmlSongs.getSongs().size(), snapshotSongs.getSongs().size());
+		for (Song song : xmlSongs.getSongs()) {
+			assertEquals(song.toString(), snapshotSongs.getSongById(song.getId()).toString());
+		}
+		assertEquals("22", dataService.readUserDb().getUserByName("Devon").getPassword());
+	}
+
+	/**
+	 * Test that a stale snapshot is rebuilt and a fresh one is left alone.
+	 * 
+	 * @throws IOException
+	 *             thrown if the snapshot can't be written
+	 * @throws DataServiceException
+	 *             thrown if the databases can't be read
+	 */
+	@Test
+	public void testRegenerateWhenStale() throws IOException, DataServiceException {
+		File file = this.tmp.newFile("Catalog.snapshot");
+		new SnapshotWriter().write(file);
+		file.setLastModified(SONG_DB_FILE.lastModified() - 1000);
+
+		DataService dataService = new XmlDataService(SONG_DB_FILE, USER_DB_FILE).toSnapshot(file);
+		assertEquals(9, dataService.readSongDb().getSongs().size());
+
+		long compiled = file.lastModified();
+		new XmlDataService(SONG_DB_FILE, USER_DB_FILE).toSnapshot(file);
+		assertEquals(compiled, file.lastModified());
+	}
+
+	/**
+	 * Test that a file that isn't a snapshot is rejected.
+	 * 
+	 * @throws IOException
+	 *             thrown if the file can't be written
+	 * @throws DataServiceException
+	 *             thrown intentionally
+	 */
+	@Test(expected = DataServiceException.class)
+	public void testNotASnapshot() throws IOException, DataServiceException {
+		File file = this.tmp.newFile("Catalog.snapshot");
+		try (FileOutputStream output = new FileOutputStream(file)) {
+			output.write(new byte[128]);
+		}
+		new SnapshotDataService(file).readSongDb();
+	}
+
+	/**
+	 * Test that a snapshot cut short is rejected when it is opened rather
+	 * than when a record past the end is read.
+	 * 
+	 * @throws IOException
+	 *             thrown if the snapshot can't be written
+	 * @throws DataServiceException
+	 *             thrown intentionally
+	 */
+	@Test(expected = DataServiceException.class)
+	public void testTruncatedSnapshot() throws IOException, DataServiceException {
+		File file = this.tmp.newFile("Catalog.snapshot");
+		SnapshotWriter writer = new SnapshotWriter();
+		for (int i = 0; i < 100; i++) {
+			writer.addSong(new UUID(0, i), "Kevin Macleod", "Title " + i, "song" + i + ".mp3", i);
+		}
+		writer.write(file);
+		try (RandomAccessFile snapshot = new RandomAccessFile(file, "rw")) {
+			snapshot.setLength(snapshot.length() / 2);
+		}
+		new SnapshotDataService(file).readSongDb();
+	}
+
+	/**
+	 * Test that a snapshot whose header points outside the file is rejected.
+	 * 
+	 * @throws IOException
+	 *             thrown if the snapshot can't be written
+	 * @throws DataServiceException
+	 *             thrown intentionally
+	 */
+	@Test(expected = DataServiceException.class)
+	public void testBadOffset() throws IOException, DataServiceException {
+		File file = this.tmp.newFile("Catalog.snapshot");
+		SnapshotWriter writer = new SnapshotWriter();
+		writer.addUser(new UUID(0, 1), "Chris", "1");
+		writer.write(file);
+		try (RandomAccessFile snapshot = new RandomAccessFile(file, "rw")) {
+			// the offset of the user index
+			snapshot.seek(40);
+			snapshot.writeLong(Integer.MAX_VALUE);
+		}
+		new SnapshotDataService(file).readUserDb();
+	}
+
+	/**
+	 * Test that a missing snapshot fails.
+	 * 
+	 * @throws DataServiceException
+	 *             thrown intentionally
+	 */
+	@Test(expected = DataServiceException.class)
+	public void testMissingSnapshot() throws DataServiceException {
+		new SnapshotDataService(new File(this.tmp.getRoot(), "Missing.snapshot")).readUserDb();
+	}
+}
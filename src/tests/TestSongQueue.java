@@ -0,0 +1,636 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.SongQueue;
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import tests.dataservice.mock.MockDataService;
+import tests.dataservice.mock.MockSong;
+import view.QueueListModel;
+
+/**
+ * Stress tests for the song queue with many threads adding songs while one
+ * takes them off and others read it.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestSongQueue {
+	private static final int PRODUCERS = 8;
+	private static final int PER_PRODUCER = 20000;
+
+	private SongDb songDb;
+	private MockClock clock;
+
+	/**
+	 * Get a song database for the queue.
+	 *
+	 * @throws DataServiceException
+	 *             never thrown
+	 */
+	@Before
+	public void setUp() throws DataServiceException {
+		this.songDb = new MockDataService(true, true).readSongDb();
+		this.clock = new MockClock();
+	}
+
+	/**
+	 * Test that with many producers, one consumer and readers all going at
+	 * once, every entry comes out exactly once, each producer's entries come
+	 * out in the order they went in, every snapshot is in order, and the
+	 * listeners see one event per change.
+	 *
+	 * @throws InterruptedException
+	 *             thrown if halted while waiting
+	 */
+	@Test
+	public void testConcurrentProducers() throws InterruptedException {
+		SongQueue queue = new SongQueue(this.songDb);
+		AtomicInteger added = new AtomicInteger();
+		AtomicInteger removed = new AtomicInteger();
+		queue.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				added.incrementAndGet();
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				removed.incrementAndGet();
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				// never fired
+			}
+		});
+
+		// each entry encodes its producer and sequence number
+		Map<UUID, long[]> produced = new HashMap<>();
+		UUID[][] ids = new UUID[PRODUCERS][PER_PRODUCER];
+		for (int p = 0; p < PRODUCERS; p++) {
+			for (int i = 0; i < PER_PRODUCER; i++) {
+				ids[p][i] = new UUID(p, i);
+				produced.put(ids[p][i], new long[] { p, i });
+			}
+		}
+
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean producing = new AtomicBoolean(true);
+		ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < PRODUCERS; p++) {
+			UUID[] mine = ids[p];
+			producers.add(new Thread(() -> {
+				await(start);
+				for (UUID id : mine) {
+					queue.add(id);
+				}
+			}));
+		}
+
+		List<UUID> consumed = new ArrayList<>();
+		Thread consumer = new Thread(() -> {
+			await(start);
+			while (producing.get() || !queue.isEmpty()) {
+				try {
+					consumed.add(queue.remove());
+				} catch (NoSuchElementException e) {
+					Thread.yield();
+				}
+			}
+		});
+
+		Thread reader = new Thread(() -> {
+			await(start);
+			while (producing.get()) {
+				List<UUID> snapshot = queue.snapshot();
+				long[] last = new long[PRODUCERS];
+				Arrays.fill(last, -1);
+				for (UUID id : snapshot) {
+					long[] entry = produced.get(id);
+					if (entry[1] <= last[(int) entry[0]]) {
+						failures.add("snapshot out of order");
+					}
+					last[(int) entry[0]] = entry[1];
+				}
+				int size = queue.getSize();
+				for (int i = 0; i < size; i++) {
+					// rows may go away, but must never throw
+					queue.getElementAt(i);
+				}
+			}
+		});
+
+		for (Thread producer : producers) {
+			producer.start();
+		}
+		consumer.start();
+		reader.start();
+		start.countDown();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		producing.set(false);
+		consumer.join();
+		reader.join();
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertTrue(queue.isEmpty());
+		assertEquals(PRODUCERS * PER_PRODUCER, consumed.size());
+		assertEquals(PRODUCERS * PER_PRODUCER, new HashSet<>(consumed).size());
+		long[] last = new long[PRODUCERS];
+		Arrays.fill(last, -1);
+		for (UUID id : consumed) {
+			long[] entry = produced.get(id);
+			assertTrue(entry[1] == last[(int) entry[0]] + 1);
+			last[(int) entry[0]] = entry[1];
+		}
+		assertEquals(PRODUCERS * PER_PRODUCER, added.get());
+		assertEquals(PRODUCERS * PER_PRODUCER, removed.get());
+	}
+
+	/**
+	 * Test that a snapshot doesn't change with the queue and can't be
+	 * changed.
+	 */
+	@Test
+	public void testSnapshot() {
+		SongQueue queue = new SongQueue(this.songDb);
+		UUID id = this.songDb.getSongs().get(0).getId();
+		queue.add(id);
+		List<UUID> snapshot = queue.snapshot();
+		queue.add(id);
+		queue.remove();
+		queue.remove();
+		assertEquals(1, snapshot.size());
+		assertEquals(id, snapshot.get(0));
+		assertFalse(queue.snapshot().contains(id));
+		assertEquals(null, queue.getElementAt(0));
+	}
+
+	/**
+	 * Test that a listener that blocks doesn't hold up other threads changing
+	 * the queue, and that it still hears about their changes afterwards, in
+	 * order.
+	 *
+	 * @throws InterruptedException
+	 *             thrown if halted while waiting
+	 */
+	@Test
+	public void testSlowListener() throws InterruptedException {
+		SongQueue queue = new SongQueue(this.songDb);
+		UUID id = this.songDb.getSongs().get(0).getId();
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Integer> rows = new ArrayList<>();
+		queue.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				rows.add(e.getIndex0());
+				entered.countDown();
+				await(release);
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				rows.add(-1);
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				// not changed here
+			}
+		});
+
+		Thread slow = new Thread(() -> queue.add(id));
+		slow.start();
+		await(entered);
+		queue.add(id);
+		queue.remove();
+		assertEquals(1, queue.getSize());
+		release.countDown();
+		slow.join();
+		assertEquals(Arrays.asList(0, 1, -1), rows);
+	}
+
+	/**
+	 * Test that the list model shown in the view ends up matching the queue
+	 * while other threads change it, and that it only tells its own listeners
+	 * about changes on the event dispatch thread.
+	 *
+	 * @throws Exception
+	 *             thrown if the threads or the event dispatch thread fail
+	 */
+	@Test
+	public void testListModel() throws Exception {
+		SongQueue queue = new SongQueue(this.songDb);
+		List<Song> songs = this.songDb.getSongs();
+		queue.add(songs.get(0).getId());
+		QueueListModel model = new QueueListModel(queue);
+		assertEquals(1, model.getSize());
+		AtomicBoolean offThread = new AtomicBoolean();
+		model.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				check();
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				check();
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				check();
+			}
+
+			private void check() {
+				if (!SwingUtilities.isEventDispatchThread()) {
+					offThread.set(true);
+				}
+			}
+		});
+
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < 4; p++) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < 500; i++) {
+					queue.add(songs.get(i % songs.size()).getId());
+					if (i % 3 == 0) {
+						queue.remove();
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		List<UUID> shown = new ArrayList<>();
+		SwingUtilities.invokeAndWait(() -> {
+			for (int i = 0; i < model.getSize(); i++) {
+				shown.add(model.getElementAt(i).getId());
+			}
+		});
+		assertEquals(queue.snapshot(), shown);
+		assertFalse(offThread.get());
+	}
+
+	/**
+	 * Test that a snapshot can't be changed.
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSnapshotUnmodifiable() {
+		new SongQueue(this.songDb).snapshot().add(UUID.randomUUID());
+	}
+
+	/**
+	 * Test that users take turns in round robin mode, that pinned songs keep
+	 * their place, and that the rows reported to listeners always match the
+	 * order the songs will play in.
+	 */
+	@Test
+	public void testRoundRobin() {
+		SongQueue queue = new SongQueue(this.songDb, SongQueue.Scheduling.ROUND_ROBIN, user -> 1);
+		List<UUID> mirror = mirror(queue);
+		UUID alice = new UUID(1, 0);
+		UUID bob = new UUID(2, 0);
+		UUID carol = new UUID(3, 0);
+
+		UUID a1 = new UUID(1, 1);
+		UUID a2 = new UUID(1, 2);
+		UUID a3 = new UUID(1, 3);
+		UUID b1 = new UUID(2, 1);
+		UUID b2 = new UUID(2, 2);
+		UUID c1 = new UUID(3, 1);
+		queue.add(a1, alice);
+		queue.add(a2, alice);
+		queue.add(a3, alice);
+		queue.add(b1, bob);
+		assertEquals(Arrays.asList(a1, b1, a2, a3), queue.snapshot());
+		assertEquals(queue.snapshot(), mirror);
+
+		// the first two are handed to the player and can't be passed anymore
+		assertEquals(2, queue.pin(2).size());
+		queue.add(b2, bob);
+		queue.add(c1, carol);
+		// ties go to whoever asked first
+		assertEquals(Arrays.asList(a1, b1, a2, b2, c1, a3), queue.snapshot());
+		assertEquals(queue.snapshot(), mirror);
+
+		List<UUID> played = new ArrayList<>();
+		while (!queue.isEmpty()) {
+			assertEquals(queue.peek(), queue.snapshot().get(0));
+			played.add(queue.remove());
+			assertEquals(queue.snapshot(), mirror);
+		}
+		assertEquals(Arrays.asList(a1, b1, a2, b2, c1, a3), played);
+	}
+
+	/**
+	 * Test that users with more weight get more turns and that a user coming
+	 * back later doesn't get to make up for the time they were away.
+	 */
+	@Test
+	public void testWeighted() {
+		UUID heavy = new UUID(1, 0);
+		UUID light = new UUID(2, 0);
+		SongQueue queue = new SongQueue(this.songDb, SongQueue.Scheduling.WEIGHTED,
+				user -> heavy.equals(user) ? 4 : 1);
+		List<UUID> mirror = mirror(queue);
+		for (int i = 0; i < 6; i++) {
+			queue.add(new UUID(1, i), heavy);
+			queue.add(new UUID(2, i), light);
+		}
+		List<UUID> order = queue.snapshot();
+		assertEquals(order, mirror);
+		// four of the heavy user's songs play for every one of the light
+		// user's songs, with ties going to whoever asked first
+		assertEquals(Arrays.asList(new UUID(1, 0), new UUID(1, 1), new UUID(1, 2), new UUID(2, 0),
+				new UUID(1, 3), new UUID(1, 4), new UUID(1, 5), new UUID(2, 1)), order.subList(0, 8));
+
+		for (int i = 0; i < 8; i++) {
+			queue.remove();
+		}
+		UUID late = new UUID(3, 0);
+		queue.add(new UUID(3, 1), late);
+		queue.add(new UUID(3, 2), late);
+		assertEquals(Arrays.asList(new UUID(2, 2), new UUID(3, 1), new UUID(2, 3), new UUID(3, 2),
+				new UUID(2, 4), new UUID(2, 5)), queue.snapshot());
+		assertEquals(queue.snapshot(), mirror);
+	}
+
+	/**
+	 * Test that songs are only looked up in the catalog when they are added,
+	 * and that refreshing swaps in new versions of them.
+	 */
+	@Test
+	public void testResolvedOnce() {
+		AtomicInteger lookups = new AtomicInteger();
+		SongDb counting = new SongDb() {
+			@Override
+			public List<Song> getSongs() {
+				return TestSongQueue.this.songDb.getSongs();
+			}
+
+			@Override
+			public Song getSongById(UUID id) {
+				lookups.incrementAndGet();
+				return TestSongQueue.this.songDb.getSongById(id);
+			}
+		};
+		SongQueue queue = new SongQueue(counting);
+		List<Song> songs = this.songDb.getSongs();
+		for (Song song : songs) {
+			queue.add(song.getId());
+		}
+		for (int repaint = 0; repaint < 10; repaint++) {
+			for (int i = 0; i < queue.getSize(); i++) {
+				assertEquals(songs.get(i).getId(), queue.getElementAt(i).getId());
+			}
+		}
+		queue.snapshot();
+		queue.pin(2);
+		assertEquals(songs.size(), lookups.get());
+
+		List<String> events = new ArrayList<>();
+		queue.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				events.add("added");
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				events.add("removed");
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				events.add("changed " + e.getIndex0() + "-" + e.getIndex1());
+			}
+		});
+		Song renamed = new MockSong(songs.get(1).getId(), "Artist", "Renamed", "renamed.mp3", Duration.ofSeconds(1));
+		queue.refresh(Arrays.asList(renamed, new MockSong(UUID.randomUUID(), "Artist", "Not queued", "other.mp3", Duration.ofSeconds(1))));
+		assertSame(renamed, queue.getElementAt(1));
+		assertEquals(songs.get(0).getId(), queue.getElementAt(0).getId());
+		assertEquals(songs.get(0).getTitle(), queue.getElementAt(0).getTitle());
+		assertEquals(Arrays.asList("changed 0-" + (songs.size() - 1)), events);
+		queue.refresh(Arrays.asList(renamed));
+		assertEquals(1, events.size());
+	}
+
+	/**
+	 * Test that estimates are the lengths of the songs ahead, less what the
+	 * top song has played since it started, and that the row a song lands on
+	 * comes back from add.
+	 */
+	@Test
+	public void testEstimates() {
+		Map<UUID, Song> songs = new HashMap<>();
+		SongQueue queue = new SongQueue(lengths(songs), SongQueue.Scheduling.ROUND_ROBIN, user -> 1,
+				this.clock);
+		UUID alice = new UUID(1, 0);
+		UUID bob = new UUID(2, 0);
+		assertEquals(0, queue.add(song(songs, 1, 60), alice));
+		assertEquals(1, queue.add(song(songs, 2, 30), alice));
+		assertEquals(1, queue.add(song(songs, 3, 45), bob));
+		queue.started(this.clock.instant());
+		assertEquals(Duration.ZERO, queue.getEstimatedWait(0));
+		assertEquals(Duration.ofSeconds(60), queue.getEstimatedWait(1));
+		assertEquals(Duration.ofSeconds(105), queue.getEstimatedWait(2));
+		assertEquals(null, queue.getEstimatedWait(3));
+		assertEquals(null, queue.getEstimatedStart(-1));
+
+		this.clock.advance(Duration.ofSeconds(20));
+		assertEquals(Duration.ofSeconds(85), queue.getEstimatedWait(2));
+		assertEquals(MockClock.START.plusSeconds(105), queue.getEstimatedStart(2));
+		// a song running long doesn't make the rest start earlier than now
+		this.clock.advance(Duration.ofSeconds(100));
+		assertEquals(Duration.ofSeconds(45), queue.getEstimatedWait(2));
+
+		queue.remove();
+		assertEquals(Duration.ofSeconds(45), queue.getEstimatedWait(1));
+		assertEquals(MockClock.START.plusSeconds(165), queue.getEstimatedStart(1));
+	}
+
+	/**
+	 * Test that the top song only counts as playing from when it started, not
+	 * from when it got to the top, and that songs that started early, like
+	 * with a crossfade, keep their start when they get to the top.
+	 */
+	@Test
+	public void testEstimatesFromStart() {
+		Map<UUID, Song> songs = new HashMap<>();
+		SongQueue queue = new SongQueue(lengths(songs), SongQueue.Scheduling.WEIGHTED, user -> 1, this.clock);
+		UUID alice = new UUID(1, 0);
+		queue.add(song(songs, 1, 60), alice);
+		queue.add(song(songs, 2, 30), alice);
+		queue.add(song(songs, 3, 45), alice);
+
+		// the engine took a while to open the first song
+		this.clock.advance(Duration.ofSeconds(10));
+		assertEquals(Duration.ofSeconds(60), queue.getEstimatedWait(1));
+		queue.started(this.clock.instant());
+		this.clock.advance(Duration.ofSeconds(20));
+		assertEquals(Duration.ofSeconds(40), queue.getEstimatedWait(1));
+
+		// the second song fades in before the first one is gone
+		this.clock.advance(Duration.ofSeconds(35));
+		queue.started(this.clock.instant());
+		this.clock.advance(Duration.ofSeconds(5));
+		queue.remove();
+		assertEquals(Duration.ofSeconds(25), queue.getEstimatedWait(1));
+		assertEquals(Arrays.asList(songs.get(new UUID(0, 2)), songs.get(new UUID(0, 3))), queue.pin(2));
+
+		// more starts than songs are ignored
+		queue.started(this.clock.instant());
+		queue.started(this.clock.instant());
+		queue.remove();
+		this.clock.advance(Duration.ofSeconds(5));
+		assertEquals(Duration.ZERO, queue.getEstimatedWait(0));
+		queue.remove();
+		queue.started(this.clock.instant());
+		assertTrue(queue.isEmpty());
+		queue.add(song(songs, 4, 60), alice);
+		queue.add(song(songs, 5, 30), alice);
+		this.clock.advance(Duration.ofSeconds(5));
+		assertEquals(Duration.ofSeconds(60), queue.getEstimatedWait(1));
+	}
+
+	/**
+	 * Test that estimates match adding up the lengths of the songs ahead of
+	 * each row through random adds, removals, pins, reorders and new lengths.
+	 */
+	@Test
+	public void testEstimatesStayRight() {
+		Map<UUID, Song> songs = new HashMap<>();
+		SongQueue queue = new SongQueue(lengths(songs), SongQueue.Scheduling.WEIGHTED,
+				user -> user.getMostSignificantBits(), this.clock);
+		Random random = new Random(42);
+		Instant started = this.clock.instant();
+		for (int step = 0; step < 2000; step++) {
+			int action = random.nextInt(10);
+			if (action < 6) {
+				UUID user = new UUID(1 + random.nextInt(4), 0);
+				boolean first = queue.isEmpty();
+				queue.add(song(songs, step, 1 + random.nextInt(300)), user);
+				if (first) {
+					started = this.clock.instant();
+					queue.started(started);
+				}
+			} else if (action < 8 && !queue.isEmpty()) {
+				queue.remove();
+				started = this.clock.instant();
+				queue.started(started);
+			} else if (action == 8) {
+				queue.pin(random.nextInt(4));
+			} else if (!queue.isEmpty()) {
+				UUID id = queue.snapshot().get(random.nextInt(queue.getSize()));
+				Song old = songs.get(id);
+				Song longer = new MockSong(id, old.getArtist(), old.getTitle(), old.getFilename(),
+						old.getLength().plusSeconds(random.nextInt(100)));
+				songs.put(id, longer);
+				queue.refresh(Arrays.asList(longer));
+			}
+			this.clock.advance(Duration.ofSeconds(random.nextInt(120)));
+
+			List<UUID> order = queue.snapshot();
+			long played = Duration.between(started, this.clock.instant()).toMillis();
+			long ahead = 0;
+			for (int i = 0; i < order.size(); i++) {
+				long expected = i == 0 ? 0 : ahead - Math.min(played, millis(songs, order.get(0)));
+				assertEquals(Duration.ofMillis(expected), queue.getEstimatedWait(i));
+				ahead += millis(songs, order.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Keep a list in step with the queue from nothing but its events.
+	 */
+	private static List<UUID> mirror(SongQueue queue) {
+		List<UUID> mirror = new ArrayList<>();
+		queue.addListDataListener(new ListDataListener() {
+			@Override
+			public void intervalAdded(ListDataEvent e) {
+				mirror.add(e.getIndex0(), queue.snapshot().get(e.getIndex0()));
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e) {
+				mirror.remove(e.getIndex0());
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e) {
+				throw new AssertionError("whole queue reported changed");
+			}
+		});
+		return mirror;
+	}
+
+	private static UUID song(Map<UUID, Song> songs, long n, long seconds) {
+		UUID id = new UUID(0, n);
+		songs.put(id, new MockSong(id, "Artist", "Song " + n, n + ".mp3", Duration.ofSeconds(seconds)));
+		return id;
+	}
+
+	private static long millis(Map<UUID, Song> songs, UUID id) {
+		return songs.get(id).getLength().toMillis();
+	}
+
+	private static SongDb lengths(Map<UUID, Song> songs) {
+		return new SongDb() {
+			@Override
+			public List<Song> getSongs() {
+				return new ArrayList<>(songs.values());
+			}
+
+			@Override
+			public Song getSongById(UUID id) {
+				return songs.get(id);
+			}
+		};
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
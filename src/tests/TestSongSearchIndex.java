@@ -0,0 +1,133 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.SongSearchIndex;
+import tests.dataservice.mock.MockSong;
+
+/**
+ * Tests for the song search index.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestSongSearchIndex {
+	private static final UUID DANSE = new UUID(0, 1);
+	private static final UUID TUMBAO = new UUID(0, 2);
+	private static final UUID STING = new UUID(0, 3);
+	private static final UUID MACABRE = new UUID(0, 4);
+
+	private SongSearchIndex index;
+
+	/**
+	 * Build a small index for testing.
+	 */
+	@Before
+	public void setUp() {
+		this.index = new SongSearchIndex();
+		this.index.add(song(DANSE, "Kevin Macleod", "Danse Macabre"));
+		this.index.add(song(TUMBAO, "FreePlay Music", "Determined Tumbao"));
+		this.index.add(song(STING, "Kevin MacLeod", "Loping Sting"));
+		this.index.add(song(MACABRE, "Camille Saint-Sa\u00ebns", "Macabre Dance"));
+	}
+
+	/**
+	 * Test whole word, prefix and substring matches.
+	 */
+	@Test
+	public void testMatching() {
+		assertEquals(Arrays.asList(TUMBAO), this.index.search("tumbao", 10));
+		assertEquals(Arrays.asList(TUMBAO), this.index.search("TUMB", 10));
+		assertEquals(Arrays.asList(TUMBAO), this.index.search("umba", 10));
+		assertEquals(Arrays.asList(MACABRE), this.index.search("saens", 10));
+		assertEquals(Arrays.asList(MACABRE), this.index.search("saint", 10));
+		assertTrue(this.index.search("nothing", 10).isEmpty());
+		assertTrue(this.index.search("  ", 10).isEmpty());
+	}
+
+	/**
+	 * Test that every query word has to match and that results are ranked.
+	 */
+	@Test
+	public void testRanking() {
+		assertEquals(Arrays.asList(DANSE, STING), this.index.search("kevin", 10));
+		assertEquals(Arrays.asList(DANSE, MACABRE), this.index.search("macabre", 10));
+
+		// title matches beat artist matches
+		assertEquals(Arrays.asList(DANSE, MACABRE, STING), this.index.search("mac", 10));
+
+		assertEquals(Arrays.asList(STING), this.index.search("kevin sting", 10));
+		assertEquals(Arrays.asList(DANSE), this.index.search("macleod dan", 10));
+		assertEquals(1, this.index.search("kevin", 1).size());
+	}
+
+	/**
+	 * Test incremental updates.
+	 */
+	@Test
+	public void testUpdates() {
+		this.index.remove(STING);
+		assertEquals(Arrays.asList(DANSE), this.index.search("kevin", 10));
+		assertEquals(3, this.index.size());
+
+		this.index.add(song(STING, "Someone Else", "Loping Sting"));
+		assertEquals(Arrays.asList(DANSE), this.index.search("kevin", 10));
+		assertEquals(Arrays.asList(STING), this.index.search("someone", 10));
+		assertEquals(4, this.index.size());
+	}
+
+	/**
+	 * Test that replacing every song over and over, like reloading the
+	 * catalog does, keeps the results right and in the order the songs were
+	 * added while removed songs are cleared out.
+	 */
+	@Test
+	public void testReloads() {
+		int count = 3000;
+		for (int round = 0; round < 4; round++) {
+			for (int i = 0; i < count; i++) {
+				this.index.add(song(new UUID(1, i), "Band b" + i % 10, "Round r" + round + " Song " + i));
+			}
+			assertEquals(count + 4, this.index.size());
+			List<UUID> found = this.index.search("band b7 r" + round, count);
+			assertEquals(count / 10, found.size());
+			for (int i = 0; i < found.size(); i++) {
+				assertEquals(new UUID(1, 7 + 10 * i), found.get(i));
+			}
+			if (round > 0) {
+				assertTrue(this.index.search("r" + (round - 1), 10).isEmpty());
+			}
+			assertEquals(Arrays.asList(DANSE, STING), this.index.search("kevin", 10));
+		}
+	}
+
+	/**
+	 * Test that a word in every song still finds a better match added last,
+	 * and skips removed songs, even though it stops reading once the page is
+	 * full.
+	 */
+	@Test
+	public void testCommonWord() {
+		for (int i = 0; i < 5000; i++) {
+			this.index.add(song(new UUID(2, i), "Common", "Song " + i));
+		}
+		this.index.add(song(new UUID(3, 0), "Someone", "Common"));
+		this.index.remove(new UUID(2, 0));
+		assertEquals(Arrays.asList(new UUID(3, 0), new UUID(2, 1), new UUID(2, 2)),
+				this.index.search("common", 3));
+		assertEquals(Arrays.asList(new UUID(3, 0), new UUID(2, 1)), this.index.search("commo", 2));
+	}
+
+	private static MockSong song(UUID id, String artist, String title) {
+		return new MockSong(id, artist, title, "file", Duration.ofSeconds(1));
+	}
+}
@@ -0,0 +1,194 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import javax.swing.JTable;
+import javax.swing.SortOrder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.compact.OffHeapSongDb;
+import view.SongTable;
+import view.SongTableSorter;
+
+/**
+ * Tests for paged access to the song database and the library table built on
+ * it.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestSongTable {
+	private static final int SIZE = 100000;
+
+	private OffHeapSongDb songDb;
+
+	/**
+	 * Build a catalog big enough to need many pages.
+	 */
+	@Before
+	public void setUp() {
+		OffHeapSongDb.Builder builder = new OffHeapSongDb.Builder();
+		for (int i = 0; i < SIZE; i++) {
+			builder.add(new UUID(0, i), "Artist " + (i % 50), "Title " + i, "song" + i + ".mp3", 60 + i % 120);
+		}
+		this.songDb = builder.build();
+	}
+
+	/**
+	 * Test that ranges come back in catalog order and are cut short at the
+	 * ends.
+	 */
+	@Test
+	public void testRanges() {
+		assertEquals(SIZE, this.songDb.getSongCount());
+
+		List<Song> songs = this.songDb.getSongs(500, 10);
+		assertEquals(10, songs.size());
+		for (int i = 0; i < songs.size(); i++) {
+			assertEquals("Title " + (500 + i), songs.get(i).getTitle());
+		}
+
+		assertEquals(5, this.songDb.getSongs(SIZE - 5, 100).size());
+		assertEquals(0, this.songDb.getSongs(SIZE + 5, 100).size());
+		assertEquals(3, this.songDb.getSongs(-10, 3).size());
+		assertEquals(SIZE, this.songDb.getSongs(0, Integer.MAX_VALUE).size());
+	}
+
+	/**
+	 * Test that the table reads every row right while jumping around, and
+	 * that it never asks for the whole catalog.
+	 */
+	@Test
+	public void testPagedRows() {
+		int[] reads = new int[2];
+		SongDb ranged = new SongDb() {
+			@Override
+			public List<Song> getSongs() {
+				reads[0]++;
+				return TestSongTable.this.songDb.getSongs();
+			}
+
+			@Override
+			public Song getSongById(UUID id) {
+				return TestSongTable.this.songDb.getSongById(id);
+			}
+
+			@Override
+			public int getSongCount() {
+				return TestSongTable.this.songDb.getSongCount();
+			}
+
+			@Override
+			public List<Song> getSongs(int offset, int limit) {
+				reads[1]++;
+				return TestSongTable.this.songDb.getSongs(offset, limit);
+			}
+		};
+
+		SongTable table = new SongTable(ranged);
+		assertEquals(SIZE, table.getRowCount());
+		int[] rows = { 0, 1, 255, 256, 99999, 50000, 12345, 50001, 0, 99998 };
+		for (int row : rows) {
+			assertEquals(new UUID(0, row), table.getIdAt(row));
+			assertEquals("Title " + row, table.getValueAt(row, 1));
+		}
+		for (int row = 0; row < SIZE; row += 7) {
+			assertEquals(new UUID(0, row), table.getIdAt(row));
+		}
+		assertEquals(0, reads[0]);
+		assertTrue(reads[1] > 0);
+	}
+
+	/**
+	 * Test that a filtered table shows just the given songs in their order,
+	 * looking each one up instead of reading pages, and that taking the
+	 * filter away shows the whole catalog again.
+	 */
+	@Test
+	public void testFilter() {
+		int[] reads = new int[1];
+		SongDb ranged = new SongDb() {
+			@Override
+			public List<Song> getSongs() {
+				throw new AssertionError("read the whole catalog");
+			}
+
+			@Override
+			public Song getSongById(UUID id) {
+				return TestSongTable.this.songDb.getSongById(id);
+			}
+
+			@Override
+			public int getSongCount() {
+				return TestSongTable.this.songDb.getSongCount();
+			}
+
+			@Override
+			public List<Song> getSongs(int offset, int limit) {
+				reads[0]++;
+				return TestSongTable.this.songDb.getSongs(offset, limit);
+			}
+		};
+
+		SongTable table = new SongTable(ranged);
+		int[] events = new int[1];
+		table.addTableModelListener(e -> events[0]++);
+		table.setFilter(Arrays.asList(new UUID(0, 99999), new UUID(0, 3), new UUID(0, 50000)));
+		assertEquals(3, table.getRowCount());
+		assertEquals(new UUID(0, 3), table.getIdAt(1));
+		assertEquals("Title 99999", table.getValueAt(0, 1));
+		assertEquals("Title 50000", table.getValueAt(2, 1));
+		assertEquals(0, reads[0]);
+
+		table.setFilter(null);
+		assertEquals(SIZE, table.getRowCount());
+		assertEquals("Title 12345", table.getValueAt(12345, 1));
+		// showing everything when everything is shown changes nothing
+		table.setFilter(null);
+		assertEquals(2, events[0]);
+	}
+
+	/**
+	 * Test that clicking a column sorts the rows through the song database,
+	 * that clicking it again reverses them, that songs with the same value
+	 * keep the catalog's order, and that search results are sorted too.
+	 */
+	@Test
+	public void testSort() {
+		SongTable songTable = new SongTable(this.songDb);
+		JTable table = new JTable(songTable);
+		SongTableSorter sorter = new SongTableSorter(songTable);
+		table.setRowSorter(sorter);
+
+		sorter.toggleSortOrder(1);
+		assertEquals(SIZE, table.getRowCount());
+		assertEquals("Title 0", table.getValueAt(0, 1));
+		assertEquals("Title 1", table.getValueAt(1, 1));
+		assertEquals("Title 10", table.getValueAt(2, 1));
+		sorter.toggleSortOrder(1);
+		assertEquals(SortOrder.DESCENDING, sorter.getSortKeys().get(0).getSortOrder());
+		assertEquals("Title 99999", table.getValueAt(0, 1));
+		assertEquals(new UUID(0, 99999), songTable.getIdAt(table.convertRowIndexToModel(0)));
+
+		songTable.setFilter(Arrays.asList(new UUID(0, 3), new UUID(0, 99999), new UUID(0, 50000)));
+		assertEquals(3, table.getRowCount());
+		assertEquals("Title 99999", table.getValueAt(0, 1));
+		assertEquals(new UUID(0, 3), songTable.getIdAt(2));
+		songTable.setFilter(null);
+
+		sorter.toggleSortOrder(2);
+		assertEquals(new UUID(0, 0), songTable.getIdAt(0));
+		assertEquals(new UUID(0, 120), songTable.getIdAt(1));
+		sorter.setSortKeys(null);
+		assertEquals(new UUID(0, 1), songTable.getIdAt(1));
+	}
+}
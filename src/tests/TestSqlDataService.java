@@ -0,0 +1,188 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.User;
+import model.dataservice.UserDb;
+import model.dataservice.sql.SqlDataService;
+import model.dataservice.xml.XmlDataService;
+import tests.bench.SongDbLookupBenchmark;
+import tests.dataservice.mock.MockUser;
+
+/**
+ * Tests for the SQL DataService. Uses an H2 database in a temporary folder,
+ * so the H2 driver must be on the test classpath.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestSqlDataService {
+	private static final File SONG_DB_FILE = new File("resources/SongDb.xml");
+	private static final File USER_DB_FILE = new File("resources/UserDb.xml");
+
+	private TemporaryFolder tmp;
+	private SqlDataService dataService;
+
+	/**
+	 * Fill a new database with the catalog used by the application.
+	 *
+	 * @throws IOException
+	 *             thrown if the temporary folder can't be created
+	 * @throws DataServiceException
+	 *             thrown when failing to fill the database
+	 */
+	@Before
+	public void setUp() throws IOException, DataServiceException {
+		this.tmp = new TemporaryFolder();
+		this.tmp.create();
+		this.dataService = new SqlDataService(url("catalog"));
+		new XmlDataService(SONG_DB_FILE, USER_DB_FILE).exportTo(this.dataService);
+	}
+
+	/**
+	 * Close the database.
+	 */
+	@After
+	public void tearDown() {
+		this.dataService.close();
+		this.tmp.delete();
+	}
+
+	/**
+	 * Test that reading the song database works.
+	 *
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testReadSongDb() throws DataServiceException {
+		SongDb songDb = this.dataService.readSongDb();
+		assertEquals(9, songDb.getSongCount());
+
+		UUID songId = UUID.fromString("4158af70-2792-4214-b449-2d966b5f85b5");
+		Song song = songDb.getSongById(songId);
+		assertTrue(song != null);
+		assertEquals(songId, song.getId());
+		assertEquals("Kevin Macleod", song.getArtist());
+		assertEquals("Danse Macabre", song.getTitle());
+		assertEquals("DanseMacabreViolinHook.mp3", song.getFilename());
+		assertEquals(Duration.ofSeconds(34), song.getLength());
+		assertEquals("00:34 Danse Macabre by Kevin Macleod", song.toString());
+		assertSame(song, songDb.getSongById(songId));
+
+		List<Song> songs = songDb.getSongs();
+		assertEquals(9, songs.size());
+		for (Song s : songs) {
+			assertEquals(s.getTitle(), songDb.getSongById(s.getId()).getTitle());
+		}
+		assertNull(songDb.getSongById(UUID.fromString("00000000-0000-0000-0000-000000000000")));
+	}
+
+	/**
+	 * Test that reading the user database works.
+	 *
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testReadUserDb() throws DataServiceException {
+		UserDb userDb = this.dataService.readUserDb();
+
+		User user = userDb.getUserById(UUID.fromString("c50d3ee4-6e8b-4b8b-ba8a-21ca7dd5f534"));
+		assertTrue(user != null);
+		assertEquals("Chris", user.getName());
+		assertEquals("1", user.getPassword());
+
+		user = userDb.getUserByName("Devon");
+		assertTrue(user != null);
+		assertEquals("22", user.getPassword());
+		assertNull(userDb.getUserByName("Nobody"));
+	}
+
+	/**
+	 * Test that ranges keep catalog order, that a small row cache still
+	 * finds everything, and that the catalog survives reopening.
+	 *
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testLargeCatalog() throws IOException, DataServiceException {
+		File file = this.tmp.newFile("SongDb.xml");
+		UUID[] ids = SongDbLookupBenchmark.writeSongDb(file, 5000);
+		try (SqlDataService filler = new SqlDataService(url("large"))) {
+			new XmlDataService(file, USER_DB_FILE).exportTo(filler);
+		}
+
+		try (SqlDataService reopened = new SqlDataService(url("large"), 2, 16)) {
+			SongDb songDb = reopened.readSongDb();
+			assertEquals(ids.length, songDb.getSongCount());
+			List<Song> range = songDb.getSongs(1000, 50);
+			assertEquals(50, range.size());
+			for (int i = 0; i < range.size(); i++) {
+				assertEquals(ids[1000 + i], range.get(i).getId());
+			}
+			assertEquals(10, songDb.getSongs(ids.length - 10, 50).size());
+			for (int i = 0; i < ids.length; i += 7) {
+				assertEquals("Title " + i, songDb.getSongById(ids[i]).getTitle());
+			}
+		}
+	}
+
+	/**
+	 * Test that users sharing a name are all kept and that the name finds the
+	 * first of them, like in the XML database.
+	 *
+	 * @throws DataServiceException
+	 *             thrown when failing to fill or read the database
+	 */
+	@Test
+	public void testDuplicateNames() throws DataServiceException {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			users.add(new MockUser(new UUID(0, i), "Chris", Integer.toString(i)));
+		}
+		try (SqlDataService dataService = new SqlDataService(url("names"))) {
+			dataService.importCatalog(Collections.<Song> emptyList(), users);
+			UserDb userDb = dataService.readUserDb();
+			assertEquals(new UUID(0, 0), userDb.getUserByName("Chris").getId());
+			assertEquals("19", userDb.getUserById(new UUID(0, 19)).getPassword());
+		}
+	}
+
+	/**
+	 * Test that a database that can't be opened fails.
+	 *
+	 * @throws DataServiceException
+	 *             thrown intentionally
+	 */
+	@Test(expected = DataServiceException.class)
+	public void testOpenError() throws DataServiceException {
+		new SqlDataService("jdbc:nosuchdriver:catalog").readSongDb();
+	}
+
+	private String url(String name) {
+		return "jdbc:h2:file:" + new File(this.tmp.getRoot(), name).getAbsolutePath();
+	}
+}
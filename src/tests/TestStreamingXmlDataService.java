@@ -0,0 +1,159 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.User;
+import model.dataservice.UserDb;
+import model.dataservice.xml.StreamingXmlDataService;
+import tests.bench.SongDbLookupBenchmark;
+
+/**
+ * Test for the streaming XML DataService. Uses the XML files used in the
+ * actual application so any changes there must be reflected here.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestStreamingXmlDataService {
+	private static final File SONG_DB_FILE = new File("resources/SongDb.xml");
+	private static final File USER_DB_FILE = new File("resources/UserDb.xml");
+
+	/**
+	 * A folder for generated catalogs, deleted after each test.
+	 */
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private DataService dataService;
+
+	/**
+	 * Set up a new StreamingXmlDataService for tests.
+	 */
+	@Before
+	public void setUp() {
+		this.dataService = new StreamingXmlDataService(SONG_DB_FILE, USER_DB_FILE);
+	}
+
+	/**
+	 * Test that reading the song database works.
+	 * 
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testReadSongDb() throws DataServiceException {
+		SongDb songDb = this.dataService.readSongDb();
+
+		List<Song> songs = songDb.getSongs();
+		assertEquals(9, songs.size());
+
+		UUID songId = UUID.fromString("4158af70-2792-4214-b449-2d966b5f85b5");
+		Song song = songDb.getSongById(songId);
+		assertTrue(song != null);
+
+		assertEquals(songId, song.getId());
+		assertEquals("Kevin Macleod", song.getArtist());
+		assertEquals("Danse Macabre", song.getTitle());
+		assertEquals("DanseMacabreViolinHook.mp3", song.getFilename());
+		assertEquals(Duration.ofSeconds(34), song.getLength());
+		assertEquals("00:34 Danse Macabre by Kevin Macleod", song.toString());
+
+		for (Song s : songs) {
+			assertEquals(s.getTitle(), songDb.getSongById(s.getId()).getTitle());
+		}
+		assertNull(songDb.getSongById(UUID.fromString("00000000-0000-0000-0000-000000000000")));
+	}
+
+	/**
+	 * Test that reading the user database works.
+	 * 
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testReadUserDb() throws DataServiceException {
+		UserDb userDb = this.dataService.readUserDb();
+
+		User user = userDb.getUserById(UUID.fromString("c50d3ee4-6e8b-4b8b-ba8a-21ca7dd5f534"));
+		assertTrue(user != null);
+		assertEquals("Chris", user.getName());
+		assertEquals("1", user.getPassword());
+
+		user = userDb.getUserByName("Devon");
+		assertTrue(user != null);
+		assertEquals("22", user.getPassword());
+		assertNull(userDb.getUserByName("Nobody"));
+	}
+
+	/**
+	 * Test that a generated catalog loads completely and progress is reported
+	 * up to the end of the file.
+	 * 
+	 * @throws IOException
+	 *             thrown if the catalog can't be written
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testLargeCatalogProgress() throws IOException, DataServiceException {
+		File file = this.tmp.newFile("SongDb.xml");
+		UUID[] ids = SongDbLookupBenchmark.writeSongDb(file, 25000);
+
+		long[] last = new long[3];
+		SongDb songDb = new StreamingXmlDataService(file, USER_DB_FILE, (records, bytesRead, totalBytes) -> {
+			assertTrue(records >= last[0]);
+			last[0] = records;
+			last[1] = bytesRead;
+			last[2] = totalBytes;
+		}).readSongDb();
+
+		assertEquals(ids.length, songDb.getSongs().size());
+		assertEquals(ids.length, last[0]);
+		assertEquals(file.length(), last[1]);
+		assertEquals(file.length(), last[2]);
+		for (int i = 0; i < ids.length; i += 97) {
+			assertEquals("Title " + i, songDb.getSongById(ids[i]).getTitle());
+		}
+	}
+
+	/**
+	 * Test that a missing song database fails.
+	 * 
+	 * @throws DataServiceException
+	 *             thrown intentionally
+	 */
+	@Test(expected = DataServiceException.class)
+	public void testReadSongDbError() throws DataServiceException {
+		this.dataService = new StreamingXmlDataService(new File("SongDx.xml"), USER_DB_FILE);
+		this.dataService.readSongDb();
+	}
+
+	/**
+	 * Test that a missing user database fails.
+	 * 
+	 * @throws DataServiceException
+	 *             thrown intentionally
+	 */
+	@Test(expected = DataServiceException.class)
+	public void testReadUserDbError() throws DataServiceException {
+		this.dataService = new StreamingXmlDataService(SONG_DB_FILE, new File("UserDx.xml"));
+		this.dataService.readUserDb();
+	}
+}
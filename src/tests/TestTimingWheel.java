@@ -0,0 +1,79 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.TimingWheel;
+
+/**
+ * Tests for the hierarchical timing wheel.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class TestTimingWheel {
+
+	/**
+	 * Test that items fire in the first tick at or after their deadline, and
+	 * not before the tick after they were scheduled.
+	 */
+	@Test
+	public void testDeadlines() {
+		TimingWheel<String> wheel = new TimingWheel<>(1000, 5000);
+		List<String> fired = new ArrayList<>();
+		wheel.schedule("late", 9500);
+		wheel.schedule("past", 1000);
+		wheel.schedule("soon", 7000);
+		assertEquals(3, wheel.size());
+
+		wheel.advance(6999, fired::add);
+		assertEquals(1, fired.size());
+		assertEquals("past", fired.get(0));
+		wheel.advance(7000, fired::add);
+		assertEquals("soon", fired.get(1));
+		wheel.advance(9999, fired::add);
+		assertEquals(2, fired.size());
+		wheel.advance(10000, fired::add);
+		assertEquals("late", fired.get(2));
+		assertEquals(0, wheel.size());
+	}
+
+	/**
+	 * Test that items spread over every level of the wheel, and past the top
+	 * of it, all fire exactly when they should while the wheel moves in
+	 * uneven steps.
+	 */
+	@Test
+	public void testAllLevels() {
+		Random random = new Random(7);
+		long now = 123;
+		TimingWheel<long[]> wheel = new TimingWheel<>(1, now);
+		List<long[]> fired = new ArrayList<>();
+		int scheduled = 0;
+		long end = 20000000;
+		while (now < end) {
+			for (int i = random.nextInt(3); i > 0; i--) {
+				int level = random.nextInt(5);
+				long deadline = now + 1 + (long) (random.nextDouble() * (1L << (6 * level + 6)));
+				// each item remembers when it is due
+				wheel.schedule(new long[] { deadline }, deadline);
+				scheduled++;
+			}
+			long next = Math.min(end, now + 1 + random.nextInt(random.nextBoolean() ? 50 : 50000));
+			for (long tick = now + 1; tick <= next; tick++) {
+				long at = tick;
+				wheel.advance(tick, item -> {
+					assertEquals(item[0], at);
+					fired.add(item);
+				});
+			}
+			now = next;
+		}
+		assertEquals(scheduled, fired.size() + wheel.size());
+	}
+}
@@ -1,7 +1,10 @@
 package tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.time.Duration;
@@ -64,6 +67,29 @@ public class TestXmlDataService {
 		assertEquals("00:34 Danse Macabre by Kevin Macleod", song.toString());
 	}
 
+	/**
+	 * Test that lookups for unknown songs come back empty and that the song
+	 * list can't be changed out from under the index.
+	 * 
+	 * @throws DataServiceException
+	 *             thrown when failing to read the database
+	 */
+	@Test
+	public void testSongDbIndex() throws DataServiceException {
+		SongDb songDb = this.xmlDataService.readSongDb();
+
+		assertNull(songDb.getSongById(UUID.fromString("00000000-0000-0000-0000-000000000000")));
+		for (Song song : songDb.getSongs()) {
+			assertSame(song, songDb.getSongById(song.getId()));
+		}
+		try {
+			songDb.getSongs().clear();
+			fail("song list should be read only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
 	/**
 	 * Test that reading the user database works.
 	 * 
@@ -86,6 +112,10 @@ public class TestXmlDataService {
 
 		assertEquals("Devon", user.getName());
 		assertEquals("22", user.getPassword());
+
+		assertNull(userDb.getUserById(UUID.fromString("00000000-0000-0000-0000-000000000000")));
+		assertNull(userDb.getUserByName("Nobody"));
+		assertSame(userDb.getUserByName("Chris"), userDb.getUserById(userId));
 	}
 
 	/**
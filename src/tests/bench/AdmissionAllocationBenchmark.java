@@ -0,0 +1,146 @@
+package tests.bench;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import model.JukeboxModel;
+import model.QueueEvent;
+import model.RealDateService;
+import model.SongCache;
+import model.UserCache;
+import model.dataservice.DataService;
+import model.dataservice.DataServiceException;
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+import model.dataservice.UserDb;
+import tests.dataservice.mock.MockDataService;
+import tests.dataservice.mock.MockSong;
+
+/**
+ * Measures how many bytes the play count caches and the queueSong admission
+ * checks allocate per call, next to counting plays in a map of boxed
+ * Integers the way the caches used to. Allocation is read from the JVM's
+ * per-thread counter, so this needs a HotSpot based JVM.
+ * 
+ * Run it with the same classpath as the application.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class AdmissionAllocationBenchmark {
+	private static final int IDS = 1000;
+	private static final int CALLS = 1000000;
+
+	/**
+	 * Run the benchmark and print the results.
+	 * 
+	 * @param args
+	 *            standard field, ignored
+	 * @throws DataServiceException
+	 *             never thrown
+	 */
+	public static void main(String[] args) throws DataServiceException {
+		UUID[] ids = new UUID[IDS];
+		for (int i = 0; i < IDS; i++) {
+			ids[i] = new UUID(0, i);
+		}
+
+		Map<UUID, Integer> boxed = new HashMap<>();
+		SongCache songCache = new SongCache();
+		UserCache userCache = new UserCache();
+		MockSong song = new MockSong(ids[0], "Artist", "Title", "song.mp3", Duration.ofSeconds(1));
+
+		JukeboxModel model = new JukeboxModel(new RealDateService());
+		model.bind(new IndexedDataService(new MockDataService(true, true)));
+		model.authUser("MockUser1", "MockPassword1");
+		UUID played = model.getSongDb().getSongs().get(0).getId();
+		while (model.queueSong(played) == QueueEvent.SONG_ADDED) {
+			// use up the song's plays for today
+		}
+
+		System.out.println("operation\tbytes/call\tns/call");
+		for (int round = 0; round < 2; round++) {
+			// the first round warms up and gives every id its ordinal
+			boolean print = round == 1;
+			measure(print, "boxed map count", i -> {
+				UUID id = ids[i % IDS];
+				Integer plays = boxed.get(id);
+				boxed.put(id, Integer.valueOf(plays == null ? 1 : plays.intValue() + 1));
+			});
+			measure(print, "SongCache.incPlays", i -> songCache.incPlays(ids[i % IDS]));
+			measure(print, "SongCache.getPlays", i -> songCache.getPlays(ids[i % IDS]));
+			measure(print, "UserCache.playSong", i -> userCache.playSong(ids[i % IDS], song));
+			measure(print, "UserCache.getAllottedNanos", i -> userCache.getAllottedNanos(ids[i % IDS]));
+			measure(print, "queueSong refused", i -> {
+				if (model.queueSong(played) != QueueEvent.SONG_EXCEEDED_PLAY_LIMIT) {
+					throw new IllegalStateException("song was let in");
+				}
+			});
+			songCache.resetCache();
+			userCache.resetCache();
+		}
+		model.shutdown();
+	}
+
+	private static void measure(boolean print, String operation, Call call) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long bytes = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < CALLS; i++) {
+			call.run(i);
+		}
+		long nanos = System.nanoTime() - start;
+		bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+		if (print) {
+			System.out.println(String.format("%s\t%.2f\t%.1f", operation, Double.valueOf((double) bytes / CALLS),
+					Double.valueOf((double) nanos / CALLS)));
+		}
+	}
+
+	private interface Call {
+		void run(int i);
+	}
+
+	/**
+	 * Looks songs up in a map, since the mock catalog builds its songs anew on
+	 * every lookup and that would be all the benchmark measured.
+	 */
+	private static class IndexedDataService implements DataService {
+		private final DataService dataService;
+
+		public IndexedDataService(DataService dataService) {
+			this.dataService = dataService;
+		}
+
+		@Override
+		public SongDb readSongDb() throws DataServiceException {
+			List<Song> songs = this.dataService.readSongDb().getSongs();
+			Map<UUID, Song> byId = new HashMap<>();
+			for (Song song : songs) {
+				byId.put(song.getId(), song);
+			}
+			return new SongDb() {
+				@Override
+				public List<Song> getSongs() {
+					return songs;
+				}
+
+				@Override
+				public Song getSongById(UUID id) {
+					return byId.get(id);
+				}
+			};
+		}
+
+		@Override
+		public UserDb readUserDb() throws DataServiceException {
+			return this.dataService.readUserDb();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package tests.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.SongDb;
+import model.dataservice.SongDbBuilder;
+import model.dataservice.compact.CompactSongDb;
+import model.dataservice.compact.OffHeapSongDb;
+import model.dataservice.xml.StreamingXmlDataService;
+import model.dataservice.xml.XmlDataService;
+
+/**
+ * Compares how much memory each SongDb implementation needs for the same
+ * catalog. Heap use is measured after a full GC with the database still
+ * reachable; direct memory comes from the "direct" buffer pool.
+ * 
+ * Run it with the same classpath as the application and plenty of heap, for
+ * example -Xmx4g. The number of songs can be passed as the only argument.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SongDbFootprintBenchmark {
+	private static final int DEFAULT_SONGS = 1000000;
+	private static final File USER_DB = new File("resources/UserDb.xml");
+
+	/**
+	 * Run the benchmark and print the results.
+	 * 
+	 * @param args
+	 *            optionally the number of songs to generate
+	 * @throws IOException
+	 *             thrown when the generated database can't be written
+	 * @throws DataServiceException
+	 *             thrown when the generated database can't be read
+	 */
+	public static void main(String[] args) throws IOException, DataServiceException {
+		int songs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SONGS;
+		File songDbFile = File.createTempFile("SongDb", ".xml");
+		songDbFile.deleteOnExit();
+		SongDbLookupBenchmark.writeSongDb(songDbFile, songs);
+
+		System.out.println(songs + " songs");
+		System.out.println("store\theap MB\tdirect MB\tbytes/song");
+		long[] xml = measure(() -> readXml(songDbFile));
+		print("XmlSongDb", xml, songs);
+		print("CompactSongDb", measure(() -> readStreaming(songDbFile, CompactSongDb.Builder::new)), songs);
+		print("OffHeapSongDb", measure(() -> readStreaming(songDbFile, OffHeapSongDb.Builder::new)), songs);
+	}
+
+	private static SongDb readXml(File songDbFile) {
+		try {
+			return new XmlDataService(songDbFile, USER_DB).readSongDb();
+		} catch (DataServiceException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private static SongDb readStreaming(File songDbFile, Supplier<SongDbBuilder> builder) {
+		try {
+			return new StreamingXmlDataService(songDbFile, USER_DB, null, builder).readSongDb();
+		} catch (DataServiceException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	private static long[] measure(Supplier<SongDb> load) {
+		long heapBefore = usedHeap();
+		long directBefore = usedDirect();
+		SongDb songDb = load.get();
+		long heap = usedHeap() - heapBefore;
+		long direct = usedDirect() - directBefore;
+		// keep the database reachable until everything is measured
+		if (songDb.getSongs().isEmpty()) {
+			System.out.println("empty catalog");
+		}
+		return new long[] { heap, direct };
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long usedDirect() {
+		for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+			if ("direct".equals(pool.getName())) {
+				return pool.getMemoryUsed();
+			}
+		}
+		return 0;
+	}
+
+	private static void print(String store, long[] result, int songs) {
+		System.out.println(String.format("%s\t%.1f\t%.1f\t%d", store, Double.valueOf(result[0] / 1048576.0),
+				Double.valueOf(result[1] / 1048576.0), Long.valueOf((result[0] + result[1]) / songs)));
+	}
+}
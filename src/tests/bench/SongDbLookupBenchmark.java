@@ -0,0 +1,104 @@
+package tests.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.SongDb;
+import model.dataservice.xml.XmlDataService;
+
+/**
+ * A small benchmark for song lookups. Generates song databases of increasing
+ * size, loads them through the XmlDataService and times random getSongById
+ * calls. The cost per lookup should stay flat as the catalog grows.
+ * 
+ * Run it with the same classpath as the application.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SongDbLookupBenchmark {
+	private static final int[] SIZES = { 1000, 10000, 100000, 200000 };
+	private static final int LOOKUPS = 1000000;
+	private static final File USER_DB = new File("resources/UserDb.xml");
+
+	/**
+	 * Run the benchmark and print the results.
+	 * 
+	 * @param args
+	 *            standard field, ignored
+	 * @throws IOException
+	 *             thrown when a generated database can't be written
+	 * @throws DataServiceException
+	 *             thrown when a generated database can't be read
+	 */
+	public static void main(String[] args) throws IOException, DataServiceException {
+		System.out.println("songs\tload ms\tns/lookup");
+		for (int size : SIZES) {
+			File songDbFile = File.createTempFile("SongDb", ".xml");
+			songDbFile.deleteOnExit();
+			UUID[] ids = writeSongDb(songDbFile, size);
+
+			long start = System.nanoTime();
+			SongDb songDb = new XmlDataService(songDbFile, USER_DB).readSongDb();
+			long loadMillis = (System.nanoTime() - start) / 1000000;
+
+			// warm up before measuring
+			lookup(songDb, ids, LOOKUPS);
+			start = System.nanoTime();
+			int found = lookup(songDb, ids, LOOKUPS);
+			long perLookup = (System.nanoTime() - start) / LOOKUPS;
+
+			if (found != LOOKUPS) {
+				throw new IllegalStateException("lost songs during lookup");
+			}
+			System.out.println(size + "\t" + loadMillis + "\t" + perLookup);
+		}
+	}
+
+	/**
+	 * Write a song database with the given number of generated songs.
+	 * 
+	 * @param file
+	 *            where to write the database
+	 * @param size
+	 *            how many songs to write
+	 * @return the ids of all the written songs
+	 * @throws IOException
+	 *             thrown when the file can't be written
+	 */
+	public static UUID[] writeSongDb(File file, int size) throws IOException {
+		UUID[] ids = new UUID[size];
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<songs>\n");
+			for (int i = 0; i < size; i++) {
+				ids[i] = UUID.randomUUID();
+				writer.write("\t<song id=\"" + ids[i] + "\">\n");
+				writer.write("\t\t<artist>Artist " + (i % 500) + "</artist>\n");
+				writer.write("\t\t<title>Title " + i + "</title>\n");
+				writer.write("\t\t<filename>song" + i + ".mp3</filename>\n");
+				writer.write("\t\t<length>" + (30 + i % 300) + "</length>\n");
+				writer.write("\t</song>\n");
+			}
+			writer.write("</songs>\n");
+		}
+		return ids;
+	}
+
+	private static int lookup(SongDb songDb, UUID[] ids, int count) {
+		Random random = new Random(335);
+		int found = 0;
+		for (int i = 0; i < count; i++) {
+			if (songDb.getSongById(ids[random.nextInt(ids.length)]) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,77 @@
+package tests.bench;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.UUID;
+
+import model.SongSearchIndex;
+import tests.dataservice.mock.MockSong;
+
+/**
+ * A small benchmark for the song search index. Builds an index over a
+ * generated catalog of a million songs and times a few kinds of queries: a
+ * common word, a word with many prefix and substring matches, an artist
+ * shared by many songs narrowed down by a second word, two common words, and
+ * a word nothing matches. The search box asks for a page of results on every
+ * keystroke, so a one word query should take well under a millisecond
+ * however common the word is. With more words the time follows how many
+ * songs the rarest word matches.
+ *
+ * Run it with the same classpath as the application.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SongSearchBenchmark {
+	private static final int SONGS = 1000000;
+	private static final int ARTISTS = 500;
+	private static final int PAGE = 1000;
+	private static final int RUNS = 200;
+	private static final String[] WORDS = { "love", "lover", "lovely", "glove", "beloved", "night", "heart", "blue",
+			"dance", "dancing", "rain", "fire", "home", "road", "summer", "dream", "river", "light", "time", "song",
+			"girl", "baby", "moon", "star", "city", "wild", "gold", "storm", "sweet", "train", "ocean", "shadow" };
+	private static final String[] QUERIES = { "love", "lov", "ove", "artist 42", "artist", "night love", "blue moon",
+			"nothing" };
+
+	/**
+	 * Run the benchmark and print the results.
+	 *
+	 * @param args
+	 *            standard field, ignored
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(335);
+		SongSearchIndex index = new SongSearchIndex();
+		long start = System.nanoTime();
+		for (int i = 0; i < SONGS; i++) {
+			String title = WORDS[skewed(random)] + " " + WORDS[skewed(random)] + " " + i;
+			index.add(new MockSong(new UUID(0, i), "Artist " + (i % ARTISTS), title, "song" + i + ".mp3",
+					Duration.ofSeconds(30 + i % 300)));
+		}
+		System.out.println("indexed " + SONGS + " songs in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+		System.out.println("query\tresults\tus/query");
+		for (String query : QUERIES) {
+			// warm up before measuring
+			int results = 0;
+			for (int i = 0; i < RUNS; i++) {
+				results = index.search(query, PAGE).size();
+			}
+			start = System.nanoTime();
+			for (int i = 0; i < RUNS; i++) {
+				index.search(query, PAGE);
+			}
+			long perQuery = (System.nanoTime() - start) / RUNS / 1000;
+			System.out.println(query + "\t" + results + "\t" + perQuery);
+		}
+	}
+
+	/**
+	 * Pick a word, favouring the first ones so some words are common and
+	 * others rare.
+	 */
+	private static int skewed(Random random) {
+		double r = random.nextDouble();
+		return (int) (r * r * WORDS.length);
+	}
+}
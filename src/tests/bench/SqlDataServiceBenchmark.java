@@ -0,0 +1,92 @@
+package tests.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.UUID;
+
+import model.dataservice.DataServiceException;
+import model.dataservice.SongDb;
+import model.dataservice.sql.SqlDataService;
+import model.dataservice.xml.XmlDataService;
+
+/**
+ * Compares the SqlDataService against the XmlDataService. For each catalog
+ * size it times opening the catalog, random lookups over the whole catalog
+ * and lookups of a small set of songs over and over, the way the queue
+ * redraws its songs. The SQL database is filled from the XML before timing.
+ *
+ * Run it with the same classpath as the application plus a JDBC driver. The
+ * first argument is the url to use with %s standing for a file in a temporary
+ * directory; it defaults to jdbc:h2:file:%s.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SqlDataServiceBenchmark {
+	private static final int[] SIZES = { 10000, 100000, 1000000 };
+	private static final int LOOKUPS = 100000;
+	private static final int QUEUE_LENGTH = 20;
+	private static final File USER_DB = new File("resources/UserDb.xml");
+
+	/**
+	 * Run the benchmark and print the results.
+	 *
+	 * @param args
+	 *            an optional JDBC url template
+	 * @throws IOException
+	 *             thrown when a generated database can't be written
+	 * @throws DataServiceException
+	 *             thrown when a generated database can't be read
+	 */
+	public static void main(String[] args) throws IOException, DataServiceException {
+		String url = args.length > 0 ? args[0] : "jdbc:h2:file:%s";
+		System.out.println("songs\tstore\topen ms\tns/random lookup\tns/queue lookup");
+		for (int size : SIZES) {
+			File dir = Files.createTempDirectory("sqlbench").toFile();
+			File songDbFile = new File(dir, "SongDb.xml");
+			UUID[] ids = SongDbLookupBenchmark.writeSongDb(songDbFile, size);
+
+			long start = System.nanoTime();
+			XmlDataService xml = new XmlDataService(songDbFile, USER_DB);
+			SongDb xmlSongDb = xml.readSongDb();
+			report("xml", size, start, xmlSongDb, ids);
+
+			try (SqlDataService filler = new SqlDataService(String.format(url, new File(dir, "catalog")))) {
+				xml.exportTo(filler);
+			}
+			start = System.nanoTime();
+			try (SqlDataService sql = new SqlDataService(String.format(url, new File(dir, "catalog")))) {
+				SongDb sqlSongDb = sql.readSongDb();
+				sqlSongDb.getSongCount();
+				report("sql", size, start, sqlSongDb, ids);
+			}
+		}
+	}
+
+	private static void report(String store, int size, long start, SongDb songDb, UUID[] ids) {
+		long openMillis = (System.nanoTime() - start) / 1000000;
+
+		Random random = new Random(335);
+		// warm up before measuring
+		lookup(songDb, ids, random, ids.length, LOOKUPS / 10);
+		long begin = System.nanoTime();
+		lookup(songDb, ids, random, ids.length, LOOKUPS);
+		long perRandom = (System.nanoTime() - begin) / LOOKUPS;
+
+		begin = System.nanoTime();
+		lookup(songDb, ids, random, QUEUE_LENGTH, LOOKUPS);
+		long perQueue = (System.nanoTime() - begin) / LOOKUPS;
+
+		System.out.println(size + "\t" + store + "\t" + openMillis + "\t" + perRandom + "\t" + perQueue);
+	}
+
+	private static void lookup(SongDb songDb, UUID[] ids, Random random, int range, int count) {
+		for (int i = 0; i < count; i++) {
+			if (songDb.getSongById(ids[random.nextInt(range)]) == null) {
+				throw new IllegalStateException("lost songs during lookup");
+			}
+		}
+	}
+}
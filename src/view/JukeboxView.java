@@ -23,14 +23,20 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
-import javax.swing.table.TableRowSorter;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import controller.JukeboxController;
 import model.CachedUser;
+import model.SongSearchIndex;
 import model.dataservice.Song;
 import model.dataservice.SongDb;
+import model.dataservice.reload.CatalogChange;
 
 /**
  * A simple view for the Jukebox, showing the currently logged in user (and
@@ -42,11 +48,16 @@ import model.dataservice.SongDb;
  */
 public class JukeboxView extends JFrame implements Observer {
 	private static final long serialVersionUID = 5916141608303483336L;
+	private static final int SEARCH_DELAY = 150;
+	// the most search results shown, best first
+	private static final int SEARCH_RESULTS = 1000;
 
 	private JButton login;
 	private JLabel status;
 	private JList<Song> queue;
 	private JTable library;
+	private JTextField search;
+	private Runnable refilter;
 
 	/**
 	 * Display a message to the user. In this case, we use Swing dialog boxes
@@ -86,8 +97,10 @@ public class JukeboxView extends JFrame implements Observer {
 	 * 
 	 * @param songDb
 	 *            the song database for use as a library
+	 * @param searchIndex
+	 *            the search index for filtering the library
 	 */
-	public JukeboxView(SongDb songDb) {
+	public JukeboxView(SongDb songDb, SongSearchIndex searchIndex) {
 		setTitle("Jukebox");
 		setBounds(100, 100, 600, 400);
 		setMinimumSize(new Dimension(600, 400));
@@ -100,16 +113,28 @@ public class JukeboxView extends JFrame implements Observer {
 		signOut();
 
 		this.queue = new JList<>();
+		this.queue.setCellRenderer(new QueueCellRenderer());
 		JScrollPane queueScroll = new JScrollPane(this.queue);
 
+		// the song database does the sorting, so it never reads every row of
+		// the catalog the way a TableRowSorter would
 		SongTable songTable = new SongTable(songDb);
-		TableRowSorter<SongTable> librarySorter = new TableRowSorter<>(songTable);
 		this.library = new JTable(songTable);
-		this.library.setRowSorter(librarySorter);
+		this.library.setRowSorter(new SongTableSorter(songTable));
 		this.library.setPreferredScrollableViewportSize(this.library.getMinimumSize());
 		this.library.setMaximumSize(this.library.getPreferredScrollableViewportSize());
 		JScrollPane libraryScroll = new JScrollPane(this.library);
 
+		this.search = new JTextField();
+		this.refilter = () -> filterLibrary(songTable, searchIndex);
+		Timer searchTimer = new Timer(SEARCH_DELAY, e -> this.refilter.run());
+		searchTimer.setRepeats(false);
+		this.search.getDocument().addDocumentListener(new SearchListener(searchTimer));
+
+		JPanel libraryPanel = new JPanel(new BorderLayout());
+		libraryPanel.add(this.search, BorderLayout.NORTH);
+		libraryPanel.add(libraryScroll);
+
 		ListSelectionModel listSelectionModel = new DefaultListSelectionModel();
 		listSelectionModel.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 		this.library.setSelectionModel(listSelectionModel);
@@ -124,7 +149,7 @@ public class JukeboxView extends JFrame implements Observer {
 		JPanel player = new JPanel(new BorderLayout());
 		player.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 		player.add(queueScroll);
-		player.add(libraryScroll, BorderLayout.SOUTH);
+		player.add(libraryPanel, BorderLayout.SOUTH);
 
 		add(user);
 		add(player);
@@ -138,7 +163,9 @@ public class JukeboxView extends JFrame implements Observer {
 	 *            the controller to bind to this view
 	 */
 	public void bind(JukeboxController controller) {
-		this.queue.setModel(controller.addModelListener(this));
+		// the queue changes on whatever thread queues or plays a song, so the
+		// list shows a copy that only changes on the event dispatch thread
+		this.queue.setModel(new QueueListModel(controller.addModelListener(this)));
 		addWindowListener(controller.getWindowAdapter());
 		this.library.addMouseListener(controller.getMouseAdapter());
 		this.login.addActionListener(controller);
@@ -151,7 +178,12 @@ public class JukeboxView extends JFrame implements Observer {
 
 	@Override
 	public void update(Observable model, Object user) {
-		if (user instanceof CachedUser) {
+		if (user instanceof CatalogChange) {
+			SwingUtilities.invokeLater(() -> {
+				((SongTable) this.library.getModel()).apply((CatalogChange) user);
+				this.refilter.run();
+			});
+		} else if (user instanceof CachedUser) {
 			this.login.setText("Sign out");
 			this.status.setText(formatStatus((CachedUser) user));
 		} else {
@@ -178,11 +210,40 @@ public class JukeboxView extends JFrame implements Observer {
 		return status.toString();
 	}
 
+	private void filterLibrary(SongTable songTable, SongSearchIndex searchIndex) {
+		String query = this.search.getText();
+		// only the matches are ever looked at, never the rest of the catalog
+		songTable.setFilter(query.trim().isEmpty() ? null : searchIndex.search(query, SEARCH_RESULTS));
+	}
+
 	private void signOut() {
 		this.login.setText("Login");
 		this.status.setText("Not logged in.");
 	}
 
+	private static class SearchListener implements DocumentListener {
+		private Timer timer;
+
+		public SearchListener(Timer timer) {
+			this.timer = timer;
+		}
+
+		@Override
+		public void insertUpdate(DocumentEvent e) {
+			this.timer.restart();
+		}
+
+		@Override
+		public void removeUpdate(DocumentEvent e) {
+			this.timer.restart();
+		}
+
+		@Override
+		public void changedUpdate(DocumentEvent e) {
+			this.timer.restart();
+		}
+	}
+
 	private class SelectAction extends AbstractAction {
 		private static final long serialVersionUID = 7703926469306001909L;
 
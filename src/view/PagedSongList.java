@@ -0,0 +1,118 @@
+package view;
+
+import java.util.AbstractList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.dataservice.Song;
+import model.dataservice.SongDb;
+
+/**
+ * A read only list over a SongDb that only loads the songs somebody actually
+ * looks at. Songs are fetched a page at a time with the ranged getSongs and
+ * the most recently used pages are kept in a small cache, so a table only
+ * ever holds the rows around what is on screen no matter how big the catalog
+ * is. Whenever a page is used the pages on either side of it are loaded in the
+ * background, which keeps scrolling smooth in both directions.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+class PagedSongList extends AbstractList<Song> {
+	private static final int PAGE_SIZE = 256;
+	private static final int MAX_PAGES = 64;
+
+	private static final ExecutorService PREFETCHER = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "song-prefetcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final SongDb songDb;
+	private final int size;
+	private final Map<Integer, List<Song>> pages;
+	private final Set<Integer> pending;
+
+	/**
+	 * Create a list over the songs in a database. The database must not
+	 * change while the list is in use.
+	 *
+	 * @param songDb
+	 *            the songs to list
+	 */
+	public PagedSongList(SongDb songDb) {
+		this.songDb = songDb;
+		this.size = songDb.getSongCount();
+		this.pages = new LinkedHashMap<Integer, List<Song>>(MAX_PAGES * 4 / 3 + 1, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<Song>> eldest) {
+				return size() > MAX_PAGES;
+			}
+		};
+		this.pending = new HashSet<>();
+	}
+
+	@Override
+	public Song get(int row) {
+		if (row < 0 || row >= this.size) {
+			throw new IndexOutOfBoundsException("row " + row);
+		}
+		int page = row / PAGE_SIZE;
+		List<Song> songs = cached(page);
+		if (songs == null) {
+			songs = load(page);
+		}
+		prefetch(page - 1);
+		prefetch(page + 1);
+		return songs.get(row - page * PAGE_SIZE);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	private List<Song> cached(int page) {
+		synchronized (this.pages) {
+			return this.pages.get(Integer.valueOf(page));
+		}
+	}
+
+	private List<Song> load(int page) {
+		List<Song> songs = this.songDb.getSongs(page * PAGE_SIZE, PAGE_SIZE);
+		synchronized (this.pages) {
+			this.pages.put(Integer.valueOf(page), songs);
+		}
+		return songs;
+	}
+
+	private void prefetch(int page) {
+		if (page < 0 || page * PAGE_SIZE >= this.size) {
+			return;
+		}
+		Integer key = Integer.valueOf(page);
+		synchronized (this.pages) {
+			if (this.pages.containsKey(key) || !this.pending.add(key)) {
+				return;
+			}
+		}
+		PREFETCHER.execute(() -> {
+			try {
+				if (cached(page) == null) {
+					load(page);
+				}
+			} finally {
+				synchronized (this.pages) {
+					this.pending.remove(key);
+				}
+			}
+		});
+	}
+}
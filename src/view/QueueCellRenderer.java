@@ -0,0 +1,39 @@
+package view;
+
+import java.awt.Component;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+
+/**
+ * Shows each song in the queue with when it should start playing. The top
+ * song is the one playing. Lists that aren't showing a QueueListModel get the
+ * plain look.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class QueueCellRenderer extends DefaultListCellRenderer {
+	private static final long serialVersionUID = 1L;
+	private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("H:mm").withZone(ZoneId.systemDefault());
+
+	@Override
+	public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected,
+			boolean cellHasFocus) {
+		super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+		if (list.getModel() instanceof QueueListModel && value != null) {
+			if (index == 0) {
+				setText(value + " (playing)");
+			} else {
+				Instant start = ((QueueListModel) list.getModel()).getEstimatedStart(index);
+				if (start != null) {
+					setText(value + " (at " + TIME.format(start) + ")");
+				}
+			}
+		}
+		return this;
+	}
+}
@@ -0,0 +1,111 @@
+package view;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import model.SongQueue;
+import model.dataservice.Song;
+
+/**
+ * A copy of the SongQueue that only changes on the event dispatch thread, for
+ * showing the queue in a JList. The queue tells its listeners about changes on
+ * whichever thread is changing it, which Swing can't take. This model takes
+ * the songs each change carries and makes the same change to its own rows on
+ * the event dispatch thread, in the order the queue made them, so what the
+ * list shows always matches what it was told.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class QueueListModel extends AbstractListModel<Song> implements ListDataListener {
+	private static final long serialVersionUID = -3390722148170635548L;
+
+	private final SongQueue queue;
+	// only touched on the event dispatch thread once the model is shown
+	private List<Song> rows;
+
+	/**
+	 * Create a copy of the queue as it is now that follows it from then on.
+	 *
+	 * @param queue
+	 *            the queue to follow
+	 */
+	public QueueListModel(SongQueue queue) {
+		this.queue = queue;
+		synchronized (queue) {
+			// nothing can change between copying the rows and listening
+			this.rows = songs();
+			queue.addListDataListener(this);
+		}
+	}
+
+	/**
+	 * Estimate when the song at a row starts. The queue may be a change or
+	 * two ahead of the rows shown, so this is as rough as the estimate itself.
+	 *
+	 * @param row
+	 *            the row of the song
+	 * @return the time, or null if there is no such row
+	 */
+	public Instant getEstimatedStart(int row) {
+		return this.queue.getEstimatedStart(row);
+	}
+
+	@Override
+	public int getSize() {
+		return this.rows.size();
+	}
+
+	@Override
+	public Song getElementAt(int index) {
+		return index < 0 || index >= this.rows.size() ? null : this.rows.get(index);
+	}
+
+	@Override
+	public void intervalAdded(ListDataEvent e) {
+		int row = e.getIndex0();
+		Song song = ((SongQueue.Change) e).getSongs().get(0);
+		SwingUtilities.invokeLater(() -> {
+			this.rows.add(row, song);
+			fireIntervalAdded(this, row, row);
+		});
+	}
+
+	@Override
+	public void intervalRemoved(ListDataEvent e) {
+		int row = e.getIndex0();
+		SwingUtilities.invokeLater(() -> {
+			this.rows.remove(row);
+			fireIntervalRemoved(this, row, row);
+		});
+	}
+
+	@Override
+	public void contentsChanged(ListDataEvent e) {
+		List<Song> songs = new ArrayList<>(((SongQueue.Change) e).getSongs());
+		SwingUtilities.invokeLater(() -> {
+			this.rows = songs;
+			if (!songs.isEmpty()) {
+				fireContentsChanged(this, 0, songs.size() - 1);
+			}
+		});
+	}
+
+	/**
+	 * Copy the songs in the queue. Called while holding the queue's lock.
+	 */
+	private List<Song> songs() {
+		int size = this.queue.getSize();
+		List<Song> songs = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			songs.add(this.queue.getElementAt(i));
+		}
+		return songs;
+	}
+}
@@ -1,25 +1,50 @@
 package view;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableModel;
 
 import model.dataservice.Song;
 import model.dataservice.SongDb;
+import model.dataservice.SongOrder;
+import model.dataservice.reload.CatalogChange;
 
 /**
  * An adapter for the SongDb so that it can be used as a table in the view.
  * Since the model doesn't have much to do with tables it doesn't make sense to
  * handle this there.
  *
+ * Rows are read through a PagedSongList, so only the part of the catalog
+ * around what is on screen is ever loaded. The table can be narrowed down to
+ * a list of songs, like the results of a search, whose rows are only looked
+ * up when they are shown. It can also be sorted by a column, which the song
+ * database does, so sorting never reads rows that aren't shown either.
+ *
+ * When the catalog is reloaded the table can be moved over to the new version
+ * with apply, which tells listeners about only the rows that changed so
+ * selection and scroll position survive.
+ *
  * @author Kenneth Mecum <kmecum@email.arizona.edu>
  * @author Joshua Pulpan <jpulpan@email.arizona.edu>
  */
 public class SongTable implements TableModel {
+	// past this many added and removed rows one big event is cheaper
+	private static final int MAX_ROW_EVENTS = 1000;
+	private static final SongOrder[] COLUMN_ORDERS = { SongOrder.ARTIST, SongOrder.TITLE, SongOrder.LENGTH };
 
+	private SongDb songDb;
 	private List<Song> songs;
+	// the songs shown instead of the whole catalog, or null
+	private List<UUID> filter;
+	// the column the rows are sorted by, or -1 for the catalog's order
+	private int sortColumn = -1;
+	private boolean descending;
+	private List<TableModelListener> listeners;
 
 	/**
 	 * Create a new table from the given song database.
@@ -28,7 +53,114 @@ public class SongTable implements TableModel {
 	 *            the song database to model
 	 */
 	public SongTable(SongDb songDb) {
-		this.songs = songDb.getSongs();
+		this.songDb = songDb.current();
+		this.songs = new PagedSongList(this.songDb);
+		this.listeners = new ArrayList<>();
+	}
+
+	/**
+	 * Move the table over to a new version of the catalog. Listeners are told
+	 * about removed rows first, then added rows, then changed ones, and the
+	 * table always matches what they have been told so far. Falls back to a
+	 * single event for the whole table when the songs were reordered, the
+	 * change is very large or it doesn't start from what the table shows.
+	 * Must be called on the event dispatch thread.
+	 * 
+	 * @param change
+	 *            the difference between the old and new catalog
+	 */
+	public void apply(CatalogChange change) {
+		List<Song> oldSongs = this.songs;
+		List<Song> newSongs = new PagedSongList(change.getNewSongDb());
+		int[] removed = change.getRemovedRows();
+		int[] added = change.getAddedRows();
+		boolean current = this.songDb == change.getOldSongDb();
+		this.songDb = change.getNewSongDb();
+		if (this.filter != null) {
+			// the rows are the filter's, not the catalog's, so the changes
+			// don't line up with them; keep the songs that are still there
+			List<UUID> kept = new ArrayList<>();
+			for (UUID id : this.filter) {
+				if (this.songDb.getSongById(id) != null) {
+					kept.add(id);
+				}
+			}
+			setFilter(kept);
+			return;
+		}
+		if (!current || this.sortColumn >= 0 || change.isReordered()
+				|| removed.length + added.length > MAX_ROW_EVENTS) {
+			// sorted rows don't line up with the catalog's changes either
+			this.songs = this.sortColumn >= 0 ? rows() : newSongs;
+			notifyListeners(new TableModelEvent(this));
+			return;
+		}
+
+		// remove from the bottom up so earlier row numbers stay valid
+		int end = removed.length;
+		while (end > 0) {
+			int start = runStart(removed, end);
+			this.songs = new HiddenRows(oldSongs, removed, start);
+			notifyListeners(new TableModelEvent(this, removed[start], removed[end - 1], TableModelEvent.ALL_COLUMNS,
+					TableModelEvent.DELETE));
+			end = start;
+		}
+
+		// then insert from the top down, which lands every row in its new spot
+		int start = 0;
+		while (start < added.length) {
+			int stop = runEnd(added, start);
+			this.songs = new HiddenRows(newSongs, added, stop);
+			notifyListeners(new TableModelEvent(this, added[start], added[stop - 1], TableModelEvent.ALL_COLUMNS,
+					TableModelEvent.INSERT));
+			start = stop;
+		}
+		this.songs = newSongs;
+
+		int[] changed = change.getChangedRows();
+		start = 0;
+		while (start < changed.length) {
+			int stop = runEnd(changed, start);
+			notifyListeners(new TableModelEvent(this, changed[start], changed[stop - 1]));
+			start = stop;
+		}
+	}
+
+	/**
+	 * Show only the given songs, in the given order, or the whole catalog
+	 * again. Must be called on the event dispatch thread.
+	 * 
+	 * @param ids
+	 *            the ids of the songs to show, all in the catalog, or null to
+	 *            show every song
+	 */
+	public void setFilter(List<UUID> ids) {
+		if (ids == null && this.filter == null) {
+			return;
+		}
+		this.filter = ids;
+		this.songs = rows();
+		notifyListeners(new TableModelEvent(this));
+	}
+
+	/**
+	 * Sort the rows by a column, or put them back in the catalog's order.
+	 * Songs with the same value keep the catalog's order. The songs shown by
+	 * a filter are sorted too. Must be called on the event dispatch thread.
+	 * 
+	 * @param column
+	 *            the column to sort by, or -1 for the catalog's order
+	 * @param descending
+	 *            whether to put the largest first
+	 */
+	public void setSortColumn(int column, boolean descending) {
+		if (column < -1 || column >= COLUMN_ORDERS.length) {
+			throw new IndexOutOfBoundsException("column " + column);
+		}
+		this.sortColumn = column;
+		this.descending = descending;
+		this.songs = rows();
+		notifyListeners(new TableModelEvent(this));
 	}
 
 	@Override
@@ -62,7 +194,9 @@ public class SongTable implements TableModel {
 	 * @return the UUID of the song at that row
 	 */
 	public UUID getIdAt(int row) {
-		return this.songs.get(row).getId();
+		Song song = this.songs.get(row);
+		// only a filter's row can be missing, and then the rows are the filter's
+		return song == null ? this.filter.get(row) : song.getId();
 	}
 
 	@Override
@@ -78,6 +212,10 @@ public class SongTable implements TableModel {
 	@Override
 	public Object getValueAt(int row, int column) {
 		Song song = this.songs.get(row);
+		if (song == null) {
+			// a search result the table hasn't caught up with yet
+			return null;
+		}
 		switch (column) {
 		case 0:
 			return song.getArtist();
@@ -100,11 +238,122 @@ public class SongTable implements TableModel {
 
 	@Override
 	public void addTableModelListener(TableModelListener tableModelListener) {
-		// unused method stub
+		this.listeners.add(tableModelListener);
 	}
 
 	@Override
 	public void removeTableModelListener(TableModelListener tableModelListener) {
-		// unused method stub
+		this.listeners.remove(tableModelListener);
+	}
+
+	/**
+	 * Build the rows for the current catalog, filter and sort column.
+	 */
+	private List<Song> rows() {
+		SongOrder order = this.sortColumn < 0 ? null : COLUMN_ORDERS[this.sortColumn];
+		if (this.filter != null) {
+			List<Song> songs = new FilteredRows(this.songDb, this.filter);
+			if (order == null) {
+				return songs;
+			}
+			// a filter is only a page of songs, so they are sorted right here
+			List<Song> sorted = new ArrayList<>(songs);
+			sorted.removeIf(song -> song == null);
+			sorted.sort(order.comparator(this.descending));
+			return sorted;
+		}
+		return new PagedSongList(order == null ? this.songDb : this.songDb.sorted(order, this.descending));
+	}
+
+	private void notifyListeners(TableModelEvent e) {
+		for (TableModelListener l : this.listeners) {
+			l.tableChanged(e);
+		}
+	}
+
+	/**
+	 * Find where the run of consecutive rows ending just before end starts.
+	 */
+	private static int runStart(int[] rows, int end) {
+		int start = end - 1;
+		while (start > 0 && rows[start - 1] == rows[start] - 1) {
+			start--;
+		}
+		return start;
+	}
+
+	/**
+	 * Find where the run of consecutive rows starting at start ends.
+	 */
+	private static int runEnd(int[] rows, int start) {
+		int end = start + 1;
+		while (end < rows.length && rows[end] == rows[end - 1] + 1) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * A list with some rows left out: every row of the base list except the
+	 * ones in hidden from the given position on. Used for the in between
+	 * states while a change is being applied.
+	 */
+	private static class HiddenRows extends AbstractList<Song> {
+		private final List<Song> base;
+		private final int[] hidden;
+		private final int from;
+
+		public HiddenRows(List<Song> base, int[] hidden, int from) {
+			this.base = base;
+			this.hidden = hidden;
+			this.from = from;
+		}
+
+		@Override
+		public Song get(int row) {
+			// the hidden row at position j has hidden[j] - (j - from) visible
+			// rows before it, which never decreases, so search for the last
+			// hidden row that comes before this one
+			int low = this.from;
+			int high = this.hidden.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (this.hidden[mid] - (mid - this.from) <= row) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return this.base.get(row + low - this.from);
+		}
+
+		@Override
+		public int size() {
+			return this.base.size() - (this.hidden.length - this.from);
+		}
+	}
+
+	/**
+	 * The songs with the given ids, looked up one at a time as they are
+	 * shown.
+	 */
+	private static class FilteredRows extends AbstractList<Song> {
+		private final SongDb songDb;
+		private final List<UUID> ids;
+
+		public FilteredRows(SongDb songDb, List<UUID> ids) {
+			this.songDb = songDb;
+			this.ids = ids;
+		}
+
+		@Override
+		public Song get(int row) {
+			return this.songDb.getSongById(this.ids.get(row));
+		}
+
+		@Override
+		public int size() {
+			return this.ids.size();
+		}
 	}
 }
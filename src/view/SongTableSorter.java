@@ -0,0 +1,114 @@
+package view;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+
+/**
+ * A RowSorter that leaves the sorting to the SongTable. Clicking a column
+ * header sorts by that column, clicking it again reverses it, and the header
+ * shows which way, like with a TableRowSorter. But the table asks the song
+ * database for its rows in that order, so no row that isn't on screen is ever
+ * read, and the view's rows are always the model's.
+ *
+ * @author Kenneth Mecum <kmecum@email.arizona.edu>
+ * @author Joshua Pulpan <jpulpan@email.arizona.edu>
+ */
+public class SongTableSorter extends RowSorter<SongTable> {
+	private SongTable songTable;
+	private List<SortKey> sortKeys;
+
+	/**
+	 * Create a sorter for a table, starting in the catalog's order.
+	 *
+	 * @param songTable
+	 *            the table to sort
+	 */
+	public SongTableSorter(SongTable songTable) {
+		this.songTable = songTable;
+		this.sortKeys = Collections.emptyList();
+	}
+
+	@Override
+	public SongTable getModel() {
+		return this.songTable;
+	}
+
+	@Override
+	public void toggleSortOrder(int column) {
+		boolean ascending = this.sortKeys.isEmpty() || this.sortKeys.get(0).getColumn() != column
+				|| this.sortKeys.get(0).getSortOrder() != SortOrder.ASCENDING;
+		setSortKeys(Collections.singletonList(new SortKey(column, ascending ? SortOrder.ASCENDING
+				: SortOrder.DESCENDING)));
+	}
+
+	@Override
+	public void setSortKeys(List<? extends SortKey> keys) {
+		// only the first key counts, since the database sorts by one column
+		SortKey key = keys == null || keys.isEmpty() ? null : keys.get(0);
+		if (key != null && key.getSortOrder() == SortOrder.UNSORTED) {
+			key = null;
+		}
+		this.sortKeys = key == null ? Collections.<SortKey> emptyList() : Collections.singletonList(key);
+		fireSortOrderChanged();
+		this.songTable.setSortColumn(key == null ? -1 : key.getColumn(), key != null
+				&& key.getSortOrder() == SortOrder.DESCENDING);
+	}
+
+	@Override
+	public List<? extends SortKey> getSortKeys() {
+		return this.sortKeys;
+	}
+
+	@Override
+	public int convertRowIndexToModel(int index) {
+		return index;
+	}
+
+	@Override
+	public int convertRowIndexToView(int index) {
+		return index;
+	}
+
+	@Override
+	public int getViewRowCount() {
+		return this.songTable.getRowCount();
+	}
+
+	@Override
+	public int getModelRowCount() {
+		return this.songTable.getRowCount();
+	}
+
+	@Override
+	public void modelStructureChanged() {
+		// the table sorts itself
+	}
+
+	@Override
+	public void allRowsChanged() {
+		// the table sorts itself
+	}
+
+	@Override
+	public void rowsInserted(int firstRow, int endRow) {
+		// the table sorts itself
+	}
+
+	@Override
+	public void rowsDeleted(int firstRow, int endRow) {
+		// the table sorts itself
+	}
+
+	@Override
+	public void rowsUpdated(int firstRow, int endRow) {
+		// the table sorts itself
+	}
+
+	@Override
+	public void rowsUpdated(int firstRow, int endRow, int column) {
+		// the table sorts itself
+	}
+}